@@ -0,0 +1,209 @@
+package grim.asserts;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * Reader for rules stored in the binary rule format emitted by the annotation processor when the
+ * <code>grim.emit_binary_rules</code> option is enabled. All integers are big-endian and every string
+ * is stored once in a string table and referenced by index.
+ *
+ * <pre>
+ * file      := MAGIC:int32 VERSION:uint8 stringCount:int32 string[stringCount] ruleCount:int32 rule[ruleCount]
+ * string    := byteLength:int32 utf8Bytes[byteLength]
+ * rule      := flags:uint8 type:pattern [member:pattern] [property:int32 value:int32]
+ * pattern   := kind:uint8 value:int32
+ * </pre>
+ *
+ * <p>The kind of a pattern determines how the value is interpreted. The patterns generated by the processor
+ * are recorded as the name or package that they match and the regular expression is reconstructed in the same
+ * form as the processor emits in the json format, so a rule has the same patterns regardless of the format it
+ * was loaded from. Strings and conditions are shared by every rule in a file that references them and patterns are
+ * shared via the {@link PatternPool}. The patterns are not compiled by the reader.</p>
+ */
+final class BinaryRuleReader
+{
+  /**
+   * The bytes "GRIM" that identify the format.
+   */
+  static final int MAGIC = 0x4752494D;
+  static final int VERSION = 1;
+  static final int FLAG_KEEP = 1;
+  static final int FLAG_MEMBER = 1 << 1;
+  static final int FLAG_CONDITION = 1 << 2;
+  /**
+   * Flag set if the condition matches when the property is equal to the value.
+   */
+  static final int FLAG_EQUALS = 1 << 3;
+  /**
+   * The value is a regular expression.
+   */
+  static final int KIND_REGEX = 0;
+  /**
+   * The value is a name and the pattern only matches the name.
+   */
+  static final int KIND_LITERAL = 1;
+  /**
+   * The value is the name of a method and the pattern also matches the name prefixed with <code>$</code>.
+   */
+  static final int KIND_METHOD = 2;
+  /**
+   * The value is the name of a package and the pattern matches every type within the package.
+   */
+  static final int KIND_PACKAGE = 3;
+  @Nonnull
+  private final ByteBuffer _buffer;
+  @Nonnull
+  private final String[] _strings;
+  @Nonnull
+  private final PatternPool _patterns;
+  @Nonnull
+  private final Map<Condition, Condition> _conditions = new HashMap<>();
+
+  private BinaryRuleReader( @Nonnull final ByteBuffer buffer,
+                            @Nonnull final String[] strings,
+                            @Nonnull final PatternPool patterns )
+  {
+    _buffer = buffer;
+    _strings = strings;
+    _patterns = patterns;
+  }
+
+  /**
+   * Read the rules from the buffer.
+   * The buffer is read from its current position.
+   *
+   * @param buffer the buffer.
+   * @param source the resource that the rules were loaded from.
+   * @return the rules.
+   * @throws IOException if the buffer does not contain rules in the binary rule format.
+   */
+  @Nonnull
+  static List<Rule> read( @Nonnull final ByteBuffer buffer, @Nonnull final String source )
+    throws IOException
+  {
+    return read( buffer, source, new PatternPool() );
+  }
+
+  /**
+   * Read the rules from the buffer, sharing the patterns in the pool.
+   * The buffer is read from its current position.
+   *
+   * @param buffer   the buffer.
+   * @param source   the resource that the rules were loaded from.
+   * @param patterns the pool of patterns.
+   * @return the rules.
+   * @throws IOException if the buffer does not contain rules in the binary rule format.
+   */
+  @Nonnull
+  static List<Rule> read( @Nonnull final ByteBuffer buffer,
+                          @Nonnull final String source,
+                          @Nonnull final PatternPool patterns )
+    throws IOException
+  {
+    try
+    {
+      if ( MAGIC != buffer.getInt() )
+      {
+        throw new IOException( "Grim binary rules do not start with the expected header" );
+      }
+      final int version = buffer.get() & 0xFF;
+      if ( VERSION != version )
+      {
+        throw new IOException( "Grim binary rules have version " + version + " but only version " + VERSION +
+                               " is supported" );
+      }
+      final String[] strings = new String[ readCount( buffer ) ];
+      for ( int i = 0; i < strings.length; i++ )
+      {
+        final byte[] data = new byte[ readCount( buffer ) ];
+        buffer.get( data );
+        strings[ i ] = new String( data, StandardCharsets.UTF_8 );
+      }
+      return new BinaryRuleReader( buffer, strings, patterns ).readRules( source );
+    }
+    catch ( final BufferUnderflowException bue )
+    {
+      throw new IOException( "Grim binary rules are truncated", bue );
+    }
+  }
+
+  @Nonnull
+  private List<Rule> readRules( @Nonnull final String source )
+    throws IOException
+  {
+    final int ruleCount = readCount( _buffer );
+    final List<Rule> rules = new ArrayList<>( ruleCount );
+    for ( int i = 0; i < ruleCount; i++ )
+    {
+      final int flags = _buffer.get();
+      final RulePattern type = readPattern( i );
+      final RulePattern member = 0 != ( flags & FLAG_MEMBER ) ? readPattern( i ) : null;
+      final Condition condition = 0 != ( flags & FLAG_CONDITION ) ? readCondition( i, flags ) : null;
+      rules.add( new Rule( 0 == ( flags & FLAG_KEEP ), type, member, condition, source ) );
+    }
+    return rules;
+  }
+
+  @Nonnull
+  private Condition readCondition( final int ruleIndex, final int flags )
+    throws IOException
+  {
+    final String property = readString( ruleIndex );
+    final String value = readString( ruleIndex );
+    return _conditions.computeIfAbsent( new Condition( property, value, 0 != ( flags & FLAG_EQUALS ) ), c -> c );
+  }
+
+  @Nonnull
+  private RulePattern readPattern( final int ruleIndex )
+    throws IOException
+  {
+    final int kind = _buffer.get();
+    final String value = readString( ruleIndex );
+    switch ( kind )
+    {
+      case KIND_REGEX:
+        return _patterns.intern( value );
+      case KIND_LITERAL:
+        return _patterns.intern( value, false );
+      case KIND_METHOD:
+        return _patterns.intern( value, true );
+      case KIND_PACKAGE:
+        return _patterns.intern( "^" + value.replace( ".", "\\." ) + "\\..*$" );
+      default:
+        throw new IOException( "Grim rule at index " + ruleIndex + " contains a pattern of unknown kind " + kind );
+    }
+  }
+
+  @Nonnull
+  private String readString( final int ruleIndex )
+    throws IOException
+  {
+    final int index = _buffer.getInt();
+    if ( index < 0 || index >= _strings.length )
+    {
+      throw new IOException( "Grim rule at index " + ruleIndex + " references string " + index +
+                             " but the string table contains " + _strings.length + " strings" );
+    }
+    return _strings[ index ];
+  }
+
+  private static int readCount( @Nonnull final ByteBuffer buffer )
+    throws IOException
+  {
+    final int count = buffer.getInt();
+    // A count can never exceed the number of bytes remaining as every element occupies at least one byte
+    if ( count < 0 || count > buffer.remaining() )
+    {
+      throw new IOException( "Grim binary rules contain an invalid count " + count );
+    }
+    return count;
+  }
+}
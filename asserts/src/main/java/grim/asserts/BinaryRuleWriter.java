@@ -0,0 +1,131 @@
+package grim.asserts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Writer for rules in the binary rule format read by {@link BinaryRuleReader}.
+ * Patterns created from a name are recorded as the name so that the reader classifies them without parsing the
+ * regular expression, and every other pattern is recorded as a regular expression. In both cases the rules read
+ * back have patterns with the same source as the rules that were written.
+ */
+final class BinaryRuleWriter
+{
+  private BinaryRuleWriter()
+  {
+  }
+
+  /**
+   * Encode the rules in the binary rule format.
+   *
+   * @param rules the rules.
+   * @return the encoded rules.
+   * @throws IllegalArgumentException if a pattern in a rule has flags as flags can not be recorded in the format.
+   */
+  @Nonnull
+  static byte[] encode( @Nonnull final List<Rule> rules )
+  {
+    final Map<String, Integer> strings = new LinkedHashMap<>();
+    for ( final Rule rule : rules )
+    {
+      addString( strings, toValue( rule.getTypeMatcher().getRulePattern() ) );
+      final RulePattern member = getMemberPattern( rule );
+      if ( null != member )
+      {
+        addString( strings, toValue( member ) );
+      }
+      final Condition condition = rule.getCondition();
+      if ( null != condition )
+      {
+        addString( strings, condition.getProperty() );
+        addString( strings, condition.getValue() );
+      }
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try ( final DataOutputStream output = new DataOutputStream( bytes ) )
+    {
+      output.writeInt( BinaryRuleReader.MAGIC );
+      output.writeByte( BinaryRuleReader.VERSION );
+      output.writeInt( strings.size() );
+      for ( final String string : strings.keySet() )
+      {
+        final byte[] data = string.getBytes( StandardCharsets.UTF_8 );
+        output.writeInt( data.length );
+        output.write( data );
+      }
+      output.writeInt( rules.size() );
+      for ( final Rule rule : rules )
+      {
+        final RulePattern member = getMemberPattern( rule );
+        final Condition condition = rule.getCondition();
+        output.writeByte( ( rule.isKeepRule() ? BinaryRuleReader.FLAG_KEEP : 0 ) |
+                          ( null != member ? BinaryRuleReader.FLAG_MEMBER : 0 ) |
+                          ( null != condition ? BinaryRuleReader.FLAG_CONDITION : 0 ) |
+                          ( null != condition && condition.isEquals() ? BinaryRuleReader.FLAG_EQUALS : 0 ) );
+        writePattern( output, strings, rule.getTypeMatcher().getRulePattern() );
+        if ( null != member )
+        {
+          writePattern( output, strings, member );
+        }
+        if ( null != condition )
+        {
+          output.writeInt( strings.get( condition.getProperty() ) );
+          output.writeInt( strings.get( condition.getValue() ) );
+        }
+      }
+    }
+    catch ( final IOException ioe )
+    {
+      // Writing to a ByteArrayOutputStream never fails
+      throw new IllegalStateException( ioe );
+    }
+    return bytes.toByteArray();
+  }
+
+  @Nullable
+  private static RulePattern getMemberPattern( @Nonnull final Rule rule )
+  {
+    final NameMatcher matcher = rule.getMemberMatcher();
+    return null != matcher ? matcher.getRulePattern() : null;
+  }
+
+  private static void writePattern( @Nonnull final DataOutputStream output,
+                                    @Nonnull final Map<String, Integer> strings,
+                                    @Nonnull final RulePattern pattern )
+    throws IOException
+  {
+    final String name = pattern.getName();
+    output.writeByte( null == name ? BinaryRuleReader.KIND_REGEX :
+                      pattern.isDevirtualized() ? BinaryRuleReader.KIND_METHOD :
+                      BinaryRuleReader.KIND_LITERAL );
+    output.writeInt( strings.get( toValue( pattern ) ) );
+  }
+
+  /**
+   * Return the value recorded for the pattern, which is the name if the pattern was created from a name and
+   * otherwise the regular expression.
+   */
+  @Nonnull
+  private static String toValue( @Nonnull final RulePattern pattern )
+  {
+    if ( 0 != pattern.getFlags() )
+    {
+      throw new IllegalArgumentException( "Unable to encode the pattern " + pattern + " as it has flags" );
+    }
+    final String name = pattern.getName();
+    return null != name ? name : pattern.getRegex();
+  }
+
+  private static void addString( @Nonnull final Map<String, Integer> strings, @Nonnull final String string )
+  {
+    strings.putIfAbsent( string, strings.size() );
+  }
+}
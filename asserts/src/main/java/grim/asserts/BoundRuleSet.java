@@ -0,0 +1,202 @@
+package grim.asserts;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable view of a {@link RuleSet} bound to the compile time properties of a single permutation.
+ * Only the rules whose conditions match the compile time properties are retained and the compile time
+ * properties are never consulted when checking symbols.
+ *
+ * @see RuleSet#bindTo(Map)
+ */
+public final class BoundRuleSet
+{
+  /**
+   * The number of symbols below which a batch is classified on the calling thread rather than split
+   * into tasks that are classified in parallel.
+   */
+  static final int BATCH_THRESHOLD = 8192;
+  /**
+   * The static compile time properties that the view is bound to.
+   */
+  @Nonnull
+  private final Map<String, String> _compileTimeProperties;
+  /**
+   * Rules for symbols to omit where the condition matched the compile time properties.
+   */
+  @Nonnull
+  private final List<Rule> _omitRules;
+  /**
+   * Rules for symbols to keep where the condition matched the compile time properties.
+   */
+  @Nonnull
+  private final List<Rule> _keepRules;
+  /**
+   * Index used to locate the omit rules that match a symbol.
+   */
+  @Nonnull
+  private final RuleIndex _omitIndex;
+  /**
+   * Index used to locate the keep rules that match a symbol.
+   */
+  @Nonnull
+  private final RuleIndex _keepIndex;
+
+  BoundRuleSet( @Nonnull final Map<String, String> compileTimeProperties,
+                @Nonnull final List<Rule> omitRules,
+                @Nonnull final List<Rule> keepRules,
+                @Nullable final Map<Rule, RuleCounters> counters )
+  {
+    _compileTimeProperties = Collections.unmodifiableMap( new HashMap<>( compileTimeProperties ) );
+    _omitRules = Collections.unmodifiableList( omitRules );
+    _keepRules = Collections.unmodifiableList( keepRules );
+    _omitIndex = new RuleIndex( _omitRules, counters );
+    _keepIndex = new RuleIndex( _keepRules, counters );
+  }
+
+  /**
+   * Return the static compile time properties that the view is bound to.
+   *
+   * @return the static compile time properties that the view is bound to.
+   */
+  @Nonnull
+  public Map<String, String> getCompileTimeProperties()
+  {
+    return _compileTimeProperties;
+  }
+
+  @Nonnull
+  Collection<Rule> getOmitRules()
+  {
+    return _omitRules;
+  }
+
+  @Nonnull
+  Collection<Rule> getKeepRules()
+  {
+    return _keepRules;
+  }
+
+  /**
+   * Return true if the specified type+member combination should have been omitted in the permutation.
+   *
+   * @param type   the name of the java type.
+   * @param member the name of the member if any else the empty string.
+   * @return true if the symbol should be omitted.
+   */
+  public boolean shouldOmitSymbol( @Nonnull final String type, @Nonnull final String member )
+  {
+    return _omitIndex.anyMatch( null, type, member ) && !_keepIndex.anyMatch( null, type, member );
+  }
+
+  /**
+   * Return the symbols in the table that should have been omitted in the permutation.
+   *
+   * @param symbols the symbols to check.
+   * @return the set of indexes of the symbols that should have been omitted.
+   * @see #shouldOmitSymbols(String[], String[])
+   */
+  @Nonnull
+  public BitSet shouldOmitSymbols( @Nonnull final SymbolTable symbols )
+  {
+    return shouldOmitSymbols( symbols.getTypes(), symbols.getMembers() );
+  }
+
+  /**
+   * Return the symbols that should have been omitted in the permutation.
+   * The symbols are described by parallel arrays of type and member names. Large batches are split into
+   * chunks that are classified in parallel using the common fork/join pool.
+   *
+   * @param types   the name of the java type for each symbol.
+   * @param members the name of the member for each symbol or the empty string.
+   * @return the set of indexes of the symbols that should have been omitted.
+   */
+  @Nonnull
+  public BitSet shouldOmitSymbols( @Nonnull final String[] types, @Nonnull final String[] members )
+  {
+    if ( types.length != members.length )
+    {
+      throw new IllegalArgumentException( "shouldOmitSymbols invoked with " + types.length + " types but " +
+                                          members.length + " members" );
+    }
+    final long[] words = new long[ ( types.length + 63 ) >>> 6 ];
+    final ClassifyTask task = new ClassifyTask( this, types, members, words, 0, types.length );
+    if ( types.length <= BATCH_THRESHOLD )
+    {
+      task.compute();
+    }
+    else
+    {
+      ForkJoinPool.commonPool().invoke( task );
+    }
+    return BitSet.valueOf( words );
+  }
+
+  /**
+   * Task that classifies a range of symbols, splitting the range if it is larger than {@link #BATCH_THRESHOLD}.
+   * Every task writes into the words of a single result shared across the job. Ranges are split on multiples
+   * of 64 so that each word of the result is only written by the task that classifies the range containing it.
+   */
+  private static final class ClassifyTask
+    extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+    @Nonnull
+    private final transient BoundRuleSet _ruleSet;
+    @Nonnull
+    private final String[] _types;
+    @Nonnull
+    private final String[] _members;
+    @Nonnull
+    private final long[] _words;
+    private final int _start;
+    private final int _end;
+
+    ClassifyTask( @Nonnull final BoundRuleSet ruleSet,
+                  @Nonnull final String[] types,
+                  @Nonnull final String[] members,
+                  @Nonnull final long[] words,
+                  final int start,
+                  final int end )
+    {
+      _ruleSet = ruleSet;
+      _types = types;
+      _members = members;
+      _words = words;
+      _start = start;
+      _end = end;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if ( _end - _start <= BATCH_THRESHOLD )
+      {
+        for ( int i = _start; i < _end; i++ )
+        {
+          if ( _ruleSet.shouldOmitSymbol( _types[ i ], _members[ i ] ) )
+          {
+            _words[ i >>> 6 ] |= 1L << i;
+          }
+        }
+      }
+      else
+      {
+        // The start is always a multiple of 64 and the range is larger than the threshold, so rounding the
+        // middle down to a multiple of 64 always leaves a non-empty range on each side
+        final int middle = ( ( _start + _end ) >>> 1 ) & ~63;
+        invokeAll( new ClassifyTask( _ruleSet, _types, _members, _words, _start, middle ),
+                   new ClassifyTask( _ruleSet, _types, _members, _words, middle, _end ) );
+      }
+    }
+  }
+}
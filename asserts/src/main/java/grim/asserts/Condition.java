@@ -55,4 +55,28 @@ public final class Condition
   {
     return _equals == _value.equals( compileTimeProperties.get( _property ) );
   }
+
+  @Override
+  public boolean equals( final Object o )
+  {
+    if ( this == o )
+    {
+      return true;
+    }
+    else if ( !( o instanceof Condition ) )
+    {
+      return false;
+    }
+    else
+    {
+      final Condition other = (Condition) o;
+      return _equals == other._equals && _property.equals( other._property ) && _value.equals( other._value );
+    }
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash( _property, _value, _equals );
+  }
 }
@@ -0,0 +1,324 @@
+package grim.asserts;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache of the decisions made by {@link RuleSet#shouldOmitSymbol(Map, String, String)}.
+ * A decision is keyed by the symbol and the values of the compile time properties that are referenced by the
+ * conditions of the rules. Compile time properties that no rule references do not form part of the key so
+ * permutations that only differ in those properties share decisions. The cache is safe for concurrent use.
+ *
+ * <p>The decisions are split into stripes by the hash of the key and each stripe evicts its least recently used
+ * decision when it is full, so the cache never retains more than the maximum number of decisions and a full cache
+ * retains the decisions that are in use. At most the maximum number of distinct sets of values of the referenced
+ * compile time properties are tracked and decisions are not cached for any further sets of values.</p>
+ *
+ * @see RuleSet#withDecisionCache(int)
+ */
+public final class DecisionCache
+{
+  /**
+   * The maximum number of stripes that the decisions are split into.
+   */
+  private static final int MAX_STRIPE_COUNT = 16;
+  /**
+   * The minimum number of decisions retained by each stripe.
+   * Small caches use a single stripe so that the least recently used decision in the cache is always evicted.
+   */
+  private static final int MIN_STRIPE_SIZE = 64;
+  /**
+   * The maximum number of decisions retained by the cache.
+   */
+  private final int _maximumSize;
+  /**
+   * The names of the compile time properties referenced by the conditions of the rules, in sorted order.
+   */
+  @Nonnull
+  private final String[] _properties;
+  /**
+   * A unique id for each distinct set of values of the referenced compile time properties.
+   * Ids are never reused so a decision can never be associated with the wrong set of values.
+   */
+  @Nonnull
+  private final Map<List<String>, Integer> _permutations = new ConcurrentHashMap<>();
+  @Nonnull
+  private final AtomicInteger _nextPermutationId = new AtomicInteger();
+  /**
+   * The set of values most recently looked up. Lookups are typically made for many symbols with the same
+   * compile time properties, so the id is reused if the values are unchanged rather than derived per lookup.
+   */
+  @Nullable
+  private volatile Permutation _lastPermutation;
+  /**
+   * The decisions, split into stripes that each have a lock. The number of stripes is a power of two.
+   */
+  @Nonnull
+  private final Stripe[] _stripes;
+  @Nonnull
+  private final LongAdder _hitCount = new LongAdder();
+  @Nonnull
+  private final LongAdder _missCount = new LongAdder();
+
+  DecisionCache( final int maximumSize,
+                 @Nonnull final Collection<Rule> omitRules,
+                 @Nonnull final Collection<Rule> keepRules )
+  {
+    if ( maximumSize <= 0 )
+    {
+      throw new IllegalArgumentException( "DecisionCache created with maximumSize " + maximumSize +
+                                          " but the maximumSize must be positive" );
+    }
+    _maximumSize = maximumSize;
+    final TreeSet<String> properties = new TreeSet<>();
+    Stream.concat( omitRules.stream(), keepRules.stream() )
+      .map( Rule::getCondition )
+      .filter( Objects::nonNull )
+      .forEach( condition -> properties.add( condition.getProperty() ) );
+    _properties = properties.toArray( new String[ 0 ] );
+    final int stripeCount =
+      Integer.highestOneBit( Math.max( 1, Math.min( MAX_STRIPE_COUNT, maximumSize / MIN_STRIPE_SIZE ) ) );
+    _stripes = new Stripe[ stripeCount ];
+    for ( int i = 0; i < stripeCount; i++ )
+    {
+      // The remainder is distributed across the first stripes so the capacities sum to the maximum size
+      _stripes[ i ] = new Stripe( maximumSize / stripeCount + ( i < maximumSize % stripeCount ? 1 : 0 ) );
+    }
+  }
+
+  /**
+   * Return the maximum number of decisions retained by the cache.
+   *
+   * @return the maximum number of decisions retained by the cache.
+   */
+  public int getMaximumSize()
+  {
+    return _maximumSize;
+  }
+
+  /**
+   * Return the number of decisions currently retained by the cache.
+   *
+   * @return the number of decisions currently retained by the cache.
+   */
+  public int size()
+  {
+    int size = 0;
+    for ( final Stripe stripe : _stripes )
+    {
+      synchronized ( stripe )
+      {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Return the number of lookups that were answered by the cache.
+   *
+   * @return the number of lookups that were answered by the cache.
+   */
+  public long getHitCount()
+  {
+    return _hitCount.sum();
+  }
+
+  /**
+   * Return the number of lookups that were not answered by the cache.
+   *
+   * @return the number of lookups that were not answered by the cache.
+   */
+  public long getMissCount()
+  {
+    return _missCount.sum();
+  }
+
+  /**
+   * Return the key identifying the decision for the symbol, or null if the decision is not cached as the cache
+   * already tracks the maximum number of sets of values of the referenced compile time properties.
+   */
+  @Nullable
+  Key newKey( @Nonnull final Map<String, String> compileTimeProperties,
+              @Nonnull final String type,
+              @Nonnull final String member )
+  {
+    final Permutation last = _lastPermutation;
+    if ( null != last && last.matches( _properties, compileTimeProperties ) )
+    {
+      return new Key( last._id, type, member );
+    }
+    final String[] values = new String[ _properties.length ];
+    for ( int i = 0; i < values.length; i++ )
+    {
+      values[ i ] = compileTimeProperties.get( _properties[ i ] );
+    }
+    final List<String> permutation = Arrays.asList( values );
+    Integer permutationId = _permutations.get( permutation );
+    if ( null == permutationId )
+    {
+      if ( _permutations.size() >= _maximumSize )
+      {
+        return null;
+      }
+      permutationId = _permutations.computeIfAbsent( permutation, p -> _nextPermutationId.getAndIncrement() );
+    }
+    _lastPermutation = new Permutation( values, permutationId );
+    return new Key( permutationId, type, member );
+  }
+
+  @Nullable
+  Boolean get( @Nullable final Key key )
+  {
+    final Boolean decision;
+    if ( null == key )
+    {
+      decision = null;
+    }
+    else
+    {
+      final Stripe stripe = getStripe( key );
+      synchronized ( stripe )
+      {
+        decision = stripe.get( key );
+      }
+    }
+    if ( null == decision )
+    {
+      _missCount.increment();
+    }
+    else
+    {
+      _hitCount.increment();
+    }
+    return decision;
+  }
+
+  void put( @Nullable final Key key, final boolean decision )
+  {
+    if ( null != key )
+    {
+      final Stripe stripe = getStripe( key );
+      synchronized ( stripe )
+      {
+        stripe.put( key, decision );
+      }
+    }
+  }
+
+  @Nonnull
+  private Stripe getStripe( @Nonnull final Key key )
+  {
+    final int hashCode = key.hashCode();
+    return _stripes[ ( hashCode ^ ( hashCode >>> 16 ) ) & ( _stripes.length - 1 ) ];
+  }
+
+  /**
+   * A set of values of the referenced compile time properties and the id assigned to it.
+   */
+  private static final class Permutation
+  {
+    @Nonnull
+    private final String[] _values;
+    private final int _id;
+
+    Permutation( @Nonnull final String[] values, final int id )
+    {
+      _values = values;
+      _id = id;
+    }
+
+    boolean matches( @Nonnull final String[] properties, @Nonnull final Map<String, String> compileTimeProperties )
+    {
+      for ( int i = 0; i < properties.length; i++ )
+      {
+        if ( !Objects.equals( _values[ i ], compileTimeProperties.get( properties[ i ] ) ) )
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * A portion of the decisions in least recently used order that evicts the least recently used decision when
+   * the capacity is exceeded. A stripe must only be accessed while holding the lock of the stripe.
+   */
+  private static final class Stripe
+    extends LinkedHashMap<Key, Boolean>
+  {
+    private static final long serialVersionUID = 1L;
+    private final int _capacity;
+
+    Stripe( final int capacity )
+    {
+      super( 16, 0.75F, true );
+      _capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<Key, Boolean> eldest )
+    {
+      return size() > _capacity;
+    }
+  }
+
+  /**
+   * The key identifying a decision.
+   */
+  static final class Key
+  {
+    private final int _permutationId;
+    @Nonnull
+    private final String _type;
+    @Nonnull
+    private final String _member;
+    private final int _hashCode;
+
+    Key( final int permutationId, @Nonnull final String type, @Nonnull final String member )
+    {
+      _permutationId = permutationId;
+      _type = Objects.requireNonNull( type );
+      _member = Objects.requireNonNull( member );
+      _hashCode = 31 * ( 31 * permutationId + type.hashCode() ) + member.hashCode();
+    }
+
+    @Override
+    public boolean equals( final Object o )
+    {
+      if ( this == o )
+      {
+        return true;
+      }
+      else if ( !( o instanceof Key ) )
+      {
+        return false;
+      }
+      else
+      {
+        final Key other = (Key) o;
+        return _permutationId == other._permutationId &&
+               _type.equals( other._type ) &&
+               _member.equals( other._member );
+      }
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return _hashCode;
+    }
+  }
+}
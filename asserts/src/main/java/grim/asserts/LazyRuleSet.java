@@ -0,0 +1,283 @@
+package grim.asserts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A collection of rules that are loaded on demand, one package at a time.
+ * When the LazyRuleSet is created the rule files are located but only the rules declared on packages
+ * (i.e. the "package-info" rule files) are loaded, as the type patterns of these rules may match types in
+ * any package. The rule files generated for types are loaded the first time a symbol is checked against
+ * a type in the same package or in a nested package. Most libraries on a classpath contribute no symbols to
+ * a GWT module, so most rule files are never read. The entries of a rule bundle are located by the package of
+ * the rule file that each entry replaces and are loaded in the same way as rule files, except that the entries
+ * of a package are loaded in a single pass over the bundle.
+ *
+ * <p>The rule files generated by the annotation processor for a type only contain rules that match the type,
+ * so checking a symbol produces the same result as the equivalent {@link RuleSet}. Rule files that are not
+ * generated by the annotation processor and that contain rules matching types in other packages may be
+ * loaded too late to be considered. The LazyRuleSet is safe for concurrent use.</p>
+ */
+public final class LazyRuleSet
+{
+  /**
+   * The rules declared on packages.
+   */
+  @Nonnull
+  private final RuleSet _packageRules;
+  /**
+   * The rule files generated for types, keyed by the name of the package they are located in.
+   */
+  @Nonnull
+  private final Map<String, List<RuleLoader.RuleResource>> _resources;
+  /**
+   * The rules of each package that has been loaded.
+   */
+  @Nonnull
+  private final Map<String, RuleSet> _loadedPackages = new ConcurrentHashMap<>();
+  /**
+   * The rules that apply to the types named using the qualified name of the type, keyed by the portion of the
+   * type name that precedes the last '.'.
+   */
+  @Nonnull
+  private final Map<String, RuleSet[]> _ruleSetsByEnclosingName = new ConcurrentHashMap<>();
+  /**
+   * The rules that apply to the types named using the binary name of the type, keyed by the package of the type.
+   */
+  @Nonnull
+  private final Map<String, RuleSet[]> _ruleSetsByPackage = new ConcurrentHashMap<>();
+  /**
+   * The number of rule files located.
+   */
+  private final int _ruleFileCount;
+  @Nonnull
+  private final AtomicInteger _loadedRuleFileCount = new AtomicInteger();
+  /**
+   * The patterns shared by every rule loaded by the LazyRuleSet.
+   */
+  @Nonnull
+  private final PatternPool _patterns = new PatternPool();
+
+  private LazyRuleSet( @Nonnull final List<RuleLoader.RuleResource> resources )
+  {
+    final List<RuleLoader.RuleResource> packageResources = new ArrayList<>();
+    final Map<String, List<RuleLoader.RuleResource>> typeResources = new LinkedHashMap<>();
+    for ( final RuleLoader.RuleResource resource : resources )
+    {
+      if ( resource.isPackageInfo() )
+      {
+        packageResources.add( resource );
+      }
+      else
+      {
+        typeResources.computeIfAbsent( resource.getPackageName(), p -> new ArrayList<>() ).add( resource );
+      }
+    }
+    _packageRules = new RuleSet( RuleLoader.loadResources( packageResources, _patterns ) );
+    _loadedRuleFileCount.addAndGet( packageResources.size() );
+    _resources = typeResources;
+    _ruleFileCount = resources.size();
+  }
+
+  /**
+   * Locate all grim rules available from the specified classloader.
+   * The rule files are located as described by {@link RuleSet#loadFromClassLoader(ClassLoader)}.
+   *
+   * @param classLoader the classloader.
+   * @return the LazyRuleSet.
+   * @see #loadFromClassLoader(ClassLoader, Predicate)
+   */
+  @Nonnull
+  public static LazyRuleSet loadFromClassLoader( @Nonnull final ClassLoader classLoader )
+  {
+    return loadFromClassLoader( classLoader, null );
+  }
+
+  /**
+   * Locate all grim rules available from the specified classloader that have classnames that match the
+   * specified filter. The rule files are located as described by
+   * {@link RuleSet#loadFromClassLoader(ClassLoader, Predicate)}.
+   *
+   * @param classLoader the classloader.
+   * @param filter      the filter if any.
+   * @return the LazyRuleSet.
+   * @see #loadFromClassLoader(ClassLoader)
+   */
+  @Nonnull
+  public static LazyRuleSet loadFromClassLoader( @Nonnull final ClassLoader classLoader,
+                                                 @Nullable final Predicate<String> filter )
+  {
+    return new LazyRuleSet( RuleLoader.locateInClassLoader( classLoader, filter ) );
+  }
+
+  /**
+   * Return the number of rule files located.
+   *
+   * @return the number of rule files located.
+   */
+  public int getRuleFileCount()
+  {
+    return _ruleFileCount;
+  }
+
+  /**
+   * Return the number of rule files that have been loaded.
+   *
+   * @return the number of rule files that have been loaded.
+   */
+  public int getLoadedRuleFileCount()
+  {
+    return _loadedRuleFileCount.get();
+  }
+
+  /**
+   * Return true if the specified type+member combination should have been omitted given the context of the
+   * compileTimeProperties. The rules for the package of the type and of the enclosing packages are loaded
+   * if they have not already been loaded.
+   *
+   * @param compileTimeProperties the static compile time properties.
+   * @param type                  the name of the java type.
+   * @param member                the name of the member if any else the empty string.
+   * @return true if the symbol should be omitted.
+   * @see RuleSet#shouldOmitSymbol(Map, String, String)
+   */
+  public boolean shouldOmitSymbol( @Nonnull final Map<String, String> compileTimeProperties,
+                                   @Nonnull final String type,
+                                   @Nonnull final String member )
+  {
+    final RuleSet[] ruleSets = getRuleSets( type );
+    boolean omit = false;
+    for ( final RuleSet ruleSet : ruleSets )
+    {
+      if ( ruleSet.matchesOmitRule( compileTimeProperties, type, member ) )
+      {
+        omit = true;
+        break;
+      }
+    }
+    if ( omit )
+    {
+      for ( final RuleSet ruleSet : ruleSets )
+      {
+        if ( ruleSet.matchesKeepRule( compileTimeProperties, type, member ) )
+        {
+          return false;
+        }
+      }
+    }
+    return omit;
+  }
+
+  /**
+   * Return a RuleSet containing the rules that apply to the symbols in the table, loading the rules of any
+   * package that has not already been loaded. The RuleSet can be used to check the symbols via the batch
+   * methods such as {@link RuleSet#shouldOmitSymbols(Map, SymbolTable)}.
+   *
+   * @param symbols the symbols.
+   * @return the RuleSet containing the rules that apply to the symbols.
+   */
+  @Nonnull
+  public RuleSet forSymbols( @Nonnull final SymbolTable symbols )
+  {
+    final Set<String> packageNames = new LinkedHashSet<>();
+    final Set<String> types = new LinkedHashSet<>();
+    final int size = symbols.size();
+    for ( int i = 0; i < size; i++ )
+    {
+      final String type = symbols.getType( i );
+      if ( types.add( type ) )
+      {
+        packageNames.addAll( getPackageNames( type ) );
+      }
+    }
+    final List<RuleSet> ruleSets = new ArrayList<>();
+    ruleSets.add( _packageRules );
+    for ( final String packageName : packageNames )
+    {
+      ruleSets.add( getPackageRules( packageName ) );
+    }
+    return RuleSet.combine( ruleSets.toArray( new RuleSet[ 0 ] ) );
+  }
+
+  /**
+   * Return the rules that apply to the type, loading the rules of any package that has not already been loaded.
+   * The rules are resolved once for the types that share the portion of the name that precedes the last '.'.
+   */
+  @Nonnull
+  private RuleSet[] getRuleSets( @Nonnull final String type )
+  {
+    final int index = type.lastIndexOf( '.' );
+    final String enclosingName = index > 0 ? type.substring( 0, index ) : "";
+    final Map<String, RuleSet[]> ruleSets = isBinaryName( type ) ? _ruleSetsByPackage : _ruleSetsByEnclosingName;
+    return ruleSets.computeIfAbsent( enclosingName, n -> {
+      final Collection<String> packageNames = getPackageNames( type );
+      final RuleSet[] resolved = new RuleSet[ packageNames.size() + 1 ];
+      resolved[ 0 ] = _packageRules;
+      int i = 1;
+      for ( final String packageName : packageNames )
+      {
+        resolved[ i++ ] = getPackageRules( packageName );
+      }
+      return resolved;
+    } );
+  }
+
+  /**
+   * Return the names of the packages that contain rule files and that enclose the type.
+   * A type named using the binary name of the type (i.e. <code>com.example.Outer$Inner</code>) is in the package
+   * that precedes the last '.'. Otherwise the type name is split at each '.' so that the rules of a nested type
+   * named using the qualified name of the type (i.e. <code>com.example.Outer.Inner</code>) are located in the
+   * package of the outer type.
+   */
+  @Nonnull
+  private Collection<String> getPackageNames( @Nonnull final String type )
+  {
+    final List<String> packageNames = new ArrayList<>();
+    if ( isBinaryName( type ) )
+    {
+      final int index = type.lastIndexOf( '.' );
+      addPackageName( packageNames, index > 0 ? type.substring( 0, index ) : "" );
+      return packageNames;
+    }
+    for ( int index = type.lastIndexOf( '.' ); index > 0; index = type.lastIndexOf( '.', index - 1 ) )
+    {
+      addPackageName( packageNames, type.substring( 0, index ) );
+    }
+    addPackageName( packageNames, "" );
+    return packageNames;
+  }
+
+  private static boolean isBinaryName( @Nonnull final String type )
+  {
+    return type.indexOf( '$' ) >= 0;
+  }
+
+  private void addPackageName( @Nonnull final List<String> packageNames, @Nonnull final String packageName )
+  {
+    if ( _resources.containsKey( packageName ) )
+    {
+      packageNames.add( packageName );
+    }
+  }
+
+  @Nonnull
+  private RuleSet getPackageRules( @Nonnull final String packageName )
+  {
+    return _loadedPackages.computeIfAbsent( packageName, p -> {
+      final List<RuleLoader.RuleResource> resources = _resources.get( p );
+      final RuleSet ruleSet = new RuleSet( RuleLoader.loadResources( resources, _patterns ) );
+      _loadedRuleFileCount.addAndGet( resources.size() );
+      return ruleSet;
+    } );
+  }
+}
@@ -0,0 +1,218 @@
+package grim.asserts;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Matches type or member names against a pattern from a rule.
+ * The pattern is classified when the matcher is created and the cheapest mechanism that produces the same
+ * result as {@link java.util.regex.Matcher#matches()} is used to match names. See {@link PatternKind}.
+ *
+ * <p>A backtracking matcher may take time exponential in the length of the input when a pattern contains
+ * nested quantifiers (i.e. <code>(.*)*foo</code>). Such patterns are matched using a {@link PatternAutomaton}
+ * which takes time linear in the length of the input. Patterns with nested quantifiers that the automaton
+ * does not support are reported as unsafe by {@link #isSafe()}.</p>
+ */
+final class NameMatcher
+{
+  @Nonnull
+  private final RulePattern _pattern;
+  @Nonnull
+  private final PatternKind _kind;
+  /**
+   * The literal segments of the pattern that are separated by wildcards. A {@link PatternKind#LITERAL} pattern
+   * has a single segment and a {@link PatternKind#PREFIX} pattern has the prefix followed by an empty segment.
+   * This is null for {@link PatternKind#GENERAL} patterns.
+   */
+  @Nullable
+  private final String[] _segments;
+  /**
+   * True if the pattern contains nested quantifiers.
+   */
+  private final boolean _nestedQuantifier;
+  /**
+   * The automaton used to match a {@link PatternKind#GENERAL} pattern that contains nested quantifiers, if supported.
+   */
+  @Nullable
+  private final PatternAutomaton _automaton;
+
+  NameMatcher( @Nonnull final Pattern pattern )
+  {
+    this( new RulePattern( pattern ) );
+  }
+
+  /**
+   * Create a matcher for the pattern.
+   * The pattern is classified from the regular expression without compiling the pattern.
+   *
+   * @param pattern the pattern.
+   */
+  NameMatcher( @Nonnull final RulePattern pattern )
+  {
+    _pattern = Objects.requireNonNull( pattern );
+    final String name = pattern.getName();
+    // Patterns with flags are never classified as the flags may alter the strings matched and patterns created
+    // from a name are classified from the name
+    final String regex = 0 == pattern.getFlags() && null == name ? pattern.getRegex() : null;
+    final String literal =
+      null != name ? pattern.isDevirtualized() ? null : name :
+      null != regex ? PatternUtil.asLiteral( regex ) :
+      null;
+    final String prefix = null != regex && null == literal ? PatternUtil.asPrefix( regex ) : null;
+    final String[] glob = null != regex && null == literal && null == prefix ? PatternUtil.asGlob( regex ) : null;
+    if ( null != literal )
+    {
+      _kind = PatternKind.LITERAL;
+      _segments = new String[]{ literal };
+    }
+    else if ( null != prefix && !PatternUtil.containsLineTerminator( prefix ) )
+    {
+      _kind = PatternKind.PREFIX;
+      _segments = new String[]{ prefix, "" };
+    }
+    else if ( null != glob )
+    {
+      _kind = PatternKind.GLOB;
+      _segments = glob;
+    }
+    else
+    {
+      _kind = PatternKind.GENERAL;
+      _segments = null;
+    }
+    _nestedQuantifier =
+      null == name && PatternKind.GENERAL == _kind && PatternUtil.hasNestedQuantifier( pattern.getRegex() );
+    final PatternAutomaton automaton =
+      _nestedQuantifier ? new PatternAutomaton( new String[]{ regex } ) : null;
+    _automaton = null != automaton && automaton.isSupported( 0 ) ? automaton : null;
+  }
+
+  /**
+   * Return the compiled pattern, compiling the pattern if it has not already been compiled.
+   *
+   * @return the compiled pattern.
+   */
+  @Nonnull
+  Pattern getPattern()
+  {
+    return _pattern.getPattern();
+  }
+
+  @Nonnull
+  RulePattern getRulePattern()
+  {
+    return _pattern;
+  }
+
+  /**
+   * Return true if the pattern is compiled into a {@link Pattern} to match names.
+   * Only {@link PatternKind#GENERAL} patterns that are not matched by an automaton require compilation.
+   *
+   * @return true if the pattern is compiled into a {@link Pattern} to match names.
+   */
+  boolean requiresCompilation()
+  {
+    return null == _segments && null == _automaton;
+  }
+
+  @Nonnull
+  PatternKind getKind()
+  {
+    return _kind;
+  }
+
+  /**
+   * Return the name matched if the pattern is a {@link PatternKind#LITERAL} pattern, otherwise null.
+   *
+   * @return the name matched if the pattern is a literal pattern, otherwise null.
+   */
+  @Nullable
+  String getLiteral()
+  {
+    return PatternKind.LITERAL == _kind ? _segments[ 0 ] : null;
+  }
+
+  /**
+   * Return the prefix of the names matched if the pattern is a {@link PatternKind#PREFIX} pattern, otherwise null.
+   *
+   * @return the prefix of the names matched if the pattern is a prefix pattern, otherwise null.
+   */
+  @Nullable
+  String getPrefix()
+  {
+    return PatternKind.PREFIX == _kind ? _segments[ 0 ] : null;
+  }
+
+  /**
+   * Return false if the pattern contains nested quantifiers and the time taken to match a name may be
+   * exponential in the length of the name.
+   *
+   * @return false if matching a name against the pattern may backtrack catastrophically.
+   */
+  boolean isSafe()
+  {
+    return !_nestedQuantifier || null != _automaton;
+  }
+
+  /**
+   * Return true if the pattern matches the entire name.
+   *
+   * @param name the name.
+   * @return true if the pattern matches the entire name.
+   */
+  boolean matches( @Nonnull final String name )
+  {
+    if ( PatternKind.LITERAL == _kind )
+    {
+      return _segments[ 0 ].equals( name );
+    }
+    else if ( null != _segments )
+    {
+      return matchesSegments( name );
+    }
+    else if ( null != _automaton )
+    {
+      final int[] matches = _automaton.match( name );
+      // The automaton is unable to match names that contain supplementary characters
+      if ( null != matches )
+      {
+        return 0 != matches.length;
+      }
+    }
+    return _pattern.getPattern().matcher( name ).matches();
+  }
+
+  private boolean matchesSegments( @Nonnull final String name )
+  {
+    final String first = _segments[ 0 ];
+    if ( 1 == _segments.length )
+    {
+      return first.equals( name );
+    }
+    final String last = _segments[ _segments.length - 1 ];
+    final int end = name.length() - last.length();
+    // The segments never contain line terminators so any line terminator would have to be matched by a wildcard
+    if ( end < first.length() ||
+         !name.startsWith( first ) ||
+         !name.endsWith( last ) ||
+         PatternUtil.containsLineTerminator( name ) )
+    {
+      return false;
+    }
+    // Matching the earliest occurrence of each segment leaves the most room for subsequent segments
+    int position = first.length();
+    for ( int i = 1; i < _segments.length - 1; i++ )
+    {
+      final String segment = _segments[ i ];
+      final int index = name.indexOf( segment, position );
+      if ( -1 == index || index + segment.length() > end )
+      {
+        return false;
+      }
+      position = index + segment.length();
+    }
+    return true;
+  }
+}
@@ -0,0 +1,497 @@
+package grim.asserts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An automaton that matches an input against many patterns in a single pass.
+ * The patterns are combined into a single non-deterministic automaton that is lazily converted into a
+ * deterministic automaton as inputs are matched. Once the states required by an input have been
+ * constructed, matching is linear in the length of the input and independent of the number of patterns.
+ *
+ * <p>Patterns that use syntax not supported by {@link RegexParser} are excluded from the automaton and
+ * must be matched by the caller. The automaton is safe to use from multiple threads.</p>
+ */
+final class PatternAutomaton
+{
+  /**
+   * Result returned when no pattern matches.
+   */
+  @Nonnull
+  static final int[] NO_MATCHES = new int[ 0 ];
+  /**
+   * The maximum number of states in the non-deterministic automaton.
+   * Patterns that would exceed the limit are excluded from the automaton.
+   */
+  private static final int MAX_NFA_STATES = 100_000;
+  /**
+   * The maximum number of deterministic states cached. States past this limit are computed on demand.
+   */
+  private static final int MAX_DFA_STATES = 10_000;
+  private static final int ASCII_LIMIT = 128;
+  private static final int KIND_CHAR = 0;
+  private static final int KIND_SPLIT = 1;
+  private static final int KIND_ACCEPT = 2;
+  /**
+   * The kind of each state in the non-deterministic automaton.
+   */
+  @Nonnull
+  private final int[] _kinds;
+  /**
+   * The characters matched by each {@link #KIND_CHAR} state.
+   */
+  @Nonnull
+  private final RegexNode.CharSet[] _charSets;
+  /**
+   * The next state for {@link #KIND_CHAR} states, the first branch of {@link #KIND_SPLIT} states
+   * and the pattern id for {@link #KIND_ACCEPT} states.
+   */
+  @Nonnull
+  private final int[] _out1;
+  /**
+   * The second branch of {@link #KIND_SPLIT} states.
+   */
+  @Nonnull
+  private final int[] _out2;
+  /**
+   * The ids of the patterns compiled into the automaton.
+   */
+  @Nonnull
+  private final BitSet _supported;
+  /**
+   * The deterministic states constructed so far.
+   */
+  @Nonnull
+  private final ConcurrentHashMap<DState, DState> _states = new ConcurrentHashMap<>();
+  @Nonnull
+  private final DState _start;
+
+  /**
+   * Create an automaton for the specified patterns.
+   * The id of each pattern is the index into the array and null elements are ignored.
+   *
+   * @param patterns the patterns.
+   */
+  PatternAutomaton( @Nonnull final Pattern[] patterns )
+  {
+    this( Arrays.stream( patterns )
+            .map( p -> null == p || 0 != p.flags() ? null : p.pattern() )
+            .toArray( String[]::new ) );
+  }
+
+  /**
+   * Create an automaton for the specified regular expressions, which must not require any flags.
+   * The id of each regular expression is the index into the array and null elements are ignored.
+   *
+   * @param regexes the regular expressions.
+   */
+  PatternAutomaton( @Nonnull final String[] regexes )
+  {
+    final Builder builder = new Builder();
+    final List<Integer> starts = new ArrayList<>();
+    _supported = new BitSet();
+    for ( int id = 0; id < regexes.length; id++ )
+    {
+      final String regex = regexes[ id ];
+      final RegexNode node = null == regex ? null : RegexParser.parse( regex );
+      if ( null != node )
+      {
+        final int mark = builder.size();
+        try
+        {
+          starts.add( builder.compile( node, builder.add( KIND_ACCEPT, null, id, -1 ) ) );
+          _supported.set( id );
+        }
+        catch ( final StateLimitExceeded e )
+        {
+          builder.truncate( mark );
+        }
+      }
+    }
+    _kinds = builder.kinds();
+    _charSets = builder.charSets();
+    _out1 = builder.out1();
+    _out2 = builder.out2();
+    _start = intern( closure( starts.stream().mapToInt( Integer::intValue ).toArray() ) );
+  }
+
+  /**
+   * Return true if the pattern with the specified id was compiled into the automaton.
+   *
+   * @param id the id of the pattern.
+   * @return true if the pattern was compiled into the automaton.
+   */
+  boolean isSupported( final int id )
+  {
+    return _supported.get( id );
+  }
+
+  /**
+   * Return true if no patterns were compiled into the automaton.
+   *
+   * @return true if no patterns were compiled into the automaton.
+   */
+  boolean isEmpty()
+  {
+    return _supported.isEmpty();
+  }
+
+  /**
+   * Return the sorted ids of the supported patterns that match the entire input.
+   * The returned array is shared and must not be modified.
+   *
+   * @param input the input.
+   * @return the ids of the matching patterns, or null if the input contains characters that the automaton
+   * can not match, in which case the caller must match the patterns individually.
+   */
+  @Nullable
+  int[] match( @Nonnull final String input )
+  {
+    DState state = _start;
+    final int length = input.length();
+    for ( int i = 0; i < length; i++ )
+    {
+      if ( 0 == state._states.length )
+      {
+        return NO_MATCHES;
+      }
+      final char ch = input.charAt( i );
+      if ( Character.isSurrogate( ch ) )
+      {
+        return null;
+      }
+      state = next( state, ch );
+    }
+    return state._accepts;
+  }
+
+  @Nonnull
+  private DState next( @Nonnull final DState state, final char ch )
+  {
+    if ( ch < ASCII_LIMIT )
+    {
+      final DState cached = state._ascii[ ch ];
+      if ( null != cached )
+      {
+        return cached;
+      }
+      final DState next = step( state, ch );
+      if ( state._cached && next._cached )
+      {
+        state._ascii[ ch ] = next;
+      }
+      return next;
+    }
+    else
+    {
+      final DState cached = state._other.get( ch );
+      if ( null != cached )
+      {
+        return cached;
+      }
+      final DState next = step( state, ch );
+      if ( state._cached && next._cached )
+      {
+        state._other.put( ch, next );
+      }
+      return next;
+    }
+  }
+
+  @Nonnull
+  private DState step( @Nonnull final DState state, final char ch )
+  {
+    final int[] targets = new int[ state._states.length ];
+    int count = 0;
+    for ( final int s : state._states )
+    {
+      if ( KIND_CHAR == _kinds[ s ] && _charSets[ s ].contains( ch ) )
+      {
+        targets[ count++ ] = _out1[ s ];
+      }
+    }
+    return intern( closure( Arrays.copyOf( targets, count ) ) );
+  }
+
+  @Nonnull
+  private DState intern( @Nonnull final int[] states )
+  {
+    final DState candidate = new DState( states, accepts( states ), true );
+    final DState existing = _states.get( candidate );
+    if ( null != existing )
+    {
+      return existing;
+    }
+    else if ( _states.size() < MAX_DFA_STATES )
+    {
+      final DState previous = _states.putIfAbsent( candidate, candidate );
+      return null != previous ? previous : candidate;
+    }
+    else
+    {
+      return new DState( candidate._states, candidate._accepts, false );
+    }
+  }
+
+  /**
+   * Return the sorted character and accept states reachable from the specified states without consuming input.
+   */
+  @Nonnull
+  private int[] closure( @Nonnull final int[] states )
+  {
+    final BitSet visited = new BitSet();
+    final BitSet result = new BitSet();
+    // Every state is pushed at most once as states are marked as visited when pushed
+    final int[] stack = new int[ _kinds.length ];
+    int size = 0;
+    for ( final int state : states )
+    {
+      if ( !visited.get( state ) )
+      {
+        visited.set( state );
+        stack[ size++ ] = state;
+      }
+    }
+    while ( size > 0 )
+    {
+      final int state = stack[ --size ];
+      if ( KIND_SPLIT == _kinds[ state ] )
+      {
+        for ( final int target : new int[]{ _out1[ state ], _out2[ state ] } )
+        {
+          if ( !visited.get( target ) )
+          {
+            visited.set( target );
+            stack[ size++ ] = target;
+          }
+        }
+      }
+      else
+      {
+        result.set( state );
+      }
+    }
+    return result.stream().toArray();
+  }
+
+  @Nonnull
+  private int[] accepts( @Nonnull final int[] states )
+  {
+    final BitSet accepts = new BitSet();
+    for ( final int state : states )
+    {
+      if ( KIND_ACCEPT == _kinds[ state ] )
+      {
+        accepts.set( _out1[ state ] );
+      }
+    }
+    return accepts.isEmpty() ? NO_MATCHES : accepts.stream().toArray();
+  }
+
+  /**
+   * A deterministic state which represents a set of states in the non-deterministic automaton.
+   * Transitions are populated lazily and may be computed by multiple threads concurrently, which is
+   * safe as every computation produces an equivalent state.
+   */
+  private static final class DState
+  {
+    /**
+     * The sorted character and accept states of the non-deterministic automaton.
+     */
+    @Nonnull
+    private final int[] _states;
+    /**
+     * The sorted ids of patterns that match if the input ends in this state.
+     */
+    @Nonnull
+    private final int[] _accepts;
+    /**
+     * True if the state is interned and transitions to and from the state can be cached.
+     */
+    private final boolean _cached;
+    @Nonnull
+    private final DState[] _ascii = new DState[ ASCII_LIMIT ];
+    @Nonnull
+    private final Map<Character, DState> _other = new ConcurrentHashMap<>();
+    private final int _hashCode;
+
+    DState( @Nonnull final int[] states, @Nonnull final int[] accepts, final boolean cached )
+    {
+      _states = states;
+      _accepts = accepts;
+      _cached = cached;
+      _hashCode = Arrays.hashCode( states );
+    }
+
+    @Override
+    public boolean equals( final Object o )
+    {
+      return o instanceof DState && Arrays.equals( _states, ( (DState) o )._states );
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return _hashCode;
+    }
+  }
+
+  /**
+   * Builder that constructs the non-deterministic automaton using Thompson's construction.
+   */
+  private static final class Builder
+  {
+    @Nonnull
+    private int[] _kinds = new int[ 64 ];
+    @Nonnull
+    private RegexNode.CharSet[] _charSets = new RegexNode.CharSet[ 64 ];
+    @Nonnull
+    private int[] _out1 = new int[ 64 ];
+    @Nonnull
+    private int[] _out2 = new int[ 64 ];
+    private int _size;
+
+    int size()
+    {
+      return _size;
+    }
+
+    void truncate( final int size )
+    {
+      Arrays.fill( _charSets, size, _size, null );
+      _size = size;
+    }
+
+    /**
+     * Compile the node into states and return the initial state.
+     *
+     * @param node the node.
+     * @param next the state to transition to after the node has been matched.
+     * @return the initial state of the node.
+     */
+    int compile( @Nonnull final RegexNode node, final int next )
+      throws StateLimitExceeded
+    {
+      if ( node instanceof RegexNode.Empty )
+      {
+        return next;
+      }
+      else if ( node instanceof RegexNode.CharSet )
+      {
+        return add( KIND_CHAR, (RegexNode.CharSet) node, next, -1 );
+      }
+      else if ( node instanceof RegexNode.Concat )
+      {
+        final List<RegexNode> nodes = ( (RegexNode.Concat) node ).getNodes();
+        int state = next;
+        for ( int i = nodes.size() - 1; i >= 0; i-- )
+        {
+          state = compile( nodes.get( i ), state );
+        }
+        return state;
+      }
+      else if ( node instanceof RegexNode.Alternation )
+      {
+        final List<RegexNode> nodes = ( (RegexNode.Alternation) node ).getNodes();
+        int state = compile( nodes.get( nodes.size() - 1 ), next );
+        for ( int i = nodes.size() - 2; i >= 0; i-- )
+        {
+          state = add( KIND_SPLIT, null, compile( nodes.get( i ), next ), state );
+        }
+        return state;
+      }
+      else
+      {
+        final RegexNode.Repeat repeat = (RegexNode.Repeat) node;
+        int state = next;
+        if ( RegexNode.UNBOUNDED == repeat.getMax() )
+        {
+          final int loop = add( KIND_SPLIT, null, -1, next );
+          // Compile the body before accessing the array as compiling may grow the arrays
+          final int body = compile( repeat.getNode(), loop );
+          _out1[ loop ] = body;
+          state = loop;
+        }
+        else
+        {
+          for ( int i = repeat.getMin(); i < repeat.getMax(); i++ )
+          {
+            state = add( KIND_SPLIT, null, compile( repeat.getNode(), state ), state );
+          }
+        }
+        for ( int i = 0; i < repeat.getMin(); i++ )
+        {
+          state = compile( repeat.getNode(), state );
+        }
+        return state;
+      }
+    }
+
+    int add( final int kind, @Nullable final RegexNode.CharSet charSet, final int out1, final int out2 )
+      throws StateLimitExceeded
+    {
+      if ( _size >= MAX_NFA_STATES )
+      {
+        throw new StateLimitExceeded();
+      }
+      if ( _size == _kinds.length )
+      {
+        final int capacity = _size * 2;
+        _kinds = Arrays.copyOf( _kinds, capacity );
+        _charSets = Arrays.copyOf( _charSets, capacity );
+        _out1 = Arrays.copyOf( _out1, capacity );
+        _out2 = Arrays.copyOf( _out2, capacity );
+      }
+      _kinds[ _size ] = kind;
+      _charSets[ _size ] = charSet;
+      _out1[ _size ] = out1;
+      _out2[ _size ] = out2;
+      return _size++;
+    }
+
+    @Nonnull
+    int[] kinds()
+    {
+      return Arrays.copyOf( _kinds, _size );
+    }
+
+    @Nonnull
+    RegexNode.CharSet[] charSets()
+    {
+      return Arrays.copyOf( _charSets, _size );
+    }
+
+    @Nonnull
+    int[] out1()
+    {
+      return Arrays.copyOf( _out1, _size );
+    }
+
+    @Nonnull
+    int[] out2()
+    {
+      return Arrays.copyOf( _out2, _size );
+    }
+  }
+
+  /**
+   * Exception raised when a pattern would cause the automaton to exceed {@link #MAX_NFA_STATES}.
+   */
+  private static final class StateLimitExceeded
+    extends Exception
+  {
+    private static final long serialVersionUID = 1L;
+
+    StateLimitExceeded()
+    {
+      super( null, null, false, false );
+    }
+  }
+}
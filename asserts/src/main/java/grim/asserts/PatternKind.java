@@ -0,0 +1,31 @@
+package grim.asserts;
+
+/**
+ * The classification of a pattern that appears in a rule.
+ * The kind determines the mechanism used to match names against the pattern.
+ *
+ * @see NameMatcher
+ */
+enum PatternKind
+{
+  /**
+   * The pattern only matches a single name (i.e. <code>^\Qcom.example.Foo\E$</code>).
+   * Names are compared using {@link String#equals(Object)}.
+   */
+  LITERAL,
+  /**
+   * The pattern matches every name that starts with a literal prefix (i.e. <code>^com\.example\..*$</code>).
+   * Names are compared using {@link String#startsWith(String)}.
+   */
+  PREFIX,
+  /**
+   * The pattern is composed of literal characters and the <code>.*</code> wildcard
+   * (i.e. <code>^com\.example\..*Impl$</code>). Names are compared by searching for each literal segment in turn.
+   */
+  GLOB,
+  /**
+   * Any other pattern. Names are compared using the {@link java.util.regex.Pattern} unless the pattern
+   * contains nested quantifiers in which case an automaton is used if possible.
+   */
+  GENERAL
+}
@@ -0,0 +1,54 @@
+package grim.asserts;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+
+/**
+ * The patterns of the rules that are loaded together, keyed by regular expression.
+ * The annotation processor emits the same type pattern for every rule declared on a type, so sharing a
+ * {@link RulePattern} for each distinct regular expression means that each is classified and compiled once.
+ * The pool is safe for concurrent use.
+ */
+final class PatternPool
+{
+  @Nonnull
+  private final Map<String, RulePattern> _patterns = new ConcurrentHashMap<>();
+
+  /**
+   * Return the pattern for the regular expression, creating it if it is not present in the pool.
+   *
+   * @param regex the regular expression.
+   * @return the pattern.
+   */
+  @Nonnull
+  RulePattern intern( @Nonnull final String regex )
+  {
+    return _patterns.computeIfAbsent( regex, RulePattern::new );
+  }
+
+  /**
+   * Return the pattern that matches the name, creating it if it is not present in the pool.
+   * The pattern is shared with any pattern in the pool that has the same regular expression.
+   *
+   * @param name          the name.
+   * @param devirtualized true if the pattern also matches the name prefixed with <code>$</code>.
+   * @return the pattern.
+   */
+  @Nonnull
+  RulePattern intern( @Nonnull final String name, final boolean devirtualized )
+  {
+    return _patterns.computeIfAbsent( RulePattern.toRegex( name, devirtualized ),
+                                      regex -> new RulePattern( name, devirtualized ) );
+  }
+
+  /**
+   * Return the number of distinct patterns in the pool.
+   *
+   * @return the number of distinct patterns in the pool.
+   */
+  int size()
+  {
+    return _patterns.size();
+  }
+}
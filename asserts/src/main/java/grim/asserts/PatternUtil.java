@@ -0,0 +1,381 @@
+package grim.asserts;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Utility methods for analyzing the regular expressions that appear in rules.
+ */
+final class PatternUtil
+{
+  /**
+   * Characters that have special meaning when they appear unescaped in a regular expression.
+   */
+  @Nonnull
+  private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+  /**
+   * Quantifiers that allow the preceding element to be repeated more than once.
+   */
+  @Nonnull
+  private static final String REPEATING_QUANTIFIERS = "*+{";
+  /**
+   * The characters that are not matched by the <code>.</code> character in a regular expression.
+   */
+  @Nonnull
+  private static final String LINE_TERMINATORS = "\n\r\u0085\u2028\u2029";
+
+  private PatternUtil()
+  {
+  }
+
+  /**
+   * Return the literal string that the pattern matches if the pattern only ever matches a single string.
+   * The patterns recognized are those generated by the annotation processor (i.e.
+   * <code>^\Qcom.foo.Bar\E$</code>) and hand-written patterns composed of plain and escaped characters
+   * (i.e. <code>^com\.foo\.Bar$</code>).
+   *
+   * @param pattern the pattern.
+   * @return the literal string matched by the pattern or null if the pattern is not a literal pattern.
+   */
+  @Nullable
+  static String asLiteral( @Nonnull final Pattern pattern )
+  {
+    return 0 == pattern.flags() ? asLiteral( pattern.pattern() ) : null;
+  }
+
+  /**
+   * Return the literal name of the method if the pattern matches the name of a method and the name of
+   * the method with a <code>$</code> prefix. The GWT compiler prefixes the name of a method with
+   * <code>$</code> when it devirtualizes the method and the annotation processor generates patterns of
+   * the form <code>^\$?\QgetName\E$</code> to match both forms.
+   *
+   * @param pattern the pattern.
+   * @return the literal name matched with an optional <code>$</code> prefix, or null if the pattern is
+   * not of this form.
+   */
+  @Nullable
+  static String asDevirtualizedLiteral( @Nonnull final Pattern pattern )
+  {
+    return 0 == pattern.flags() ? asDevirtualizedLiteral( pattern.pattern() ) : null;
+  }
+
+  @Nullable
+  static String asDevirtualizedLiteral( @Nonnull final String regex )
+  {
+    final String prefix = "^\\$?";
+    return regex.startsWith( prefix ) ? asLiteral( "^" + regex.substring( prefix.length() ) ) : null;
+  }
+
+  /**
+   * Return the literal prefix of the pattern if the pattern matches every string that starts with the
+   * prefix and contains no line terminators (i.e. <code>^com\.foo\..*$</code> or
+   * <code>^\Qcom.foo.\E.*$</code>).
+   *
+   * @param pattern the pattern.
+   * @return the prefix of strings matched by the pattern or null if the pattern is not a prefix pattern.
+   */
+  @Nullable
+  static String asPrefix( @Nonnull final Pattern pattern )
+  {
+    return 0 == pattern.flags() ? asPrefix( pattern.pattern() ) : null;
+  }
+
+  @Nullable
+  static String asPrefix( @Nonnull final String regex )
+  {
+    final String suffix = ".*$";
+    // The head of the pattern must be a literal once the suffix is replaced by $, which also ensures
+    // that the . in the suffix is not escaped or quoted
+    return regex.endsWith( suffix ) ?
+           asLiteral( regex.substring( 0, regex.length() - suffix.length() ) + "$" ) :
+           null;
+  }
+
+  /**
+   * Return the literal segments of the pattern if the pattern is composed of literal characters and the
+   * <code>.*</code> wildcard (i.e. <code>^com\.example\..*Impl$</code> or <code>.*Test</code>). The
+   * anchors at the start and end of the pattern are optional as rules match the entire name. A pattern
+   * containing N wildcards has N + 1 segments, any of which may be empty.
+   *
+   * @param pattern the pattern.
+   * @return the literal segments of the pattern or null if the pattern is not a glob pattern.
+   */
+  @Nullable
+  static String[] asGlob( @Nonnull final Pattern pattern )
+  {
+    return 0 == pattern.flags() ? asGlob( pattern.pattern() ) : null;
+  }
+
+  @Nullable
+  static String[] asGlob( @Nonnull final String regex )
+  {
+    final int length = regex.length();
+    final List<String> segments = new ArrayList<>();
+    final StringBuilder sb = new StringBuilder();
+    int i = 0 != length && '^' == regex.charAt( 0 ) ? 1 : 0;
+    while ( i < length )
+    {
+      final char ch = regex.charAt( i );
+      if ( '$' == ch )
+      {
+        // An unescaped $ is only acceptable as the final character
+        if ( length - 1 != i )
+        {
+          return null;
+        }
+        i++;
+      }
+      else if ( '.' == ch && i + 1 < length && '*' == regex.charAt( i + 1 ) )
+      {
+        // Reluctant, possessive and stacked quantifiers are not treated as wildcards
+        if ( i + 2 < length && -1 != "?+*{".indexOf( regex.charAt( i + 2 ) ) )
+        {
+          return null;
+        }
+        segments.add( sb.toString() );
+        sb.setLength( 0 );
+        i += 2;
+      }
+      else if ( '\\' == ch )
+      {
+        if ( i + 1 >= length )
+        {
+          return null;
+        }
+        final char next = regex.charAt( i + 1 );
+        if ( 'Q' == next )
+        {
+          final int end = regex.indexOf( "\\E", i + 2 );
+          if ( -1 == end )
+          {
+            return null;
+          }
+          sb.append( regex, i + 2, end );
+          i = end + 2;
+        }
+        else if ( Character.isLetterOrDigit( next ) )
+        {
+          return null;
+        }
+        else
+        {
+          sb.append( next );
+          i += 2;
+        }
+      }
+      else if ( -1 != META_CHARACTERS.indexOf( ch ) )
+      {
+        return null;
+      }
+      else
+      {
+        sb.append( ch );
+        i++;
+      }
+    }
+    segments.add( sb.toString() );
+    // Segments are matched without regard to line terminators which the wildcard never matches
+    return segments.stream().anyMatch( PatternUtil::containsLineTerminator ) ?
+           null :
+           segments.toArray( new String[ 0 ] );
+  }
+
+  /**
+   * Return true if the string contains a character that is not matched by the <code>.</code> character
+   * in a regular expression.
+   *
+   * @param string the string.
+   * @return true if the string contains a line terminator.
+   */
+  static boolean containsLineTerminator( @Nonnull final String string )
+  {
+    for ( int i = 0; i < string.length(); i++ )
+    {
+      if ( -1 != LINE_TERMINATORS.indexOf( string.charAt( i ) ) )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return true if the regular expression contains a group that is repeated by a quantifier and that itself
+   * contains a quantifier permitting repetition (i.e. <code>(.*)*foo</code> or <code>(a+b)+</code>). The time
+   * taken by a backtracking matcher to reject an input may be exponential in the length of the input when
+   * matching such an expression. The analysis is syntactic and conservative so some expressions that never
+   * backtrack catastrophically are also reported.
+   *
+   * @param regex the regular expression.
+   * @return true if the regular expression contains nested quantifiers.
+   */
+  static boolean hasNestedQuantifier( @Nonnull final String regex )
+  {
+    final int length = regex.length();
+    // Records, for each enclosing group, whether the group contains a repeating quantifier
+    final Deque<Boolean> enclosing = new ArrayDeque<>();
+    boolean repeats = false;
+    int i = 0;
+    while ( i < length )
+    {
+      final char ch = regex.charAt( i );
+      if ( '\\' == ch )
+      {
+        if ( i + 1 < length && 'Q' == regex.charAt( i + 1 ) )
+        {
+          final int end = regex.indexOf( "\\E", i + 2 );
+          i = -1 == end ? length : end + 2;
+        }
+        else
+        {
+          i += 2;
+        }
+      }
+      else if ( '[' == ch )
+      {
+        i = skipCharacterClass( regex, i );
+      }
+      else if ( '(' == ch )
+      {
+        enclosing.push( repeats );
+        repeats = false;
+        i++;
+      }
+      else if ( ')' == ch )
+      {
+        final boolean groupRepeats = repeats;
+        repeats = !enclosing.isEmpty() && enclosing.pop();
+        i++;
+        if ( i < length && -1 != REPEATING_QUANTIFIERS.indexOf( regex.charAt( i ) ) )
+        {
+          if ( groupRepeats )
+          {
+            return true;
+          }
+          repeats = true;
+        }
+        repeats |= groupRepeats;
+      }
+      else
+      {
+        if ( -1 != REPEATING_QUANTIFIERS.indexOf( ch ) )
+        {
+          repeats = true;
+        }
+        i++;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return the index of the character after the character class that starts at the specified index.
+   */
+  private static int skipCharacterClass( @Nonnull final String regex, final int start )
+  {
+    final int length = regex.length();
+    int depth = 0;
+    int i = start;
+    while ( i < length )
+    {
+      final char ch = regex.charAt( i );
+      if ( '\\' == ch )
+      {
+        if ( i + 1 < length && 'Q' == regex.charAt( i + 1 ) )
+        {
+          final int end = regex.indexOf( "\\E", i + 2 );
+          i = -1 == end ? length : end + 2;
+        }
+        else
+        {
+          i += 2;
+        }
+      }
+      else if ( '[' == ch )
+      {
+        depth++;
+        i++;
+      }
+      else if ( ']' == ch )
+      {
+        depth--;
+        i++;
+        if ( 0 == depth )
+        {
+          return i;
+        }
+      }
+      else
+      {
+        i++;
+      }
+    }
+    return length;
+  }
+
+  @Nullable
+  static String asLiteral( @Nonnull final String regex )
+  {
+    final int length = regex.length();
+    if ( length < 2 || '^' != regex.charAt( 0 ) )
+    {
+      return null;
+    }
+    final StringBuilder sb = new StringBuilder();
+    int i = 1;
+    while ( i < length )
+    {
+      final char ch = regex.charAt( i );
+      if ( '$' == ch )
+      {
+        // An unescaped $ is only acceptable as the final character
+        return length - 1 == i ? sb.toString() : null;
+      }
+      else if ( '\\' == ch )
+      {
+        if ( i + 1 >= length )
+        {
+          return null;
+        }
+        final char next = regex.charAt( i + 1 );
+        if ( 'Q' == next )
+        {
+          final int end = regex.indexOf( "\\E", i + 2 );
+          if ( -1 == end )
+          {
+            return null;
+          }
+          sb.append( regex, i + 2, end );
+          i = end + 2;
+        }
+        else if ( Character.isLetterOrDigit( next ) )
+        {
+          // Escapes such as \d, \s, \1 or \t are either character classes, back references
+          // or control characters and are not treated as literals
+          return null;
+        }
+        else
+        {
+          sb.append( next );
+          i += 2;
+        }
+      }
+      else if ( -1 != META_CHARACTERS.indexOf( ch ) )
+      {
+        return null;
+      }
+      else
+      {
+        sb.append( ch );
+        i++;
+      }
+    }
+    // Pattern was not terminated with an unescaped $
+    return null;
+  }
+}
@@ -0,0 +1,441 @@
+package grim.asserts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.annotation.Nonnull;
+
+/**
+ * Classifies the symbols of many permutations in a single sweep.
+ * The symbols of all permutations are merged into a set of unique symbols and every unique symbol is
+ * matched against the type and member patterns of the rules exactly once, ignoring conditions. The
+ * conditions of the rules are then evaluated once per permutation and combined with the per-symbol
+ * match results to determine the symbols that should have been omitted in each permutation.
+ *
+ * <p>The symbols are merged on the calling thread using a flat open addressing table that assigns each
+ * unique symbol an int id. Matching the unique symbols and classifying the symbols of each permutation
+ * are performed in parallel using the common fork/join pool, unless the input is smaller than
+ * {@link BoundRuleSet#BATCH_THRESHOLD} in which case the work is performed on the calling thread.</p>
+ */
+final class PermutationSweep
+{
+  private PermutationSweep()
+  {
+  }
+
+  @Nonnull
+  static List<BitSet> classify( @Nonnull final RuleIndex omitIndex,
+                                @Nonnull final RuleIndex keepIndex,
+                                @Nonnull final List<Map<String, String>> compileTimeProperties,
+                                @Nonnull final List<SymbolTable> symbols )
+  {
+    if ( compileTimeProperties.size() != symbols.size() )
+    {
+      throw new IllegalArgumentException( "shouldOmitSymbols invoked with " + compileTimeProperties.size() +
+                                          " sets of compile time properties but " + symbols.size() +
+                                          " symbol tables" );
+    }
+    final SymbolIds uniqueSymbols = new SymbolIds();
+    final int[][] symbolIds = new int[ symbols.size() ][];
+    int symbolCount = 0;
+    for ( int i = 0; i < symbolIds.length; i++ )
+    {
+      final SymbolTable table = symbols.get( i );
+      final int[] ids = new int[ table.size() ];
+      for ( int j = 0; j < ids.length; j++ )
+      {
+        ids[ j ] = uniqueSymbols.getOrAdd( table.getType( j ), table.getMember( j ) );
+      }
+      symbolIds[ i ] = ids;
+      symbolCount += ids.length;
+    }
+
+    final int count = uniqueSymbols.size();
+    final int[][] omitMatches = new int[ count ][];
+    final int[][] keepMatches = new int[ count ][];
+    final MatchTask matchTask = new MatchTask( omitIndex,
+                                               keepIndex,
+                                               uniqueSymbols.getTypes(),
+                                               uniqueSymbols.getMembers(),
+                                               omitMatches,
+                                               keepMatches,
+                                               0,
+                                               count );
+    if ( count <= BoundRuleSet.BATCH_THRESHOLD )
+    {
+      matchTask.compute();
+    }
+    else
+    {
+      ForkJoinPool.commonPool().invoke( matchTask );
+    }
+
+    final List<long[]> words = new ArrayList<>( symbolIds.length );
+    final List<PermutationTask> tasks = new ArrayList<>( symbolIds.length );
+    for ( int i = 0; i < symbolIds.length; i++ )
+    {
+      final Map<Condition, Boolean> conditions = new HashMap<>();
+      final Map<String, String> properties = compileTimeProperties.get( i );
+      final boolean[] activeOmitRules = activeRules( omitIndex, properties, conditions );
+      final boolean[] activeKeepRules = activeRules( keepIndex, properties, conditions );
+      final int[] ids = symbolIds[ i ];
+      final long[] result = new long[ ( ids.length + 63 ) >>> 6 ];
+      words.add( result );
+      tasks.add( new PermutationTask( omitMatches,
+                                      keepMatches,
+                                      ids,
+                                      activeOmitRules,
+                                      activeKeepRules,
+                                      result,
+                                      0,
+                                      ids.length ) );
+    }
+    if ( symbolCount <= BoundRuleSet.BATCH_THRESHOLD )
+    {
+      for ( final PermutationTask task : tasks )
+      {
+        task.compute();
+      }
+    }
+    else
+    {
+      ForkJoinPool.commonPool().invoke( new SweepTask( tasks ) );
+    }
+
+    final List<BitSet> results = new ArrayList<>( words.size() );
+    for ( final long[] result : words )
+    {
+      results.add( BitSet.valueOf( result ) );
+    }
+    return results;
+  }
+
+  @Nonnull
+  private static boolean[] activeRules( @Nonnull final RuleIndex index,
+                                        @Nonnull final Map<String, String> compileTimeProperties,
+                                        @Nonnull final Map<Condition, Boolean> conditions )
+  {
+    final boolean[] active = new boolean[ index.size() ];
+    for ( int id = 0; id < active.length; id++ )
+    {
+      final Condition condition = index.getRule( id ).getCondition();
+      active[ id ] =
+        null == condition || conditions.computeIfAbsent( condition, c -> c.matches( compileTimeProperties ) );
+    }
+    return active;
+  }
+
+  /**
+   * Return the ids in the set and clear the set so that it can be reused.
+   */
+  @Nonnull
+  private static int[] toIds( @Nonnull final BitSet matches )
+  {
+    if ( matches.isEmpty() )
+    {
+      return PatternAutomaton.NO_MATCHES;
+    }
+    else
+    {
+      final int[] ids = matches.stream().toArray();
+      matches.clear();
+      return ids;
+    }
+  }
+
+  private static boolean anyActive( @Nonnull final int[] ids, @Nonnull final boolean[] active )
+  {
+    for ( final int id : ids )
+    {
+      if ( active[ id ] )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Task that matches a range of unique symbols against the rules, splitting the range if it is larger than
+   * {@link BoundRuleSet#BATCH_THRESHOLD}.
+   */
+  private static final class MatchTask
+    extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+    @Nonnull
+    private final transient RuleIndex _omitIndex;
+    @Nonnull
+    private final transient RuleIndex _keepIndex;
+    @Nonnull
+    private final String[] _types;
+    @Nonnull
+    private final String[] _members;
+    @Nonnull
+    private final int[][] _omitMatches;
+    @Nonnull
+    private final int[][] _keepMatches;
+    private final int _start;
+    private final int _end;
+
+    MatchTask( @Nonnull final RuleIndex omitIndex,
+               @Nonnull final RuleIndex keepIndex,
+               @Nonnull final String[] types,
+               @Nonnull final String[] members,
+               @Nonnull final int[][] omitMatches,
+               @Nonnull final int[][] keepMatches,
+               final int start,
+               final int end )
+    {
+      _omitIndex = omitIndex;
+      _keepIndex = keepIndex;
+      _types = types;
+      _members = members;
+      _omitMatches = omitMatches;
+      _keepMatches = keepMatches;
+      _start = start;
+      _end = end;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if ( _end - _start <= BoundRuleSet.BATCH_THRESHOLD )
+      {
+        final BitSet matches = new BitSet();
+        for ( int i = _start; i < _end; i++ )
+        {
+          final String type = _types[ i ];
+          final String member = _members[ i ];
+          _omitIndex.collectMatches( type, member, matches );
+          _omitMatches[ i ] = toIds( matches );
+          if ( 0 != _omitMatches[ i ].length )
+          {
+            _keepIndex.collectMatches( type, member, matches );
+            _keepMatches[ i ] = toIds( matches );
+          }
+          else
+          {
+            // A symbol that matches no omit rule is never omitted so there is no need to match keep rules
+            _keepMatches[ i ] = PatternAutomaton.NO_MATCHES;
+          }
+        }
+      }
+      else
+      {
+        final int middle = ( _start + _end ) >>> 1;
+        invokeAll( split( _start, middle ), split( middle, _end ) );
+      }
+    }
+
+    @Nonnull
+    private MatchTask split( final int start, final int end )
+    {
+      return new MatchTask( _omitIndex, _keepIndex, _types, _members, _omitMatches, _keepMatches, start, end );
+    }
+  }
+
+  /**
+   * Task that classifies every permutation in parallel.
+   */
+  private static final class SweepTask
+    extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+    @Nonnull
+    private final List<PermutationTask> _tasks;
+
+    SweepTask( @Nonnull final List<PermutationTask> tasks )
+    {
+      _tasks = tasks;
+    }
+
+    @Override
+    protected void compute()
+    {
+      invokeAll( _tasks );
+    }
+  }
+
+  /**
+   * Task that classifies a range of symbols in a single permutation, splitting the range if it is larger than
+   * {@link BoundRuleSet#BATCH_THRESHOLD}. Every task writes into the words of the result of the permutation.
+   * Ranges are split on multiples of 64 so that each word of the result is only written by a single task.
+   */
+  private static final class PermutationTask
+    extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+    @Nonnull
+    private final int[][] _omitMatches;
+    @Nonnull
+    private final int[][] _keepMatches;
+    @Nonnull
+    private final int[] _ids;
+    @Nonnull
+    private final boolean[] _activeOmitRules;
+    @Nonnull
+    private final boolean[] _activeKeepRules;
+    @Nonnull
+    private final long[] _words;
+    private final int _start;
+    private final int _end;
+
+    PermutationTask( @Nonnull final int[][] omitMatches,
+                     @Nonnull final int[][] keepMatches,
+                     @Nonnull final int[] ids,
+                     @Nonnull final boolean[] activeOmitRules,
+                     @Nonnull final boolean[] activeKeepRules,
+                     @Nonnull final long[] words,
+                     final int start,
+                     final int end )
+    {
+      _omitMatches = omitMatches;
+      _keepMatches = keepMatches;
+      _ids = ids;
+      _activeOmitRules = activeOmitRules;
+      _activeKeepRules = activeKeepRules;
+      _words = words;
+      _start = start;
+      _end = end;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if ( _end - _start <= BoundRuleSet.BATCH_THRESHOLD )
+      {
+        for ( int i = _start; i < _end; i++ )
+        {
+          final int id = _ids[ i ];
+          if ( anyActive( _omitMatches[ id ], _activeOmitRules ) &&
+               !anyActive( _keepMatches[ id ], _activeKeepRules ) )
+          {
+            _words[ i >>> 6 ] |= 1L << i;
+          }
+        }
+      }
+      else
+      {
+        // The start is always a multiple of 64 and the range is larger than the threshold, so rounding the
+        // middle down to a multiple of 64 always leaves a non-empty range on each side
+        final int middle = ( ( _start + _end ) >>> 1 ) & ~63;
+        invokeAll( split( _start, middle ), split( middle, _end ) );
+      }
+    }
+
+    @Nonnull
+    private PermutationTask split( final int start, final int end )
+    {
+      return new PermutationTask( _omitMatches,
+                                  _keepMatches,
+                                  _ids,
+                                  _activeOmitRules,
+                                  _activeKeepRules,
+                                  _words,
+                                  start,
+                                  end );
+    }
+  }
+
+  /**
+   * An open addressing hash table that assigns a unique id to each distinct pair of type and member names.
+   * The table is resized before it is half full so the arrays indexed by id always have room for the next id.
+   */
+  private static final class SymbolIds
+  {
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * The id plus one of the symbol in each slot, or 0 if the slot is empty.
+     */
+    @Nonnull
+    private int[] _slots = new int[ INITIAL_CAPACITY ];
+    @Nonnull
+    private int[] _hashes = new int[ INITIAL_CAPACITY ];
+    @Nonnull
+    private String[] _types = new String[ INITIAL_CAPACITY / 2 ];
+    @Nonnull
+    private String[] _members = new String[ INITIAL_CAPACITY / 2 ];
+    private int _size;
+
+    int getOrAdd( @Nonnull final String type, @Nonnull final String member )
+    {
+      final int hash = 31 * type.hashCode() + member.hashCode();
+      final int mask = _slots.length - 1;
+      int slot = ( hash ^ ( hash >>> 16 ) ) & mask;
+      while ( 0 != _slots[ slot ] )
+      {
+        final int id = _slots[ slot ] - 1;
+        if ( _hashes[ slot ] == hash && type.equals( _types[ id ] ) && member.equals( _members[ id ] ) )
+        {
+          return id;
+        }
+        slot = ( slot + 1 ) & mask;
+      }
+
+      final int id = _size++;
+      _slots[ slot ] = id + 1;
+      _hashes[ slot ] = hash;
+      _types[ id ] = type;
+      _members[ id ] = member;
+      if ( _size * 2 >= _slots.length )
+      {
+        resize();
+      }
+      return id;
+    }
+
+    int size()
+    {
+      return _size;
+    }
+
+    /**
+     * Return the type of each symbol, indexed by id. The array may be longer than the number of symbols.
+     */
+    @Nonnull
+    String[] getTypes()
+    {
+      return _types;
+    }
+
+    /**
+     * Return the member of each symbol, indexed by id. The array may be longer than the number of symbols.
+     */
+    @Nonnull
+    String[] getMembers()
+    {
+      return _members;
+    }
+
+    private void resize()
+    {
+      final int[] slots = _slots;
+      final int[] hashes = _hashes;
+      final int capacity = slots.length * 2;
+      _slots = new int[ capacity ];
+      _hashes = new int[ capacity ];
+      _types = Arrays.copyOf( _types, capacity / 2 );
+      _members = Arrays.copyOf( _members, capacity / 2 );
+      final int mask = capacity - 1;
+      for ( int i = 0; i < slots.length; i++ )
+      {
+        if ( 0 != slots[ i ] )
+        {
+          int slot = ( hashes[ i ] ^ ( hashes[ i ] >>> 16 ) ) & mask;
+          while ( 0 != _slots[ slot ] )
+          {
+            slot = ( slot + 1 ) & mask;
+          }
+          _slots[ slot ] = slots[ i ];
+          _hashes[ slot ] = hashes[ i ];
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package grim.asserts;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+
+/**
+ * A node in the syntax tree of a regular expression produced by {@link RegexParser}.
+ * The tree only describes the subset of the regular expression syntax that can be matched
+ * without backtracking.
+ */
+abstract class RegexNode
+{
+  /**
+   * Marker for a repetition that has no upper bound.
+   */
+  static final int UNBOUNDED = -1;
+
+  private RegexNode()
+  {
+  }
+
+  /**
+   * A node that matches the empty string.
+   */
+  static final class Empty
+    extends RegexNode
+  {
+    @Nonnull
+    static final Empty INSTANCE = new Empty();
+
+    private Empty()
+    {
+    }
+  }
+
+  /**
+   * A node that matches a single character from a set of characters.
+   */
+  static final class CharSet
+    extends RegexNode
+  {
+    /**
+     * Sorted, non-overlapping and non-adjacent ranges of characters stored as inclusive low/high pairs.
+     */
+    @Nonnull
+    private final int[] _ranges;
+
+    CharSet( @Nonnull final int[] ranges )
+    {
+      _ranges = Objects.requireNonNull( ranges );
+    }
+
+    @Nonnull
+    int[] getRanges()
+    {
+      return _ranges;
+    }
+
+    boolean contains( final char ch )
+    {
+      for ( int i = 0; i < _ranges.length; i += 2 )
+      {
+        if ( ch < _ranges[ i ] )
+        {
+          return false;
+        }
+        else if ( ch <= _ranges[ i + 1 ] )
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A node that matches a sequence of nodes.
+   */
+  static final class Concat
+    extends RegexNode
+  {
+    @Nonnull
+    private final List<RegexNode> _nodes;
+
+    Concat( @Nonnull final List<RegexNode> nodes )
+    {
+      _nodes = Collections.unmodifiableList( nodes );
+    }
+
+    @Nonnull
+    List<RegexNode> getNodes()
+    {
+      return _nodes;
+    }
+  }
+
+  /**
+   * A node that matches any one of a set of alternatives.
+   */
+  static final class Alternation
+    extends RegexNode
+  {
+    @Nonnull
+    private final List<RegexNode> _nodes;
+
+    Alternation( @Nonnull final List<RegexNode> nodes )
+    {
+      _nodes = Collections.unmodifiableList( nodes );
+    }
+
+    @Nonnull
+    List<RegexNode> getNodes()
+    {
+      return _nodes;
+    }
+  }
+
+  /**
+   * A node that matches another node repeatedly.
+   */
+  static final class Repeat
+    extends RegexNode
+  {
+    @Nonnull
+    private final RegexNode _node;
+    private final int _min;
+    /**
+     * The maximum number of repetitions or {@link #UNBOUNDED}.
+     */
+    private final int _max;
+
+    Repeat( @Nonnull final RegexNode node, final int min, final int max )
+    {
+      _node = Objects.requireNonNull( node );
+      _min = min;
+      _max = max;
+    }
+
+    @Nonnull
+    RegexNode getNode()
+    {
+      return _node;
+    }
+
+    int getMin()
+    {
+      return _min;
+    }
+
+    int getMax()
+    {
+      return _max;
+    }
+  }
+}
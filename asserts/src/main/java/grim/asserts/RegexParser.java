@@ -0,0 +1,575 @@
+package grim.asserts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Parser that converts a regular expression into a {@link RegexNode} tree.
+ * The parser only accepts the subset of the {@link Pattern} syntax that can be converted into a
+ * finite automaton. This includes literals, quoting, character classes, the predefined character
+ * classes, groups, alternation, greedy and reluctant quantifiers and anchors at the start and end
+ * of the expression. Any other construct (i.e. back references, lookaround, boundaries, possessive
+ * quantifiers or flags) results in the expression being rejected. The parser assumes that the
+ * expression will be used to match an entire input, as in {@link java.util.regex.Matcher#matches()}.
+ */
+final class RegexParser
+{
+  /**
+   * The largest bound accepted in a counted repetition.
+   */
+  private static final int MAX_REPEAT = 100;
+  private static final int MAX_CHAR = Character.MAX_VALUE;
+  @Nonnull
+  private static final int[] DIGIT = new int[]{ '0', '9' };
+  @Nonnull
+  private static final int[] WORD = new int[]{ '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+  @Nonnull
+  private static final int[] SPACE = new int[]{ '\t', '\r', ' ', ' ' };
+  /**
+   * The characters matched by '.' which excludes the line terminators.
+   */
+  @Nonnull
+  private static final int[] DOT =
+    complement( normalize( new int[]{ '\n', '\n', '\r', '\r', 0x0085, 0x0085, 0x2028, 0x2029 } ) );
+  @Nonnull
+  private final String _regex;
+  private int _position;
+  private int _depth;
+
+  private RegexParser( @Nonnull final String regex )
+  {
+    _regex = regex;
+  }
+
+  /**
+   * Parse the pattern into a tree if it uses the supported syntax.
+   *
+   * @param pattern the pattern.
+   * @return the tree or null if the pattern uses unsupported syntax or flags.
+   */
+  @Nullable
+  static RegexNode parse( @Nonnull final Pattern pattern )
+  {
+    return 0 == pattern.flags() ? parse( pattern.pattern() ) : null;
+  }
+
+  @Nullable
+  static RegexNode parse( @Nonnull final String regex )
+  {
+    for ( int i = 0; i < regex.length(); i++ )
+    {
+      // Pattern matches supplementary characters as a single code point which a
+      // char based automaton can not replicate.
+      if ( Character.isSurrogate( regex.charAt( i ) ) )
+      {
+        return null;
+      }
+    }
+    try
+    {
+      final RegexParser parser = new RegexParser( regex );
+      final RegexNode node = parser.parseAlternation();
+      return parser._position == regex.length() ? node : null;
+    }
+    catch ( final UnsupportedSyntaxException e )
+    {
+      return null;
+    }
+  }
+
+  @Nonnull
+  private RegexNode parseAlternation()
+    throws UnsupportedSyntaxException
+  {
+    final List<RegexNode> nodes = new ArrayList<>();
+    nodes.add( parseConcat() );
+    while ( hasMore() && '|' == peek() )
+    {
+      _position++;
+      nodes.add( parseConcat() );
+    }
+    return 1 == nodes.size() ? nodes.get( 0 ) : new RegexNode.Alternation( nodes );
+  }
+
+  @Nonnull
+  private RegexNode parseConcat()
+    throws UnsupportedSyntaxException
+  {
+    final List<RegexNode> nodes = new ArrayList<>();
+    boolean start = true;
+    while ( hasMore() )
+    {
+      final char ch = peek();
+      if ( '|' == ch || ')' == ch )
+      {
+        break;
+      }
+      else if ( '^' == ch )
+      {
+        // A leading anchor is redundant when matching the entire input
+        if ( !start || 0 != _depth )
+        {
+          throw new UnsupportedSyntaxException();
+        }
+        _position++;
+      }
+      else if ( '$' == ch )
+      {
+        // A trailing anchor is redundant when matching the entire input
+        _position++;
+        if ( 0 != _depth || ( hasMore() && '|' != peek() ) )
+        {
+          throw new UnsupportedSyntaxException();
+        }
+      }
+      else if ( '\\' == ch && _position + 1 < _regex.length() && 'Q' == _regex.charAt( _position + 1 ) )
+      {
+        final int end = _regex.indexOf( "\\E", _position + 2 );
+        final int endOfQuote = -1 == end ? _regex.length() : end;
+        if ( endOfQuote == _position + 2 )
+        {
+          throw new UnsupportedSyntaxException();
+        }
+        for ( int i = _position + 2; i < endOfQuote; i++ )
+        {
+          nodes.add( literal( _regex.charAt( i ) ) );
+        }
+        _position = -1 == end ? endOfQuote : end + 2;
+        // A quantifier following a quote only applies to the last quoted character
+        final int last = nodes.size() - 1;
+        nodes.set( last, parseQuantifier( nodes.get( last ) ) );
+        start = false;
+      }
+      else
+      {
+        nodes.add( parseQuantifier( parseAtom() ) );
+        start = false;
+      }
+    }
+    return nodes.isEmpty() ?
+           RegexNode.Empty.INSTANCE :
+           1 == nodes.size() ? nodes.get( 0 ) : new RegexNode.Concat( nodes );
+  }
+
+  @Nonnull
+  private RegexNode parseQuantifier( @Nonnull final RegexNode node )
+    throws UnsupportedSyntaxException
+  {
+    if ( !hasMore() )
+    {
+      return node;
+    }
+    final char ch = peek();
+    final int min;
+    final int max;
+    if ( '*' == ch )
+    {
+      min = 0;
+      max = RegexNode.UNBOUNDED;
+      _position++;
+    }
+    else if ( '+' == ch )
+    {
+      min = 1;
+      max = RegexNode.UNBOUNDED;
+      _position++;
+    }
+    else if ( '?' == ch )
+    {
+      min = 0;
+      max = 1;
+      _position++;
+    }
+    else if ( '{' == ch )
+    {
+      _position++;
+      min = parseNumber();
+      if ( hasMore() && ',' == peek() )
+      {
+        _position++;
+        max = hasMore() && '}' == peek() ? RegexNode.UNBOUNDED : parseNumber();
+      }
+      else
+      {
+        max = min;
+      }
+      if ( !hasMore() || '}' != peek() || ( RegexNode.UNBOUNDED != max && max < min ) )
+      {
+        throw new UnsupportedSyntaxException();
+      }
+      _position++;
+    }
+    else
+    {
+      return node;
+    }
+
+    if ( hasMore() && '?' == peek() )
+    {
+      // Reluctant quantifiers match the same inputs as greedy quantifiers when matching the entire input
+      _position++;
+    }
+    if ( hasMore() && -1 != "*+?{".indexOf( peek() ) )
+    {
+      // Possessive quantifiers alter the set of matched inputs and stacked quantifiers are not supported
+      throw new UnsupportedSyntaxException();
+    }
+    return new RegexNode.Repeat( node, min, max );
+  }
+
+  private int parseNumber()
+    throws UnsupportedSyntaxException
+  {
+    final int start = _position;
+    while ( hasMore() && peek() >= '0' && peek() <= '9' && _position - start < 4 )
+    {
+      _position++;
+    }
+    if ( start == _position )
+    {
+      throw new UnsupportedSyntaxException();
+    }
+    final int value = Integer.parseInt( _regex.substring( start, _position ) );
+    if ( value > MAX_REPEAT )
+    {
+      throw new UnsupportedSyntaxException();
+    }
+    return value;
+  }
+
+  @Nonnull
+  private RegexNode parseAtom()
+    throws UnsupportedSyntaxException
+  {
+    final char ch = peek();
+    if ( '(' == ch )
+    {
+      _position++;
+      if ( hasMore() && '?' == peek() )
+      {
+        // Only non-capturing groups are supported, not lookaround, flags or named groups
+        if ( _position + 1 < _regex.length() && ':' == _regex.charAt( _position + 1 ) )
+        {
+          _position += 2;
+        }
+        else
+        {
+          throw new UnsupportedSyntaxException();
+        }
+      }
+      _depth++;
+      final RegexNode node = parseAlternation();
+      _depth--;
+      if ( !hasMore() || ')' != peek() )
+      {
+        throw new UnsupportedSyntaxException();
+      }
+      _position++;
+      return node;
+    }
+    else if ( '[' == ch )
+    {
+      return new RegexNode.CharSet( parseCharacterClass() );
+    }
+    else if ( '.' == ch )
+    {
+      _position++;
+      return new RegexNode.CharSet( DOT );
+    }
+    else if ( '\\' == ch )
+    {
+      return new RegexNode.CharSet( parseEscape() );
+    }
+    else if ( -1 != "*+?{^$".indexOf( ch ) )
+    {
+      throw new UnsupportedSyntaxException();
+    }
+    else
+    {
+      _position++;
+      return literal( ch );
+    }
+  }
+
+  @Nonnull
+  private int[] parseCharacterClass()
+    throws UnsupportedSyntaxException
+  {
+    // Skip the '['
+    _position++;
+    final boolean negate = hasMore() && '^' == peek();
+    if ( negate )
+    {
+      _position++;
+    }
+    final List<int[]> ranges = new ArrayList<>();
+    boolean first = true;
+    while ( true )
+    {
+      if ( !hasMore() )
+      {
+        throw new UnsupportedSyntaxException();
+      }
+      final char ch = peek();
+      if ( ']' == ch && !first )
+      {
+        _position++;
+        break;
+      }
+      else if ( ']' == ch ||
+                '[' == ch ||
+                ( '&' == ch && _position + 1 < _regex.length() && '&' == _regex.charAt( _position + 1 ) ) )
+      {
+        // Unions, intersections and leading ']' are not supported
+        throw new UnsupportedSyntaxException();
+      }
+
+      final int low;
+      if ( '\\' == ch )
+      {
+        final int[] escaped = parseEscape();
+        if ( 2 != escaped.length || escaped[ 0 ] != escaped[ 1 ] )
+        {
+          // A predefined character class such as \d or \w
+          if ( isRangeNext() )
+          {
+            throw new UnsupportedSyntaxException();
+          }
+          ranges.add( escaped );
+          first = false;
+          continue;
+        }
+        low = escaped[ 0 ];
+      }
+      else
+      {
+        low = ch;
+        _position++;
+      }
+
+      if ( isRangeNext() )
+      {
+        // Skip the '-'
+        _position++;
+        final char highCh = peek();
+        final int high;
+        if ( '\\' == highCh )
+        {
+          final int[] escaped = parseEscape();
+          if ( 2 != escaped.length || escaped[ 0 ] != escaped[ 1 ] )
+          {
+            throw new UnsupportedSyntaxException();
+          }
+          high = escaped[ 0 ];
+        }
+        else if ( '[' == highCh )
+        {
+          throw new UnsupportedSyntaxException();
+        }
+        else
+        {
+          high = highCh;
+          _position++;
+        }
+        if ( high < low )
+        {
+          throw new UnsupportedSyntaxException();
+        }
+        ranges.add( new int[]{ low, high } );
+      }
+      else
+      {
+        ranges.add( new int[]{ low, low } );
+      }
+      first = false;
+    }
+
+    final int[] flattened = new int[ ranges.stream().mapToInt( r -> r.length ).sum() ];
+    int offset = 0;
+    for ( final int[] range : ranges )
+    {
+      System.arraycopy( range, 0, flattened, offset, range.length );
+      offset += range.length;
+    }
+    final int[] normalized = normalize( flattened );
+    return negate ? complement( normalized ) : normalized;
+  }
+
+  private boolean isRangeNext()
+  {
+    return _position + 1 < _regex.length() && '-' == peek() && ']' != _regex.charAt( _position + 1 );
+  }
+
+  /**
+   * Parse an escape sequence and return the ranges of characters that it matches.
+   */
+  @Nonnull
+  private int[] parseEscape()
+    throws UnsupportedSyntaxException
+  {
+    if ( _position + 1 >= _regex.length() )
+    {
+      throw new UnsupportedSyntaxException();
+    }
+    final char ch = _regex.charAt( _position + 1 );
+    _position += 2;
+    switch ( ch )
+    {
+      case 'd':
+        return DIGIT;
+      case 'D':
+        return complement( DIGIT );
+      case 'w':
+        return WORD;
+      case 'W':
+        return complement( WORD );
+      case 's':
+        return SPACE;
+      case 'S':
+        return complement( SPACE );
+      case 't':
+        return single( '\t' );
+      case 'n':
+        return single( '\n' );
+      case 'r':
+        return single( '\r' );
+      case 'f':
+        return single( '\f' );
+      case 'a':
+        return single( '\u0007' );
+      case 'e':
+        return single( '\u001B' );
+      case 'x':
+        return single( parseHex( 2 ) );
+      case 'u':
+        return single( parseHex( 4 ) );
+      default:
+        if ( ( ch >= 'a' && ch <= 'z' ) || ( ch >= 'A' && ch <= 'Z' ) || ( ch >= '0' && ch <= '9' ) )
+        {
+          // Back references, boundaries, unicode classes and other constructs are not supported
+          throw new UnsupportedSyntaxException();
+        }
+        return single( ch );
+    }
+  }
+
+  private int parseHex( final int digits )
+    throws UnsupportedSyntaxException
+  {
+    if ( _position + digits > _regex.length() )
+    {
+      throw new UnsupportedSyntaxException();
+    }
+    int value = 0;
+    for ( int i = 0; i < digits; i++ )
+    {
+      final int digit = Character.digit( _regex.charAt( _position + i ), 16 );
+      if ( -1 == digit )
+      {
+        throw new UnsupportedSyntaxException();
+      }
+      value = value * 16 + digit;
+    }
+    _position += digits;
+    if ( Character.isSurrogate( (char) value ) )
+    {
+      throw new UnsupportedSyntaxException();
+    }
+    return value;
+  }
+
+  private boolean hasMore()
+  {
+    return _position < _regex.length();
+  }
+
+  private char peek()
+  {
+    return _regex.charAt( _position );
+  }
+
+  @Nonnull
+  private static RegexNode literal( final char ch )
+  {
+    return new RegexNode.CharSet( single( ch ) );
+  }
+
+  @Nonnull
+  private static int[] single( final int ch )
+  {
+    return new int[]{ ch, ch };
+  }
+
+  /**
+   * Sort and merge overlapping or adjacent ranges.
+   */
+  @Nonnull
+  private static int[] normalize( @Nonnull final int[] ranges )
+  {
+    final int count = ranges.length / 2;
+    final long[] packed = new long[ count ];
+    for ( int i = 0; i < count; i++ )
+    {
+      packed[ i ] = ( (long) ranges[ i * 2 ] << 32 ) | ranges[ i * 2 + 1 ];
+    }
+    Arrays.sort( packed );
+    final int[] result = new int[ ranges.length ];
+    int size = 0;
+    for ( final long range : packed )
+    {
+      final int low = (int) ( range >>> 32 );
+      final int high = (int) range;
+      if ( 0 != size && low <= result[ size - 1 ] + 1 )
+      {
+        result[ size - 1 ] = Math.max( result[ size - 1 ], high );
+      }
+      else
+      {
+        result[ size++ ] = low;
+        result[ size++ ] = high;
+      }
+    }
+    return Arrays.copyOf( result, size );
+  }
+
+  @Nonnull
+  private static int[] complement( @Nonnull final int[] ranges )
+  {
+    final int[] result = new int[ ranges.length + 2 ];
+    int size = 0;
+    int next = 0;
+    for ( int i = 0; i < ranges.length; i += 2 )
+    {
+      if ( ranges[ i ] > next )
+      {
+        result[ size++ ] = next;
+        result[ size++ ] = ranges[ i ] - 1;
+      }
+      next = ranges[ i + 1 ] + 1;
+    }
+    if ( next <= MAX_CHAR )
+    {
+      result[ size++ ] = next;
+      result[ size++ ] = MAX_CHAR;
+    }
+    return Arrays.copyOf( result, size );
+  }
+
+  /**
+   * Exception raised when the expression uses syntax that the parser does not support.
+   */
+  private static final class UnsupportedSyntaxException
+    extends Exception
+  {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedSyntaxException()
+    {
+      super( null, null, false, false );
+    }
+  }
+}
@@ -16,30 +16,81 @@ public final class Rule
    */
   private final boolean _omit;
   /**
-   * A regular expression to match the type.
+   * An optional condition that determines the scenarios in which the omit rule applies.
+   */
+  @Nullable
+  private final Condition _condition;
+  /**
+   * The resource that the rule was loaded from, if known.
+   */
+  @Nullable
+  private final String _source;
+  /**
+   * The matcher derived from the regular expression to match the type.
    */
   @Nonnull
-  private final Pattern _type;
+  private final NameMatcher _typeMatcher;
   /**
-   * An optional regular expression to match the member.
+   * The matcher derived from the optional regular expression to match the member.
    */
   @Nullable
-  private final Pattern _member;
+  private final NameMatcher _memberMatcher;
   /**
-   * An optional condition that determines the scenarios in which the omit rule applies.
+   * The name of the member if the member pattern only matches a single name, otherwise null.
    */
   @Nullable
-  private final Condition _condition;
+  private final String _literalMember;
+  /**
+   * True if the member pattern also matches the literal member name prefixed with <code>$</code>.
+   * The GWT compiler adds this prefix when it devirtualizes a method.
+   */
+  private final boolean _devirtualizedMember;
 
   public Rule( final boolean omit,
                @Nonnull final Pattern type,
                @Nullable final Pattern member,
                @Nullable final Condition condition )
+  {
+    this( omit, type, member, condition, null );
+  }
+
+  Rule( final boolean omit,
+        @Nonnull final Pattern type,
+        @Nullable final Pattern member,
+        @Nullable final Condition condition,
+        @Nullable final String source )
+  {
+    this( omit,
+          new RulePattern( Objects.requireNonNull( type ) ),
+          null != member ? new RulePattern( member ) : null,
+          condition,
+          source );
+  }
+
+  /**
+   * Create a rule from patterns that may not have been compiled.
+   * The patterns are only compiled if they are evaluated by a {@link java.util.regex.Matcher}
+   * or are returned from {@link #getType()} or {@link #getMember()}.
+   */
+  Rule( final boolean omit,
+        @Nonnull final RulePattern type,
+        @Nullable final RulePattern member,
+        @Nullable final Condition condition,
+        @Nullable final String source )
   {
     _omit = omit;
-    _type = Objects.requireNonNull( type );
-    _member = member;
     _condition = condition;
+    _source = source;
+    _typeMatcher = type.getMatcher();
+    _memberMatcher = null != member ? member.getMatcher() : null;
+    final String literalMember = null != _memberMatcher ? _memberMatcher.getLiteral() : null;
+    final String devirtualizedMember =
+      null == member || null != literalMember ? null :
+      member.isDevirtualized() ? member.getName() :
+      0 == member.getFlags() ? PatternUtil.asDevirtualizedLiteral( member.getRegex() ) :
+      null;
+    _literalMember = null != literalMember ? literalMember : devirtualizedMember;
+    _devirtualizedMember = null != devirtualizedMember;
   }
 
   /**
@@ -70,7 +121,7 @@ public final class Rule
   @Nonnull
   public Pattern getType()
   {
-    return _type;
+    return _typeMatcher.getPattern();
   }
 
   /**
@@ -81,7 +132,17 @@ public final class Rule
   @Nullable
   public Pattern getMember()
   {
-    return _member;
+    return null != _memberMatcher ? _memberMatcher.getPattern() : null;
+  }
+
+  /**
+   * Return true if the rule has a pattern to match the member.
+   *
+   * @return true if the rule has a pattern to match the member.
+   */
+  boolean hasMember()
+  {
+    return null != _memberMatcher;
   }
 
   /**
@@ -95,6 +156,84 @@ public final class Rule
     return _condition;
   }
 
+  /**
+   * Return the resource that the rule was loaded from, if known.
+   *
+   * @return the resource that the rule was loaded from, if known.
+   */
+  @Nullable
+  public String getSource()
+  {
+    return _source;
+  }
+
+  /**
+   * Return the name of the type if the type pattern only matches a single type, otherwise null.
+   *
+   * @return the name of the type if the type pattern only matches a single type, otherwise null.
+   */
+  @Nullable
+  String getLiteralType()
+  {
+    return _typeMatcher.getLiteral();
+  }
+
+  /**
+   * Return the prefix of the types matched if the type pattern matches every type that starts with a prefix, otherwise null.
+   *
+   * @return the prefix of the types matched if the type pattern matches every type that starts with a prefix, otherwise null.
+   */
+  @Nullable
+  String getTypePrefix()
+  {
+    return _typeMatcher.getPrefix();
+  }
+
+  /**
+   * Return the matcher derived from the type pattern.
+   *
+   * @return the matcher derived from the type pattern.
+   */
+  @Nonnull
+  NameMatcher getTypeMatcher()
+  {
+    return _typeMatcher;
+  }
+
+  /**
+   * Return the matcher derived from the member pattern, if any.
+   *
+   * @return the matcher derived from the member pattern, if any.
+   */
+  @Nullable
+  NameMatcher getMemberMatcher()
+  {
+    return _memberMatcher;
+  }
+
+  /**
+   * Return the name of the member if the member pattern only matches a single name (and optionally the
+   * name prefixed with <code>$</code>), otherwise null.
+   *
+   * @return the name of the member if the member pattern only matches a single name, otherwise null.
+   * @see #isDevirtualizedMember()
+   */
+  @Nullable
+  String getLiteralMember()
+  {
+    return _literalMember;
+  }
+
+  /**
+   * Return true if the member pattern matches the literal member name prefixed with <code>$</code>.
+   *
+   * @return true if the member pattern matches the literal member name prefixed with <code>$</code>.
+   */
+  boolean isDevirtualizedMember()
+  {
+    return _devirtualizedMember;
+  }
+
   /**
    * Return true if the specified type+member combination should have been omitted given the context of the compileTimeProperties.
    *
@@ -107,8 +246,36 @@ public final class Rule
                           @Nonnull final String type,
                           @Nonnull final String member )
   {
-    return _type.matcher( type ).matches() &&
-           ( null == _member || _member.matcher( member ).matches() ) &&
-           ( null == _condition || _condition.matches( compileTimeProperties ) );
+    return matchesType( type ) && matchesMember( member ) && matchesCondition( compileTimeProperties );
+  }
+
+  boolean matchesType( @Nonnull final String type )
+  {
+    return _typeMatcher.matches( type );
+  }
+
+  boolean matchesMember( @Nonnull final String member )
+  {
+    if ( null == _memberMatcher )
+    {
+      return true;
+    }
+    else if ( null != _literalMember )
+    {
+      return _literalMember.equals( member ) ||
+             ( _devirtualizedMember &&
+               member.length() == _literalMember.length() + 1 &&
+               '$' == member.charAt( 0 ) &&
+               member.endsWith( _literalMember ) );
+    }
+    else
+    {
+      return _memberMatcher.matches( member );
+    }
+  }
+
+  boolean matchesCondition( @Nonnull final Map<String, String> compileTimeProperties )
+  {
+    return null == _condition || _condition.matches( compileTimeProperties );
   }
 }
@@ -0,0 +1,330 @@
+package grim.asserts;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An on-disk cache of the rules loaded from archives.
+ * The cache is enabled by setting the <code>grim.cache_dir</code> system property to the directory in which
+ * the cache files are stored. Each archive is cached in a separate file that records the rules of every rule file
+ * in the archive in the binary rule format, so loading an unchanged archive does not parse any json.
+ *
+ * <p>A cache file is keyed by the absolute path of the archive and is only used if the size, last modified time
+ * and content hash of the archive match the values recorded in the file. The content hash is derived from the
+ * names, sizes and CRC-32 checksums of the rule files recorded in the central directory of the archive, so it
+ * is calculated without decompressing the archive. Cache files are written to a temporary file and atomically
+ * moved into place, so concurrent writers never expose a partially written file and the last writer wins.
+ * Failures to read or write the cache are not reported and the archive is loaded as if the cache were disabled.</p>
+ */
+final class RuleCache
+{
+  /**
+   * The system property that specifies the directory in which cache files are stored.
+   */
+  @Nonnull
+  static final String CACHE_DIRECTORY_PROPERTY = "grim.cache_dir";
+  /**
+   * The bytes "GRMC" that identify a cache file.
+   */
+  private static final int MAGIC = 0x47524D43;
+  /**
+   * The version of the cache file. This must change if the cache file or the binary rule format changes.
+   */
+  private static final int VERSION = 2;
+  @Nonnull
+  private static final String FILE_SUFFIX = ".grim-cache";
+
+  /**
+   * Parses the rules from a rule file in an archive.
+   * The rules are keyed by name so that a file that contains the rules of many rule files, such as a bundle,
+   * is cached as a separate entry per rule file.
+   */
+  @FunctionalInterface
+  interface RuleFileParser
+  {
+    @Nonnull
+    Map<String, List<Rule>> parse( @Nonnull JarEntry entry )
+      throws IOException;
+  }
+
+  @Nonnull
+  private final Path _directory;
+
+  RuleCache( @Nonnull final Path directory )
+  {
+    _directory = directory;
+  }
+
+  /**
+   * Return the cache specified by the <code>grim.cache_dir</code> system property or null if the cache is disabled.
+   *
+   * @return the cache or null if the cache is disabled.
+   */
+  @Nullable
+  static RuleCache fromSystemProperty()
+  {
+    final String directory = System.getProperty( CACHE_DIRECTORY_PROPERTY );
+    return null == directory || directory.isEmpty() ? null : new RuleCache( Paths.get( directory ) );
+  }
+
+  /**
+   * Return the encoded rules of every rule file in the archive, keyed by the name returned by the parser and in
+   * the order the rule files appear in the archive. The rules are read from the cache if the cache is up to date
+   * and otherwise the rules are parsed and the cache is updated.
+   *
+   * @param archivePath the path to the archive.
+   * @param jarFile     the archive.
+   * @param isRuleFile  the predicate that identifies the rule files in the archive.
+   * @param parser      the parser used to parse the rule files if the cache is not up to date.
+   * @return the encoded rules keyed by the name of the rule file.
+   * @throws IOException if the archive can not be read or a rule file can not be parsed.
+   */
+  @Nonnull
+  Map<String, byte[]> get( @Nonnull final Path archivePath,
+                           @Nonnull final JarFile jarFile,
+                           @Nonnull final Predicate<String> isRuleFile,
+                           @Nonnull final RuleFileParser parser )
+    throws IOException
+  {
+    final String path = archivePath.toAbsolutePath().normalize().toString();
+    final BasicFileAttributes attributes = Files.readAttributes( archivePath, BasicFileAttributes.class );
+    final List<JarEntry> entries =
+      jarFile.stream().filter( entry -> isRuleFile.test( entry.getName() ) ).collect( Collectors.toList() );
+    final Key key = new Key( path, attributes.size(), attributes.lastModifiedTime().toMillis(), hash( entries ) );
+
+    final String cacheFilename = toHex( digest( path.getBytes( StandardCharsets.UTF_8 ) ) ) + FILE_SUFFIX;
+    final Path cacheFile = _directory.resolve( cacheFilename );
+    final Map<String, byte[]> cached = read( cacheFile, key );
+    if ( null != cached )
+    {
+      return cached;
+    }
+    final Map<String, byte[]> ruleFiles = new LinkedHashMap<>();
+    for ( final JarEntry entry : entries )
+    {
+      for ( final Map.Entry<String, List<Rule>> ruleFile : parser.parse( entry ).entrySet() )
+      {
+        ruleFiles.put( ruleFile.getKey(), BinaryRuleWriter.encode( ruleFile.getValue() ) );
+      }
+    }
+    write( cacheFile, key, ruleFiles );
+    return ruleFiles;
+  }
+
+  @Nullable
+  private Map<String, byte[]> read( @Nonnull final Path cacheFile, @Nonnull final Key key )
+  {
+    try ( final DataInputStream input =
+            new DataInputStream( new ByteArrayInputStream( Files.readAllBytes( cacheFile ) ) ) )
+    {
+      if ( MAGIC != input.readInt() || VERSION != input.readUnsignedByte() || !key.equals( Key.read( input ) ) )
+      {
+        return null;
+      }
+      final int count = input.readInt();
+      final Map<String, byte[]> ruleFiles = new LinkedHashMap<>();
+      for ( int i = 0; i < count; i++ )
+      {
+        final String name = input.readUTF();
+        final byte[] data = new byte[ input.readInt() ];
+        input.readFully( data );
+        ruleFiles.put( name, data );
+      }
+      return ruleFiles;
+    }
+    catch ( final IOException | RuntimeException e )
+    {
+      // The cache file is missing, unreadable or corrupt
+      return null;
+    }
+  }
+
+  private void write( @Nonnull final Path cacheFile,
+                      @Nonnull final Key key,
+                      @Nonnull final Map<String, byte[]> ruleFiles )
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Path temporaryFile = null;
+    try
+    {
+      try ( final DataOutputStream output = new DataOutputStream( bytes ) )
+      {
+        output.writeInt( MAGIC );
+        output.writeByte( VERSION );
+        key.write( output );
+        output.writeInt( ruleFiles.size() );
+        for ( final Map.Entry<String, byte[]> entry : ruleFiles.entrySet() )
+        {
+          output.writeUTF( entry.getKey() );
+          output.writeInt( entry.getValue().length );
+          output.write( entry.getValue() );
+        }
+      }
+      Files.createDirectories( _directory );
+      temporaryFile = Files.createTempFile( _directory, cacheFile.getFileName().toString(), ".tmp" );
+      Files.write( temporaryFile, bytes.toByteArray() );
+      try
+      {
+        Files.move( temporaryFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+      }
+      catch ( final AtomicMoveNotSupportedException amnse )
+      {
+        Files.move( temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING );
+      }
+    }
+    catch ( final IOException ioe )
+    {
+      // The cache is an optimization so failing to update it is not an error
+      if ( null != temporaryFile )
+      {
+        try
+        {
+          Files.deleteIfExists( temporaryFile );
+        }
+        catch ( final IOException ignored )
+        {
+          // Ignored
+        }
+      }
+    }
+  }
+
+  @Nonnull
+  private static byte[] hash( @Nonnull final List<JarEntry> entries )
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try ( final DataOutputStream output = new DataOutputStream( bytes ) )
+    {
+      for ( final JarEntry entry : entries )
+      {
+        output.writeUTF( entry.getName() );
+        output.writeLong( entry.getSize() );
+        output.writeLong( entry.getCrc() );
+      }
+    }
+    catch ( final IOException ioe )
+    {
+      // Writing to a ByteArrayOutputStream never fails
+      throw new IllegalStateException( ioe );
+    }
+    return digest( bytes.toByteArray() );
+  }
+
+  @Nonnull
+  private static byte[] digest( @Nonnull final byte[] data )
+  {
+    try
+    {
+      return MessageDigest.getInstance( "SHA-256" ).digest( data );
+    }
+    catch ( final NoSuchAlgorithmException nsae )
+    {
+      // Every Java platform is required to support SHA-256
+      throw new IllegalStateException( nsae );
+    }
+  }
+
+  @Nonnull
+  private static String toHex( @Nonnull final byte[] data )
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( final byte b : data )
+    {
+      sb.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) );
+      sb.append( Character.forDigit( b & 0xF, 16 ) );
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The values that identify the version of an archive that a cache file was derived from.
+   */
+  private static final class Key
+  {
+    @Nonnull
+    private final String _path;
+    private final long _size;
+    private final long _lastModified;
+    @Nonnull
+    private final byte[] _hash;
+
+    Key( @Nonnull final String path, final long size, final long lastModified, @Nonnull final byte[] hash )
+    {
+      _path = path;
+      _size = size;
+      _lastModified = lastModified;
+      _hash = hash;
+    }
+
+    @Nonnull
+    static Key read( @Nonnull final DataInputStream input )
+      throws IOException
+    {
+      final String path = input.readUTF();
+      final long size = input.readLong();
+      final long lastModified = input.readLong();
+      final byte[] hash = new byte[ input.readUnsignedByte() ];
+      input.readFully( hash );
+      return new Key( path, size, lastModified, hash );
+    }
+
+    void write( @Nonnull final DataOutputStream output )
+      throws IOException
+    {
+      output.writeUTF( _path );
+      output.writeLong( _size );
+      output.writeLong( _lastModified );
+      output.writeByte( _hash.length );
+      output.write( _hash );
+    }
+
+    @Override
+    public boolean equals( final Object o )
+    {
+      if ( this == o )
+      {
+        return true;
+      }
+      else if ( !( o instanceof Key ) )
+      {
+        return false;
+      }
+      else
+      {
+        final Key other = (Key) o;
+        return _size == other._size &&
+               _lastModified == other._lastModified &&
+               _path.equals( other._path ) &&
+               Arrays.equals( _hash, other._hash );
+      }
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return _path.hashCode();
+    }
+  }
+}
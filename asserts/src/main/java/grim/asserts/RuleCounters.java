@@ -0,0 +1,34 @@
+package grim.asserts;
+
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+
+/**
+ * The statistics collected for a single rule while a {@link RuleSet} is in statistics mode.
+ * The counters are safe to update concurrently.
+ */
+final class RuleCounters
+{
+  @Nonnull
+  private final LongAdder _evaluationCount = new LongAdder();
+  @Nonnull
+  private final LongAdder _matchCount = new LongAdder();
+  @Nonnull
+  private final LongAdder _totalNanos = new LongAdder();
+
+  void record( final boolean matched, final long nanos )
+  {
+    _evaluationCount.increment();
+    if ( matched )
+    {
+      _matchCount.increment();
+    }
+    _totalNanos.add( nanos );
+  }
+
+  @Nonnull
+  RuleStatistics snapshot( @Nonnull final Rule rule )
+  {
+    return new RuleStatistics( rule, _evaluationCount.sum(), _matchCount.sum(), _totalNanos.sum() );
+  }
+}
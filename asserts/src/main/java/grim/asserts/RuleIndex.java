@@ -0,0 +1,405 @@
+package grim.asserts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An index over a collection of rules that avoids evaluating rules that can not match a symbol. Rules
+ * with a literal type pattern are stored in a map keyed by the type name so that only the rules for the
+ * type being queried are evaluated. Within a type, rules with a literal member pattern (i.e.
+ * <code>^\QgetName\E$</code> or the devirtualized form <code>^\$?\QgetName\E$</code>) are stored in a
+ * map keyed by the member name so that they are selected with a single lookup. Rules with a type pattern
+ * that matches every type within a package or an enclosing type (i.e. <code>^com\.example\..*$</code>)
+ * are stored in a {@link TypeTrie} so that a query walks the segments of the type name once. The
+ * remaining type patterns are combined into a single {@link PatternAutomaton} and the member patterns of
+ * all rules are combined into a separate automaton so that a query matches the type and the member in a
+ * single pass each, regardless of the number of rules. Patterns that the automata do not support are
+ * matched individually.
+ */
+final class RuleIndex
+{
+  /**
+   * Marker indicating that the member automaton was unable to match the member.
+   */
+  @Nonnull
+  private static final int[] UNKNOWN_MEMBER_MATCHES = new int[ 0 ];
+  /**
+   * Marker returned when a rule matched and the query should stop.
+   */
+  @Nonnull
+  private static final int[] MATCHED = new int[ 0 ];
+  /**
+   * The rules in the index. The id of a rule is the index into this array.
+   */
+  @Nonnull
+  private final Rule[] _rules;
+  /**
+   * The rules that only match a single type, keyed by the name of the type.
+   */
+  @Nonnull
+  private final Map<String, TypeRules> _rulesByType;
+  /**
+   * The ids of rules that have a type pattern that matches every type that starts with a prefix.
+   */
+  @Nonnull
+  private final int[] _prefixRules;
+  /**
+   * The trie containing the prefixes of the prefix type patterns.
+   */
+  @Nonnull
+  private final TypeTrie _typeTrie;
+  /**
+   * The ids of rules that have a type pattern that is neither a literal nor a prefix.
+   */
+  @Nonnull
+  private final int[] _patternRules;
+  /**
+   * The automaton containing the non-literal type patterns.
+   */
+  @Nonnull
+  private final PatternAutomaton _typeAutomaton;
+  /**
+   * The ids of rules that have a non-literal type pattern not supported by the type automaton.
+   */
+  @Nonnull
+  private final int[] _unsupportedTypeRules;
+  /**
+   * The automaton containing the member patterns.
+   */
+  @Nonnull
+  private final PatternAutomaton _memberAutomaton;
+  /**
+   * The statistics counters for each rule if statistics are enabled, otherwise null.
+   */
+  @Nullable
+  private final RuleCounters[] _counters;
+
+  RuleIndex( @Nonnull final Collection<Rule> rules )
+  {
+    this( rules, null );
+  }
+
+  /**
+   * Create an index over the rules.
+   *
+   * @param rules    the rules.
+   * @param counters the statistics counters for each rule if statistics are enabled, otherwise null.
+   */
+  RuleIndex( @Nonnull final Collection<Rule> rules, @Nullable final Map<Rule, RuleCounters> counters )
+  {
+    _rules = rules.toArray( new Rule[ 0 ] );
+    _counters = null == counters ? null : Arrays.stream( _rules ).map( counters::get ).toArray( RuleCounters[]::new );
+    final Map<String, List<Integer>> rulesByType = new HashMap<>();
+    final Map<String, Map<String, List<Integer>>> rulesByTypeAndMember = new HashMap<>();
+    final List<Integer> prefixRules = new ArrayList<>();
+    final List<Integer> patternRules = new ArrayList<>();
+    _typeTrie = new TypeTrie();
+    final String[] typePatterns = new String[ _rules.length ];
+    final String[] memberPatterns = new String[ _rules.length ];
+    for ( int id = 0; id < _rules.length; id++ )
+    {
+      final Rule rule = _rules[ id ];
+      final String literalType = rule.getLiteralType();
+      final String typePrefix = rule.getTypePrefix();
+      final String literalMember = rule.getLiteralMember();
+      if ( null != literalType && null != literalMember )
+      {
+        final Map<String, List<Integer>> rulesByMember =
+          rulesByTypeAndMember.computeIfAbsent( literalType, t -> new HashMap<>() );
+        rulesByMember.computeIfAbsent( literalMember, m -> new ArrayList<>() ).add( id );
+        if ( rule.isDevirtualizedMember() )
+        {
+          rulesByMember.computeIfAbsent( "$" + literalMember, m -> new ArrayList<>() ).add( id );
+        }
+      }
+      else if ( null != literalType )
+      {
+        rulesByType.computeIfAbsent( literalType, t -> new ArrayList<>() ).add( id );
+      }
+      else if ( null != typePrefix && TypeTrie.isSupported( typePrefix ) )
+      {
+        prefixRules.add( id );
+        _typeTrie.add( typePrefix, id );
+      }
+      else
+      {
+        patternRules.add( id );
+        typePatterns[ id ] = toRegex( rule.getTypeMatcher() );
+      }
+      // Literal members are compared directly rather than via the member automaton
+      final NameMatcher memberMatcher = rule.getMemberMatcher();
+      memberPatterns[ id ] = null == literalMember && null != memberMatcher ? toRegex( memberMatcher ) : null;
+    }
+    _rulesByType = new HashMap<>();
+    for ( final Map.Entry<String, List<Integer>> entry : rulesByType.entrySet() )
+    {
+      final Map<String, List<Integer>> rulesByMember = rulesByTypeAndMember.remove( entry.getKey() );
+      _rulesByType.put( entry.getKey(), new TypeRules( toArray( entry.getValue() ), toArrays( rulesByMember ) ) );
+    }
+    for ( final Map.Entry<String, Map<String, List<Integer>>> entry : rulesByTypeAndMember.entrySet() )
+    {
+      _rulesByType.put( entry.getKey(), new TypeRules( PatternAutomaton.NO_MATCHES, toArrays( entry.getValue() ) ) );
+    }
+    _prefixRules = toArray( prefixRules );
+    _patternRules = toArray( patternRules );
+    _typeAutomaton = new PatternAutomaton( typePatterns );
+    _unsupportedTypeRules =
+      Arrays.stream( _patternRules ).filter( id -> !_typeAutomaton.isSupported( id ) ).toArray();
+    _memberAutomaton = new PatternAutomaton( memberPatterns );
+  }
+
+  /**
+   * Return the number of rules in the index.
+   *
+   * @return the number of rules in the index.
+   */
+  int size()
+  {
+    return _rules.length;
+  }
+
+  /**
+   * Return the rule with the specified id.
+   *
+   * @param id the id of the rule.
+   * @return the rule.
+   */
+  @Nonnull
+  Rule getRule( final int id )
+  {
+    return _rules[ id ];
+  }
+
+  /**
+   * Return true if any rule in the index matches the symbol.
+   *
+   * @param compileTimeProperties the static compile time properties or null if the conditions of the rules
+   *                              in the index have already been resolved and should be ignored.
+   * @param type                  the name of the java type.
+   * @param member                the name of the member if any else the empty string.
+   * @return true if any rule matches the symbol.
+   */
+  boolean anyMatch( @Nullable final Map<String, String> compileTimeProperties,
+                    @Nonnull final String type,
+                    @Nonnull final String member )
+  {
+    return match( compileTimeProperties, type, member, null );
+  }
+
+  /**
+   * Record the id of every rule in the index that matches the symbol, ignoring the conditions of the rules.
+   *
+   * @param type    the name of the java type.
+   * @param member  the name of the member if any else the empty string.
+   * @param matches the set in which the ids of the matching rules are recorded.
+   */
+  void collectMatches( @Nonnull final String type, @Nonnull final String member, @Nonnull final BitSet matches )
+  {
+    match( null, type, member, matches );
+  }
+
+  /**
+   * Match the symbol against the rules in the index.
+   * If the matches parameter is null then the method returns as soon as a rule matches, otherwise the id of
+   * every matching rule is recorded in the matches parameter.
+   */
+  private boolean match( @Nullable final Map<String, String> compileTimeProperties,
+                         @Nonnull final String type,
+                         @Nonnull final String member,
+                         @Nullable final BitSet matches )
+  {
+    // The state of the query is held in locals and parameters rather than in an object so that a query
+    // does not allocate. The member automaton is only run once a rule has matched the type.
+    int[] memberMatches = null;
+
+    final TypeRules typeRules = _rulesByType.get( type );
+    if ( null != typeRules )
+    {
+      // The type is known to match as the rules were selected by type name
+      final int[] memberRules = typeRules._rulesByMember.get( member );
+      if ( null != memberRules )
+      {
+        memberMatches =
+          matchRules( compileTimeProperties, type, member, matches, memberMatches, memberRules, true, true );
+        if ( MATCHED == memberMatches )
+        {
+          return true;
+        }
+      }
+      memberMatches =
+        matchRules( compileTimeProperties, type, member, matches, memberMatches, typeRules._rules, true, false );
+      if ( MATCHED == memberMatches )
+      {
+        return true;
+      }
+    }
+
+    if ( 0 != _prefixRules.length )
+    {
+      final int[] prefixMatches = _typeTrie.match( type );
+      // If the trie can not match the type then every prefix pattern is matched individually
+      memberMatches =
+        null == prefixMatches ?
+        matchRules( compileTimeProperties, type, member, matches, memberMatches, _prefixRules, false, false ) :
+        matchRules( compileTimeProperties, type, member, matches, memberMatches, prefixMatches, true, false );
+      if ( MATCHED == memberMatches )
+      {
+        return true;
+      }
+    }
+
+    if ( 0 != _patternRules.length )
+    {
+      final int[] typeMatches = _typeAutomaton.match( type );
+      // If the automaton can not match the type then every pattern is matched individually
+      if ( null == typeMatches )
+      {
+        memberMatches =
+          matchRules( compileTimeProperties, type, member, matches, memberMatches, _patternRules, false, false );
+      }
+      else
+      {
+        memberMatches =
+          matchRules( compileTimeProperties, type, member, matches, memberMatches, typeMatches, true, false );
+        if ( MATCHED != memberMatches )
+        {
+          memberMatches = matchRules( compileTimeProperties,
+                                      type,
+                                      member,
+                                      matches,
+                                      memberMatches,
+                                      _unsupportedTypeRules,
+                                      false,
+                                      false );
+        }
+      }
+      if ( MATCHED == memberMatches )
+      {
+        return true;
+      }
+    }
+    return null != matches && !matches.isEmpty();
+  }
+
+  /**
+   * Match the symbol against the specified rules.
+   * The memberMatches parameter is the ids of the rules with member patterns in the member automaton that match
+   * the member, {@link #UNKNOWN_MEMBER_MATCHES} if the automaton was unable to match the member, or null if the
+   * automaton has not been run. Return {@link #MATCHED} if a rule matched and the query should stop, which only
+   * occurs if the query is not collecting every match, otherwise return the memberMatches, running the member
+   * automaton if it had not been run and a rule required it.
+   */
+  @Nullable
+  private int[] matchRules( @Nullable final Map<String, String> compileTimeProperties,
+                            @Nonnull final String type,
+                            @Nonnull final String member,
+                            @Nullable final BitSet matches,
+                            @Nullable final int[] memberMatches,
+                            @Nonnull final int[] ids,
+                            final boolean typeMatched,
+                            final boolean memberMatched )
+  {
+    int[] currentMemberMatches = memberMatches;
+    for ( final int id : ids )
+    {
+      final long start = null == _counters ? 0 : System.nanoTime();
+      final Rule rule = _rules[ id ];
+      boolean matched = typeMatched || rule.matchesType( type );
+      if ( matched && !memberMatched && rule.hasMember() )
+      {
+        if ( _memberAutomaton.isSupported( id ) )
+        {
+          if ( null == currentMemberMatches )
+          {
+            final int[] automatonMatches = _memberAutomaton.match( member );
+            currentMemberMatches = null == automatonMatches ? UNKNOWN_MEMBER_MATCHES : automatonMatches;
+          }
+          matched = UNKNOWN_MEMBER_MATCHES != currentMemberMatches ?
+                    Arrays.binarySearch( currentMemberMatches, id ) >= 0 :
+                    rule.matchesMember( member );
+        }
+        else
+        {
+          matched = rule.matchesMember( member );
+        }
+      }
+      matched = matched && ( null == compileTimeProperties || rule.matchesCondition( compileTimeProperties ) );
+      if ( null != _counters )
+      {
+        _counters[ id ].record( matched, System.nanoTime() - start );
+      }
+      if ( matched )
+      {
+        if ( null == matches )
+        {
+          return MATCHED;
+        }
+        matches.set( id );
+      }
+    }
+    return currentMemberMatches;
+  }
+
+  @Nonnull
+  private static int[] toArray( @Nonnull final List<Integer> values )
+  {
+    return values.stream().mapToInt( Integer::intValue ).toArray();
+  }
+
+  @Nonnull
+  private static Map<String, int[]> toArrays( @Nullable final Map<String, List<Integer>> values )
+  {
+    final Map<String, int[]> result = new HashMap<>();
+    if ( null != values )
+    {
+      for ( final Map.Entry<String, List<Integer>> entry : values.entrySet() )
+      {
+        result.put( entry.getKey(), toArray( entry.getValue() ) );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The rules that only match a single type.
+   */
+  private static final class TypeRules
+  {
+    /**
+     * The ids of rules that have no member pattern or a member pattern that is not a literal.
+     */
+    @Nonnull
+    private final int[] _rules;
+    /**
+     * The ids of rules with a literal member pattern, keyed by the member name. Rules that also match
+     * the devirtualized form of a method are present under both the method name and the <code>$</code>
+     * prefixed name.
+     */
+    @Nonnull
+    private final Map<String, int[]> _rulesByMember;
+
+    TypeRules( @Nonnull final int[] rules, @Nonnull final Map<String, int[]> rulesByMember )
+    {
+      _rules = rules;
+      _rulesByMember = rulesByMember;
+    }
+  }
+
+  /**
+   * Return the regular expression of the pattern for compilation into an automaton, or null if the pattern
+   * has flags that the automaton does not support. The pattern itself is not compiled.
+   */
+  @Nullable
+  private static String toRegex( @Nonnull final NameMatcher matcher )
+  {
+    final RulePattern pattern = matcher.getRulePattern();
+    return 0 == pattern.getFlags() ? pattern.getRegex() : null;
+  }
+}
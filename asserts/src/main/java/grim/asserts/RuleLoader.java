@@ -4,24 +4,48 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ProviderNotFoundException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipFile;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
 import javax.lang.model.SourceVersion;
 
 final class RuleLoader
@@ -30,29 +54,150 @@ final class RuleLoader
   private static final String BASE_PATH = "META-INF/grim";
   @Nonnull
   private static final String FILE_SUFFIX = ".grim.json";
+  /**
+   * The suffix of files containing rules in the binary rule format.
+   * These are emitted alongside the json files when requested and are loaded in preference to the json files.
+   */
   @Nonnull
-  private static final Predicate<String> GRIM_FILE_MATCHER = r -> r.endsWith( FILE_SUFFIX );
+  private static final String BINARY_FILE_SUFFIX = ".grim.bin";
+  /**
+   * The index emitted by the annotation processor that lists the rule files present in a library,
+   * one per line and relative to {@link #BASE_PATH}.
+   */
+  @Nonnull
+  private static final String INDEX_RESOURCE = BASE_PATH + "/grim.index";
+  /**
+   * The bundle emitted by the annotation processor, in place of the rule files, when the
+   * <code>grim.output</code> option is <code>bundle</code>. The bundle is a json object that maps the name of
+   * each rule file, relative to {@link #BASE_PATH} and without a suffix, to the rules of the rule file.
+   */
+  @Nonnull
+  private static final String BUNDLE_RESOURCE = BASE_PATH + "/grim.bundle.json";
+  /**
+   * The prefix of the source of the rules loaded from an entry of a bundle, which is followed by the name of the
+   * entry. The rules of each entry are cached under the same name.
+   */
+  @Nonnull
+  private static final String BUNDLE_ENTRY_PREFIX = BUNDLE_RESOURCE + "#";
+  /**
+   * The maximum number of archives loaded concurrently.
+   * Loading is dominated by I/O latency rather than CPU so more threads than processors are used.
+   */
+  private static final int MAX_ARCHIVE_LOADER_THREADS =
+    Math.max( 4, 2 * Runtime.getRuntime().availableProcessors() );
+  /**
+   * The system property that controls whether the patterns of rules are compiled as the rules are loaded.
+   * Patterns are validated by default so that a library containing a malformed rule fails when it is loaded.
+   * If set to <code>false</code> then patterns are compiled when a rule is first evaluated and a malformed
+   * pattern results in a {@link java.util.regex.PatternSyntaxException} at that point.
+   */
+  @Nonnull
+  static final String VALIDATE_PATTERNS_PROPERTY = "grim.validate_patterns";
+  @Nonnull
+  private static final Predicate<String> GRIM_FILE_MATCHER =
+    r -> r.endsWith( FILE_SUFFIX ) || r.endsWith( BINARY_FILE_SUFFIX );
 
   private RuleLoader()
   {
   }
 
+  /**
+   * Load the rules from the archives concurrently.
+   * The rules are returned in the order of the archives and, within an archive, in the order that
+   * {@link #loadFromArchive(Path, Predicate)} returns them, regardless of the order in which the archives
+   * finish loading. If any archive fails to load then the exception from the first such archive is rethrown.
+   */
+  @Nonnull
+  static Collection<Rule> loadFromArchives( @Nonnull final Collection<Path> archivePaths,
+                                            @Nullable final Predicate<String> filterFn )
+  {
+    final PatternPool patterns = new PatternPool();
+    if ( archivePaths.size() <= 1 )
+    {
+      return archivePaths.isEmpty() ?
+             new ArrayList<>() :
+             loadFromArchive( archivePaths.iterator().next(), filterFn, patterns );
+    }
+    final AtomicInteger threadId = new AtomicInteger();
+    final ExecutorService executor =
+      Executors.newFixedThreadPool( Math.min( archivePaths.size(), MAX_ARCHIVE_LOADER_THREADS ), r -> {
+        final Thread thread = new Thread( r, "grim-archive-loader-" + threadId.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+      } );
+    try
+    {
+      final List<Future<Collection<Rule>>> futures = new ArrayList<>();
+      for ( final Path archivePath : archivePaths )
+      {
+        futures.add( executor.submit( () -> loadFromArchive( archivePath, filterFn, patterns ) ) );
+      }
+      final List<Rule> rules = new ArrayList<>();
+      for ( final Future<Collection<Rule>> future : futures )
+      {
+        rules.addAll( future.get() );
+      }
+      return rules;
+    }
+    catch ( final ExecutionException ee )
+    {
+      final Throwable cause = ee.getCause();
+      throw cause instanceof RuntimeException ?
+            (RuntimeException) cause :
+            new IllegalStateException( "Failed to load Grim Omit rules from archives", cause );
+    }
+    catch ( final InterruptedException ie )
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( "Interrupted while loading Grim Omit rules from archives", ie );
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
   @Nonnull
   static Collection<Rule> loadFromArchive( @Nonnull final Path archivePath,
                                            @Nullable final Predicate<String> filterFn )
   {
-    try
+    return loadFromArchive( archivePath, filterFn, new PatternPool() );
+  }
+
+  @Nonnull
+  private static Collection<Rule> loadFromArchive( @Nonnull final Path archivePath,
+                                                   @Nullable final Predicate<String> filterFn,
+                                                   @Nonnull final PatternPool patterns )
+  {
+    try ( final JarFile jarFile = new JarFile( archivePath.toFile(), true, ZipFile.OPEN_READ ) )
     {
-      final JarFile jarFile = new JarFile( archivePath.toFile(), true, ZipFile.OPEN_READ );
       final Predicate<String> filter = asFilter( filterFn );
-      final List<Rule> rules = new ArrayList<>();
-      for ( final JarEntry entry : jarFile.stream().collect( Collectors.toList() ) )
+      final RuleCache cache = RuleCache.fromSystemProperty();
+      if ( null != cache )
       {
-        if ( entry.getName().startsWith( BASE_PATH ) && filter.test( entry.getName() ) )
+        final Map<String, byte[]> ruleFiles = loadRuleFiles( cache, archivePath, jarFile );
+        final List<String> entryNames = ruleFiles.keySet().stream().filter( filter ).collect( Collectors.toList() );
+        final List<Rule> rules = new ArrayList<>();
+        for ( final String entryName : preferBinaryResources( entryNames ) )
         {
-          rules.addAll( loadOmitRules( jarFile.getInputStream( entry ) ) );
+          rules.addAll( readBinaryRules( ruleFiles.get( entryName ), archivePath + "!/" + entryName, patterns ) );
         }
+        rules.addAll( readCachedBundle( ruleFiles, archivePath + "!/", filter, patterns ) );
+        return rules;
       }
+      final List<String> entryNames = jarFile
+        .stream()
+        .map( JarEntry::getName )
+        .filter( name -> name.startsWith( BASE_PATH ) && filter.test( name ) )
+        .collect( Collectors.toList() );
+      final List<Rule> rules = new ArrayList<>();
+      for ( final String entryName : preferBinaryResources( entryNames ) )
+      {
+        rules.addAll( loadOmitRules( jarFile.getInputStream( jarFile.getEntry( entryName ) ),
+                                     archivePath + "!/" + entryName,
+                                     patterns ) );
+      }
+      rules.addAll( loadBundle( archivePath, jarFile, filter, patterns ) );
       return rules;
     }
     catch ( final IOException ioe )
@@ -61,111 +206,839 @@ final class RuleLoader
     }
   }
 
+  /**
+   * Load the rules from a directory or an archive.
+   * A directory may be located in any {@link FileSystem} and is traversed directly. Any other path is opened as a
+   * zip file system, which supports archives nested within the file system of another archive. Rule files are read
+   * via the file system rather than extracted or loaded via a class loader. The rule files are parsed concurrently
+   * but the rules are returned in the order of the names of the rule files.
+   */
+  @Nonnull
+  static Collection<Rule> loadFromPath( @Nonnull final Path path, @Nullable final Predicate<String> filterFn )
+  {
+    if ( Files.isDirectory( path ) )
+    {
+      final String directory = path.toString();
+      return loadFromDirectory( path, directory.endsWith( "/" ) ? directory : directory + "/", filterFn );
+    }
+    try ( final FileSystem fileSystem = FileSystems.newFileSystem( path, (ClassLoader) null ) )
+    {
+      final Collection<Rule> rules = new ArrayList<>();
+      for ( final Path root : fileSystem.getRootDirectories() )
+      {
+        rules.addAll( loadFromDirectory( root, path + "!/", filterFn ) );
+      }
+      return rules;
+    }
+    catch ( final IOException | ProviderNotFoundException e )
+    {
+      throw new IllegalStateException( "Failed to load Grim Omit rules from " + path, e );
+    }
+  }
+
+  /**
+   * Load the rules from the rule files contained in the directory.
+   * The source of each rule is the name of the rule file prefixed with the sourcePrefix.
+   */
+  @Nonnull
+  private static Collection<Rule> loadFromDirectory( @Nonnull final Path directory,
+                                                     @Nonnull final String sourcePrefix,
+                                                     @Nullable final Predicate<String> filterFn )
+  {
+    Path baseDirectory = directory;
+    for ( final String name : BASE_PATH.split( "/" ) )
+    {
+      baseDirectory = baseDirectory.resolve( name );
+    }
+    if ( !Files.isDirectory( baseDirectory ) )
+    {
+      return new ArrayList<>();
+    }
+    final Predicate<String> filter = asFilter( filterFn );
+    final List<String> resourceNames;
+    try ( final Stream<Path> files = Files.walk( baseDirectory ) )
+    {
+      resourceNames = files
+        .filter( Files::isRegularFile )
+        .map( file -> toResourceName( directory, file ) )
+        .filter( filter )
+        .sorted()
+        .collect( Collectors.toList() );
+    }
+    catch ( final IOException | UncheckedIOException e )
+    {
+      throw new IllegalStateException( "Failed to locate Grim rules in " + directory, e );
+    }
+    final PatternPool patterns = new PatternPool();
+    final List<Rule> rules = preferBinaryResources( resourceNames )
+      .parallelStream()
+      .map( resourceName -> {
+        final String source = sourcePrefix + resourceName;
+        try
+        {
+          return loadOmitRules( Files.newInputStream( directory.resolve( resourceName ) ), source, patterns );
+        }
+        catch ( final IOException ioe )
+        {
+          throw new IllegalStateException( "Failed to load Grim Omit rules from " + source, ioe );
+        }
+      } )
+      .flatMap( Collection::stream )
+      .collect( Collectors.toList() );
+    final Path bundle = directory.resolve( BUNDLE_RESOURCE );
+    if ( Files.isRegularFile( bundle ) )
+    {
+      final String source = sourcePrefix + BUNDLE_RESOURCE;
+      try
+      {
+        rules.addAll( loadBundle( Files.newInputStream( bundle ), source, filter, patterns ) );
+      }
+      catch ( final IOException ioe )
+      {
+        throw new IllegalStateException( "Failed to load Grim Omit rules from " + source, ioe );
+      }
+    }
+    return rules;
+  }
+
+  /**
+   * Return the name of the file relative to the directory, using '/' to separate the elements of the name
+   * regardless of the separator used by the file system.
+   */
+  @Nonnull
+  private static String toResourceName( @Nonnull final Path directory, @Nonnull final Path file )
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( final Path element : directory.relativize( file ) )
+    {
+      if ( 0 != sb.length() )
+      {
+        sb.append( '/' );
+      }
+      sb.append( element );
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Load the rules from the class loader.
+   * The rule files of each classpath entry are located as described by
+   * {@link #locateRoots(ClassLoader, Predicate)} and each rule file is read from the classpath entry that
+   * contains it.
+   */
   @Nonnull
   static Collection<Rule> loadFromClassLoader( @Nonnull final ClassLoader classLoader,
                                                @Nullable final Predicate<String> filterFn )
   {
-    final List<String> resourceNames = new ArrayList<>();
-    collectResourceNames( classLoader, BASE_PATH, asFilter( filterFn ), resourceNames );
-
+    final Predicate<String> filter = asFilter( filterFn );
+    final PatternPool patterns = new PatternPool();
     final List<Rule> rules = new ArrayList<>();
-    for ( final String resourceName : resourceNames )
+    final RuleCache cache = RuleCache.fromSystemProperty();
+    for ( final RuleRoot root : locateRoots( classLoader, filter ) )
+    {
+      final List<String> resourceNames = root.getResourceNames();
+      final Map<String, byte[]> ruleFiles =
+        null != cache && !resourceNames.isEmpty() ? loadRuleFiles( cache, root.getBase() ) : null;
+      for ( final String resourceName : resourceNames )
+      {
+        try
+        {
+          if ( null != ruleFiles )
+          {
+            final byte[] data = ruleFiles.get( resourceName );
+            if ( null == data )
+            {
+              throw new IOException( "Failed to locate grim rules for resource " + resourceName );
+            }
+            rules.addAll( readBinaryRules( data, resourceName, patterns ) );
+          }
+          else
+          {
+            rules.addAll( loadOmitRules( root.resolve( resourceName ).openStream(), resourceName, patterns ) );
+          }
+        }
+        catch ( final IOException ioe )
+        {
+          throw new IllegalStateException( "Failed to load Grim Omit rules from " + resourceName, ioe );
+        }
+      }
+    }
+    for ( final URL bundle : findResources( classLoader, BUNDLE_RESOURCE ) )
     {
       try
       {
-        final InputStream resourceStream = classLoader.getResourceAsStream( resourceName );
-        if ( null == resourceStream )
+        final Map<String, byte[]> ruleFiles = null != cache ? loadRuleFiles( cache, bundle ) : null;
+        rules.addAll( null != ruleFiles ?
+                      readCachedBundle( ruleFiles, "", filter, patterns ) :
+                      loadBundle( bundle.openStream(), BUNDLE_RESOURCE, filter, patterns ) );
+      }
+      catch ( final IOException ioe )
+      {
+        throw new IllegalStateException( "Failed to load Grim Omit rules from " + bundle, ioe );
+      }
+    }
+    return rules;
+  }
+
+  /**
+   * Locate the rule files available from the class loader without loading them.
+   * The rule files are located in the same way as {@link #loadFromClassLoader(ClassLoader, Predicate)}
+   * and are returned in the order that method would load them.
+   */
+  @Nonnull
+  static List<RuleResource> locateInClassLoader( @Nonnull final ClassLoader classLoader,
+                                                 @Nullable final Predicate<String> filterFn )
+  {
+    final Predicate<String> filter = asFilter( filterFn );
+    final List<RuleResource> resources = new ArrayList<>();
+    try
+    {
+      for ( final RuleRoot root : locateRoots( classLoader, filter ) )
+      {
+        for ( final String resourceName : root.getResourceNames() )
         {
-          throw new IOException( "Failed to locate grim rules for resource " + resourceName );
+          resources.add( new RuleResource( resourceName, root.resolve( resourceName ), false ) );
         }
-        rules.addAll( loadOmitRules( resourceStream ) );
+      }
+    }
+    catch ( final IOException ioe )
+    {
+      throw new IllegalStateException( "Failed to locate Grim rules", ioe );
+    }
+    for ( final URL bundle : findResources( classLoader, BUNDLE_RESOURCE ) )
+    {
+      final List<String> entryNames = new ArrayList<>();
+      try
+      {
+        // Every entry is rejected so that only the names of the entries are collected and no rules are parsed
+        loadBundle( bundle.openStream(), BUNDLE_RESOURCE, name -> {
+          if ( filter.test( name ) )
+          {
+            entryNames.add( name );
+          }
+          return false;
+        }, new PatternPool() );
       }
       catch ( final IOException ioe )
       {
-        throw new IllegalStateException( "Failed to load Grim Omit rules from " + resourceName, ioe );
+        throw new IllegalStateException( "Failed to locate Grim rules in " + bundle, ioe );
+      }
+      for ( final String entryName : entryNames )
+      {
+        resources.add( new RuleResource( entryName, bundle, true ) );
+      }
+    }
+    return resources;
+  }
+
+  /**
+   * Locate the rule files in each classpath entry of the class loader that contains grim rules.
+   * The rule files of a classpath entry that contains an index are those listed in the index. The rule files of
+   * any other classpath entry are located by traversing the grim directory of the entry, so libraries built
+   * without an index (i.e. without the <code>grim.emit_index</code> annotation processor option) are located
+   * alongside libraries that have an index. Classpath entries are returned in the order of
+   * the classpath followed by any archive that lacks directory entries and so is only located via the index.
+   */
+  @Nonnull
+  private static List<RuleRoot> locateRoots( @Nonnull final ClassLoader classLoader,
+                                             @Nonnull final Predicate<String> filter )
+  {
+    final Map<String, URL> indexes = new LinkedHashMap<>();
+    for ( final URL index : findResources( classLoader, INDEX_RESOURCE ) )
+    {
+      indexes.putIfAbsent( toDirectoryName( index ), index );
+    }
+    final List<RuleRoot> roots = new ArrayList<>();
+    try
+    {
+      for ( final URL directory : findResources( classLoader, BASE_PATH ) )
+      {
+        final URL base =
+          directory.getPath().endsWith( "/" ) ?
+          directory :
+          new URL( directory, BASE_PATH.substring( BASE_PATH.lastIndexOf( '/' ) + 1 ) + "/" );
+        final URL index = indexes.remove( toDirectoryName( base ) );
+        roots.add( null != index ?
+                   new RuleRoot( index, readIndex( index, filter ) ) :
+                   new RuleRoot( base, collectResourceNames( base, filter ) ) );
+      }
+    }
+    catch ( final IOException ioe )
+    {
+      throw new IllegalStateException( "Failed to locate Grim rules", ioe );
+    }
+    for ( final URL index : indexes.values() )
+    {
+      roots.add( new RuleRoot( index, readIndex( index, filter ) ) );
+    }
+    return roots;
+  }
+
+  /**
+   * Return the url of the directory containing the resource identified by the url, including the trailing '/'.
+   */
+  @Nonnull
+  private static String toDirectoryName( @Nonnull final URL url )
+  {
+    final String name = url.toString();
+    return name.substring( 0, name.lastIndexOf( '/' ) + 1 );
+  }
+
+  @Nonnull
+  private static Set<URL> findResources( @Nonnull final ClassLoader classLoader, @Nonnull final String name )
+  {
+    try
+    {
+      return new LinkedHashSet<>( Collections.list( classLoader.getResources( name ) ) );
+    }
+    catch ( final IOException ioe )
+    {
+      throw new IllegalStateException( "Failed to locate Grim resources named " + name, ioe );
+    }
+  }
+
+  /**
+   * Return the cached rule files of the archive containing the resource identified by the url or null if the
+   * resource is not contained in an archive on the local filesystem.
+   */
+  @Nullable
+  private static Map<String, byte[]> loadRuleFiles( @Nonnull final RuleCache cache, @Nonnull final URL url )
+  {
+    final Path archivePath;
+    try
+    {
+      final URLConnection connection = url.openConnection();
+      if ( !( connection instanceof JarURLConnection ) )
+      {
+        return null;
+      }
+      final URL archiveUrl = ( (JarURLConnection) connection ).getJarFileURL();
+      if ( !"file".equals( archiveUrl.getProtocol() ) )
+      {
+        return null;
+      }
+      archivePath = Paths.get( archiveUrl.toURI() );
+    }
+    catch ( final IOException | URISyntaxException e )
+    {
+      return null;
+    }
+    try ( final JarFile jarFile = new JarFile( archivePath.toFile(), true, ZipFile.OPEN_READ ) )
+    {
+      return loadRuleFiles( cache, archivePath, jarFile );
+    }
+    catch ( final IOException ioe )
+    {
+      throw new IllegalStateException( "Failed to load Grim Omit rules from " + archivePath, ioe );
+    }
+  }
+
+  @Nonnull
+  private static Map<String, byte[]> loadRuleFiles( @Nonnull final RuleCache cache,
+                                                    @Nonnull final Path archivePath,
+                                                    @Nonnull final JarFile jarFile )
+    throws IOException
+  {
+    // The rules parsed here are only encoded into the cache so the patterns are not shared with the loaded rules
+    final PatternPool patterns = new PatternPool();
+    return cache.get( archivePath,
+                      jarFile,
+                      name -> BUNDLE_RESOURCE.equals( name ) ||
+                              ( name.startsWith( BASE_PATH ) && GRIM_FILE_MATCHER.test( name ) ),
+                      entry -> parseRuleFile( archivePath, jarFile, entry, patterns ) );
+  }
+
+  /**
+   * Parse the rules of a rule file in the archive, keyed by the name of the rule file.
+   * The rules of a bundle are keyed by the name of the bundle followed by '#' and the name of each entry.
+   */
+  @Nonnull
+  private static Map<String, List<Rule>> parseRuleFile( @Nonnull final Path archivePath,
+                                                        @Nonnull final JarFile jarFile,
+                                                        @Nonnull final JarEntry entry,
+                                                        @Nonnull final PatternPool patterns )
+    throws IOException
+  {
+    final String source = archivePath + "!/" + entry.getName();
+    if ( BUNDLE_RESOURCE.equals( entry.getName() ) )
+    {
+      final Map<String, List<Rule>> ruleFiles = new LinkedHashMap<>();
+      try ( final InputStream inputStream = jarFile.getInputStream( entry ) )
+      {
+        parseBundle( inputStream, source, name -> true, patterns, ruleFiles::put );
+      }
+      return ruleFiles;
+    }
+    else
+    {
+      return Collections.singletonMap( entry.getName(),
+                                       loadOmitRules( jarFile.getInputStream( entry ), source, patterns ) );
+    }
+  }
+
+  /**
+   * Read the cached rules of the entries of the bundle that are accepted by the filter.
+   * The source of each rule is the name of the entry in the cache prefixed by the specified prefix.
+   */
+  @Nonnull
+  private static List<Rule> readCachedBundle( @Nonnull final Map<String, byte[]> ruleFiles,
+                                              @Nonnull final String sourcePrefix,
+                                              @Nonnull final Predicate<String> filter,
+                                              @Nonnull final PatternPool patterns )
+    throws IOException
+  {
+    final List<Rule> rules = new ArrayList<>();
+    for ( final Map.Entry<String, byte[]> entry : ruleFiles.entrySet() )
+    {
+      final String name = entry.getKey();
+      if ( name.startsWith( BUNDLE_ENTRY_PREFIX ) &&
+           filter.test( toBundleRuleFileName( name.substring( BUNDLE_ENTRY_PREFIX.length() ) ) ) )
+      {
+        rules.addAll( readBinaryRules( entry.getValue(), sourcePrefix + name, patterns ) );
       }
     }
     return rules;
   }
 
-  private static void collectResourceNames( @Nonnull final ClassLoader classLoader,
-                                            @Nonnull final String base,
-                                            @Nonnull final Predicate<String> acceptResource,
-                                            @Nonnull final List<String> resources )
+  /**
+   * Return the names of the resources listed in the index that are accepted by the filter.
+   */
+  @Nonnull
+  private static List<String> readIndex( @Nonnull final URL index, @Nonnull final Predicate<String> acceptResource )
   {
-    final InputStream resourceStream = classLoader.getResourceAsStream( base );
-    if ( null != resourceStream )
+    final List<String> resources = new ArrayList<>();
+    try ( final BufferedReader reader = toReader( index.openStream() ) )
     {
-      try ( final BufferedReader reader = toReader( resourceStream ) )
+      String line;
+      while ( null != ( line = reader.readLine() ) )
       {
-        String line;
-        while ( null != ( line = reader.readLine() ) )
+        final String entry = line.trim();
+        if ( entry.isEmpty() )
         {
-          final String resource = base + "/" + line;
-          if ( acceptResource.test( resource ) )
+          continue;
+        }
+        // Entries are resolved relative to the index so they must not be able to escape the grim directory
+        if ( entry.startsWith( "/" ) || entry.contains( ":" ) || ( "/" + entry + "/" ).contains( "/../" ) )
+        {
+          throw new IOException( "Grim index contains the invalid entry '" + entry + "'" );
+        }
+        final String resource = BASE_PATH + "/" + entry;
+        if ( acceptResource.test( resource ) )
+        {
+          resources.add( resource );
+        }
+      }
+    }
+    catch ( final IOException ioe )
+    {
+      throw new IllegalStateException( "Failed to read Grim index " + index, ioe );
+    }
+    return resources;
+  }
+
+  /**
+   * Return the names of the rule files in the grim directory identified by the url, relative to the root of the
+   * classpath entry and sorted by name. The entries of an archive are enumerated directly and any other directory
+   * is traversed via the listing returned when the directory is read, which is supported by the "file" protocol.
+   */
+  @Nonnull
+  private static List<String> collectResourceNames( @Nonnull final URL directory,
+                                                    @Nonnull final Predicate<String> acceptResource )
+    throws IOException
+  {
+    final List<String> resources = new ArrayList<>();
+    final URLConnection connection = directory.openConnection();
+    if ( connection instanceof JarURLConnection )
+    {
+      // The archive is opened without the shared cache so that it can be closed once it has been enumerated
+      connection.setUseCaches( false );
+      try ( final JarFile jarFile = ( (JarURLConnection) connection ).getJarFile() )
+      {
+        jarFile
+          .stream()
+          .filter( entry -> !entry.isDirectory() )
+          .map( JarEntry::getName )
+          .filter( name -> name.startsWith( BASE_PATH + "/" ) && acceptResource.test( name ) )
+          .forEach( resources::add );
+      }
+    }
+    else
+    {
+      collectListedResourceNames( directory, BASE_PATH, acceptResource, resources );
+    }
+    Collections.sort( resources );
+    return resources;
+  }
+
+  private static void collectListedResourceNames( @Nonnull final URL directory,
+                                                  @Nonnull final String base,
+                                                  @Nonnull final Predicate<String> acceptResource,
+                                                  @Nonnull final List<String> resources )
+    throws IOException
+  {
+    try ( final BufferedReader reader = toReader( directory.openStream() ) )
+    {
+      String line;
+      while ( null != ( line = reader.readLine() ) )
+      {
+        final String resource = base + "/" + line;
+        if ( acceptResource.test( resource ) )
+        {
+          resources.add( resource );
+        }
+        else if ( SourceVersion.isIdentifier( line ) )
+        {
+          collectListedResourceNames( new URL( directory, line + "/" ), resource, acceptResource, resources );
+        }
+      }
+    }
+  }
+
+  /**
+   * Remove the json resources that have a corresponding binary resource as the binary resource contains the same
+   * rules and is cheaper to load.
+   */
+  @Nonnull
+  private static List<String> preferBinaryResources( @Nonnull final List<String> resourceNames )
+  {
+    final Set<String> names = new HashSet<>( resourceNames );
+    return resourceNames
+      .stream()
+      .filter( name -> !name.endsWith( FILE_SUFFIX ) ||
+                       !names.contains( name.substring( 0, name.length() - FILE_SUFFIX.length() ) +
+                                        BINARY_FILE_SUFFIX ) )
+      .collect( Collectors.toList() );
+  }
+
+  @Nonnull
+  private static List<Rule> loadOmitRules( @Nonnull final InputStream inputStream,
+                                           @Nonnull final String source,
+                                           @Nonnull final PatternPool patterns )
+    throws IOException
+  {
+    if ( source.endsWith( BINARY_FILE_SUFFIX ) )
+    {
+      try ( final InputStream input = inputStream )
+      {
+        return readBinaryRules( input.readAllBytes(), source, patterns );
+      }
+    }
+    final boolean validatePatterns = shouldValidatePatterns();
+    // Rules are parsed as a stream of events and each rule is created as the object that defines it is closed,
+    // so the rules of a file are never held in memory as json values
+    try ( final JsonParser parser = Json.createParser( inputStream ) )
+    {
+      if ( JsonParser.Event.START_ARRAY != parser.next() )
+      {
+        throw new IOException( "Grim rules are not contained in a json array" );
+      }
+      return parseOmitRules( parser, source, patterns, validatePatterns );
+    }
+    catch ( final JsonException | NoSuchElementException e )
+    {
+      throw new IOException( "Grim rules contain malformed json", e );
+    }
+  }
+
+  /**
+   * Read and verify the rules in the binary rule format.
+   * The rules in the cache are verified in the same way as the rules of a rule file, as the cache may have been
+   * populated by a process that did not validate patterns.
+   */
+  @Nonnull
+  private static List<Rule> readBinaryRules( @Nonnull final byte[] data,
+                                             @Nonnull final String source,
+                                             @Nonnull final PatternPool patterns )
+    throws IOException
+  {
+    final List<Rule> rules = BinaryRuleReader.read( ByteBuffer.wrap( data ), source, patterns );
+    final boolean validatePatterns = shouldValidatePatterns();
+    for ( int i = 0; i < rules.size(); i++ )
+    {
+      verifyRule( i, rules.get( i ), validatePatterns );
+    }
+    return rules;
+  }
+
+  /**
+   * Load the rules from the bundle in the archive, if present.
+   */
+  @Nonnull
+  private static List<Rule> loadBundle( @Nonnull final Path archivePath,
+                                        @Nonnull final JarFile jarFile,
+                                        @Nonnull final Predicate<String> filter,
+                                        @Nonnull final PatternPool patterns )
+    throws IOException
+  {
+    final JarEntry entry = jarFile.getJarEntry( BUNDLE_RESOURCE );
+    return null == entry ?
+           new ArrayList<>() :
+           loadBundle( jarFile.getInputStream( entry ), archivePath + "!/" + BUNDLE_RESOURCE, filter, patterns );
+  }
+
+  /**
+   * Load the rules from a bundle.
+   * The filter is applied to the name of the rule file that each entry in the bundle replaces and the rules of
+   * entries that are not accepted are skipped without being parsed. The source of each rule is the source of the
+   * bundle followed by '#' and the name of the entry.
+   */
+  @Nonnull
+  private static List<Rule> loadBundle( @Nonnull final InputStream inputStream,
+                                        @Nonnull final String source,
+                                        @Nonnull final Predicate<String> filter,
+                                        @Nonnull final PatternPool patterns )
+    throws IOException
+  {
+    final List<Rule> rules = new ArrayList<>();
+    parseBundle( inputStream, source, filter, patterns, ( name, entryRules ) -> rules.addAll( entryRules ) );
+    return rules;
+  }
+
+  /**
+   * Parse the entries of a bundle that are accepted by the filter, passing the rules of each entry to the
+   * consumer in the order that the entries appear in the bundle.
+   */
+  private static void parseBundle( @Nonnull final InputStream inputStream,
+                                   @Nonnull final String source,
+                                   @Nonnull final Predicate<String> filter,
+                                   @Nonnull final PatternPool patterns,
+                                   @Nonnull final BiConsumer<String, List<Rule>> consumer )
+    throws IOException
+  {
+    final boolean validatePatterns = shouldValidatePatterns();
+    try ( final JsonParser parser = Json.createParser( inputStream ) )
+    {
+      if ( JsonParser.Event.START_OBJECT != parser.next() )
+      {
+        throw new IOException( "Grim bundle is not a json object" );
+      }
+      while ( JsonParser.Event.END_OBJECT != parser.next() )
+      {
+        final String name = parser.getString();
+        if ( JsonParser.Event.START_ARRAY != parser.next() )
+        {
+          throw new IOException( "Grim bundle entry '" + name + "' is not a json array" );
+        }
+        if ( filter.test( toBundleRuleFileName( name ) ) )
+        {
+          try
           {
-            resources.add( resource );
+            consumer.accept( BUNDLE_ENTRY_PREFIX + name,
+                             parseOmitRules( parser, source + "#" + name, patterns, validatePatterns ) );
           }
-          else if ( SourceVersion.isIdentifier( line ) )
+          catch ( final IOException ioe )
           {
-            collectResourceNames( classLoader, resource, acceptResource, resources );
+            throw new IOException( "Grim bundle entry '" + name + "' is invalid", ioe );
           }
         }
+        else
+        {
+          parser.skipArray();
+        }
       }
-      catch ( final IOException ioe )
-      {
-        throw new IllegalStateException( "Failed to read grim metadata directory", ioe );
-      }
     }
+    catch ( final JsonException | NoSuchElementException e )
+    {
+      throw new IOException( "Grim bundle contains malformed json", e );
+    }
+  }
+
+  /**
+   * Return the name of the rule file that the entry of a bundle replaces.
+   */
+  @Nonnull
+  private static String toBundleRuleFileName( @Nonnull final String entryName )
+  {
+    return BASE_PATH + "/" + entryName + FILE_SUFFIX;
   }
 
+  /**
+   * Parse the rules from the events of the parser up to and including the event that closes the array
+   * containing the rules. The event that opens the array must already have been consumed.
+   */
   @Nonnull
-  private static List<Rule> loadOmitRules( @Nonnull final InputStream inputStream )
+  private static List<Rule> parseOmitRules( @Nonnull final JsonParser parser,
+                                            @Nonnull final String source,
+                                            @Nonnull final PatternPool patterns,
+                                            final boolean validatePatterns )
     throws IOException
   {
     final List<Rule> rules = new ArrayList<>();
-    try ( final JsonReader reader = Json.createReader( inputStream ) )
+    JsonParser.Event event;
+    while ( JsonParser.Event.END_ARRAY != ( event = parser.next() ) )
     {
-      final JsonArray ruleArray = reader.readArray();
-      final int size = ruleArray.size();
-      for ( int i = 0; i < size; i++ )
+      final int ruleIndex = rules.size();
+      if ( JsonParser.Event.START_OBJECT != event )
       {
-        rules.add( parseOmitRule( i, ruleArray.getJsonObject( i ) ) );
+        throw new IOException( "Grim rule at index " + ruleIndex + " is not a json object" );
       }
+      final Rule rule = parseOmitRule( ruleIndex, parser, source, patterns );
+      verifyRule( ruleIndex, rule, validatePatterns );
+      rules.add( rule );
     }
     return rules;
   }
 
+  /**
+   * Parse a rule from the events of the parser up to and including the event that closes the rule object.
+   * Properties that are unknown or that have values of an unexpected type are ignored.
+   * The annotation processor emits the names matched by the patterns it generates in the "typeName" and
+   * "memberName" properties, alongside the regular expressions in the "type" and "member" properties. The names
+   * take precedence so that the patterns are created from the names without parsing the regular expressions.
+   */
   @Nonnull
-  private static Rule parseOmitRule( final int ruleIndex, @Nonnull final JsonObject ruleObject )
+  private static Rule parseOmitRule( final int ruleIndex,
+                                    @Nonnull final JsonParser parser,
+                                    @Nonnull final String source,
+                                    @Nonnull final PatternPool patterns )
     throws IOException
   {
-    final String type = ruleObject.getString( "type" );
-    final boolean omit = !ruleObject.getBoolean( "keep", false );
-    final String member = ruleObject.getString( "member", null );
-    final String property = ruleObject.getString( "property", null );
-    final String value = ruleObject.getString( "value", null );
-    final String operator = ruleObject.getString( "operator", null );
+    String type = null;
+    String typeName = null;
+    boolean omit = true;
+    String member = null;
+    String memberName = null;
+    boolean devirtualized = false;
+    String property = null;
+    String value = null;
+    String operator = null;
+    while ( JsonParser.Event.END_OBJECT != parser.next() )
+    {
+      final String key = parser.getString();
+      final JsonParser.Event event = parser.next();
+      switch ( key )
+      {
+        case "type":
+          type = readString( parser, event );
+          break;
+        case "keep":
+          omit = JsonParser.Event.VALUE_TRUE != event;
+          skipValue( parser, event );
+          break;
+        case "typeName":
+          typeName = readString( parser, event );
+          break;
+        case "member":
+          member = readString( parser, event );
+          break;
+        case "memberName":
+          memberName = readString( parser, event );
+          break;
+        case "devirtualized":
+          devirtualized = JsonParser.Event.VALUE_TRUE == event;
+          skipValue( parser, event );
+          break;
+        case "property":
+          property = readString( parser, event );
+          break;
+        case "value":
+          value = readString( parser, event );
+          break;
+        case "operator":
+          operator = readString( parser, event );
+          break;
+        default:
+          skipValue( parser, event );
+          break;
+      }
+    }
+    if ( null == type && null == typeName )
+    {
+      throw new IOException( "Grim rule at index " + ruleIndex + " does not specify a type" );
+    }
     if ( ( null != property || null != value || null != operator ) &&
          ( null == property || null == value || null == operator ) )
     {
       throw new IOException( "Grim rule at index " + ruleIndex + " contains a partially defined operator" );
     }
-    try
+    return new Rule( omit,
+                     null != typeName ? patterns.intern( typeName, false ) : patterns.intern( type ),
+                     null != memberName ? patterns.intern( memberName, devirtualized ) :
+                     null != member ? patterns.intern( member ) :
+                     null,
+                     null == property ? null : new Condition( property, value, operator.equals( "EQ" ) ),
+                     source );
+  }
+
+  /**
+   * Return the value if the event is a string value, otherwise skip the value and return null.
+   */
+  @Nullable
+  private static String readString( @Nonnull final JsonParser parser, @Nonnull final JsonParser.Event event )
+  {
+    if ( JsonParser.Event.VALUE_STRING == event )
     {
-      return new Rule( omit,
-                       Pattern.compile( type ),
-                       null == member ? null : Pattern.compile( member ),
-                       null == property ?
-                       null :
-                       new Condition( property, value, operator.equals( "EQ" ) ) );
+      return parser.getString();
+    }
+    else
+    {
+      skipValue( parser, event );
+      return null;
+    }
+  }
+
+  /**
+   * Skip the remainder of the value that starts with the event.
+   */
+  private static void skipValue( @Nonnull final JsonParser parser, @Nonnull final JsonParser.Event event )
+  {
+    if ( JsonParser.Event.START_OBJECT == event )
+    {
+      parser.skipObject();
+    }
+    else if ( JsonParser.Event.START_ARRAY == event )
+    {
+      parser.skipArray();
+    }
+  }
+
+  private static void verifyRule( final int ruleIndex, @Nonnull final Rule rule, final boolean validatePatterns )
+    throws IOException
+  {
+    final NameMatcher typeMatcher = rule.getTypeMatcher();
+    final NameMatcher memberMatcher = rule.getMemberMatcher();
+    if ( validatePatterns )
+    {
+      try
+      {
+        validatePattern( typeMatcher );
+        if ( null != memberMatcher )
+        {
+          validatePattern( memberMatcher );
+        }
+      }
+      catch ( final PatternSyntaxException pse )
+      {
+        throw new IOException( "Grim rule at index " + ruleIndex + " contains a pattern with a syntax error", pse );
+      }
     }
-    catch ( final PatternSyntaxException pse )
+    // Rules may originate from any library on the classpath so patterns that can backtrack
+    // catastrophically are rejected rather than allowed to stall verification
+    if ( !typeMatcher.isSafe() || ( null != memberMatcher && !memberMatcher.isSafe() ) )
     {
-      throw new IOException( "Grim rule at index " + ruleIndex + " contains a pattern with a syntax error", pse );
+      throw new IOException( "Grim rule at index " + ruleIndex + " contains a pattern with nested " +
+                             "quantifiers that may require exponential time to match" );
     }
   }
 
+  /**
+   * Compile the pattern if it is a general pattern that was not created from a name.
+   * The other kinds of pattern are only classified as such if they are well-formed so they are never compiled.
+   * The compiled pattern is retained by the shared {@link RulePattern} so a pattern is compiled at most once.
+   */
+  private static void validatePattern( @Nonnull final NameMatcher matcher )
+  {
+    if ( PatternKind.GENERAL == matcher.getKind() && null == matcher.getRulePattern().getName() )
+    {
+      matcher.getPattern();
+    }
+  }
+
+  private static boolean shouldValidatePatterns()
+  {
+    return !"false".equals( System.getProperty( VALIDATE_PATTERNS_PROPERTY ) );
+  }
+
   @Nonnull
   private static Predicate<String> asFilter( @Nullable final Predicate<String> filterFn )
   {
@@ -173,11 +1046,182 @@ final class RuleLoader
            GRIM_FILE_MATCHER :
            GRIM_FILE_MATCHER.and( resource -> {
              final int beginIndex = BASE_PATH.length() + 1;
-             final int endIndex = resource.length() - FILE_SUFFIX.length();
+             final int endIndex =
+               resource.length() - ( resource.endsWith( FILE_SUFFIX ) ? FILE_SUFFIX : BINARY_FILE_SUFFIX ).length();
              return filterFn.test( resource.substring( beginIndex, endIndex ).replace( "/", "." ) );
            } );
   }
 
+  /**
+   * The rule files located in a classpath entry.
+   */
+  private static final class RuleRoot
+  {
+    /**
+     * The url that the names of the rule files, relative to {@link #BASE_PATH}, are resolved against.
+     */
+    @Nonnull
+    private final URL _base;
+    /**
+     * The names of the rule files relative to the root of the classpath entry.
+     */
+    @Nonnull
+    private final List<String> _resourceNames;
+
+    RuleRoot( @Nonnull final URL base, @Nonnull final List<String> resourceNames )
+    {
+      _base = base;
+      _resourceNames = preferBinaryResources( resourceNames );
+    }
+
+    @Nonnull
+    URL getBase()
+    {
+      return _base;
+    }
+
+    @Nonnull
+    List<String> getResourceNames()
+    {
+      return _resourceNames;
+    }
+
+    @Nonnull
+    URL resolve( @Nonnull final String resourceName )
+      throws MalformedURLException
+    {
+      return new URL( _base, resourceName.substring( BASE_PATH.length() + 1 ) );
+    }
+  }
+
+  /**
+   * Load the rules of the resources.
+   * The rules of the resources that are entries of a bundle are loaded in a single pass over each bundle and are
+   * returned after the rules of the other resources.
+   */
+  @Nonnull
+  static List<Rule> loadResources( @Nonnull final Collection<RuleResource> resources,
+                                   @Nonnull final PatternPool patterns )
+  {
+    final List<Rule> rules = new ArrayList<>();
+    final Map<URL, Set<String>> bundles = new LinkedHashMap<>();
+    for ( final RuleResource resource : resources )
+    {
+      if ( resource.isBundleEntry() )
+      {
+        bundles.computeIfAbsent( resource.getUrl(), url -> new HashSet<>() ).add( resource.getName() );
+      }
+      else
+      {
+        rules.addAll( resource.load( patterns ) );
+      }
+    }
+    for ( final Map.Entry<URL, Set<String>> bundle : bundles.entrySet() )
+    {
+      try
+      {
+        rules.addAll( loadBundle( bundle.getKey().openStream(),
+                                  BUNDLE_RESOURCE,
+                                  bundle.getValue()::contains,
+                                  patterns ) );
+      }
+      catch ( final IOException ioe )
+      {
+        throw new IllegalStateException( "Failed to load Grim Omit rules from " + bundle.getKey(), ioe );
+      }
+    }
+    return rules;
+  }
+
+  /**
+   * A rule file that has been located but not loaded.
+   * The rule file is either a resource or an entry of a bundle that replaces the rule file.
+   */
+  static final class RuleResource
+  {
+    /**
+     * The name of the rule file relative to the root of the classpath.
+     */
+    @Nonnull
+    private final String _name;
+    /**
+     * The url of the rule file or of the bundle that contains the entry.
+     */
+    @Nonnull
+    private final URL _url;
+    /**
+     * True if the rule file is an entry of the bundle identified by the url.
+     */
+    private final boolean _bundleEntry;
+
+    RuleResource( @Nonnull final String name, @Nonnull final URL url, final boolean bundleEntry )
+    {
+      _name = name;
+      _url = url;
+      _bundleEntry = bundleEntry;
+    }
+
+    @Nonnull
+    String getName()
+    {
+      return _name;
+    }
+
+    @Nonnull
+    URL getUrl()
+    {
+      return _url;
+    }
+
+    /**
+     * Return the name of the package that the rule file is located in.
+     *
+     * @return the name of the package that the rule file is located in.
+     */
+    @Nonnull
+    String getPackageName()
+    {
+      final int index = _name.lastIndexOf( '/' );
+      return index <= BASE_PATH.length() ? "" : _name.substring( BASE_PATH.length() + 1, index ).replace( '/', '.' );
+    }
+
+    /**
+     * Return true if the rule file contains the rules declared on a package.
+     *
+     * @return true if the rule file contains the rules declared on a package.
+     */
+    boolean isPackageInfo()
+    {
+      final String filename = _name.substring( _name.lastIndexOf( '/' ) + 1 );
+      return filename.equals( "package-info" + FILE_SUFFIX ) || filename.equals( "package-info" + BINARY_FILE_SUFFIX );
+    }
+
+    /**
+     * Return true if the rule file is an entry of a bundle.
+     *
+     * @return true if the rule file is an entry of a bundle.
+     */
+    boolean isBundleEntry()
+    {
+      return _bundleEntry;
+    }
+
+    @Nonnull
+    List<Rule> load( @Nonnull final PatternPool patterns )
+    {
+      try
+      {
+        return _bundleEntry ?
+               loadBundle( _url.openStream(), BUNDLE_RESOURCE, _name::equals, patterns ) :
+               loadOmitRules( _url.openStream(), _name, patterns );
+      }
+      catch ( final IOException ioe )
+      {
+        throw new IllegalStateException( "Failed to load Grim Omit rules from " + _name, ioe );
+      }
+    }
+  }
+
   @Nonnull
   private static BufferedReader toReader( @Nonnull final InputStream resourceStream )
   {
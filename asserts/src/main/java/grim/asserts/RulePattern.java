@@ -0,0 +1,163 @@
+package grim.asserts;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A regular expression that appears in a rule and that is compiled the first time it is required.
+ * Most patterns are literal, prefix or glob patterns that are matched without <code>java.util.regex</code>
+ * (see {@link PatternKind}) so the {@link Pattern} is only compiled if a general pattern is evaluated or the
+ * pattern is requested via {@link Rule#getType()} or {@link Rule#getMember()}.
+ *
+ * @see PatternPool
+ */
+final class RulePattern
+{
+  @Nonnull
+  private final String _regex;
+  private final int _flags;
+  /**
+   * The name matched if the pattern was created from a name rather than a regular expression, otherwise null.
+   */
+  @Nullable
+  private final String _name;
+  /**
+   * True if the pattern was created from a name and also matches the name prefixed with <code>$</code>.
+   */
+  private final boolean _devirtualized;
+  /**
+   * The compiled pattern if it has been compiled.
+   * Concurrent callers may compile the pattern more than once but every compiled pattern is equivalent.
+   */
+  @Nullable
+  private volatile Pattern _pattern;
+  /**
+   * The matcher derived from the pattern if it has been created.
+   * The matcher is shared by every rule that contains the pattern so the pattern is only classified once.
+   */
+  @Nullable
+  private volatile NameMatcher _matcher;
+
+  RulePattern( @Nonnull final Pattern pattern )
+  {
+    _regex = pattern.pattern();
+    _flags = pattern.flags();
+    _name = null;
+    _devirtualized = false;
+    _pattern = pattern;
+  }
+
+  RulePattern( @Nonnull final String regex )
+  {
+    _regex = Objects.requireNonNull( regex );
+    _flags = 0;
+    _name = null;
+    _devirtualized = false;
+  }
+
+  /**
+   * Create a pattern that matches the name and, if devirtualized is true, the name prefixed with <code>$</code>.
+   * The regular expression is the same as the annotation processor generates for the name, but the pattern is
+   * classified from the name so the regular expression is never parsed.
+   *
+   * @param name          the name.
+   * @param devirtualized true if the pattern also matches the name prefixed with <code>$</code>.
+   */
+  RulePattern( @Nonnull final String name, final boolean devirtualized )
+  {
+    _regex = toRegex( name, devirtualized );
+    _flags = 0;
+    _name = name;
+    _devirtualized = devirtualized;
+  }
+
+  /**
+   * Return the regular expression that matches the name and, if devirtualized is true, the name prefixed
+   * with <code>$</code>.
+   */
+  @Nonnull
+  static String toRegex( @Nonnull final String name, final boolean devirtualized )
+  {
+    return ( devirtualized ? "^\\$?" : "^" ) + Pattern.quote( name ) + "$";
+  }
+
+  @Nonnull
+  String getRegex()
+  {
+    return _regex;
+  }
+
+  int getFlags()
+  {
+    return _flags;
+  }
+
+  /**
+   * Return the name matched if the pattern was created from a name, otherwise null.
+   *
+   * @return the name matched if the pattern was created from a name, otherwise null.
+   */
+  @Nullable
+  String getName()
+  {
+    return _name;
+  }
+
+  /**
+   * Return true if the pattern was created from a name and also matches the name prefixed with <code>$</code>.
+   *
+   * @return true if the pattern was created from a name and also matches the name prefixed with <code>$</code>.
+   */
+  boolean isDevirtualized()
+  {
+    return _devirtualized;
+  }
+
+  /**
+   * Return true if the pattern has been compiled.
+   *
+   * @return true if the pattern has been compiled.
+   */
+  boolean isCompiled()
+  {
+    return null != _pattern;
+  }
+
+  /**
+   * Return the compiled pattern, compiling the pattern if it has not already been compiled.
+   *
+   * @return the compiled pattern.
+   * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid.
+   */
+  @Nonnull
+  Pattern getPattern()
+  {
+    Pattern pattern = _pattern;
+    if ( null == pattern )
+    {
+      pattern = Pattern.compile( _regex, _flags );
+      _pattern = pattern;
+    }
+    return pattern;
+  }
+
+  @Nonnull
+  NameMatcher getMatcher()
+  {
+    NameMatcher matcher = _matcher;
+    if ( null == matcher )
+    {
+      matcher = new NameMatcher( this );
+      _matcher = matcher;
+    }
+    return matcher;
+  }
+
+  @Override
+  public String toString()
+  {
+    return _regex;
+  }
+}
@@ -0,0 +1,228 @@
+package grim.asserts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Removes rules that can never alter the result of matching a symbol against a collection of rules.
+ * A rule is removed if it is identical to an earlier rule (i.e. it has the same omit flag, type pattern,
+ * member pattern and condition) or if it is subsumed by a type-level rule (i.e. a rule without a member
+ * pattern) with the same omit flag that matches every type matched by the rule and that has the same
+ * condition or no condition. A type-level rule subsumes a rule if:
+ *
+ * <ul>
+ *   <li>both rules have the same type pattern and the subsumed rule has a member pattern.</li>
+ *   <li>the type-level rule has a prefix type pattern (i.e. <code>^com\.example\..*$</code>) and the
+ *   subsumed rule has a literal type pattern naming a type that starts with the prefix.</li>
+ * </ul>
+ *
+ * <p>Rules are only ever subsumed by rules that are not themselves removed, so the set of symbols matched
+ * under any set of compile time properties is unchanged. The relative order of the retained rules is preserved.</p>
+ */
+final class RuleReducer
+{
+  private RuleReducer()
+  {
+  }
+
+  /**
+   * Return the rules with duplicate and subsumed rules removed.
+   *
+   * @param rules the rules.
+   * @return the rules that were retained.
+   */
+  @Nonnull
+  static List<Rule> reduce( @Nonnull final Collection<Rule> rules )
+  {
+    final Map<RuleKey, Rule> uniqueRules = new LinkedHashMap<>();
+    for ( final Rule rule : rules )
+    {
+      uniqueRules.putIfAbsent( new RuleKey( rule ), rule );
+    }
+
+    final List<Rule> prefixRules = new ArrayList<>();
+    final TypeTrie typeTrie = new TypeTrie();
+    final Set<RuleKey> typeLevelRules = new HashSet<>();
+    for ( final Map.Entry<RuleKey, Rule> entry : uniqueRules.entrySet() )
+    {
+      final Rule rule = entry.getValue();
+      if ( !rule.hasMember() )
+      {
+        typeLevelRules.add( entry.getKey() );
+        final String prefix = rule.getTypePrefix();
+        if ( null != prefix && TypeTrie.isSupported( prefix ) )
+        {
+          typeTrie.add( prefix, prefixRules.size() );
+          prefixRules.add( rule );
+        }
+      }
+    }
+
+    final List<Rule> reduced = new ArrayList<>();
+    for ( final Map.Entry<RuleKey, Rule> entry : uniqueRules.entrySet() )
+    {
+      final RuleKey key = entry.getKey();
+      final Rule rule = entry.getValue();
+      final boolean subsumedBySameType =
+        rule.hasMember() &&
+        ( typeLevelRules.contains( key.asTypeLevel( rule.getCondition() ) ) ||
+          ( null != rule.getCondition() && typeLevelRules.contains( key.asTypeLevel( null ) ) ) );
+      if ( !subsumedBySameType && !isSubsumedByPrefix( rule, prefixRules, typeTrie ) )
+      {
+        reduced.add( rule );
+      }
+    }
+    return reduced;
+  }
+
+  private static boolean isSubsumedByPrefix( @Nonnull final Rule rule,
+                                             @Nonnull final List<Rule> prefixRules,
+                                             @Nonnull final TypeTrie typeTrie )
+  {
+    final String literalType = rule.getLiteralType();
+    final int[] matches = null == literalType || prefixRules.isEmpty() ? null : typeTrie.match( literalType );
+    if ( null != matches )
+    {
+      for ( final int id : matches )
+      {
+        final Rule prefixRule = prefixRules.get( id );
+        if ( prefixRule.isOmitRule() == rule.isOmitRule() &&
+             ( null == prefixRule.getCondition() || prefixRule.getCondition().equals( rule.getCondition() ) ) )
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The key identifying rules that match the same symbols under the same conditions.
+   * Literal patterns are identified by the name they match so that equivalent patterns with different
+   * escaping (i.e. <code>^\Qcom.example.Foo\E$</code> and <code>^com\.example\.Foo$</code>) are identical.
+   */
+  private static final class RuleKey
+  {
+    private final boolean _omit;
+    @Nonnull
+    private final PatternKey _type;
+    @Nullable
+    private final PatternKey _member;
+    @Nullable
+    private final Condition _condition;
+
+    RuleKey( @Nonnull final Rule rule )
+    {
+      this( rule.isOmitRule(),
+            new PatternKey( rule.getTypeMatcher().getRulePattern(), rule.getLiteralType(), false ),
+            null == rule.getMemberMatcher() ?
+            null :
+            new PatternKey( rule.getMemberMatcher().getRulePattern(),
+                            rule.getLiteralMember(),
+                            rule.isDevirtualizedMember() ),
+            rule.getCondition() );
+    }
+
+    private RuleKey( final boolean omit,
+                     @Nonnull final PatternKey type,
+                     @Nullable final PatternKey member,
+                     @Nullable final Condition condition )
+    {
+      _omit = omit;
+      _type = type;
+      _member = member;
+      _condition = condition;
+    }
+
+    /**
+     * Return the key of a type-level rule with the same omit flag and type pattern.
+     */
+    @Nonnull
+    RuleKey asTypeLevel( @Nullable final Condition condition )
+    {
+      return new RuleKey( _omit, _type, null, condition );
+    }
+
+    @Override
+    public boolean equals( final Object o )
+    {
+      if ( this == o )
+      {
+        return true;
+      }
+      else if ( !( o instanceof RuleKey ) )
+      {
+        return false;
+      }
+      else
+      {
+        final RuleKey other = (RuleKey) o;
+        return _omit == other._omit &&
+               _type.equals( other._type ) &&
+               Objects.equals( _member, other._member ) &&
+               Objects.equals( _condition, other._condition );
+      }
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash( _omit, _type, _member, _condition );
+    }
+  }
+
+  private static final class PatternKey
+  {
+    /**
+     * The literal name matched by the pattern or else the source of the pattern.
+     */
+    @Nonnull
+    private final String _value;
+    private final boolean _literal;
+    private final boolean _devirtualized;
+    private final int _flags;
+
+    PatternKey( @Nonnull final RulePattern pattern, @Nullable final String literal, final boolean devirtualized )
+    {
+      _value = null != literal ? literal : pattern.getRegex();
+      _literal = null != literal;
+      _devirtualized = devirtualized;
+      _flags = pattern.getFlags();
+    }
+
+    @Override
+    public boolean equals( final Object o )
+    {
+      if ( this == o )
+      {
+        return true;
+      }
+      else if ( !( o instanceof PatternKey ) )
+      {
+        return false;
+      }
+      else
+      {
+        final PatternKey other = (PatternKey) o;
+        return _literal == other._literal &&
+               _devirtualized == other._devirtualized &&
+               _flags == other._flags &&
+               _value.equals( other._value );
+      }
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash( _value, _literal, _devirtualized, _flags );
+    }
+  }
+}
@@ -1,8 +1,12 @@
 package grim.asserts;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
@@ -26,11 +30,61 @@ public final class RuleSet
    */
   @Nonnull
   private final Collection<Rule> _keepRules;
+  /**
+   * Index used to locate the omit rules that match a symbol.
+   */
+  @Nonnull
+  private final RuleIndex _omitIndex;
+  /**
+   * Index used to locate the keep rules that match a symbol.
+   */
+  @Nonnull
+  private final RuleIndex _keepIndex;
+  /**
+   * Cache of the decisions made by {@link #shouldOmitSymbol(Map, String, String)} if enabled.
+   */
+  @Nullable
+  private final DecisionCache _decisionCache;
+  /**
+   * The statistics counters for each rule if statistics mode is enabled, otherwise null.
+   */
+  @Nullable
+  private final Map<Rule, RuleCounters> _counters;
+  /**
+   * The number of rules that were removed as they were duplicates of, or subsumed by, other rules.
+   */
+  private final int _removedRuleCount;
 
   RuleSet( @Nonnull final Collection<Rule> rules )
   {
-    _omitRules = rules.stream().filter( Rule::isOmitRule ).collect( Collectors.toList() );
-    _keepRules = rules.stream().filter( Rule::isKeepRule ).collect( Collectors.toList() );
+    this( rules, 0 );
+  }
+
+  private RuleSet( @Nonnull final Collection<Rule> rules, final int previouslyRemovedRuleCount )
+  {
+    final List<Rule> reduced = RuleReducer.reduce( rules );
+    _removedRuleCount = previouslyRemovedRuleCount + rules.size() - reduced.size();
+    _omitRules = reduced.stream().filter( Rule::isOmitRule ).collect( Collectors.toList() );
+    _keepRules = reduced.stream().filter( Rule::isKeepRule ).collect( Collectors.toList() );
+    _omitIndex = new RuleIndex( _omitRules );
+    _keepIndex = new RuleIndex( _keepRules );
+    _decisionCache = null;
+    _counters = null;
+  }
+
+  private RuleSet( @Nonnull final RuleSet ruleSet,
+                   @Nonnull final RuleIndex omitIndex,
+                   @Nonnull final RuleIndex keepIndex,
+                   @Nullable final DecisionCache decisionCache,
+                   @Nullable final Map<Rule, RuleCounters> counters )
+  {
+    _omitRules = ruleSet._omitRules;
+    _keepRules = ruleSet._keepRules;
+    _omitIndex = omitIndex;
+    _keepIndex = keepIndex;
+    _decisionCache = decisionCache;
+    _counters = counters;
+    _removedRuleCount = ruleSet._removedRuleCount;
   }
 
   @Nonnull
@@ -45,8 +99,97 @@ public final class RuleSet
     return _keepRules;
   }
 
+  /**
+   * Return the number of rules that were discarded when the RuleSet was loaded or combined.
+   * A rule is discarded if it is identical to another rule (i.e. the same rule is present in several archives
+   * or resources) or if a rule without a member pattern that has the same condition (or no condition) matches
+   * every symbol that the rule matches. Discarding these rules does not alter the symbols that are omitted.
+   * The count includes the rules discarded from any RuleSets that were combined to produce this RuleSet.
+   *
+   * @return the number of rules that were discarded.
+   */
+  public int getRemovedRuleCount()
+  {
+    return _removedRuleCount;
+  }
+
+  /**
+   * Return a RuleSet containing the same rules that caches the decisions made by
+   * {@link #shouldOmitSymbol(Map, String, String)}. Decisions are keyed by the symbol and the values of the
+   * compile time properties referenced by the conditions of the rules, so permutations that differ only in
+   * properties that no rule references share decisions. The returned RuleSet is safe for concurrent use.
+   *
+   * @param maximumSize the maximum number of decisions to retain. Must be positive.
+   * @return a RuleSet with a decision cache.
+   * @see #getDecisionCache()
+   */
+  @Nonnull
+  public RuleSet withDecisionCache( final int maximumSize )
+  {
+    return new RuleSet( this,
+                        _omitIndex,
+                        _keepIndex,
+                        new DecisionCache( maximumSize, _omitRules, _keepRules ),
+                        _counters );
+  }
+
+  /**
+   * Return the decision cache if the RuleSet was created via {@link #withDecisionCache(int)}.
+   *
+   * @return the decision cache if any.
+   */
+  @Nullable
+  public DecisionCache getDecisionCache()
+  {
+    return _decisionCache;
+  }
+
+  /**
+   * Return a RuleSet containing the same rules that records, for each rule, the number of times the rule was
+   * evaluated against a symbol, the number of times it matched and the cumulative time spent evaluating it.
+   * Statistics are also recorded by views created via {@link #bindTo(Map)} and by the batch methods.
+   * A RuleSet that is not in statistics mode does not record statistics.
+   *
+   * @return a RuleSet in statistics mode.
+   * @see #getStatistics()
+   */
+  @Nonnull
+  public RuleSet withStatistics()
+  {
+    final Map<Rule, RuleCounters> counters = new IdentityHashMap<>();
+    Stream.concat( _omitRules.stream(), _keepRules.stream() ).forEach( r -> counters.put( r, new RuleCounters() ) );
+    return new RuleSet( this,
+                        new RuleIndex( _omitRules, counters ),
+                        new RuleIndex( _keepRules, counters ),
+                        _decisionCache,
+                        counters );
+  }
+
+  /**
+   * Return a snapshot of the statistics recorded if the RuleSet was created via {@link #withStatistics()}.
+   *
+   * @return a snapshot of the statistics if the RuleSet is in statistics mode, otherwise null.
+   */
+  @Nullable
+  public RuleSetStatistics getStatistics()
+  {
+    if ( null == _counters )
+    {
+      return null;
+    }
+    else
+    {
+      final List<RuleStatistics> statistics = new ArrayList<>();
+      Stream.concat( _omitRules.stream(), _keepRules.stream() )
+        .forEach( rule -> statistics.add( _counters.get( rule ).snapshot( rule ) ) );
+      return new RuleSetStatistics( statistics );
+    }
+  }
+
   /**
    * Combine multiple RuleSets into one RuleSet.
+   * Rules that are present in more than one RuleSet or that are subsumed by rules from other RuleSets
+   * are discarded. See {@link #getRemovedRuleCount()}.
    *
    * @param ruleSets the rule sets to merge.
    * @return the merged RuleSet.
@@ -57,12 +200,17 @@ public final class RuleSet
     final List<Rule> rules = Arrays.stream( ruleSets )
       .flatMap( ruleSet -> Stream.concat( ruleSet.getOmitRules().stream(), ruleSet.getKeepRules().stream() ) )
       .collect( Collectors.toList() );
-    return new RuleSet( rules );
+    return new RuleSet( rules, Arrays.stream( ruleSets ).mapToInt( RuleSet::getRemovedRuleCount ).sum() );
   }
 
   /**
    * Load all grim rules from the specified classloader.
    * The rules are stored files with the suffix ".grim.json" in the standard path "META-INF/grim/*".
+   * Rules emitted in the binary format with the suffix ".grim.bin" are loaded in preference to the json files.
+   * The rules in the bundle "META-INF/grim/grim.bundle.json" emitted by the annotation processor are also loaded.
+   * The rules in archives are cached on disk if the <code>grim.cache_dir</code> system property is set.
+   * The rule files of a classpath entry are located using the "META-INF/grim/grim.index" resource emitted by the
+   * annotation processor if present, otherwise by traversing the "META-INF/grim" directory of the entry.
    *
    * @param classLoader the classloader.
    * @return the collection of rules loaded from the Classloader.
@@ -77,6 +225,11 @@ public final class RuleSet
   /**
    * Load all grim rules from the specified classloader that have classnames that match the specified filter.
    * The rules are stored files with the suffix ".grim.json" in the standard path "META-INF/grim/*".
+   * Rules emitted in the binary format with the suffix ".grim.bin" are loaded in preference to the json files.
+   * The rules in the bundle "META-INF/grim/grim.bundle.json" emitted by the annotation processor are also loaded.
+   * The rules in archives are cached on disk if the <code>grim.cache_dir</code> system property is set.
+   * The rule files of a classpath entry are located using the "META-INF/grim/grim.index" resource emitted by the
+   * annotation processor if present, otherwise by traversing the "META-INF/grim" directory of the entry.
    *
    * @param classLoader the classloader.
    * @param filter      the filter if any.
@@ -93,6 +246,9 @@ public final class RuleSet
   /**
    * Load all grim rules from the archive specified.
    * The rules are stored files with the suffix ".grim.json" in the standard path "META-INF/grim/*".
+   * Rules emitted in the binary format with the suffix ".grim.bin" are loaded in preference to the json files.
+   * The rules in the bundle "META-INF/grim/grim.bundle.json" emitted by the annotation processor are also loaded.
+   * The rules in archives are cached on disk if the <code>grim.cache_dir</code> system property is set.
    * The archive is expected to be a jar file.
    *
    * @param archivePath the path to the archive.
@@ -108,6 +264,9 @@ public final class RuleSet
   /**
    * Load all grim rules from the archive specified that have classnames that match the specified filter.
    * The rules are stored files with the suffix ".grim.json" in the standard path "META-INF/grim/*".
+   * Rules emitted in the binary format with the suffix ".grim.bin" are loaded in preference to the json files.
+   * The rules in the bundle "META-INF/grim/grim.bundle.json" emitted by the annotation processor are also loaded.
+   * The rules in archives are cached on disk if the <code>grim.cache_dir</code> system property is set.
    * The archive is expected to be a jar file.
    *
    * @param archivePath the path to the archive.
@@ -121,6 +280,77 @@ public final class RuleSet
     return new RuleSet( RuleLoader.loadFromArchive( archivePath, filter ) );
   }
 
+  /**
+   * Load all grim rules from the directory or archive specified.
+   * The rules are stored files with the suffix ".grim.json" in the standard path "META-INF/grim/*".
+   * Rules emitted in the binary format with the suffix ".grim.bin" are loaded in preference to the json files.
+   * The rules in the bundle "META-INF/grim/grim.bundle.json" emitted by the annotation processor are also loaded.
+   * A directory, such as the class output directory of a build, may be located on any file system and any
+   * other path is opened as a zip file system so archives nested within other archives can be loaded directly.
+   *
+   * @param path the path to the directory or archive.
+   * @return the collection of rules loaded from the path.
+   * @see #loadFromPath(Path, Predicate)
+   */
+  @Nonnull
+  public static RuleSet loadFromPath( @Nonnull final Path path )
+  {
+    return loadFromPath( path, null );
+  }
+
+  /**
+   * Load all grim rules from the directory or archive specified that have classnames that match the specified
+   * filter. The rules are stored files with the suffix ".grim.json" in the standard path "META-INF/grim/*".
+   * Rules emitted in the binary format with the suffix ".grim.bin" are loaded in preference to the json files.
+   * The rules in the bundle "META-INF/grim/grim.bundle.json" emitted by the annotation processor are also loaded.
+   * A directory, such as the class output directory of a build, may be located on any file system and any
+   * other path is opened as a zip file system so archives nested within other archives can be loaded directly.
+   *
+   * @param path   the path to the directory or archive.
+   * @param filter the filter if any.
+   * @return the collection of rules loaded from the path.
+   * @see #loadFromPath(Path)
+   */
+  @Nonnull
+  public static RuleSet loadFromPath( @Nonnull final Path path, @Nullable final Predicate<String> filter )
+  {
+    return new RuleSet( RuleLoader.loadFromPath( path, filter ) );
+  }
+
+  /**
+   * Load all grim rules from the archives specified.
+   * The archives are loaded concurrently using a bounded pool of threads and the rules are combined in the
+   * order that the archives are specified. The rules are stored files with the suffix ".grim.json" in the
+   * standard path "META-INF/grim/*". The archives are expected to be jar files.
+   *
+   * @param archivePaths the paths to the archives.
+   * @return the collection of rules loaded from the Archives.
+   * @see #loadFromArchives(Collection, Predicate)
+   */
+  @Nonnull
+  public static RuleSet loadFromArchives( @Nonnull final Collection<Path> archivePaths )
+  {
+    return loadFromArchives( archivePaths, null );
+  }
+
+  /**
+   * Load all grim rules from the archives specified that have classnames that match the specified filter.
+   * The archives are loaded concurrently using a bounded pool of threads and the rules are combined in the
+   * order that the archives are specified. The rules are stored files with the suffix ".grim.json" in the
+   * standard path "META-INF/grim/*". The archives are expected to be jar files.
+   *
+   * @param archivePaths the paths to the archives.
+   * @param filter       the filter if any.
+   * @return the collection of rules loaded from the Archives.
+   * @see #loadFromArchives(Collection)
+   */
+  @Nonnull
+  public static RuleSet loadFromArchives( @Nonnull final Collection<Path> archivePaths,
+                                          @Nullable final Predicate<String> filter )
+  {
+    return new RuleSet( RuleLoader.loadFromArchives( archivePaths, filter ) );
+  }
+
   /**
    * Return true if the specified type+member combination should have been omitted given the context of the compileTimeProperties.
    *
@@ -133,7 +363,140 @@ public final class RuleSet
                                    @Nonnull final String type,
                                    @Nonnull final String member )
   {
-    return _omitRules.stream().anyMatch( r1 -> r1.matches( compileTimeProperties, type, member ) ) &&
-           _keepRules.stream().noneMatch( r -> r.matches( compileTimeProperties, type, member ) );
+    if ( null == _decisionCache )
+    {
+      return computeShouldOmitSymbol( compileTimeProperties, type, member );
+    }
+    else
+    {
+      final DecisionCache.Key key = _decisionCache.newKey( compileTimeProperties, type, member );
+      final Boolean cached = _decisionCache.get( key );
+      if ( null != cached )
+      {
+        return cached;
+      }
+      else
+      {
+        final boolean decision = computeShouldOmitSymbol( compileTimeProperties, type, member );
+        _decisionCache.put( key, decision );
+        return decision;
+      }
+    }
+  }
+
+  private boolean computeShouldOmitSymbol( @Nonnull final Map<String, String> compileTimeProperties,
+                                           @Nonnull final String type,
+                                           @Nonnull final String member )
+  {
+    return matchesOmitRule( compileTimeProperties, type, member ) &&
+           !matchesKeepRule( compileTimeProperties, type, member );
+  }
+
+  /**
+   * Return true if any omit rule matches the symbol, ignoring the keep rules.
+   */
+  boolean matchesOmitRule( @Nonnull final Map<String, String> compileTimeProperties,
+                           @Nonnull final String type,
+                           @Nonnull final String member )
+  {
+    return _omitIndex.anyMatch( compileTimeProperties, type, member );
+  }
+
+  /**
+   * Return true if any keep rule matches the symbol.
+   */
+  boolean matchesKeepRule( @Nonnull final Map<String, String> compileTimeProperties,
+                           @Nonnull final String type,
+                           @Nonnull final String member )
+  {
+    return _keepIndex.anyMatch( compileTimeProperties, type, member );
+  }
+
+  /**
+   * Return the symbols in the table that should have been omitted given the context of the compileTimeProperties.
+   * This is the most efficient way to check all of the symbols produced by a permutation.
+   *
+   * @param compileTimeProperties the static compile time properties.
+   * @param symbols               the symbols to check.
+   * @return the set of indexes of the symbols that should have been omitted.
+   * @see BoundRuleSet#shouldOmitSymbols(SymbolTable)
+   */
+  @Nonnull
+  public BitSet shouldOmitSymbols( @Nonnull final Map<String, String> compileTimeProperties,
+                                   @Nonnull final SymbolTable symbols )
+  {
+    return bindTo( compileTimeProperties ).shouldOmitSymbols( symbols );
+  }
+
+  /**
+   * Return the symbols that should have been omitted given the context of the compileTimeProperties.
+   * The symbols are described by parallel arrays of type and member names.
+   *
+   * @param compileTimeProperties the static compile time properties.
+   * @param types                 the name of the java type for each symbol.
+   * @param members               the name of the member for each symbol or the empty string.
+   * @return the set of indexes of the symbols that should have been omitted.
+   * @see BoundRuleSet#shouldOmitSymbols(String[], String[])
+   */
+  @Nonnull
+  public BitSet shouldOmitSymbols( @Nonnull final Map<String, String> compileTimeProperties,
+                                   @Nonnull final String[] types,
+                                   @Nonnull final String[] members )
+  {
+    return bindTo( compileTimeProperties ).shouldOmitSymbols( types, members );
+  }
+
+  /**
+   * Return the symbols that should have been omitted for each of several permutations.
+   * The union of the symbols of every permutation is matched against the rules once, ignoring conditions,
+   * and the conditions are then evaluated once per permutation. This is significantly more efficient than
+   * classifying each permutation separately when the permutations share most of their symbols. The work
+   * is performed in parallel using the common fork/join pool.
+   *
+   * @param compileTimeProperties the static compile time properties for each permutation.
+   * @param symbols               the symbols present in each permutation.
+   * @return the set of indexes of the symbols that should have been omitted, for each permutation.
+   */
+  @Nonnull
+  public List<BitSet> shouldOmitSymbols( @Nonnull final List<Map<String, String>> compileTimeProperties,
+                                         @Nonnull final List<SymbolTable> symbols )
+  {
+    return PermutationSweep.classify( _omitIndex, _keepIndex, compileTimeProperties, symbols );
+  }
+
+  /**
+   * Return a view of the RuleSet bound to a specific set of compile time properties.
+   * The condition of every rule is evaluated once when the view is created and rules with conditions that
+   * do not match are discarded. This makes the view the most efficient way to check many symbols from the
+   * same permutation.
+   *
+   * @param compileTimeProperties the static compile time properties of the permutation.
+   * @return the RuleSet bound to the compile time properties.
+   */
+  @Nonnull
+  public BoundRuleSet bindTo( @Nonnull final Map<String, String> compileTimeProperties )
+  {
+    final Map<Condition, Boolean> conditions = new HashMap<>();
+    return new BoundRuleSet( compileTimeProperties,
+                             activeRules( _omitRules, compileTimeProperties, conditions ),
+                             activeRules( _keepRules, compileTimeProperties, conditions ),
+                             _counters );
+  }
+
+  @Nonnull
+  private List<Rule> activeRules( @Nonnull final Collection<Rule> rules,
+                                  @Nonnull final Map<String, String> compileTimeProperties,
+                                  @Nonnull final Map<Condition, Boolean> conditions )
+  {
+    final List<Rule> activeRules = new ArrayList<>();
+    for ( final Rule rule : rules )
+    {
+      final Condition condition = rule.getCondition();
+      if ( null == condition || conditions.computeIfAbsent( condition, c -> c.matches( compileTimeProperties ) ) )
+      {
+        activeRules.add( rule );
+      }
+    }
+    return activeRules;
   }
 }
@@ -0,0 +1,126 @@
+package grim.asserts;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * A snapshot of the statistics collected by a {@link RuleSet} in statistics mode.
+ *
+ * @see RuleSet#withStatistics()
+ */
+public final class RuleSetStatistics
+{
+  @Nonnull
+  private final List<RuleStatistics> _ruleStatistics;
+
+  RuleSetStatistics( @Nonnull final List<RuleStatistics> ruleStatistics )
+  {
+    _ruleStatistics = Collections.unmodifiableList( ruleStatistics );
+  }
+
+  /**
+   * Return the statistics for every rule in the RuleSet.
+   *
+   * @return the statistics for every rule in the RuleSet.
+   */
+  @Nonnull
+  public List<RuleStatistics> getRuleStatistics()
+  {
+    return _ruleStatistics;
+  }
+
+  /**
+   * Return the statistics for every rule in the RuleSet, ordered so that the rules that consumed the most
+   * time appear first.
+   *
+   * @return the statistics for every rule in the RuleSet ordered by descending cumulative time.
+   */
+  @Nonnull
+  public List<RuleStatistics> getRuleStatisticsByTotalNanos()
+  {
+    return _ruleStatistics
+      .stream()
+      .sorted( Comparator.comparingLong( RuleStatistics::getTotalNanos ).reversed() )
+      .collect( Collectors.toList() );
+  }
+
+  /**
+   * Return the cumulative time spent evaluating all the rules in nanoseconds.
+   *
+   * @return the cumulative time spent evaluating all the rules in nanoseconds.
+   */
+  public long getTotalNanos()
+  {
+    return _ruleStatistics.stream().mapToLong( RuleStatistics::getTotalNanos ).sum();
+  }
+
+  /**
+   * Write the statistics as a JSON document to the writer.
+   * The rules appear in order of descending cumulative time.
+   *
+   * @param writer the writer.
+   */
+  public void writeJson( @Nonnull final Writer writer )
+  {
+    // The generator is flushed rather than closed so that the writer remains open
+    final JsonGenerator g = Json.createGenerator( writer );
+    g.writeStartObject();
+    g.write( "totalNanos", getTotalNanos() );
+    g.writeStartArray( "rules" );
+    for ( final RuleStatistics statistics : getRuleStatisticsByTotalNanos() )
+    {
+      final Rule rule = statistics.getRule();
+      g.writeStartObject();
+      final String source = rule.getSource();
+      if ( null != source )
+      {
+        g.write( "source", source );
+      }
+      if ( rule.isKeepRule() )
+      {
+        g.write( "keep", true );
+      }
+      g.write( "type", rule.getTypeMatcher().getRulePattern().getRegex() );
+      final NameMatcher member = rule.getMemberMatcher();
+      if ( null != member )
+      {
+        g.write( "member", member.getRulePattern().getRegex() );
+      }
+      final Condition condition = rule.getCondition();
+      if ( null != condition )
+      {
+        g.write( "property", condition.getProperty() );
+        g.write( "operator", condition.isEquals() ? "EQ" : "NEQ" );
+        g.write( "value", condition.getValue() );
+      }
+      g.write( "evaluations", statistics.getEvaluationCount() );
+      g.write( "matches", statistics.getMatchCount() );
+      g.write( "totalNanos", statistics.getTotalNanos() );
+      g.writeEnd();
+    }
+    g.writeEnd();
+    g.writeEnd();
+    g.flush();
+  }
+
+  /**
+   * Return the statistics as a JSON document.
+   *
+   * @return the statistics as a JSON document.
+   * @see #writeJson(Writer)
+   */
+  @Nonnull
+  public String toJson()
+  {
+    final StringWriter writer = new StringWriter();
+    writeJson( writer );
+    return writer.toString();
+  }
+}
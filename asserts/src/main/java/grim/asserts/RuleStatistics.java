@@ -0,0 +1,69 @@
+package grim.asserts;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A snapshot of the statistics collected for a single rule.
+ * A rule is evaluated against a symbol when the indexes of the {@link RuleSet} are unable to exclude the rule
+ * from consideration. The time spent evaluating a rule includes matching any patterns individually and
+ * evaluating the condition but excludes the time spent in the shared indexes.
+ *
+ * @see RuleSetStatistics
+ */
+public final class RuleStatistics
+{
+  @Nonnull
+  private final Rule _rule;
+  private final long _evaluationCount;
+  private final long _matchCount;
+  private final long _totalNanos;
+
+  RuleStatistics( @Nonnull final Rule rule, final long evaluationCount, final long matchCount, final long totalNanos )
+  {
+    _rule = rule;
+    _evaluationCount = evaluationCount;
+    _matchCount = matchCount;
+    _totalNanos = totalNanos;
+  }
+
+  /**
+   * Return the rule that the statistics were collected for.
+   *
+   * @return the rule that the statistics were collected for.
+   */
+  @Nonnull
+  public Rule getRule()
+  {
+    return _rule;
+  }
+
+  /**
+   * Return the number of times the rule was evaluated against a symbol.
+   *
+   * @return the number of times the rule was evaluated against a symbol.
+   */
+  public long getEvaluationCount()
+  {
+    return _evaluationCount;
+  }
+
+  /**
+   * Return the number of evaluations where the rule matched the symbol.
+   *
+   * @return the number of evaluations where the rule matched the symbol.
+   */
+  public long getMatchCount()
+  {
+    return _matchCount;
+  }
+
+  /**
+   * Return the cumulative time spent evaluating the rule in nanoseconds.
+   *
+   * @return the cumulative time spent evaluating the rule in nanoseconds.
+   */
+  public long getTotalNanos()
+  {
+    return _totalNanos;
+  }
+}
@@ -0,0 +1,215 @@
+package grim.asserts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+
+/**
+ * Reader for the symbol maps produced by the GWT compiler in the <code>symbolMaps/*.symbolMap</code> files.
+ * A symbol map contains one line per symbol with the comma separated columns: jsName, jsniIdent, className,
+ * memberName, sourceUri, sourceLine and fragmentNumber. Lines starting with '#' are comments.
+ *
+ * <p>The file is memory-mapped and the columns are located by scanning the bytes directly. The class and
+ * member names are interned while reading so that a String is only created the first time a name is
+ * encountered rather than once per line.</p>
+ */
+public final class SymbolMapReader
+{
+  private static final int CLASS_NAME_COLUMN = 2;
+  private static final int MEMBER_NAME_COLUMN = 3;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private SymbolMapReader()
+  {
+  }
+
+  /**
+   * Read the symbols from the symbol map at the specified path.
+   * Entries without a class name are not java symbols and are skipped.
+   *
+   * @param path the path to the symbol map.
+   * @return the symbols from the symbol map.
+   * @throws IOException if there is an error reading the symbol map or the symbol map is malformed.
+   */
+  @Nonnull
+  public static SymbolTable read( @Nonnull final Path path )
+    throws IOException
+  {
+    try ( final FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+    {
+      final long size = channel.size();
+      if ( size > Integer.MAX_VALUE )
+      {
+        throw new IOException( "Symbol map " + path + " is too large to be read" );
+      }
+      return read( channel.map( FileChannel.MapMode.READ_ONLY, 0, size ) );
+    }
+  }
+
+  @Nonnull
+  static SymbolTable read( @Nonnull final ByteBuffer buffer )
+    throws IOException
+  {
+    final NameTable names = new NameTable();
+    String[] types = new String[ INITIAL_CAPACITY ];
+    String[] members = new String[ INITIAL_CAPACITY ];
+    int count = 0;
+
+    final int limit = buffer.limit();
+    int position = buffer.position();
+    int lineNumber = 1;
+    while ( position < limit )
+    {
+      int lineEnd = position;
+      while ( lineEnd < limit && '\n' != buffer.get( lineEnd ) )
+      {
+        lineEnd++;
+      }
+      final int contentEnd = lineEnd > position && '\r' == buffer.get( lineEnd - 1 ) ? lineEnd - 1 : lineEnd;
+      if ( contentEnd > position && '#' != buffer.get( position ) )
+      {
+        int column = 0;
+        int columnStart = position;
+        int classNameStart = -1;
+        int classNameEnd = -1;
+        int memberNameStart = -1;
+        int memberNameEnd = -1;
+        for ( int i = position; i <= contentEnd && column <= MEMBER_NAME_COLUMN; i++ )
+        {
+          if ( i == contentEnd || ',' == buffer.get( i ) )
+          {
+            if ( CLASS_NAME_COLUMN == column )
+            {
+              classNameStart = columnStart;
+              classNameEnd = i;
+            }
+            else if ( MEMBER_NAME_COLUMN == column )
+            {
+              memberNameStart = columnStart;
+              memberNameEnd = i;
+            }
+            column++;
+            columnStart = i + 1;
+          }
+        }
+        if ( column <= MEMBER_NAME_COLUMN )
+        {
+          throw new IOException( "Symbol map entry at line " + lineNumber + " has fewer than " +
+                                 ( MEMBER_NAME_COLUMN + 1 ) + " columns" );
+        }
+        if ( classNameEnd > classNameStart )
+        {
+          if ( count == types.length )
+          {
+            types = Arrays.copyOf( types, count * 2 );
+            members = Arrays.copyOf( members, count * 2 );
+          }
+          types[ count ] = names.get( buffer, classNameStart, classNameEnd );
+          members[ count ] = names.get( buffer, memberNameStart, memberNameEnd );
+          count++;
+        }
+      }
+      position = lineEnd + 1;
+      lineNumber++;
+    }
+    return new SymbolTable( Arrays.copyOf( types, count ), Arrays.copyOf( members, count ) );
+  }
+
+  /**
+   * An open addressing hash table that maps ranges of UTF-8 encoded bytes to Strings.
+   */
+  private static final class NameTable
+  {
+    @Nonnull
+    private byte[][] _keys = new byte[ INITIAL_CAPACITY ][];
+    @Nonnull
+    private String[] _values = new String[ INITIAL_CAPACITY ];
+    @Nonnull
+    private int[] _hashes = new int[ INITIAL_CAPACITY ];
+    private int _size;
+
+    @Nonnull
+    String get( @Nonnull final ByteBuffer buffer, final int start, final int end )
+    {
+      if ( start == end )
+      {
+        return "";
+      }
+      int hash = 0;
+      for ( int i = start; i < end; i++ )
+      {
+        hash = 31 * hash + buffer.get( i );
+      }
+      final int mask = _keys.length - 1;
+      int slot = ( hash ^ ( hash >>> 16 ) ) & mask;
+      while ( null != _keys[ slot ] )
+      {
+        if ( _hashes[ slot ] == hash && matches( _keys[ slot ], buffer, start, end ) )
+        {
+          return _values[ slot ];
+        }
+        slot = ( slot + 1 ) & mask;
+      }
+
+      final byte[] key = new byte[ end - start ];
+      buffer.get( start, key );
+      final String value = new String( key, StandardCharsets.UTF_8 );
+      _keys[ slot ] = key;
+      _values[ slot ] = value;
+      _hashes[ slot ] = hash;
+      _size++;
+      if ( _size * 2 > _keys.length )
+      {
+        resize();
+      }
+      return value;
+    }
+
+    private boolean matches( @Nonnull final byte[] key, @Nonnull final ByteBuffer buffer, final int start, final int end )
+    {
+      if ( key.length != end - start )
+      {
+        return false;
+      }
+      for ( int i = 0; i < key.length; i++ )
+      {
+        if ( key[ i ] != buffer.get( start + i ) )
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void resize()
+    {
+      final byte[][] keys = _keys;
+      final String[] values = _values;
+      final int[] hashes = _hashes;
+      final int capacity = keys.length * 2;
+      _keys = new byte[ capacity ][];
+      _values = new String[ capacity ];
+      _hashes = new int[ capacity ];
+      final int mask = capacity - 1;
+      for ( int i = 0; i < keys.length; i++ )
+      {
+        if ( null != keys[ i ] )
+        {
+          int slot = ( hashes[ i ] ^ ( hashes[ i ] >>> 16 ) ) & mask;
+          while ( null != _keys[ slot ] )
+          {
+            slot = ( slot + 1 ) & mask;
+          }
+          _keys[ slot ] = keys[ i ];
+          _values[ slot ] = values[ i ];
+          _hashes[ slot ] = hashes[ i ];
+        }
+      }
+    }
+  }
+}
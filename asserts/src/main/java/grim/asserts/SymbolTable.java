@@ -0,0 +1,92 @@
+package grim.asserts;
+
+import java.util.Arrays;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+
+/**
+ * A table of symbols present in the output of a compilation.
+ * Each symbol is identified by its index in the table and is described by the name of the java type and
+ * the name of the member, or the empty string if the symbol represents the type itself.
+ */
+public final class SymbolTable
+{
+  /**
+   * The name of the java type for each symbol.
+   */
+  @Nonnull
+  private final String[] _types;
+  /**
+   * The name of the member for each symbol or the empty string.
+   */
+  @Nonnull
+  private final String[] _members;
+
+  /**
+   * Create a symbol table from parallel arrays of type and member names.
+   *
+   * @param types   the name of the java type for each symbol.
+   * @param members the name of the member for each symbol or the empty string.
+   */
+  public SymbolTable( @Nonnull final String[] types, @Nonnull final String[] members )
+  {
+    if ( types.length != members.length )
+    {
+      throw new IllegalArgumentException( "SymbolTable created with " + types.length + " types but " +
+                                          members.length + " members" );
+    }
+    _types = Arrays.copyOf( types, types.length );
+    _members = Arrays.copyOf( members, members.length );
+    for ( int i = 0; i < _types.length; i++ )
+    {
+      Objects.requireNonNull( _types[ i ] );
+      Objects.requireNonNull( _members[ i ] );
+    }
+  }
+
+  /**
+   * Return the number of symbols in the table.
+   *
+   * @return the number of symbols in the table.
+   */
+  public int size()
+  {
+    return _types.length;
+  }
+
+  /**
+   * Return the name of the java type for the symbol at the specified index.
+   *
+   * @param index the index of the symbol.
+   * @return the name of the java type.
+   */
+  @Nonnull
+  public String getType( final int index )
+  {
+    return _types[ index ];
+  }
+
+  /**
+   * Return the name of the member for the symbol at the specified index.
+   *
+   * @param index the index of the symbol.
+   * @return the name of the member or the empty string if the symbol represents the type.
+   */
+  @Nonnull
+  public String getMember( final int index )
+  {
+    return _members[ index ];
+  }
+
+  @Nonnull
+  String[] getTypes()
+  {
+    return _types;
+  }
+
+  @Nonnull
+  String[] getMembers()
+  {
+    return _members;
+  }
+}
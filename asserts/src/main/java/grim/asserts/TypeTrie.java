@@ -0,0 +1,238 @@
+package grim.asserts;
+
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A trie of type name prefixes keyed by the segments of the name.
+ * A type name is split into segments after every '.' and '$' character so that the name
+ * <code>com.example.Outer$Inner</code> is composed of the segments <code>com.</code>, <code>example.</code>,
+ * <code>Outer$</code> and <code>Inner</code>. Each segment retains its trailing delimiter so that the
+ * boundary between a type and its nested types is explicit. A prefix selecting the nested types of a type
+ * (i.e. <code>com.example.Outer$</code>) never matches the outer type itself or a sibling type that shares
+ * a name prefix (i.e. <code>com.example.OuterSupport</code>).
+ *
+ * <p>Only prefixes that end with a delimiter are added to the trie. A lookup walks the segments of the
+ * type name once and collects the rules registered at every node it visits. The children of a node are held in
+ * an open addressed table keyed by the hash code of the segment, so a segment of the type name is located by
+ * comparing the region of the type name in place and a lookup never creates a String.</p>
+ */
+final class TypeTrie
+{
+  @Nonnull
+  private final Node _root = new Node();
+
+  /**
+   * Return true if the prefix can be added to the trie.
+   *
+   * @param prefix the prefix.
+   * @return true if the prefix ends with a segment delimiter.
+   */
+  static boolean isSupported( @Nonnull final String prefix )
+  {
+    return !prefix.isEmpty() && isDelimiter( prefix.charAt( prefix.length() - 1 ) );
+  }
+
+  /**
+   * Register a rule that matches every type name that starts with the prefix.
+   *
+   * @param prefix the prefix. It must be supported as defined by {@link #isSupported(String)}.
+   * @param id     the id of the rule.
+   */
+  void add( @Nonnull final String prefix, final int id )
+  {
+    assert isSupported( prefix );
+    Node node = _root;
+    int start = 0;
+    while ( start < prefix.length() )
+    {
+      final int end = segmentEnd( prefix, start );
+      node = node.getOrAddChild( prefix.substring( start, end ) );
+      start = end;
+    }
+    node.addRule( id );
+  }
+
+  /**
+   * Return the ids of the rules with a prefix that the type name starts with.
+   * The ids are not sorted. A type name that contains a line terminator can not be matched by a pattern
+   * such as <code>^com\.example\..*$</code> as <code>.</code> does not match line terminators. In this
+   * scenario null is returned and the caller is expected to match the patterns individually.
+   *
+   * @param type the name of the type.
+   * @return the ids of the rules that match the type, or null if the type contains a line terminator.
+   */
+  @Nullable
+  int[] match( @Nonnull final String type )
+  {
+    final int length = type.length();
+    int[] matches = PatternAutomaton.NO_MATCHES;
+    Node node = _root;
+    int start = 0;
+    while ( start < length )
+    {
+      // The hash code of the segment is calculated in the same way as String.hashCode()
+      int hash = 0;
+      int end = start;
+      char ch;
+      do
+      {
+        ch = type.charAt( end++ );
+        hash = 31 * hash + ch;
+      }
+      while ( !isDelimiter( ch ) && end < length );
+      if ( !isDelimiter( ch ) )
+      {
+        // The final segment of the name can never match a prefix as prefixes end with a delimiter
+        break;
+      }
+      node = node.getChild( type, start, end, hash );
+      if ( null == node )
+      {
+        break;
+      }
+      if ( 0 != node._rules.length )
+      {
+        matches = concat( matches, node._rules );
+      }
+      start = end;
+    }
+    if ( 0 != matches.length )
+    {
+      for ( int i = 0; i < length; i++ )
+      {
+        if ( isLineTerminator( type.charAt( i ) ) )
+        {
+          return null;
+        }
+      }
+    }
+    return matches;
+  }
+
+  private static int segmentEnd( @Nonnull final String name, final int start )
+  {
+    final int length = name.length();
+    for ( int i = start; i < length; i++ )
+    {
+      if ( isDelimiter( name.charAt( i ) ) )
+      {
+        return i + 1;
+      }
+    }
+    return length;
+  }
+
+  private static boolean isDelimiter( final char ch )
+  {
+    return '.' == ch || '$' == ch;
+  }
+
+  private static boolean isLineTerminator( final char ch )
+  {
+    return '\n' == ch || '\r' == ch || 0x85 == ch || 0x2028 == ch || 0x2029 == ch;
+  }
+
+  @Nonnull
+  private static int[] concat( @Nonnull final int[] a, @Nonnull final int[] b )
+  {
+    if ( 0 == a.length )
+    {
+      return b;
+    }
+    final int[] result = Arrays.copyOf( a, a.length + b.length );
+    System.arraycopy( b, 0, result, a.length, b.length );
+    return result;
+  }
+
+  private static final class Node
+  {
+    /**
+     * The segments of the children, indexed by the hash code of the segment with linear probing.
+     * The length of the table is a power of two and the table is never more than half full.
+     */
+    @Nonnull
+    private String[] _segments = new String[ 2 ];
+    /**
+     * The children, at the same index as the segment of the child.
+     */
+    @Nonnull
+    private Node[] _children = new Node[ 2 ];
+    private int _childCount;
+    @Nonnull
+    private int[] _rules = PatternAutomaton.NO_MATCHES;
+
+    void addRule( final int id )
+    {
+      _rules = concat( _rules, new int[]{ id } );
+    }
+
+    /**
+     * Return the child for the segment of the name between start (inclusive) and end (exclusive), if any.
+     *
+     * @param hash the hash code of the segment, as calculated by {@link String#hashCode()}.
+     */
+    @Nullable
+    Node getChild( @Nonnull final String name, final int start, final int end, final int hash )
+    {
+      final int length = end - start;
+      final int mask = _segments.length - 1;
+      for ( int i = ( hash ^ ( hash >>> 16 ) ) & mask; ; i = ( i + 1 ) & mask )
+      {
+        final String segment = _segments[ i ];
+        if ( null == segment )
+        {
+          return null;
+        }
+        else if ( hash == segment.hashCode() &&
+                  length == segment.length() &&
+                  name.regionMatches( start, segment, 0, length ) )
+        {
+          return _children[ i ];
+        }
+      }
+    }
+
+    @Nonnull
+    Node getOrAddChild( @Nonnull final String segment )
+    {
+      final Node existing = getChild( segment, 0, segment.length(), segment.hashCode() );
+      if ( null != existing )
+      {
+        return existing;
+      }
+      if ( 2 * ( _childCount + 1 ) > _segments.length )
+      {
+        final String[] segments = _segments;
+        final Node[] children = _children;
+        _segments = new String[ segments.length * 2 ];
+        _children = new Node[ segments.length * 2 ];
+        for ( int i = 0; i < segments.length; i++ )
+        {
+          if ( null != segments[ i ] )
+          {
+            insert( segments[ i ], children[ i ] );
+          }
+        }
+      }
+      final Node child = new Node();
+      insert( segment, child );
+      _childCount++;
+      return child;
+    }
+
+    private void insert( @Nonnull final String segment, @Nonnull final Node child )
+    {
+      final int mask = _segments.length - 1;
+      final int hash = segment.hashCode();
+      int i = ( hash ^ ( hash >>> 16 ) ) & mask;
+      while ( null != _segments[ i ] )
+      {
+        i = ( i + 1 ) & mask;
+      }
+      _segments[ i ] = segment;
+      _children[ i ] = child;
+    }
+  }
+}
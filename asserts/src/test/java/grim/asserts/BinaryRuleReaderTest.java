@@ -0,0 +1,209 @@
+package grim.asserts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.annotation.Nonnull;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class BinaryRuleReaderTest
+{
+  @Test
+  public void read()
+    throws Exception
+  {
+    final byte[] data =
+      toBytes( BinaryRuleReader.MAGIC,
+               (byte) BinaryRuleReader.VERSION,
+               // String table
+               6, "arez.Node", "getName", "arez.spy", "arez.enable_names", "true", ".*Impl",
+               // Rules
+               4,
+               (byte) BinaryRuleReader.FLAG_MEMBER,
+               (byte) BinaryRuleReader.KIND_LITERAL, 0,
+               (byte) BinaryRuleReader.KIND_METHOD, 1,
+               (byte) ( BinaryRuleReader.FLAG_KEEP | BinaryRuleReader.FLAG_CONDITION | BinaryRuleReader.FLAG_EQUALS ),
+               (byte) BinaryRuleReader.KIND_PACKAGE, 2,
+               3, 4,
+               (byte) ( BinaryRuleReader.FLAG_MEMBER | BinaryRuleReader.FLAG_CONDITION ),
+               (byte) BinaryRuleReader.KIND_REGEX, 5,
+               (byte) BinaryRuleReader.KIND_LITERAL, 0,
+               3, 4,
+               (byte) BinaryRuleReader.FLAG_MEMBER,
+               (byte) BinaryRuleReader.KIND_LITERAL, 0,
+               (byte) BinaryRuleReader.KIND_LITERAL, 1 );
+
+    final List<Rule> rules = BinaryRuleReader.read( ByteBuffer.wrap( data ), "Node.grim.bin" );
+    assertEquals( rules.size(), 4 );
+
+    final Rule rule1 = rules.get( 0 );
+    assertTrue( rule1.isOmitRule() );
+    assertEquals( rule1.getType().pattern(), "^\\Qarez.Node\\E$" );
+    assertPattern( rule1.getMember(), "^\\$?\\QgetName\\E$" );
+    assertNull( rule1.getCondition() );
+    assertEquals( rule1.getSource(), "Node.grim.bin" );
+
+    final Rule rule2 = rules.get( 1 );
+    assertTrue( rule2.isKeepRule() );
+    assertEquals( rule2.getType().pattern(), "^arez\\.spy\\..*$" );
+    assertNull( rule2.getMember() );
+    final Condition condition = rule2.getCondition();
+    assertNotNull( condition );
+    assertEquals( condition.getProperty(), "arez.enable_names" );
+    assertEquals( condition.getValue(), "true" );
+    assertTrue( condition.isEquals() );
+
+    final Rule rule3 = rules.get( 2 );
+    assertTrue( rule3.isOmitRule() );
+    assertEquals( rule3.getType().pattern(), ".*Impl" );
+    assertPattern( rule3.getMember(), "^\\Qarez.Node\\E$" );
+    assertNotNull( rule3.getCondition() );
+    assertFalse( rule3.getCondition().isEquals() );
+
+    // Patterns are shared by the rules in a file
+    assertSame( rules.get( 3 ).getType(), rule1.getType() );
+    assertPattern( rules.get( 3 ).getMember(), "^\\QgetName\\E$" );
+  }
+
+  @Test
+  public void read_badHeader()
+    throws Exception
+  {
+    assertReadFails( toBytes( 0x12345678, (byte) BinaryRuleReader.VERSION, 0, 0 ),
+                     "Grim binary rules do not start with the expected header" );
+  }
+
+  @Test
+  public void read_unsupportedVersion()
+    throws Exception
+  {
+    assertReadFails( toBytes( BinaryRuleReader.MAGIC, (byte) 2, 0, 0 ),
+                     "Grim binary rules have version 2 but only version 1 is supported" );
+  }
+
+  @Test
+  public void read_truncated()
+    throws Exception
+  {
+    assertReadFails( toBytes( BinaryRuleReader.MAGIC, (byte) BinaryRuleReader.VERSION, 1, "arez.Node" ),
+                     "Grim binary rules are truncated" );
+  }
+
+  @Test
+  public void read_invalidCount()
+    throws Exception
+  {
+    assertReadFails( toBytes( BinaryRuleReader.MAGIC, (byte) BinaryRuleReader.VERSION, 100, 0 ),
+                     "Grim binary rules contain an invalid count 100" );
+  }
+
+  @Test
+  public void read_invalidStringIndex()
+    throws Exception
+  {
+    assertReadFails( toBytes( BinaryRuleReader.MAGIC,
+                              (byte) BinaryRuleReader.VERSION,
+                              1, "arez.Node",
+                              1, (byte) 0, (byte) BinaryRuleReader.KIND_LITERAL, 1 ),
+                     "Grim rule at index 0 references string 1 but the string table contains 1 strings" );
+  }
+
+  @Test
+  public void read_unknownPatternKind()
+    throws Exception
+  {
+    assertReadFails( toBytes( BinaryRuleReader.MAGIC,
+                              (byte) BinaryRuleReader.VERSION,
+                              1, "arez.Node",
+                              1, (byte) 0, (byte) 9, 0 ),
+                     "Grim rule at index 0 contains a pattern of unknown kind 9" );
+  }
+
+  @Test
+  public void read_malformedPattern()
+    throws Exception
+  {
+    final byte[] data = toBytes( BinaryRuleReader.MAGIC,
+                                 (byte) BinaryRuleReader.VERSION,
+                                 1, "\\x",
+                                 1, (byte) 0, (byte) BinaryRuleReader.KIND_REGEX, 0 );
+    // Patterns are not compiled by the reader so the syntax error is reported when the pattern is compiled
+    final List<Rule> rules = BinaryRuleReader.read( ByteBuffer.wrap( data ), "Node.grim.bin" );
+    assertEquals( rules.size(), 1 );
+    expectThrows( PatternSyntaxException.class, () -> rules.get( 0 ).getType() );
+  }
+
+  @Test
+  public void read_sharedPatterns()
+    throws Exception
+  {
+    final byte[] data = toBytes( BinaryRuleReader.MAGIC,
+                                 (byte) BinaryRuleReader.VERSION,
+                                 2, "arez.Node", "getName",
+                                 1,
+                                 (byte) BinaryRuleReader.FLAG_MEMBER,
+                                 (byte) BinaryRuleReader.KIND_LITERAL, 0,
+                                 (byte) BinaryRuleReader.KIND_METHOD, 1 );
+    final PatternPool patterns = new PatternPool();
+    final Rule rule1 = BinaryRuleReader.read( ByteBuffer.wrap( data ), "Node.grim.bin", patterns ).get( 0 );
+    final Rule rule2 = BinaryRuleReader.read( ByteBuffer.wrap( data ), "Other.grim.bin", patterns ).get( 0 );
+    assertEquals( patterns.size(), 2 );
+
+    // Patterns are shared by rules read with the same pool and literal patterns are never compiled
+    assertSame( rule2.getTypeMatcher(), rule1.getTypeMatcher() );
+    assertSame( rule2.getMemberMatcher(), rule1.getMemberMatcher() );
+    assertTrue( rule1.matches( Collections.emptyMap(), "arez.Node", "$getName" ) );
+    assertFalse( rule1.getTypeMatcher().getRulePattern().isCompiled() );
+    assertFalse( rule1.getMemberMatcher().getRulePattern().isCompiled() );
+  }
+
+  /**
+   * Encode the values in the binary rule format.
+   * An Integer is written as an int32, a Byte as a uint8 and a String as a length prefixed utf8 string.
+   */
+  @Nonnull
+  static byte[] toBytes( @Nonnull final Object... values )
+    throws IOException
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream output = new DataOutputStream( bytes );
+    for ( final Object value : values )
+    {
+      if ( value instanceof Byte )
+      {
+        output.writeByte( (Byte) value );
+      }
+      else if ( value instanceof Integer )
+      {
+        output.writeInt( (Integer) value );
+      }
+      else
+      {
+        final byte[] data = ( (String) value ).getBytes( StandardCharsets.UTF_8 );
+        output.writeInt( data.length );
+        output.write( data );
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private void assertPattern( final Pattern pattern, @Nonnull final String expected )
+  {
+    assertNotNull( pattern );
+    assertEquals( pattern.pattern(), expected );
+  }
+
+  private void assertReadFails( @Nonnull final byte[] data, @Nonnull final String message )
+  {
+    final IOException exception =
+      expectThrows( IOException.class, () -> BinaryRuleReader.read( ByteBuffer.wrap( data ), "Node.grim.bin" ) );
+    assertEquals( exception.getMessage(), message );
+  }
+}
@@ -0,0 +1,86 @@
+package grim.asserts;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class BinaryRuleWriterTest
+{
+  @Test
+  public void encode()
+    throws Exception
+  {
+    final Pattern type = Pattern.compile( "^\\Qarez.Node\\E$" );
+    final Condition condition = new Condition( "arez.enable_names", "true", false );
+    final List<Rule> rules =
+      Arrays.asList( new Rule( true, type, Pattern.compile( "^\\$?\\QgetName\\E$" ), null ),
+                     new Rule( false, Pattern.compile( "^arez\\.spy\\..*$" ), null, condition ),
+                     new Rule( true, type, null, new Condition( "arez.enable_names", "true", true ) ) );
+
+    final List<Rule> decoded = BinaryRuleReader.read( ByteBuffer.wrap( BinaryRuleWriter.encode( rules ) ), "X" );
+    assertEquals( decoded.size(), 3 );
+    for ( int i = 0; i < rules.size(); i++ )
+    {
+      final Rule rule = rules.get( i );
+      final Rule other = decoded.get( i );
+      assertEquals( other.isOmitRule(), rule.isOmitRule() );
+      assertEquals( other.getType().pattern(), rule.getType().pattern() );
+      assertEquals( String.valueOf( other.getMember() ), String.valueOf( rule.getMember() ) );
+      assertEquals( other.getCondition(), rule.getCondition() );
+      assertEquals( other.getSource(), "X" );
+    }
+  }
+
+  @Test
+  public void encode_namedPatterns()
+    throws Exception
+  {
+    final List<Rule> rules =
+      Arrays.asList( new Rule( true,
+                               new RulePattern( "arez.Node", false ),
+                               new RulePattern( "getName", true ),
+                               null,
+                               "A" ),
+                     new Rule( false,
+                               new RulePattern( "arez.Node", false ),
+                               new RulePattern( "_name", false ),
+                               null,
+                               "A" ) );
+
+    final byte[] data = BinaryRuleWriter.encode( rules );
+    // The names are recorded rather than the regular expressions derived from them
+    final String content = new String( data, StandardCharsets.UTF_8 );
+    assertTrue( content.contains( "getName" ) );
+    assertFalse( content.contains( "\\Q" ) );
+
+    final List<Rule> decoded = BinaryRuleReader.read( ByteBuffer.wrap( data ), "X" );
+    assertEquals( decoded.size(), 2 );
+    for ( int i = 0; i < rules.size(); i++ )
+    {
+      final RulePattern type = decoded.get( i ).getTypeMatcher().getRulePattern();
+      final RulePattern member = decoded.get( i ).getMemberMatcher().getRulePattern();
+      final RulePattern expectedMember = rules.get( i ).getMemberMatcher().getRulePattern();
+      assertEquals( type.getName(), "arez.Node" );
+      assertFalse( type.isDevirtualized() );
+      assertEquals( member.getName(), expectedMember.getName() );
+      assertEquals( member.isDevirtualized(), expectedMember.isDevirtualized() );
+      assertEquals( member.getRegex(), expectedMember.getRegex() );
+      assertFalse( member.isCompiled() );
+    }
+  }
+
+  @Test
+  public void encode_patternWithFlags()
+  {
+    final Rule rule = new Rule( true, Pattern.compile( "arez", Pattern.CASE_INSENSITIVE ), null, null );
+    final IllegalArgumentException exception =
+      expectThrows( IllegalArgumentException.class,
+                    () -> BinaryRuleWriter.encode( Collections.singletonList( rule ) ) );
+    assertEquals( exception.getMessage(), "Unable to encode the pattern arez as it has flags" );
+  }
+}
@@ -52,4 +52,20 @@ public class ConditionTest
 
     assertTrue( condition.matches( compileTimeProperties ) );
   }
+
+  @Test
+  public void equalsAndHashCode()
+  {
+    final Condition condition1 = new Condition( "arez.environment", "production", true );
+    final Condition condition2 = new Condition( "arez.environment", "production", true );
+    final Condition condition3 = new Condition( "arez.environment", "production", false );
+    final Condition condition4 = new Condition( "arez.environment", "development", true );
+    final Condition condition5 = new Condition( "arez.enable_names", "production", true );
+
+    assertEquals( condition1, condition2 );
+    assertEquals( condition1.hashCode(), condition2.hashCode() );
+    assertNotEquals( condition1, condition3 );
+    assertNotEquals( condition1, condition4 );
+    assertNotEquals( condition1, condition5 );
+  }
 }
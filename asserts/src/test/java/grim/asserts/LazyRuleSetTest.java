@@ -0,0 +1,249 @@
+package grim.asserts;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class LazyRuleSetTest
+{
+  private Path _baseDirectory;
+
+  @BeforeMethod
+  public void beforeMethod()
+    throws IOException
+  {
+    _baseDirectory = Files.createTempDirectory( "grim" );
+  }
+
+  @AfterMethod
+  public void afterMethod()
+    throws IOException
+  {
+    try ( final Stream<Path> paths = Files.walk( _baseDirectory ) )
+    {
+      //noinspection ResultOfMethodCallIgnored
+      paths.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+    }
+  }
+
+  @Test
+  public void shouldOmitSymbol()
+    throws Exception
+  {
+    createRules( false );
+
+    final LazyRuleSet rules = LazyRuleSet.loadFromClassLoader( newClassLoader() );
+    assertEquals( rules.getRuleFileCount(), 5 );
+    // Only the rules declared on packages are loaded eagerly
+    assertEquals( rules.getLoadedRuleFileCount(), 1 );
+
+    final Map<String, String> properties = new HashMap<>();
+    assertTrue( rules.shouldOmitSymbol( properties, "arez.ArezContext", "$clinit" ) );
+    assertFalse( rules.shouldOmitSymbol( properties, "arez.ArezContext", "other" ) );
+    // The rules in the arez package have been loaded
+    assertEquals( rules.getLoadedRuleFileCount(), 3 );
+
+    // The rules in the arez.spy package are loaded and the rules in the arez package are reused
+    assertTrue( rules.shouldOmitSymbol( properties, "arez.spy.SpyImpl", "" ) );
+    properties.put( "arez.enable_spies", "true" );
+    assertFalse( rules.shouldOmitSymbol( properties, "arez.spy.SpyImpl", "" ) );
+    assertTrue( rules.shouldOmitSymbol( properties, "arez.spy.Spy", "" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 4 );
+
+    // The rules of a nested type named using the qualified name are located in the package of the outer type
+    assertTrue( rules.shouldOmitSymbol( properties, "arez.ArezContext.Inner", "foo" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 4 );
+
+    // Packages without rule files are never loaded
+    assertFalse( rules.shouldOmitSymbol( properties, "react4j.Component", "" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 4 );
+    assertEquals( rules.getRuleFileCount(), 5 );
+  }
+
+  @Test
+  public void shouldOmitSymbol_binaryName()
+    throws Exception
+  {
+    createRules( false );
+
+    final LazyRuleSet rules = LazyRuleSet.loadFromClassLoader( newClassLoader() );
+    assertEquals( rules.getLoadedRuleFileCount(), 1 );
+
+    // A type named using the binary name is only located in the package that precedes the last '.'
+    assertFalse( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.spy.Spy$Inner", "" ) );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.spy.Spy$Impl", "" ) );
+    assertFalse( rules.shouldOmitSymbol( Collections.singletonMap( "arez.enable_spies", "true" ),
+                                         "arez.spy.Spy$Impl",
+                                         "" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 2 );
+
+    // A type named using the qualified name is also located in the enclosing packages
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.spy.Spy", "foo" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 4 );
+  }
+
+  @Test
+  public void shouldOmitSymbol_index()
+    throws Exception
+  {
+    createRules( true );
+
+    final LazyRuleSet rules = LazyRuleSet.loadFromClassLoader( newClassLoader() );
+    assertEquals( rules.getRuleFileCount(), 5 );
+    assertEquals( rules.getLoadedRuleFileCount(), 1 );
+
+    // The results match a RuleSet containing every rule
+    final RuleSet ruleSet = RuleSet.loadFromClassLoader( newClassLoader() );
+    final Map<String, String> properties = Collections.singletonMap( "arez.enable_spies", "false" );
+    for ( final String type : new String[]{ "arez.ArezContext", "arez.Node", "arez.spy.SpyImpl", "arez.Other" } )
+    {
+      for ( final String member : new String[]{ "", "$clinit", "foo" } )
+      {
+        assertEquals( rules.shouldOmitSymbol( properties, type, member ),
+                      ruleSet.shouldOmitSymbol( properties, type, member ),
+                      type + "." + member );
+      }
+    }
+  }
+
+  @Test
+  public void loadFromClassLoader_filter()
+    throws Exception
+  {
+    createRules( false );
+
+    final LazyRuleSet rules = LazyRuleSet.loadFromClassLoader( newClassLoader(), n -> !n.startsWith( "arez.spy." ) );
+    assertEquals( rules.getRuleFileCount(), 4 );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.spy.SpyImpl", "" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 3 );
+  }
+
+  @Test
+  public void forSymbols()
+    throws Exception
+  {
+    createRules( false );
+
+    final LazyRuleSet rules = LazyRuleSet.loadFromClassLoader( newClassLoader() );
+    final SymbolTable symbols =
+      new SymbolTable( new String[]{ "arez.spy.SpyImpl", "arez.spy.SpyImpl", "react4j.Component" },
+                       new String[]{ "", "foo", "" } );
+    final RuleSet ruleSet = rules.forSymbols( symbols );
+    // The rules in the arez and arez.spy packages are loaded, along with the rules declared on packages
+    assertEquals( rules.getLoadedRuleFileCount(), 4 );
+    assertEquals( ruleSet.getOmitRules().size(), 5 );
+    assertEquals( ruleSet.getKeepRules().size(), 2 );
+
+    assertEquals( ruleSet.shouldOmitSymbols( Collections.emptyMap(), symbols ).cardinality(), 1 );
+    assertEquals( ruleSet.shouldOmitSymbols( Collections.singletonMap( "arez.enable_spies", "true" ), symbols )
+                    .cardinality(), 0 );
+  }
+
+  @Test
+  public void shouldOmitSymbol_malformedRuleFile()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json", "[ { \"type\": \"[\" } ]" );
+
+    final LazyRuleSet rules = LazyRuleSet.loadFromClassLoader( newClassLoader() );
+    assertFalse( rules.shouldOmitSymbol( Collections.emptyMap(), "react4j.Component", "" ) );
+
+    final IllegalStateException exception =
+      expectThrows( IllegalStateException.class,
+                    () -> rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "" ) );
+    assertEquals( exception.getMessage(),
+                  "Failed to load Grim Omit rules from META-INF/grim/arez/ArezContext.grim.json" );
+  }
+
+  @Test
+  public void shouldOmitSymbol_bundle()
+    throws Exception
+  {
+    createRuleFile( "grim.bundle.json",
+                    "{\n" +
+                    "  \"arez/ArezContext\": [ { \"type\": \"^\\\\Qarez.ArezContext\\\\E$\" } ],\n" +
+                    "  \"arez/package-info\": [ { \"type\": \"^arez\\\\.dom\\\\..*$\" } ],\n" +
+                    "  \"arez/spy/Spy\": [ { \"type\": \"^\\\\Qarez.spy.Spy\\\\E$\" } ]\n" +
+                    "}\n" );
+    createRuleFile( "react4j/dom/Element.grim.json", "[ { \"type\": \"^\\\\Qreact4j.dom.Element\\\\E$\" } ]" );
+
+    final LazyRuleSet rules = LazyRuleSet.loadFromClassLoader( newClassLoader() );
+    // The entries of the bundle are loaded by package in the same way as rule files
+    assertEquals( rules.getRuleFileCount(), 4 );
+    assertEquals( rules.getLoadedRuleFileCount(), 1 );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.dom.Node", "" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 2 );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "" ) );
+    assertFalse( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext2", "" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 2 );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.spy.Spy", "" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 3 );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "react4j.dom.Element", "" ) );
+    assertEquals( rules.getLoadedRuleFileCount(), 4 );
+  }
+
+  private void createRules( final boolean index )
+    throws IOException
+  {
+    createRuleFile( "arez/package-info.grim.json",
+                    "[ { \"type\": \"^arez\\\\.spy\\\\..*Impl$\" } ]" );
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  { \"type\": \"^\\\\Qarez.ArezContext\\\\E$\", \"member\": \"^\\\\Q$clinit\\\\E$\" },\n" +
+                    "  { \"type\": \"^\\\\Qarez.ArezContext.Inner\\\\E$\" }\n" +
+                    "]" );
+    createRuleFile( "arez/Node.grim.json", "[ { \"type\": \"^\\\\Qarez.Node\\\\E$\", \"member\": \"foo\" } ]" );
+    createRuleFile( "arez/spy/Spy.grim.json",
+                    "[\n" +
+                    "  { \"type\": \"^\\\\Qarez.spy.Spy\\\\E$\" },\n" +
+                    "  {\n" +
+                    "    \"keep\": true,\n" +
+                    "    \"type\": \"^arez\\\\.spy\\\\..*Impl$\",\n" +
+                    "    \"property\": \"arez.enable_spies\",\n" +
+                    "    \"value\": \"true\",\n" +
+                    "    \"operator\": \"EQ\"\n" +
+                    "  },\n" +
+                    "  { \"keep\": true, \"type\": \"^\\\\Qarez.spy.SpyImpl\\\\E$\", \"member\": \"foo\" }\n" +
+                    "]" );
+    createRuleFile( "react4j/dom/Element.grim.json", "[ { \"type\": \"^\\\\Qreact4j.dom.Element\\\\E$\" } ]" );
+    if ( index )
+    {
+      createRuleFile( "grim.index",
+                      "arez/ArezContext.grim.json\n" +
+                      "arez/Node.grim.json\n" +
+                      "arez/package-info.grim.json\n" +
+                      "arez/spy/Spy.grim.json\n" +
+                      "react4j/dom/Element.grim.json\n" );
+    }
+  }
+
+  @Nonnull
+  private URLClassLoader newClassLoader()
+    throws IOException
+  {
+    return new URLClassLoader( new URL[]{ _baseDirectory.toUri().toURL() }, null );
+  }
+
+  private void createRuleFile( @Nonnull final String path, @Nonnull final String content )
+    throws IOException
+  {
+    final Path file = _baseDirectory.resolve( "META-INF" ).resolve( "grim" ).resolve( Paths.get( path ) );
+    Files.createDirectories( file.getParent() );
+    Files.write( file, content.getBytes( StandardCharsets.UTF_8 ) );
+  }
+}
@@ -0,0 +1,128 @@
+package grim.asserts;
+
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class NameMatcherTest
+{
+  @Test
+  public void literal()
+  {
+    final NameMatcher matcher = new NameMatcher( Pattern.compile( "^\\Qcom.example.Foo\\E$" ) );
+    assertEquals( matcher.getKind(), PatternKind.LITERAL );
+    assertEquals( matcher.getLiteral(), "com.example.Foo" );
+    assertNull( matcher.getPrefix() );
+    assertTrue( matcher.isSafe() );
+
+    assertMatches( matcher, "com.example.Foo", true );
+    assertMatches( matcher, "com.example.Foo2", false );
+    assertMatches( matcher, "com.example.Fo", false );
+  }
+
+  @Test
+  public void prefix()
+  {
+    final NameMatcher matcher = new NameMatcher( Pattern.compile( "^com\\.example\\..*$" ) );
+    assertEquals( matcher.getKind(), PatternKind.PREFIX );
+    assertNull( matcher.getLiteral() );
+    assertEquals( matcher.getPrefix(), "com.example." );
+    assertTrue( matcher.isSafe() );
+
+    assertMatches( matcher, "com.example.", true );
+    assertMatches( matcher, "com.example.Foo", true );
+    assertMatches( matcher, "com.example.Foo$Bar", true );
+    assertMatches( matcher, "com.example", false );
+    assertMatches( matcher, "com.example.Foo\nBar", false );
+    assertMatches( matcher, "com.other.Foo", false );
+  }
+
+  @Test
+  public void glob()
+  {
+    final NameMatcher matcher = new NameMatcher( Pattern.compile( "^com\\..*\\.internal\\..*Impl$" ) );
+    assertEquals( matcher.getKind(), PatternKind.GLOB );
+    assertNull( matcher.getLiteral() );
+    assertNull( matcher.getPrefix() );
+    assertTrue( matcher.isSafe() );
+
+    assertMatches( matcher, "com.example.internal.FooImpl", true );
+    assertMatches( matcher, "com.internal.internal.Impl", true );
+    assertMatches( matcher, "com.a.internal.b.internal.Impl", true );
+    assertMatches( matcher, "com.internal.Impl", false );
+    assertMatches( matcher, "com.example.internal.Foo", false );
+    assertMatches( matcher, "com.example.internal.FooImpl2", false );
+    assertMatches( matcher, "com.example.internal.Foo\u2028Impl", false );
+    assertMatches( matcher, "org.example.internal.FooImpl", false );
+
+    final NameMatcher overlapping = new NameMatcher( Pattern.compile( "ab.*ba" ) );
+    assertEquals( overlapping.getKind(), PatternKind.GLOB );
+    assertMatches( overlapping, "aba", false );
+    assertMatches( overlapping, "abba", true );
+    assertMatches( overlapping, "abxba", true );
+
+    final NameMatcher unanchored = new NameMatcher( Pattern.compile( "Foo" ) );
+    assertEquals( unanchored.getKind(), PatternKind.GLOB );
+    assertMatches( unanchored, "Foo", true );
+    assertMatches( unanchored, "FooFoo", false );
+  }
+
+  @Test
+  public void general()
+  {
+    final NameMatcher matcher = new NameMatcher( Pattern.compile( "^(get|set)[A-Z].*$" ) );
+    assertEquals( matcher.getKind(), PatternKind.GENERAL );
+    assertTrue( matcher.isSafe() );
+
+    assertMatches( matcher, "getName", true );
+    assertMatches( matcher, "setName", true );
+    assertMatches( matcher, "isName", false );
+    assertMatches( matcher, "getname", false );
+  }
+
+  @Test
+  public void general_nestedQuantifierSupportedByAutomaton()
+  {
+    final NameMatcher matcher = new NameMatcher( Pattern.compile( "(.*)*foo" ) );
+    assertEquals( matcher.getKind(), PatternKind.GENERAL );
+    assertTrue( matcher.isSafe() );
+
+    assertMatches( matcher, "foo", true );
+    assertMatches( matcher, "barfoo", true );
+    assertMatches( matcher, "fob", false );
+
+    final NameMatcher nested = new NameMatcher( Pattern.compile( "^(a+)+$" ) );
+    assertTrue( nested.isSafe() );
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < 64; i++ )
+    {
+      sb.append( 'a' );
+    }
+    // A backtracking matcher would not complete within any reasonable time
+    assertTrue( nested.matches( sb.toString() ) );
+    assertFalse( nested.matches( sb + "!" ) );
+  }
+
+  @Test
+  public void general_nestedQuantifierNotSupportedByAutomaton()
+  {
+    final NameMatcher matcher = new NameMatcher( Pattern.compile( "^(a+)+(?=b)b$" ) );
+    assertEquals( matcher.getKind(), PatternKind.GENERAL );
+    assertFalse( matcher.isSafe() );
+  }
+
+  @Test
+  public void patternWithFlags()
+  {
+    final NameMatcher matcher = new NameMatcher( Pattern.compile( "^\\Qfoo\\E$", Pattern.CASE_INSENSITIVE ) );
+    assertEquals( matcher.getKind(), PatternKind.GENERAL );
+    assertMatches( matcher, "FOO", true );
+  }
+
+  private void assertMatches( @Nonnull final NameMatcher matcher, @Nonnull final String name, final boolean matches )
+  {
+    assertEquals( matcher.matches( name ), matches );
+    assertEquals( matcher.matches( name ), matcher.getPattern().matcher( name ).matches() );
+  }
+}
@@ -0,0 +1,161 @@
+package grim.asserts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class PatternAutomatonTest
+{
+  @Test
+  public void supportedSyntax()
+  {
+    assertSupported( "^\\Qarez.ArezContext\\E$" );
+    assertSupported( "^\\$?\\QgetName\\E$" );
+    assertSupported( "^com\\.example\\..*$" );
+    assertSupported( ".*\\.Arez_.*" );
+    assertSupported( "^(?:get|set)[A-Z]\\w*$" );
+    assertSupported( "^_name$|^_id$" );
+    assertSupported( "a{2,3}b{2}c{1,}d??" );
+    assertSupported( "[^a-c\\d-]\\x41\\u0042\\t" );
+    assertSupported( "(.*)*foo" );
+    assertSupported( "\\Qa.b" );
+  }
+
+  @Test
+  public void unsupportedSyntax()
+  {
+    assertUnsupported( "(a)\\1" );
+    assertUnsupported( "\\bfoo" );
+    assertUnsupported( "(?i)foo" );
+    assertUnsupported( "(?=foo)foo" );
+    assertUnsupported( "a*+" );
+    assertUnsupported( "a^b" );
+    assertUnsupported( "(a$)" );
+    assertUnsupported( "[a-z&&[^e]]" );
+    assertUnsupported( "\\p{Lu}" );
+    assertUnsupported( "a{1000}" );
+    assertUnsupported( "\uD83D\uDE00" );
+    assertNull( RegexParser.parse( Pattern.compile( "foo", Pattern.CASE_INSENSITIVE ) ) );
+  }
+
+  @Test
+  public void matchesAgreeWithPattern()
+  {
+    final String[] regexes = new String[]{
+      "^\\Qarez.ArezContext\\E$",
+      "^\\$?\\QgetName\\E$",
+      "^com\\.example\\..*$",
+      ".*\\.Arez_.*",
+      "^(?:get|set)[A-Z]\\w*$",
+      "^_name$|^_id$",
+      "a{2,3}b{2}c{1,}d??",
+      "[^a-c\\d-]+",
+      "(.*)*foo",
+      "(a|ab)(c|bcd)(d*)",
+      "x*",
+      "",
+      "\\Qa.b",
+      "\\s\\S\\W.",
+      "(a)\\1"
+    };
+    final String[] inputs = new String[]{
+      "",
+      "arez.ArezContext",
+      "arez.ArezContext2",
+      "getName",
+      "$getName",
+      "$$getName",
+      "com.example.Foo",
+      "com.example.",
+      "com.example",
+      "com.example.Foo\n",
+      "com.other.Arez_Foo",
+      "Arez_Foo",
+      "getX",
+      "get",
+      "setFoo_1",
+      "_name",
+      "_id",
+      "_name_id",
+      "aabbc",
+      "aaabbccd",
+      "aaaabbc",
+      "xyz",
+      "abc",
+      "foo",
+      "xfoo",
+      "abcd",
+      "abcdd",
+      "xxxx",
+      "a.b",
+      "axb",
+      " x!\n",
+      " x! ",
+      "aa",
+      "\u00e9t\u00e9"
+    };
+    final Pattern[] patterns = Arrays.stream( regexes ).map( Pattern::compile ).toArray( Pattern[]::new );
+    final PatternAutomaton automaton = new PatternAutomaton( patterns );
+    assertFalse( automaton.isEmpty() );
+    assertFalse( automaton.isSupported( regexes.length - 1 ) );
+
+    for ( final String input : inputs )
+    {
+      final int[] matches = automaton.match( input );
+      assertNotNull( matches );
+      final List<Integer> expected = new ArrayList<>();
+      for ( int i = 0; i < patterns.length; i++ )
+      {
+        if ( automaton.isSupported( i ) && patterns[ i ].matcher( input ).matches() )
+        {
+          expected.add( i );
+        }
+      }
+      assertEquals( matches, expected.stream().mapToInt( Integer::intValue ).toArray(), "Input: " + input );
+    }
+  }
+
+  @Test
+  public void match_surrogates()
+  {
+    final PatternAutomaton automaton = new PatternAutomaton( new Pattern[]{ Pattern.compile( ".*" ) } );
+    assertEquals( automaton.match( "abc" ), new int[]{ 0 } );
+    assertNull( automaton.match( "a\uD83D\uDE00" ) );
+  }
+
+  @Test
+  public void match_nullPatternsIgnored()
+  {
+    final PatternAutomaton automaton =
+      new PatternAutomaton( new Pattern[]{ null, Pattern.compile( "a" ), null, Pattern.compile( "a|b" ) } );
+    assertFalse( automaton.isSupported( 0 ) );
+    assertTrue( automaton.isSupported( 1 ) );
+    assertFalse( automaton.isSupported( 2 ) );
+    assertTrue( automaton.isSupported( 3 ) );
+    assertEquals( automaton.match( "a" ), new int[]{ 1, 3 } );
+    assertEquals( automaton.match( "b" ), new int[]{ 3 } );
+    assertEquals( automaton.match( "c" ), new int[ 0 ] );
+  }
+
+  @Test
+  public void match_empty()
+  {
+    final PatternAutomaton automaton = new PatternAutomaton( new Pattern[]{ Pattern.compile( "(a)\\1" ) } );
+    assertTrue( automaton.isEmpty() );
+    assertEquals( automaton.match( "aa" ), new int[ 0 ] );
+  }
+
+  private void assertSupported( @Nonnull final String regex )
+  {
+    assertNotNull( RegexParser.parse( regex ), "Expected to support " + regex );
+  }
+
+  private void assertUnsupported( @Nonnull final String regex )
+  {
+    assertNull( RegexParser.parse( regex ), "Expected to not support " + regex );
+  }
+}
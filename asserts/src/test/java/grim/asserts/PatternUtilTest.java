@@ -0,0 +1,126 @@
+package grim.asserts;
+
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class PatternUtilTest
+{
+  @Test
+  public void asLiteral()
+  {
+    assertEquals( PatternUtil.asLiteral( "^\\Qarez.ArezContext\\E$" ), "arez.ArezContext" );
+    assertEquals( PatternUtil.asLiteral( "^\\Q$clinit\\E$" ), "$clinit" );
+    assertEquals( PatternUtil.asLiteral( "^arez\\.ArezContextHolder$" ), "arez.ArezContextHolder" );
+    assertEquals( PatternUtil.asLiteral( "^\\$clinit$" ), "$clinit" );
+    assertEquals( PatternUtil.asLiteral( "^_name$" ), "_name" );
+    assertEquals( PatternUtil.asLiteral( "^\\Qarez.\\E\\QNode\\E$" ), "arez.Node" );
+  }
+
+  @Test
+  public void asLiteral_nonLiteral()
+  {
+    assertNull( PatternUtil.asLiteral( "arez.ArezContext" ) );
+    assertNull( PatternUtil.asLiteral( "^arez.ArezContext$" ) );
+    assertNull( PatternUtil.asLiteral( "^\\Qarez.ArezContext\\E" ) );
+    assertNull( PatternUtil.asLiteral( "^\\Qarez.ArezContext$" ) );
+    assertNull( PatternUtil.asLiteral( "^arez\\.ArezContext\\$" ) );
+    assertNull( PatternUtil.asLiteral( "^com\\.example\\..*$" ) );
+    assertNull( PatternUtil.asLiteral( "^\\$?\\QgetName\\E$" ) );
+    assertNull( PatternUtil.asLiteral( "^_name$|^_id$" ) );
+    assertNull( PatternUtil.asLiteral( "^\\d$" ) );
+    assertNull( PatternUtil.asLiteral( "^" ) );
+    assertNull( PatternUtil.asLiteral( "" ) );
+  }
+
+  @Test
+  public void asLiteral_patternWithFlags()
+  {
+    assertEquals( PatternUtil.asLiteral( Pattern.compile( "^\\Qarez.Node\\E$" ) ), "arez.Node" );
+    assertNull( PatternUtil.asLiteral( Pattern.compile( "^\\Qarez.Node\\E$", Pattern.CASE_INSENSITIVE ) ) );
+  }
+
+  @Test
+  public void asPrefix()
+  {
+    assertEquals( PatternUtil.asPrefix( "^com\\.example\\..*$" ), "com.example." );
+    assertEquals( PatternUtil.asPrefix( "^\\Qcom.example.Outer$\\E.*$" ), "com.example.Outer$" );
+    assertEquals( PatternUtil.asPrefix( "^com\\\\.*$" ), "com\\" );
+    assertEquals( PatternUtil.asPrefix( "^.*$" ), "" );
+    assertEquals( PatternUtil.asPrefix( Pattern.compile( "^arez\\..*$" ) ), "arez." );
+
+    assertNull( PatternUtil.asPrefix( "^com\\.*$" ) );
+    assertNull( PatternUtil.asPrefix( "^\\Qcom.*$" ) );
+    assertNull( PatternUtil.asPrefix( "^com.example\\..*$" ) );
+    assertNull( PatternUtil.asPrefix( "com\\.example\\..*$" ) );
+    assertNull( PatternUtil.asPrefix( "^com\\.example\\..*" ) );
+    assertNull( PatternUtil.asPrefix( Pattern.compile( "^arez\\..*$", Pattern.DOTALL ) ) );
+  }
+
+  @Test
+  public void asDevirtualizedLiteral()
+  {
+    assertEquals( PatternUtil.asDevirtualizedLiteral( "^\\$?\\QgetName\\E$" ), "getName" );
+    assertEquals( PatternUtil.asDevirtualizedLiteral( "^\\$?getName$" ), "getName" );
+    assertEquals( PatternUtil.asDevirtualizedLiteral( Pattern.compile( "^\\$?\\QgetName\\E$" ) ), "getName" );
+
+    assertNull( PatternUtil.asDevirtualizedLiteral( "^\\QgetName\\E$" ) );
+    assertNull( PatternUtil.asDevirtualizedLiteral( "^\\$?get.*$" ) );
+    assertNull( PatternUtil.asDevirtualizedLiteral( "^\\$?\\$?getName$" ) );
+    assertNull( PatternUtil.asDevirtualizedLiteral( Pattern.compile( "^\\$?getName$", Pattern.CASE_INSENSITIVE ) ) );
+  }
+
+  @Test
+  public void asGlob()
+  {
+    assertGlob( "^com\\.example\\..*Impl$", "com.example.", "Impl" );
+    assertGlob( ".*Test", "", "Test" );
+    assertGlob( "^\\Q$clinit\\E.*$", "$clinit", "" );
+    assertGlob( "^com\\..*\\.internal\\..*Builder$", "com.", ".internal.", "Builder" );
+    assertGlob( ".*", "", "" );
+    assertGlob( "Foo", "Foo" );
+    assertGlob( "", "" );
+    assertGlob( Pattern.compile( "^arez\\..*Impl$" ), "arez.", "Impl" );
+
+    assertNull( PatternUtil.asGlob( "^com.example$" ) );
+    assertNull( PatternUtil.asGlob( "^com\\..*?Impl$" ) );
+    assertNull( PatternUtil.asGlob( "^com\\..*+Impl$" ) );
+    assertNull( PatternUtil.asGlob( "^com\\..+Impl$" ) );
+    assertNull( PatternUtil.asGlob( "^a$|^b$" ) );
+    assertNull( PatternUtil.asGlob( "^a$b" ) );
+    assertNull( PatternUtil.asGlob( "^\\d.*$" ) );
+    assertNull( PatternUtil.asGlob( "^\\Qa\n\\E.*" ) );
+    assertNull( PatternUtil.asGlob( Pattern.compile( "^arez\\..*Impl$", Pattern.DOTALL ) ) );
+  }
+
+  @Test
+  public void hasNestedQuantifier()
+  {
+    assertTrue( PatternUtil.hasNestedQuantifier( "(.*)*foo" ) );
+    assertTrue( PatternUtil.hasNestedQuantifier( "^(a+b)+$" ) );
+    assertTrue( PatternUtil.hasNestedQuantifier( "^((a|b)*c)+$" ) );
+    assertTrue( PatternUtil.hasNestedQuantifier( "^(x(a*))*$" ) );
+    assertTrue( PatternUtil.hasNestedQuantifier( "^(?:\\w{2,})*$" ) );
+    assertTrue( PatternUtil.hasNestedQuantifier( "^([a-z]+)*$" ) );
+
+    assertFalse( PatternUtil.hasNestedQuantifier( "^\\Qcom.example.Foo\\E$" ) );
+    assertFalse( PatternUtil.hasNestedQuantifier( "^com\\.example\\..*$" ) );
+    assertFalse( PatternUtil.hasNestedQuantifier( "^(get|set).*$" ) );
+    assertFalse( PatternUtil.hasNestedQuantifier( "^(a*)?b$" ) );
+    assertFalse( PatternUtil.hasNestedQuantifier( "^(a*)b(c)*$" ) );
+    assertFalse( PatternUtil.hasNestedQuantifier( "^(\\(a\\))*$" ) );
+    assertFalse( PatternUtil.hasNestedQuantifier( "^([*+])*$" ) );
+    assertFalse( PatternUtil.hasNestedQuantifier( "^(\\Q*\\E)*$" ) );
+  }
+
+  private void assertGlob( @Nonnull final String regex, @Nonnull final String... segments )
+  {
+    assertEquals( PatternUtil.asGlob( regex ), segments );
+  }
+
+  private void assertGlob( @Nonnull final Pattern pattern, @Nonnull final String... segments )
+  {
+    assertEquals( PatternUtil.asGlob( pattern ), segments );
+  }
+}
@@ -0,0 +1,190 @@
+package grim.asserts;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class RuleCacheTest
+{
+  private Path _directory;
+
+  @BeforeMethod
+  public void beforeMethod()
+    throws IOException
+  {
+    _directory = Files.createTempDirectory( "grim-cache" );
+  }
+
+  @AfterMethod
+  public void afterMethod()
+    throws IOException
+  {
+    try ( final Stream<Path> paths = Files.walk( _directory ) )
+    {
+      //noinspection ResultOfMethodCallIgnored
+      paths.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+    }
+  }
+
+  @Test
+  public void get()
+    throws Exception
+  {
+    final Path archive = _directory.resolve( "lib.jar" );
+    writeArchive( archive, "arez.Node" );
+
+    final AtomicInteger parseCount = new AtomicInteger();
+    final RuleCache cache = new RuleCache( _directory.resolve( "cache" ) );
+
+    final Map<String, byte[]> ruleFiles = get( cache, archive, parseCount );
+    assertEquals( parseCount.get(), 1 );
+    assertEquals( ruleFiles.keySet(), Collections.singleton( "META-INF/grim/arez/Node.grim.json" ) );
+    assertEquals( decodeTypes( ruleFiles ), Collections.singletonList( "^\\Qarez.Node\\E$" ) );
+    assertEquals( listCacheFiles(), 1 );
+
+    // The cache file is used when the archive is unchanged
+    final Map<String, byte[]> cached = get( cache, archive, parseCount );
+    assertEquals( parseCount.get(), 1 );
+    assertEquals( decodeTypes( cached ), Collections.singletonList( "^\\Qarez.Node\\E$" ) );
+
+    // The cache file is ignored and replaced when the archive changes
+    writeArchive( archive, "arez.Other" );
+    assertEquals( decodeTypes( get( cache, archive, parseCount ) ),
+                  Collections.singletonList( "^\\Qarez.Other\\E$" ) );
+    assertEquals( parseCount.get(), 2 );
+    assertEquals( listCacheFiles(), 1 );
+    get( cache, archive, parseCount );
+    assertEquals( parseCount.get(), 2 );
+  }
+
+  @Test
+  public void get_corruptCacheFile()
+    throws Exception
+  {
+    final Path archive = _directory.resolve( "lib.jar" );
+    writeArchive( archive, "arez.Node" );
+
+    final AtomicInteger parseCount = new AtomicInteger();
+    final RuleCache cache = new RuleCache( _directory.resolve( "cache" ) );
+    get( cache, archive, parseCount );
+    try ( final Stream<Path> files = Files.list( _directory.resolve( "cache" ) ) )
+    {
+      for ( final Path file : files.collect( Collectors.toList() ) )
+      {
+        Files.write( file, new byte[]{ 0x47, 0x52 } );
+      }
+    }
+
+    assertEquals( decodeTypes( get( cache, archive, parseCount ) ),
+                  Collections.singletonList( "^\\Qarez.Node\\E$" ) );
+    assertEquals( parseCount.get(), 2 );
+  }
+
+  @Test
+  public void get_concurrentWriters()
+    throws Exception
+  {
+    final Path archive = _directory.resolve( "lib.jar" );
+    writeArchive( archive, "arez.Node" );
+
+    final RuleCache cache = new RuleCache( _directory.resolve( "cache" ) );
+    final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    try
+    {
+      final List<Future<List<String>>> futures = new ArrayList<>();
+      for ( int i = 0; i < 32; i++ )
+      {
+        // Separate caches share the directory as they would in separate processes
+        final RuleCache other = 0 == i % 2 ? cache : new RuleCache( _directory.resolve( "cache" ) );
+        futures.add( executor.submit( () -> decodeTypes( get( other, archive, new AtomicInteger() ) ) ) );
+      }
+      for ( final Future<List<String>> future : futures )
+      {
+        assertEquals( future.get(), Collections.singletonList( "^\\Qarez.Node\\E$" ) );
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+    // Temporary files are never left behind
+    assertEquals( listCacheFiles(), 1 );
+  }
+
+  @Nonnull
+  private Map<String, byte[]> get( @Nonnull final RuleCache cache,
+                                   @Nonnull final Path archive,
+                                   @Nonnull final AtomicInteger parseCount )
+    throws IOException
+  {
+    try ( final JarFile jarFile = new JarFile( archive.toFile() ) )
+    {
+      return cache.get( archive, jarFile, name -> name.endsWith( ".grim.json" ), entry -> {
+        parseCount.incrementAndGet();
+        final String name = entry.getName();
+        final String type = name.substring( "META-INF/grim/".length(), name.length() - ".grim.json".length() );
+        final Pattern pattern = Pattern.compile( "^" + Pattern.quote( type.replace( '/', '.' ) ) + "$" );
+        return Collections.singletonMap( name, Collections.singletonList( new Rule( true, pattern, null, null ) ) );
+      } );
+    }
+  }
+
+  @Nonnull
+  private static List<String> decodeTypes( @Nonnull final Map<String, byte[]> ruleFiles )
+    throws IOException
+  {
+    final List<String> types = new ArrayList<>();
+    for ( final byte[] data : ruleFiles.values() )
+    {
+      for ( final Rule rule : BinaryRuleReader.read( ByteBuffer.wrap( data ), "X" ) )
+      {
+        types.add( rule.getType().pattern() );
+      }
+    }
+    return types;
+  }
+
+  private int listCacheFiles()
+    throws IOException
+  {
+    try ( final Stream<Path> files = Files.list( _directory.resolve( "cache" ) ) )
+    {
+      return (int) files.count();
+    }
+  }
+
+  private static void writeArchive( @Nonnull final Path archive, @Nonnull final String type )
+    throws IOException
+  {
+    try ( final JarOutputStream output = new JarOutputStream( new FileOutputStream( archive.toFile() ) ) )
+    {
+      output.putNextEntry( new JarEntry( "META-INF/grim/" + type.replace( '.', '/' ) + ".grim.json" ) );
+      output.write( "[]".getBytes( StandardCharsets.UTF_8 ) );
+      output.closeEntry();
+    }
+  }
+}
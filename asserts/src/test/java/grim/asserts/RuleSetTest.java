@@ -6,17 +6,28 @@ import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.Test;
@@ -41,14 +52,15 @@ public class RuleSetTest
   @Test
   public void combine()
   {
-    final Rule rule1 = new Rule( true, Pattern.compile( ".*" ), null, null );
-    final Rule rule2 = new Rule( false, Pattern.compile( ".*" ), null, null );
-    final Rule rule3 = new Rule( true, Pattern.compile( ".*" ), null, null );
-    final Rule rule4 = new Rule( false, Pattern.compile( ".*" ), null, null );
+    final Rule rule1 = new Rule( true, Pattern.compile( "^a\\..*$" ), null, null );
+    final Rule rule2 = new Rule( false, Pattern.compile( "^a\\..*$" ), null, null );
+    final Rule rule3 = new Rule( true, Pattern.compile( "^b\\..*$" ), null, null );
+    final Rule rule4 = new Rule( false, Pattern.compile( "^b\\..*$" ), null, null );
     final RuleSet rules1 = new RuleSet( Arrays.asList( rule1, rule2 ) );
     final RuleSet rules2 = new RuleSet( Arrays.asList( rule3, rule4 ) );
 
     final RuleSet rules3 = RuleSet.combine( rules1, rules2 );
+    assertEquals( rules3.getRemovedRuleCount(), 0 );
 
     final Collection<Rule> omitRules = rules3.getOmitRules();
     assertEquals( omitRules.size(), 2 );
@@ -60,6 +72,652 @@ public class RuleSetTest
     assertTrue( keepRules.contains( rule4 ) );
   }
 
+  @Test
+  public void combine_removesDuplicateRules()
+  {
+    final Condition condition = new Condition( "arez.enable_names", "false", true );
+    final Rule rule1 = new Rule( true,
+                                 Pattern.compile( "^\\Qarez.Node\\E$" ),
+                                 Pattern.compile( "^\\$?\\QgetName\\E$" ),
+                                 condition );
+    final Rule rule2 = new Rule( false, Pattern.compile( "^other\\..*$" ), null, null );
+    // Identical to rule1 with different escaping and a distinct but equal condition
+    final Rule rule3 = new Rule( true,
+                                 Pattern.compile( "^arez\\.Node$" ),
+                                 Pattern.compile( "^\\$?getName$" ),
+                                 new Condition( "arez.enable_names", "false", true ) );
+    final Rule rule4 = new Rule( false, Pattern.compile( "^other\\..*$" ), null, null );
+    // Differs from rule1 by condition, omit flag and devirtualization respectively
+    final Rule rule5 = new Rule( true,
+                                 Pattern.compile( "^\\Qarez.Node\\E$" ),
+                                 Pattern.compile( "^\\$?\\QgetName\\E$" ),
+                                 null );
+    final Rule rule6 = new Rule( false,
+                                 Pattern.compile( "^\\Qarez.Node\\E$" ),
+                                 Pattern.compile( "^\\$?\\QgetName\\E$" ),
+                                 condition );
+    final Rule rule7 = new Rule( true,
+                                 Pattern.compile( "^\\Qarez.Node\\E$" ),
+                                 Pattern.compile( "^\\QgetName\\E$" ),
+                                 condition );
+
+    final RuleSet rules1 = new RuleSet( Arrays.asList( rule1, rule2, rule2 ) );
+    assertEquals( rules1.getRemovedRuleCount(), 1 );
+    final RuleSet rules2 = new RuleSet( Arrays.asList( rule3, rule4, rule5, rule6, rule7 ) );
+    assertEquals( rules2.getRemovedRuleCount(), 0 );
+
+    final RuleSet combined = RuleSet.combine( rules1, rules2 );
+    assertEquals( combined.getRemovedRuleCount(), 3 );
+    assertEquals( combined.getOmitRules(), Arrays.asList( rule1, rule5, rule7 ) );
+    assertEquals( combined.getKeepRules(), Arrays.asList( rule2, rule6 ) );
+  }
+
+  @Test
+  public void combine_removesSubsumedRules()
+  {
+    final Condition condition = new Condition( "arez.enable_names", "false", true );
+    final Condition otherCondition = new Condition( "arez.enable_names", "true", true );
+    final Rule typeRule = new Rule( true, Pattern.compile( "^\\Qarez.Node\\E$" ), null, condition );
+    final Rule packageRule = new Rule( true, Pattern.compile( "^arez\\.spy\\..*$" ), null, null );
+    final Rule patternRule = new Rule( true, Pattern.compile( "^arez\\..*Impl$" ), null, condition );
+
+    // Subsumed by typeRule
+    final Rule rule1 = new Rule( true,
+                                 Pattern.compile( "^arez\\.Node$" ),
+                                 Pattern.compile( "^\\$?\\QgetName\\E$" ),
+                                 condition );
+    // Subsumed by packageRule which has no condition
+    final Rule rule2 = new Rule( true, Pattern.compile( "^\\Qarez.spy.Foo\\E$" ), null, condition );
+    final Rule rule3 = new Rule( true,
+                                 Pattern.compile( "^\\Qarez.spy.Foo$Bar\\E$" ),
+                                 Pattern.compile( "^\\$clinit$" ),
+                                 null );
+    // Subsumed by patternRule
+    final Rule rule4 = new Rule( true, Pattern.compile( "^arez\\..*Impl$" ), Pattern.compile( "^get.*$" ), condition );
+
+    // Not subsumed as the type-level rule has a different condition
+    final Rule rule5 = new Rule( true,
+                                 Pattern.compile( "^\\Qarez.Node\\E$" ),
+                                 Pattern.compile( "^\\$?\\QgetId\\E$" ),
+                                 otherCondition );
+    // Not subsumed as the type-level rule has a condition and this rule does not
+    final Rule rule6 = new Rule( true,
+                                 Pattern.compile( "^\\Qarez.Node\\E$" ),
+                                 Pattern.compile( "^\\$?\\QgetId\\E$" ),
+                                 null );
+    // Not subsumed as the type-level rule is an omit rule
+    final Rule rule7 = new Rule( false, Pattern.compile( "^\\Qarez.spy.Foo\\E$" ), null, null );
+    // Not subsumed as the type is not within the package
+    final Rule rule8 = new Rule( true, Pattern.compile( "^\\Qarez.spyglass.Foo\\E$" ), null, null );
+    // Not subsumed as the type pattern is not a literal
+    final Rule rule9 = new Rule( true, Pattern.compile( "^arez\\.spy\\.Foo.*$" ), null, null );
+
+    final RuleSet rules1 = new RuleSet( Arrays.asList( typeRule, packageRule, patternRule ) );
+    final RuleSet rules2 =
+      new RuleSet( Arrays.asList( rule1, rule2, rule3, rule4, rule5, rule6, rule7, rule8, rule9 ) );
+    assertEquals( rules2.getRemovedRuleCount(), 0 );
+
+    final RuleSet combined = RuleSet.combine( rules1, rules2 );
+    assertEquals( combined.getRemovedRuleCount(), 4 );
+    assertEquals( combined.getOmitRules(),
+                  Arrays.asList( typeRule, packageRule, patternRule, rule5, rule6, rule8, rule9 ) );
+    assertEquals( combined.getKeepRules(), Collections.singletonList( rule7 ) );
+
+    final Map<String, String> properties = Collections.singletonMap( "arez.enable_names", "false" );
+    assertTrue( combined.shouldOmitSymbol( properties, "arez.Node", "$getName" ) );
+    assertTrue( combined.shouldOmitSymbol( properties, "arez.spy.Foo$Bar", "$clinit" ) );
+    assertTrue( combined.shouldOmitSymbol( properties, "arez.FooImpl", "getName" ) );
+    assertFalse( combined.shouldOmitSymbol( properties, "arez.spy.Foo", "" ) );
+  }
+
+  @Test
+  public void shouldOmitSymbol_literalAndPatternRules()
+  {
+    final RuleSet rules =
+      new RuleSet( Arrays.asList( new Rule( true, Pattern.compile( "^\\Qarez.Node\\E$" ), null, null ),
+                                  new Rule( true,
+                                            Pattern.compile( "^\\Qarez.ArezContext\\E$" ),
+                                            Pattern.compile( "^\\$?\\QgetName\\E$" ),
+                                            null ),
+                                  new Rule( true,
+                                            Pattern.compile( "^arez\\.spy\\..*$" ),
+                                            null,
+                                            new Condition( "arez.enable_spies", "true", false ) ),
+                                  new Rule( false,
+                                            Pattern.compile( "^\\Qarez.spy.Spy\\E$" ),
+                                            Pattern.compile( "^\\Q$clinit\\E$" ),
+                                            null ) ) );
+
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.Node", "" ) );
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.Node", "getName" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.Node2", "" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.Nod", "" ) );
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "getName" ) );
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "$getName" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "getNextNodeId" ) );
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "getName" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "$clinit" ) );
+
+    compileTimeProperties.put( "arez.enable_spies", "true" );
+
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "getName" ) );
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.Node", "" ) );
+  }
+
+  @Test
+  public void shouldOmitSymbol_nestedTypeBoundary()
+  {
+    final RuleSet rules =
+      new RuleSet( Arrays.asList( new Rule( true,
+                                            Pattern.compile( "^\\Qarez.ObjectsEqualsComparator\\E$" ),
+                                            Pattern.compile( "^\\Q$clinit\\E$" ),
+                                            null ),
+                                  new Rule( true, Pattern.compile( "^\\Qarez.component.Outer$\\E.*$" ), null, null ),
+                                  new Rule( true,
+                                            Pattern.compile( "^arez\\.spy\\..*$" ),
+                                            Pattern.compile( "^\\Q$clinit\\E$" ),
+                                            null ) ) );
+
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.ObjectsEqualsComparator", "$clinit" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.ObjectsEqualsComparator$Type", "$clinit" ) );
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.component.Outer$Inner", "" ) );
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.component.Outer$Inner$Leaf", "foo" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.component.Outer", "" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.component.OuterSupport$Inner", "" ) );
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy$Inner", "$clinit" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy$Inner", "$init" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy\n", "$clinit" ) );
+
+    // The rule generated by the annotation processor for @OmitClinit only matches the annotated type
+    final RuleSet generatedRules =
+      new RuleSet( Collections.singletonList( new Rule( true,
+                                                        new RulePattern( "arez.ObjectsEqualsComparator", false ),
+                                                        new RulePattern( "$clinit", false ),
+                                                        null,
+                                                        null ) ) );
+    assertTrue( generatedRules.shouldOmitSymbol( compileTimeProperties, "arez.ObjectsEqualsComparator", "$clinit" ) );
+    assertFalse( generatedRules.shouldOmitSymbol( compileTimeProperties,
+                                                  "arez.ObjectsEqualsComparator$Type",
+                                                  "$clinit" ) );
+  }
+
+  @Test
+  public void shouldOmitSymbol_literalMembers()
+  {
+    final List<Rule> rules = new ArrayList<>();
+    for ( int i = 0; i < 200; i++ )
+    {
+      rules.add( new Rule( true,
+                           Pattern.compile( "^\\Qarez.ArezContext\\E$" ),
+                           Pattern.compile( "^\\$?\\Qmethod" + i + "\\E$" ),
+                           null ) );
+      rules.add( new Rule( true,
+                           Pattern.compile( "^\\Qarez.ArezContext\\E$" ),
+                           Pattern.compile( "^\\Q_field" + i + "\\E$" ),
+                           i % 2 == 0 ? null : new Condition( "arez.enable_names", "true", false ) ) );
+    }
+    rules.add( new Rule( false,
+                         Pattern.compile( "^\\Qarez.ArezContext\\E$" ),
+                         Pattern.compile( "^\\$?\\Qmethod7\\E$" ),
+                         null ) );
+    rules.add( new Rule( true, Pattern.compile( "^\\Qarez.ArezContext\\E$" ), Pattern.compile( "^get.*$" ), null ) );
+    final RuleSet ruleSet = new RuleSet( rules );
+
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+    compileTimeProperties.put( "arez.enable_names", "true" );
+
+    assertTrue( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "method3" ) );
+    assertTrue( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "$method3" ) );
+    assertFalse( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "$$method3" ) );
+    assertFalse( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "method7" ) );
+    assertFalse( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "$method7" ) );
+    assertFalse( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "method200" ) );
+    assertTrue( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "_field2" ) );
+    assertFalse( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "$_field2" ) );
+    assertFalse( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "_field3" ) );
+    assertTrue( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "getName" ) );
+    assertFalse( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.Node", "method3" ) );
+
+    compileTimeProperties.put( "arez.enable_names", "false" );
+
+    assertTrue( ruleSet.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "_field3" ) );
+  }
+
+  @Test
+  public void shouldOmitSymbol_patternsNotSupportedByAutomaton()
+  {
+    final RuleSet rules =
+      new RuleSet( Arrays.asList( new Rule( true, Pattern.compile( "^arez\\.(\\w)\\1.*$" ), null, null ),
+                                  new Rule( true,
+                                            Pattern.compile( ".*\\.Arez_.*" ),
+                                            Pattern.compile( "(?i)^TOSTRING$" ),
+                                            null ) ) );
+
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "arez.xxNode", "" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.xyNode", "" ) );
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "com.example.Arez_Node", "toString" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "com.example.Arez_Node", "hashCode" ) );
+    // Symbols containing supplementary characters are matched without the automaton
+    assertTrue( rules.shouldOmitSymbol( compileTimeProperties, "com.\uD83D\uDE00.Arez_Node", "toString" ) );
+    assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "com.\uD83D\uDE00.Node", "toString" ) );
+  }
+
+  @Test
+  public void withDecisionCache()
+  {
+    final RuleSet rules =
+      new RuleSet( Arrays.asList( new Rule( true, Pattern.compile( "^arez\\.spy\\..*$" ), null, null ),
+                                  new Rule( false,
+                                            Pattern.compile( "^\\Qarez.spy.Spy\\E$" ),
+                                            null,
+                                            new Condition( "arez.enable_spies", "true", true ) ) ) );
+    assertNull( rules.getDecisionCache() );
+
+    final RuleSet cachingRules = rules.withDecisionCache( 2 );
+    final DecisionCache cache = cachingRules.getDecisionCache();
+    assertNotNull( cache );
+    assertEquals( cache.getMaximumSize(), 2 );
+    assertEquals( cachingRules.getOmitRules(), rules.getOmitRules() );
+    assertEquals( cachingRules.getKeepRules(), rules.getKeepRules() );
+
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+    compileTimeProperties.put( "user.agent", "safari" );
+
+    assertTrue( cachingRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "" ) );
+    assertTrue( cachingRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "" ) );
+    assertEquals( cache.getHitCount(), 1 );
+    assertEquals( cache.getMissCount(), 1 );
+    assertEquals( cache.size(), 1 );
+
+    // Properties not referenced by any condition do not form part of the key
+    compileTimeProperties.put( "user.agent", "gecko1_8" );
+    assertTrue( cachingRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "" ) );
+    assertEquals( cache.getHitCount(), 2 );
+    assertEquals( cache.getMissCount(), 1 );
+
+    compileTimeProperties.put( "arez.enable_spies", "true" );
+    assertFalse( cachingRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "" ) );
+    assertFalse( cachingRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "" ) );
+    assertEquals( cache.getHitCount(), 3 );
+    assertEquals( cache.getMissCount(), 2 );
+    assertEquals( cache.size(), 2 );
+
+    // The least recently used decision is evicted when the cache reaches the maximum size
+    assertTrue( cachingRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Other", "" ) );
+    assertEquals( cache.size(), 2 );
+    assertEquals( cache.getMissCount(), 3 );
+    assertFalse( cachingRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "" ) );
+    assertEquals( cache.getHitCount(), 4 );
+    compileTimeProperties.remove( "arez.enable_spies" );
+    assertTrue( cachingRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "" ) );
+    assertEquals( cache.getHitCount(), 4 );
+    assertEquals( cache.getMissCount(), 4 );
+    assertEquals( cache.size(), 2 );
+
+    expectThrows( IllegalArgumentException.class, () -> rules.withDecisionCache( 0 ) );
+  }
+
+  @Test
+  public void withDecisionCache_permutationLimit()
+  {
+    final RuleSet rules =
+      new RuleSet( Collections.singletonList( new Rule( true,
+                                                        Pattern.compile( "^arez\\.spy\\..*$" ),
+                                                        null,
+                                                        new Condition( "arez.enable_spies", "true", false ) ) ) );
+    final RuleSet cachingRules = rules.withDecisionCache( 2 );
+    final DecisionCache cache = cachingRules.getDecisionCache();
+    assertNotNull( cache );
+    for ( final String value : Arrays.asList( "false", "no", "off" ) )
+    {
+      assertTrue( cachingRules.shouldOmitSymbol( Collections.singletonMap( "arez.enable_spies", value ),
+                                                 "arez.spy.Spy",
+                                                 "" ) );
+    }
+    // Decisions are not cached for sets of values beyond the maximum size
+    assertEquals( cache.size(), 2 );
+    assertTrue( cachingRules.shouldOmitSymbol( Collections.singletonMap( "arez.enable_spies", "off" ),
+                                               "arez.spy.Spy",
+                                               "" ) );
+    assertEquals( cache.getHitCount(), 0 );
+    assertEquals( cache.getMissCount(), 4 );
+    assertTrue( cachingRules.shouldOmitSymbol( Collections.singletonMap( "arez.enable_spies", "no" ),
+                                               "arez.spy.Spy",
+                                               "" ) );
+    assertEquals( cache.getHitCount(), 1 );
+  }
+
+  @Test
+  public void withDecisionCache_largeCache()
+  {
+    final RuleSet rules =
+      new RuleSet( Collections.singletonList( new Rule( true, Pattern.compile( "^arez\\..*$" ), null, null ) ) );
+    final RuleSet cachingRules = rules.withDecisionCache( 1000 );
+    final DecisionCache cache = cachingRules.getDecisionCache();
+    assertNotNull( cache );
+    for ( int i = 0; i < 5000; i++ )
+    {
+      assertTrue( cachingRules.shouldOmitSymbol( Collections.emptyMap(), "arez.Type" + i, "" ) );
+    }
+    // The stripes never retain more than the maximum size in total
+    assertTrue( cache.size() <= 1000 );
+    assertTrue( cache.size() > 500 );
+    assertTrue( cachingRules.shouldOmitSymbol( Collections.emptyMap(), "arez.Type4999", "" ) );
+    assertEquals( cache.getHitCount(), 1 );
+  }
+
+  @Test
+  public void withDecisionCache_concurrentUse()
+    throws Exception
+  {
+    final List<Rule> ruleList = new ArrayList<>();
+    for ( int i = 0; i < 20; i++ )
+    {
+      ruleList.add( new Rule( true,
+                              Pattern.compile( "^\\Qcom.example.Type" + i + "\\E$" ),
+                              null,
+                              new Condition( "prop" + ( i % 3 ), "true", i % 2 == 0 ) ) );
+    }
+    final RuleSet rules = new RuleSet( ruleList );
+    final RuleSet cachingRules = rules.withDecisionCache( 50 );
+    final List<Map<String, String>> permutations = new ArrayList<>();
+    for ( int i = 0; i < 8; i++ )
+    {
+      final Map<String, String> compileTimeProperties = new HashMap<>();
+      compileTimeProperties.put( "prop0", String.valueOf( 0 != ( i & 1 ) ) );
+      compileTimeProperties.put( "prop1", String.valueOf( 0 != ( i & 2 ) ) );
+      compileTimeProperties.put( "prop2", String.valueOf( 0 != ( i & 4 ) ) );
+      permutations.add( compileTimeProperties );
+    }
+
+    final int count = 4000;
+    final boolean mismatch = IntStream.range( 0, count ).parallel().anyMatch( i -> {
+      final Map<String, String> compileTimeProperties = permutations.get( i % permutations.size() );
+      final String type = "com.example.Type" + ( i % 25 );
+      return rules.shouldOmitSymbol( compileTimeProperties, type, "" ) !=
+             cachingRules.shouldOmitSymbol( compileTimeProperties, type, "" );
+    } );
+    assertFalse( mismatch );
+    final DecisionCache cache = cachingRules.getDecisionCache();
+    assertNotNull( cache );
+    assertEquals( cache.getHitCount() + cache.getMissCount(), count );
+  }
+
+  @Test
+  public void withStatistics()
+  {
+    final Rule rule1 = new Rule( true, Pattern.compile( "^\\Qarez.Node\\E$" ), null, null, "arez/Node.grim.json" );
+    final Rule rule2 =
+      new Rule( true, Pattern.compile( "^arez\\.spy\\..*$" ), Pattern.compile( "^(\\w)\\1$" ), null, null );
+    final Rule rule3 = new Rule( false,
+                                 Pattern.compile( "^\\Qarez.spy.Spy\\E$" ),
+                                 null,
+                                 new Condition( "arez.enable_spies", "true", true ),
+                                 null );
+    final RuleSet rules = new RuleSet( Arrays.asList( rule1, rule2, rule3 ) );
+    assertNull( rules.getStatistics() );
+
+    final RuleSet statisticsRules = rules.withStatistics();
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+    compileTimeProperties.put( "arez.enable_spies", "true" );
+    assertTrue( statisticsRules.shouldOmitSymbol( compileTimeProperties, "arez.Node", "" ) );
+    assertTrue( statisticsRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Other", "aa" ) );
+    assertFalse( statisticsRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Other", "ab" ) );
+    assertFalse( statisticsRules.shouldOmitSymbol( compileTimeProperties, "arez.spy.Spy", "aa" ) );
+    assertFalse( statisticsRules.shouldOmitSymbol( compileTimeProperties, "arez.Other", "" ) );
+    statisticsRules.bindTo( compileTimeProperties ).shouldOmitSymbol( "arez.Node", "" );
+
+    final RuleSetStatistics statistics = statisticsRules.getStatistics();
+    assertNotNull( statistics );
+    final List<RuleStatistics> ruleStatistics = statistics.getRuleStatistics();
+    assertEquals( ruleStatistics.size(), 3 );
+
+    final RuleStatistics statistics1 = ruleStatistics.get( 0 );
+    assertEquals( statistics1.getRule(), rule1 );
+    assertEquals( statistics1.getEvaluationCount(), 2 );
+    assertEquals( statistics1.getMatchCount(), 2 );
+
+    final RuleStatistics statistics2 = ruleStatistics.get( 1 );
+    assertEquals( statistics2.getRule(), rule2 );
+    assertEquals( statistics2.getEvaluationCount(), 3 );
+    assertEquals( statistics2.getMatchCount(), 2 );
+
+    final RuleStatistics statistics3 = ruleStatistics.get( 2 );
+    assertEquals( statistics3.getRule(), rule3 );
+    assertEquals( statistics3.getEvaluationCount(), 1 );
+    assertEquals( statistics3.getMatchCount(), 1 );
+
+    assertEquals( statistics.getTotalNanos(),
+                  statistics1.getTotalNanos() + statistics2.getTotalNanos() + statistics3.getTotalNanos() );
+    assertEquals( statistics.getRuleStatisticsByTotalNanos().size(), 3 );
+
+    final String json = statistics.toJson();
+    assertTrue( json.contains( "\"source\":\"arez/Node.grim.json\"" ), json );
+    assertTrue( json.contains( "\"type\":\"^arez\\\\.spy\\\\..*$\"" ), json );
+    assertTrue( json.contains( "\"evaluations\":3" ), json );
+    assertTrue( json.contains( "\"property\":\"arez.enable_spies\"" ), json );
+
+    // The original RuleSet does not record statistics
+    assertNull( rules.getStatistics() );
+  }
+
+  @Test
+  public void bindTo()
+  {
+    final Rule rule1 = new Rule( true, Pattern.compile( "^\\Qarez.Node\\E$" ), null, null );
+    final Rule rule2 = new Rule( true,
+                                 Pattern.compile( "^\\Qarez.ArezContext\\E$" ),
+                                 Pattern.compile( "^\\Q_name\\E$" ),
+                                 new Condition( "arez.enable_names", "true", false ) );
+    final Rule rule3 = new Rule( false,
+                                 Pattern.compile( "^\\Qarez.Node\\E$" ),
+                                 Pattern.compile( "^\\Q_name\\E$" ),
+                                 new Condition( "arez.enable_names", "true", true ) );
+    final Rule rule4 = new Rule( true,
+                                 Pattern.compile( "^arez\\..*$" ),
+                                 Pattern.compile( "^_id$" ),
+                                 new Condition( "arez.enable_names", "true", false ) );
+    final RuleSet rules = new RuleSet( Arrays.asList( rule1, rule2, rule3, rule4 ) );
+
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+    compileTimeProperties.put( "arez.enable_names", "true" );
+
+    final BoundRuleSet namesEnabled = rules.bindTo( compileTimeProperties );
+    assertEquals( namesEnabled.getCompileTimeProperties(), compileTimeProperties );
+    assertEquals( namesEnabled.getOmitRules().size(), 1 );
+    assertTrue( namesEnabled.getOmitRules().contains( rule1 ) );
+    assertEquals( namesEnabled.getKeepRules().size(), 1 );
+    assertTrue( namesEnabled.getKeepRules().contains( rule3 ) );
+
+    assertTrue( namesEnabled.shouldOmitSymbol( "arez.Node", "" ) );
+    assertFalse( namesEnabled.shouldOmitSymbol( "arez.Node", "_name" ) );
+    assertFalse( namesEnabled.shouldOmitSymbol( "arez.ArezContext", "_name" ) );
+    assertFalse( namesEnabled.shouldOmitSymbol( "arez.ArezContext", "_id" ) );
+
+    // Modifying the properties after binding has no impact
+    compileTimeProperties.put( "arez.enable_names", "false" );
+    assertEquals( namesEnabled.getCompileTimeProperties().get( "arez.enable_names" ), "true" );
+    assertFalse( namesEnabled.shouldOmitSymbol( "arez.ArezContext", "_name" ) );
+
+    final BoundRuleSet namesDisabled = rules.bindTo( compileTimeProperties );
+    assertEquals( namesDisabled.getOmitRules().size(), 3 );
+    assertEquals( namesDisabled.getKeepRules().size(), 0 );
+
+    assertTrue( namesDisabled.shouldOmitSymbol( "arez.Node", "" ) );
+    assertTrue( namesDisabled.shouldOmitSymbol( "arez.Node", "_name" ) );
+    assertTrue( namesDisabled.shouldOmitSymbol( "arez.ArezContext", "_name" ) );
+    assertTrue( namesDisabled.shouldOmitSymbol( "arez.ArezContext", "_id" ) );
+    assertFalse( namesDisabled.shouldOmitSymbol( "arez.ArezContext", "_other" ) );
+    assertFalse( namesDisabled.shouldOmitSymbol( "other.Node", "_id" ) );
+  }
+
+  @Test
+  public void shouldOmitSymbols()
+  {
+    final RuleSet rules =
+      new RuleSet( Arrays.asList( new Rule( true, Pattern.compile( "^\\Qarez.Node\\E$" ), null, null ),
+                                  new Rule( true,
+                                            Pattern.compile( "^arez\\.spy\\..*$" ),
+                                            Pattern.compile( "^get.*$" ),
+                                            new Condition( "arez.enable_spies", "true", false ) ),
+                                  new Rule( false,
+                                            Pattern.compile( "^\\Qarez.Node\\E$" ),
+                                            Pattern.compile( "^\\Q$clinit\\E$" ),
+                                            null ) ) );
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+
+    final SymbolTable symbols =
+      new SymbolTable( new String[]{ "arez.Node", "arez.Node", "arez.spy.Spy", "arez.spy.Spy", "arez.Other" },
+                       new String[]{ "", "$clinit", "getName", "setName", "getName" } );
+    assertEquals( symbols.size(), 5 );
+    assertEquals( symbols.getType( 2 ), "arez.spy.Spy" );
+    assertEquals( symbols.getMember( 2 ), "getName" );
+
+    final BitSet omitted = rules.shouldOmitSymbols( compileTimeProperties, symbols );
+    assertEquals( omitted.stream().toArray(), new int[]{ 0, 2 } );
+
+    compileTimeProperties.put( "arez.enable_spies", "true" );
+    assertEquals( rules.shouldOmitSymbols( compileTimeProperties, symbols ).stream().toArray(), new int[]{ 0 } );
+
+    assertThrows( IllegalArgumentException.class,
+                  () -> rules.shouldOmitSymbols( compileTimeProperties, new String[ 2 ], new String[ 1 ] ) );
+    assertThrows( IllegalArgumentException.class, () -> new SymbolTable( new String[ 2 ], new String[ 1 ] ) );
+  }
+
+  @Test
+  public void shouldOmitSymbols_largeBatch()
+  {
+    final RuleSet rules =
+      new RuleSet( Arrays.asList( new Rule( true, Pattern.compile( "^com\\.example\\..*$" ), null, null ),
+                                  new Rule( false,
+                                            Pattern.compile( "^com\\.example\\..*$" ),
+                                            Pattern.compile( "^m[0-9]*7$" ),
+                                            null ) ) );
+    final int size = BoundRuleSet.BATCH_THRESHOLD * 5 + 3;
+    final String[] types = new String[ size ];
+    final String[] members = new String[ size ];
+    for ( int i = 0; i < size; i++ )
+    {
+      types[ i ] = ( 0 == i % 3 ? "com.other.T" : "com.example.T" ) + ( i % 100 );
+      members[ i ] = "m" + i;
+    }
+
+    final BoundRuleSet ruleSet = rules.bindTo( new HashMap<>() );
+    final BitSet omitted = ruleSet.shouldOmitSymbols( types, members );
+    for ( int i = 0; i < size; i++ )
+    {
+      assertEquals( omitted.get( i ), ruleSet.shouldOmitSymbol( types[ i ], members[ i ] ), "Symbol " + i );
+    }
+    assertTrue( omitted.cardinality() > 0 );
+  }
+
+  @Test
+  public void shouldOmitSymbols_multiplePermutations()
+  {
+    final RuleSet rules =
+      new RuleSet( Arrays.asList( new Rule( true, Pattern.compile( "^\\Qarez.Node\\E$" ), null, null ),
+                                  new Rule( true,
+                                            Pattern.compile( "^arez\\.spy\\..*$" ),
+                                            null,
+                                            new Condition( "arez.enable_spies", "true", false ) ),
+                                  new Rule( true,
+                                            Pattern.compile( "^arez\\..*$" ),
+                                            Pattern.compile( "^_name$" ),
+                                            new Condition( "arez.enable_names", "true", false ) ),
+                                  new Rule( false,
+                                            Pattern.compile( "^\\Qarez.Node\\E$" ),
+                                            Pattern.compile( "^\\Q_name\\E$" ),
+                                            new Condition( "arez.environment", "development", true ) ) ) );
+
+    final Map<String, String> permutation1 = new HashMap<>();
+    final Map<String, String> permutation2 = new HashMap<>();
+    permutation2.put( "arez.enable_spies", "true" );
+    permutation2.put( "arez.enable_names", "true" );
+    final Map<String, String> permutation3 = new HashMap<>();
+    permutation3.put( "arez.environment", "development" );
+
+    final SymbolTable symbols1 =
+      new SymbolTable( new String[]{ "arez.Node", "arez.Node", "arez.spy.Spy", "arez.Other", "arez.Other" },
+                       new String[]{ "", "_name", "", "_name", "_id" } );
+    final SymbolTable symbols2 =
+      new SymbolTable( new String[]{ "arez.spy.Spy", "arez.Other", "arez.Node" },
+                       new String[]{ "", "_name", "_name" } );
+    final SymbolTable symbols3 =
+      new SymbolTable( new String[]{ "arez.Node", "arez.Other", "arez.spy.Spy", "arez.Node" },
+                       new String[]{ "_name", "_name", "getName", "" } );
+
+    final List<Map<String, String>> properties = Arrays.asList( permutation1, permutation2, permutation3 );
+    final List<SymbolTable> symbols = Arrays.asList( symbols1, symbols2, symbols3 );
+    final List<BitSet> results = rules.shouldOmitSymbols( properties, symbols );
+
+    assertEquals( results.size(), 3 );
+    assertEquals( results.get( 0 ).stream().toArray(), new int[]{ 0, 1, 2, 3 } );
+    assertEquals( results.get( 1 ).stream().toArray(), new int[]{ 2 } );
+    assertEquals( results.get( 2 ).stream().toArray(), new int[]{ 1, 2, 3 } );
+    for ( int i = 0; i < results.size(); i++ )
+    {
+      assertEquals( results.get( i ), rules.shouldOmitSymbols( properties.get( i ), symbols.get( i ) ) );
+    }
+
+    assertThrows( IllegalArgumentException.class,
+                  () -> rules.shouldOmitSymbols( Collections.singletonList( permutation1 ), symbols ) );
+  }
+
+  @Test
+  public void shouldOmitSymbols_multiplePermutationsLargeBatch()
+  {
+    final RuleSet rules =
+      new RuleSet( Arrays.asList( new Rule( true, Pattern.compile( "^com\\.example\\..*$" ), null, null ),
+                                  new Rule( true,
+                                            Pattern.compile( "^com\\.other\\..*$" ),
+                                            Pattern.compile( "^m[0-9]*3$" ),
+                                            new Condition( "example.enable", "true", false ) ),
+                                  new Rule( false,
+                                            Pattern.compile( "^com\\.example\\..*$" ),
+                                            Pattern.compile( "^m[0-9]*7$" ),
+                                            new Condition( "example.keep", "true", true ) ) ) );
+    final List<Map<String, String>> properties = new ArrayList<>();
+    final List<SymbolTable> symbols = new ArrayList<>();
+    for ( int p = 0; p < 3; p++ )
+    {
+      final Map<String, String> permutation = new HashMap<>();
+      if ( 1 == p )
+      {
+        permutation.put( "example.enable", "true" );
+      }
+      else if ( 2 == p )
+      {
+        permutation.put( "example.keep", "true" );
+      }
+      properties.add( permutation );
+
+      // Each permutation shares most of its symbols with the others and the sizes are not multiples of 64
+      final int size = BoundRuleSet.BATCH_THRESHOLD * 3 + 17 * p + 5;
+      final String[] types = new String[ size ];
+      final String[] members = new String[ size ];
+      for ( int i = 0; i < size; i++ )
+      {
+        types[ i ] = ( 0 == i % 3 ? "com.other.T" : "com.example.T" ) + ( i % 100 );
+        members[ i ] = "m" + ( i + p * 1000 );
+      }
+      symbols.add( new SymbolTable( types, members ) );
+    }
+
+    final List<BitSet> results = rules.shouldOmitSymbols( properties, symbols );
+    assertEquals( results.size(), 3 );
+    for ( int i = 0; i < results.size(); i++ )
+    {
+      assertEquals( results.get( i ), rules.shouldOmitSymbols( properties.get( i ), symbols.get( i ) ) );
+      assertTrue( results.get( i ).cardinality() > 0 );
+    }
+  }
+
   @Test
   public void loadFromClassLoader_noRules()
     throws Exception
@@ -99,6 +757,168 @@ public class RuleSetTest
     assertNotNull( member );
     assertEquals( member.toString(), "^\\Q$clinit\\E$" );
     assertNull( rule.getCondition() );
+    assertEquals( rule.getSource(), "META-INF/grim/arez/ArezContext.grim.json" );
+  }
+
+  @Test
+  public void loadFromClassLoader_binaryRules()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  {\n" +
+                    "    \"type\": \"^\\\\Qarez.ArezContext\\\\E$\"\n" +
+                    "  }\n" +
+                    "]\n" );
+    // The binary file is loaded in preference to the json file
+    createRuleFile( "arez/ArezContext.grim.bin",
+                    BinaryRuleReaderTest.toBytes( BinaryRuleReader.MAGIC,
+                                                  (byte) BinaryRuleReader.VERSION,
+                                                  2, "arez.ArezContext", "$clinit",
+                                                  1,
+                                                  (byte) BinaryRuleReader.FLAG_MEMBER,
+                                                  (byte) BinaryRuleReader.KIND_LITERAL, 0,
+                                                  (byte) BinaryRuleReader.KIND_LITERAL, 1 ) );
+    createRuleFile( "arez/Node.grim.json",
+                    "[\n" +
+                    "  {\n" +
+                    "    \"type\": \"^\\\\Qarez.Node\\\\E$\"\n" +
+                    "  }\n" +
+                    "]\n" );
+
+    final RuleSet rules = buildRuleSet();
+    assertEquals( rules.getOmitRules().size(), 2 );
+    assertEquals( rules.getKeepRules().size(), 0 );
+
+    final Rule rule = rules.getOmitRules()
+      .stream()
+      .filter( r -> null != r.getMember() )
+      .findAny()
+      .orElseThrow( AssertionError::new );
+    assertEquals( rule.getType().toString(), "^\\Qarez.ArezContext\\E$" );
+    assertEquals( String.valueOf( rule.getMember() ), "^\\Q$clinit\\E$" );
+    assertEquals( rule.getSource(), "META-INF/grim/arez/ArezContext.grim.bin" );
+
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "$clinit" ) );
+    assertFalse( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "" ) );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.Node", "" ) );
+
+    assertEquals( RuleSet.loadFromClassLoader( newClassLoader(), "arez.ArezContext"::equals ).getOmitRules().size(),
+                  1 );
+  }
+
+  @Test
+  public void loadFromClassLoader_index()
+    throws Exception
+  {
+    final List<Path> archives = new ArrayList<>();
+    try
+    {
+      for ( int i = 0; i < 2; i++ )
+      {
+        // Both archives contain a rule file with the same name and each is read from the archive listing it
+        createRuleFile( "arez/package-info.grim.json",
+                        "[\n" +
+                        "  {\n" +
+                        "    \"type\": \"^\\\\Qarez.Type" + i + "\\\\E$\"\n" +
+                        "  }\n" +
+                        "]\n" );
+        // This is not listed in the index and thus not picked up
+        createRuleFile( "arez/Other.grim.json",
+                        "[\n" +
+                        "  {\n" +
+                        "    \"type\": \"^\\\\Qarez.Other\\\\E$\"\n" +
+                        "  }\n" +
+                        "]\n" );
+        createRuleFile( "grim.index", "arez/package-info.grim.json\n\n" );
+        archives.add( createArchive() );
+      }
+
+      final URL[] urls = new URL[ archives.size() ];
+      for ( int i = 0; i < urls.length; i++ )
+      {
+        urls[ i ] = archives.get( i ).toUri().toURL();
+      }
+      try ( final URLClassLoader classLoader = new URLClassLoader( urls, null ) )
+      {
+        final RuleSet rules = RuleSet.loadFromClassLoader( classLoader );
+        assertEquals( rules.getOmitRules().size(), 2 );
+        assertEquals( rules.getKeepRules().size(), 0 );
+        assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.Type0", "" ) );
+        assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.Type1", "" ) );
+        assertFalse( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.Other", "" ) );
+        for ( final Rule rule : rules.getOmitRules() )
+        {
+          assertEquals( rule.getSource(), "META-INF/grim/arez/package-info.grim.json" );
+        }
+
+        assertEquals( RuleSet.loadFromClassLoader( classLoader, n -> !n.startsWith( "arez." ) )
+                        .getOmitRules()
+                        .size(), 0 );
+      }
+    }
+    finally
+    {
+      for ( final Path archive : archives )
+      {
+        Files.delete( archive );
+      }
+    }
+  }
+
+  @Test
+  public void loadFromClassLoader_indexedAndUnindexedEntries()
+    throws Exception
+  {
+    final List<Path> archives = new ArrayList<>();
+    try
+    {
+      // An archive with an index
+      createRuleFile( "arez/ArezContext.grim.json", "[ { \"type\": \"^\\\\Qarez.ArezContext\\\\E$\" } ]" );
+      createRuleFile( "grim.index", "arez/ArezContext.grim.json\n" );
+      archives.add( createArchive() );
+      // An archive without an index, i.e. built before the index was introduced
+      createRuleFile( "arez/spy/Spy.grim.json", "[ { \"type\": \"^\\\\Qarez.spy.Spy\\\\E$\" } ]" );
+      archives.add( createArchive() );
+      // A directory without an index, i.e. the output of an IDE build
+      createRuleFile( "react4j/Component.grim.json", "[ { \"type\": \"^\\\\Qreact4j.Component\\\\E$\" } ]" );
+
+      final URL[] urls = new URL[]{ archives.get( 0 ).toUri().toURL(),
+                                    archives.get( 1 ).toUri().toURL(),
+                                    getBaseDirectory().toUri().toURL() };
+      try ( final URLClassLoader classLoader = new URLClassLoader( urls, null ) )
+      {
+        final RuleSet rules = RuleSet.loadFromClassLoader( classLoader );
+        assertEquals( rules.getOmitRules().size(), 3 );
+        assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "" ) );
+        assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.spy.Spy", "" ) );
+        assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "react4j.Component", "" ) );
+
+        final LazyRuleSet lazyRules = LazyRuleSet.loadFromClassLoader( classLoader );
+        assertEquals( lazyRules.getRuleFileCount(), 3 );
+        assertTrue( lazyRules.shouldOmitSymbol( Collections.emptyMap(), "arez.spy.Spy", "" ) );
+        assertTrue( lazyRules.shouldOmitSymbol( Collections.emptyMap(), "react4j.Component", "" ) );
+      }
+    }
+    finally
+    {
+      for ( final Path archive : archives )
+      {
+        Files.delete( archive );
+      }
+    }
+  }
+
+  @Test
+  public void loadFromClassLoader_indexWithInvalidEntry()
+    throws Exception
+  {
+    createRuleFile( "grim.index", "../../arez/ArezContext.grim.json\n" );
+
+    final IllegalStateException exception = expectThrows( IllegalStateException.class, this::buildRuleSet );
+    final Throwable cause = exception.getCause();
+    assertNotNull( cause );
+    assertEquals( cause.getMessage(), "Grim index contains the invalid entry '../../arez/ArezContext.grim.json'" );
   }
 
   @Test
@@ -232,41 +1052,246 @@ public class RuleSetTest
   }
 
   @Test
-  public void loadFromClassLoader_badCondition()
+  public void loadFromClassLoader_malformedPatternWithoutValidation()
     throws Exception
   {
     createRuleFile( "arez/ArezContext.grim.json",
                     "[\n" +
-                    "  {\n" +
-                    "    \"type\": \".\",\n" +
-                    "    \"property\": \"galdr.enable_names\",\n" +
-                    "    \"value\": \"true\"\n" +
-                    "  }\n" +
+                    "  { \"type\": \"^\\\\Qarez.ArezContext\\\\E$\" },\n" +
+                    "  { \"type\": \"\\\\x\" }\n" +
                     "]\n" );
 
-    final IllegalStateException exception = expectThrows( IllegalStateException.class, this::buildRuleSet );
-    assertEquals( exception.getMessage(),
-                  "Failed to load Grim Omit rules from META-INF/grim/arez/ArezContext.grim.json" );
-    assertEquals( exception.getCause().getMessage(),
-                  "Grim rule at index 0 contains a partially defined operator" );
+    System.setProperty( RuleLoader.VALIDATE_PATTERNS_PROPERTY, "false" );
+    final RuleSet rules;
+    try
+    {
+      rules = buildRuleSet();
+    }
+    finally
+    {
+      System.clearProperty( RuleLoader.VALIDATE_PATTERNS_PROPERTY );
+    }
+    assertEquals( rules.getOmitRules().size(), 2 );
+    // The malformed pattern is only reported when the rule is evaluated
+    expectThrows( PatternSyntaxException.class,
+                  () -> rules.shouldOmitSymbol( Collections.emptyMap(), "arez.Node", "" ) );
   }
 
   @Test
-  public void loadFromArchive()
+  public void loadFromClassLoader_sharedPatterns()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  { \"type\": \"^\\\\Qarez.ArezContext\\\\E$\", \"member\": \"^\\\\Q$clinit\\\\E$\" },\n" +
+                    "  { \"type\": \"^\\\\Qarez.ArezContext\\\\E$\", \"member\": \"^(foo|bar)$\" }\n" +
+                    "]\n" );
+    createRuleFile( "arez/Node.grim.json",
+                    "[ { \"type\": \"^\\\\Qarez.Node\\\\E$\", \"member\": \"^(foo|bar)$\" } ]\n" );
+
+    final List<Rule> rules = new ArrayList<>( buildRuleSet().getOmitRules() );
+    assertEquals( rules.size(), 3 );
+    rules.sort( Comparator.comparing( r -> r.getSource() + r.getMemberMatcher().getRulePattern() ) );
+    final Rule rule1 = rules.get( 0 );
+    final Rule rule2 = rules.get( 1 );
+    final Rule rule3 = rules.get( 2 );
+    assertEquals( rule1.getMemberMatcher().getRulePattern().getRegex(), "^(foo|bar)$" );
+
+    // Each distinct pattern is shared by every rule loaded together, regardless of the file it appears in
+    assertSame( rule2.getTypeMatcher(), rule1.getTypeMatcher() );
+    assertSame( rule3.getMemberMatcher(), rule1.getMemberMatcher() );
+
+    // General patterns are compiled when validated but literal patterns are never compiled
+    assertTrue( rule1.getMemberMatcher().getRulePattern().isCompiled() );
+    assertFalse( rule1.getTypeMatcher().getRulePattern().isCompiled() );
+    assertFalse( rule2.getMemberMatcher().getRulePattern().isCompiled() );
+  }
+
+  @Test
+  public void loadFromClassLoader_structuredRules()
     throws Exception
   {
     createRuleFile( "arez/ArezContext.grim.json",
                     "[\n" +
                     "  {\n" +
                     "    \"type\": \"^\\\\Qarez.ArezContext\\\\E$\",\n" +
-                    "    \"property\": \"galdr.enable_names\",\n" +
-                    "    \"operator\": \"NEQ\",\n" +
-                    "    \"value\": \"true\"\n" +
+                    "    \"typeName\": \"arez.ArezContext\",\n" +
+                    "    \"member\": \"^\\\\$?\\\\QgetName\\\\E$\",\n" +
+                    "    \"memberName\": \"getName\",\n" +
+                    "    \"memberKind\": \"method\",\n" +
+                    "    \"devirtualized\": true\n" +
+                    "  },\n" +
+                    "  {\n" +
+                    "    \"typeName\": \"arez.ArezContext\",\n" +
+                    "    \"memberName\": \"_name\",\n" +
+                    "    \"memberKind\": \"field\"\n" +
                     "  }\n" +
                     "]\n" );
 
-    final RuleSet rules = buildRuleSetFromJar();
-    assertEquals( rules.getOmitRules().size(), 1 );
+    final List<Rule> rules = new ArrayList<>( buildRuleSet().getOmitRules() );
+    assertEquals( rules.size(), 2 );
+    final Rule rule1 = rules.get( 0 );
+    final Rule rule2 = rules.get( 1 );
+
+    // The patterns created from the names have the same regular expressions as the processor generates
+    assertSame( rule2.getTypeMatcher(), rule1.getTypeMatcher() );
+    assertEquals( rule1.getTypeMatcher().getRulePattern().getRegex(), "^\\Qarez.ArezContext\\E$" );
+    assertEquals( rule1.getMemberMatcher().getRulePattern().getRegex(), "^\\$?\\QgetName\\E$" );
+    assertEquals( rule2.getMemberMatcher().getRulePattern().getRegex(), "^\\Q_name\\E$" );
+    assertEquals( rule1.getLiteralType(), "arez.ArezContext" );
+    assertEquals( rule1.getLiteralMember(), "getName" );
+    assertTrue( rule1.isDevirtualizedMember() );
+    assertEquals( rule2.getLiteralMember(), "_name" );
+    assertFalse( rule2.isDevirtualizedMember() );
+
+    final Map<String, String> properties = Collections.emptyMap();
+    assertTrue( rule1.matches( properties, "arez.ArezContext", "getName" ) );
+    assertTrue( rule1.matches( properties, "arez.ArezContext", "$getName" ) );
+    assertFalse( rule1.matches( properties, "arez.ArezContext", "getNames" ) );
+    assertTrue( rule2.matches( properties, "arez.ArezContext", "_name" ) );
+    assertFalse( rule2.matches( properties, "arez.ArezContext", "$_name" ) );
+
+    // None of the patterns are compiled when loading or matching
+    assertFalse( rule1.getTypeMatcher().getRulePattern().isCompiled() );
+    assertFalse( rule1.getMemberMatcher().getRulePattern().isCompiled() );
+    assertFalse( rule2.getMemberMatcher().getRulePattern().isCompiled() );
+  }
+
+  @Test
+  public void loadFromClassLoader_structuredRulesTakePrecedence()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[ { \"type\": \".*\", \"typeName\": \"arez.ArezContext\", \"member\": \"[\", " +
+                    "\"memberName\": \"foo\" } ]\n" );
+
+    final RuleSet rules = buildRuleSet();
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "foo" ) );
+    assertFalse( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.Node", "foo" ) );
+  }
+
+  @Test
+  public void loadFromClassLoader_nestedQuantifiers()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  {\n" +
+                    "    \"type\": \"^arez\\\\..*$\",\n" +
+                    "    \"member\": \"(.*)*foo\"\n" +
+                    "  }\n" +
+                    "]\n" );
+
+    // Nested quantifiers supported by the automaton are matched in linear time
+    final RuleSet ruleSet = buildRuleSet();
+    assertTrue( ruleSet.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "barfoo" ) );
+    assertFalse( ruleSet.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "barfob" ) );
+
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  {\n" +
+                    "    \"type\": \"^arez\\\\..*$\",\n" +
+                    "    \"member\": \"^(\\\\w+)+\\\\1$\"\n" +
+                    "  }\n" +
+                    "]\n" );
+
+    final IllegalStateException exception = expectThrows( IllegalStateException.class, this::buildRuleSet );
+    assertEquals( exception.getMessage(),
+                  "Failed to load Grim Omit rules from META-INF/grim/arez/ArezContext.grim.json" );
+    assertEquals( exception.getCause().getMessage(),
+                  "Grim rule at index 0 contains a pattern with nested quantifiers that may require " +
+                  "exponential time to match" );
+  }
+
+  @Test
+  public void loadFromClassLoader_badCondition()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  {\n" +
+                    "    \"type\": \".\",\n" +
+                    "    \"property\": \"galdr.enable_names\",\n" +
+                    "    \"value\": \"true\"\n" +
+                    "  }\n" +
+                    "]\n" );
+
+    final IllegalStateException exception = expectThrows( IllegalStateException.class, this::buildRuleSet );
+    assertEquals( exception.getMessage(),
+                  "Failed to load Grim Omit rules from META-INF/grim/arez/ArezContext.grim.json" );
+    assertEquals( exception.getCause().getMessage(),
+                  "Grim rule at index 0 contains a partially defined operator" );
+  }
+
+  @Test
+  public void loadFromClassLoader_unknownProperties()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  {\n" +
+                    "    \"comment\": { \"nested\": [ 1, { \"type\": \"x\" } ], \"other\": {} },\n" +
+                    "    \"type\": \"^\\\\Qarez.ArezContext\\\\E$\",\n" +
+                    "    \"tags\": [ [ \"a\" ], { \"keep\": true } ],\n" +
+                    "    \"keep\": false,\n" +
+                    "    \"member\": 23\n" +
+                    "  },\n" +
+                    "  {\n" +
+                    "    \"keep\": true,\n" +
+                    "    \"type\": \"^arez\\\\.spy\\\\..*$\"\n" +
+                    "  }\n" +
+                    "]\n" );
+
+    final RuleSet rules = buildRuleSet();
+    assertEquals( rules.getOmitRules().size(), 1 );
+    assertEquals( rules.getKeepRules().size(), 1 );
+    final Rule rule = rules.getOmitRules().iterator().next();
+    assertEquals( rule.getType().pattern(), "^\\Qarez.ArezContext\\E$" );
+    assertNull( rule.getMember() );
+    assertEquals( rules.getKeepRules().iterator().next().getType().pattern(), "^arez\\.spy\\..*$" );
+  }
+
+  @Test
+  public void loadFromClassLoader_malformedRules()
+    throws Exception
+  {
+    assertLoadFails( "{}", "Grim rules are not contained in a json array" );
+    assertLoadFails( "[ { \"type\": \".\" }, [] ]", "Grim rule at index 1 is not a json object" );
+    assertLoadFails( "[ { \"type\": \".\" }, { \"member\": \".\" } ]",
+                     "Grim rule at index 1 does not specify a type" );
+    assertLoadFails( "[ { \"type\": \".\" }, { \"type\": 1 } ]", "Grim rule at index 1 does not specify a type" );
+    assertLoadFails( "[ { \"type\": \".\" }, { \"type\": \"[\" } ]",
+                     "Grim rule at index 1 contains a pattern with a syntax error" );
+    assertLoadFails( "[ { \"type\": \".\" ", "Grim rules contain malformed json" );
+  }
+
+  private void assertLoadFails( @Nonnull final String content, @Nonnull final String message )
+    throws IOException
+  {
+    createRuleFile( "arez/ArezContext.grim.json", content );
+
+    final IllegalStateException exception = expectThrows( IllegalStateException.class, this::buildRuleSet );
+    assertEquals( exception.getMessage(),
+                  "Failed to load Grim Omit rules from META-INF/grim/arez/ArezContext.grim.json" );
+    assertEquals( exception.getCause().getMessage(), message );
+  }
+
+  @Test
+  public void loadFromArchive()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  {\n" +
+                    "    \"type\": \"^\\\\Qarez.ArezContext\\\\E$\",\n" +
+                    "    \"property\": \"galdr.enable_names\",\n" +
+                    "    \"operator\": \"NEQ\",\n" +
+                    "    \"value\": \"true\"\n" +
+                    "  }\n" +
+                    "]\n" );
+
+    final RuleSet rules = buildRuleSetFromJar();
+    assertEquals( rules.getOmitRules().size(), 1 );
     assertEquals( rules.getKeepRules().size(), 0 );
 
     final Rule rule = rules.getOmitRules().iterator().next();
@@ -277,6 +1302,9 @@ public class RuleSetTest
     assertEquals( condition.getProperty(), "galdr.enable_names" );
     assertEquals( condition.getValue(), "true" );
     assertFalse( condition.isEquals() );
+    final String source = rule.getSource();
+    assertNotNull( source );
+    assertTrue( source.endsWith( ".jar!/META-INF/grim/arez/ArezContext.grim.json" ), source );
 
     assertTrue( rules.shouldOmitSymbol( new HashMap<>(), "arez.ArezContext", "Foo" ) );
     final Map<String, String> compileTimeProperties = new HashMap<>();
@@ -284,19 +1312,533 @@ public class RuleSetTest
     assertFalse( rules.shouldOmitSymbol( compileTimeProperties, "arez.ArezContext", "Foo" ) );
   }
 
+  @Test
+  public void loadFromArchives()
+    throws Exception
+  {
+    final List<Path> archives = new ArrayList<>();
+    try
+    {
+      for ( int i = 0; i < 10; i++ )
+      {
+        createRuleFile( "arez/Type" + i + ".grim.json",
+                        "[\n" +
+                        "  {\n" +
+                        "    \"type\": \"^\\\\Qarez.Type" + i + "\\\\E$\"\n" +
+                        "  },\n" +
+                        "  {\n" +
+                        "    \"keep\": true,\n" +
+                        "    \"type\": \"^\\\\Qarez.Type" + i + "\\\\E$\",\n" +
+                        "    \"member\": \"^\\\\Q$clinit\\\\E$\"\n" +
+                        "  }\n" +
+                        "]\n" );
+        // The same library is present in every archive
+        createRuleFile( "arez/spy/Spy.grim.json",
+                        "[\n" +
+                        "  {\n" +
+                        "    \"type\": \"^\\\\Qarez.spy.Spy\\\\E$\"\n" +
+                        "  }\n" +
+                        "]\n" );
+        archives.add( createArchive() );
+      }
+
+      final RuleSet rules = RuleSet.loadFromArchives( archives );
+      assertEquals( rules.getRemovedRuleCount(), 9 );
+      assertEquals( rules.getOmitRules().size(), 11 );
+      final List<Rule> keepRules = new ArrayList<>( rules.getKeepRules() );
+      assertEquals( keepRules.size(), 10 );
+
+      // Rules are merged in the order of the archives
+      for ( int i = 0; i < 10; i++ )
+      {
+        final String source = keepRules.get( i ).getSource();
+        assertNotNull( source );
+        assertEquals( source, archives.get( i ) + "!/META-INF/grim/arez/Type" + i + ".grim.json" );
+      }
+      assertTrue( rules.shouldOmitSymbol( new HashMap<>(), "arez.Type3", "foo" ) );
+      assertFalse( rules.shouldOmitSymbol( new HashMap<>(), "arez.Type3", "$clinit" ) );
+      assertTrue( rules.shouldOmitSymbol( new HashMap<>(), "arez.spy.Spy", "" ) );
+
+      final RuleSet filtered = RuleSet.loadFromArchives( archives, n -> n.startsWith( "arez.spy." ) );
+      assertEquals( filtered.getOmitRules().size(), 1 );
+      assertEquals( filtered.getKeepRules().size(), 0 );
+
+      assertEquals( RuleSet.loadFromArchives( Collections.emptyList() ).getOmitRules().size(), 0 );
+    }
+    finally
+    {
+      for ( final Path archive : archives )
+      {
+        Files.delete( archive );
+      }
+    }
+  }
+
+  @Test
+  public void loadFromArchive_cache()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  {\n" +
+                    "    \"type\": \"^\\\\Qarez.ArezContext\\\\E$\",\n" +
+                    "    \"member\": \"^\\\\Q$clinit\\\\E$\"\n" +
+                    "  }\n" +
+                    "]\n" );
+    createRuleFile( "arez/spy/Spy.grim.json",
+                    "[\n" +
+                    "  {\n" +
+                    "    \"keep\": true,\n" +
+                    "    \"type\": \"^arez\\\\.spy\\\\..*$\",\n" +
+                    "    \"property\": \"arez.enable_spies\",\n" +
+                    "    \"value\": \"true\",\n" +
+                    "    \"operator\": \"EQ\"\n" +
+                    "  }\n" +
+                    "]\n" );
+    createRuleFile( "grim.index", "arez/ArezContext.grim.json\narez/spy/Spy.grim.json\n" );
+    final Path archive = createArchive();
+    final Path cacheDirectory = Files.createTempDirectory( "grim-cache" );
+    System.setProperty( RuleCache.CACHE_DIRECTORY_PROPERTY, cacheDirectory.toString() );
+    try
+    {
+      for ( int i = 0; i < 2; i++ )
+      {
+        final RuleSet rules = RuleSet.loadFromArchive( archive );
+        assertEquals( rules.getOmitRules().size(), 1 );
+        assertEquals( rules.getKeepRules().size(), 1 );
+        final Rule rule = rules.getOmitRules().iterator().next();
+        assertEquals( rule.getType().pattern(), "^\\Qarez.ArezContext\\E$" );
+        assertEquals( String.valueOf( rule.getMember() ), "^\\Q$clinit\\E$" );
+        assertEquals( rule.getSource(), archive + "!/META-INF/grim/arez/ArezContext.grim.json" );
+        final Condition condition = rules.getKeepRules().iterator().next().getCondition();
+        assertEquals( condition, new Condition( "arez.enable_spies", "true", true ) );
+
+        assertEquals( RuleSet.loadFromArchive( archive, n -> !n.startsWith( "arez.spy." ) ).getKeepRules().size(), 0 );
+
+        try ( final URLClassLoader classLoader = new URLClassLoader( new URL[]{ archive.toUri().toURL() }, null ) )
+        {
+          final RuleSet classLoaderRules = RuleSet.loadFromClassLoader( classLoader );
+          assertEquals( classLoaderRules.getOmitRules().size(), 1 );
+          assertEquals( classLoaderRules.getKeepRules().size(), 1 );
+          assertEquals( classLoaderRules.getOmitRules().iterator().next().getSource(),
+                        "META-INF/grim/arez/ArezContext.grim.json" );
+        }
+        try ( final Stream<Path> files = Files.list( cacheDirectory ) )
+        {
+          assertEquals( files.count(), 1 );
+        }
+      }
+    }
+    finally
+    {
+      System.clearProperty( RuleCache.CACHE_DIRECTORY_PROPERTY );
+      Files.delete( archive );
+      try ( final Stream<Path> files = Files.walk( cacheDirectory ) )
+      {
+        //noinspection ResultOfMethodCallIgnored
+        files.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+      }
+    }
+  }
+
+  @Test
+  public void loadFromArchive_cachedMalformedPattern()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[\n" +
+                    "  { \"type\": \"^\\\\Qarez.ArezContext\\\\E$\" },\n" +
+                    "  { \"type\": \"\\\\x\" }\n" +
+                    "]\n" );
+    final Path archive = createArchive();
+    final Path cacheDirectory = Files.createTempDirectory( "grim-cache" );
+    System.setProperty( RuleCache.CACHE_DIRECTORY_PROPERTY, cacheDirectory.toString() );
+    try
+    {
+      // The cache is populated by a load that does not validate patterns
+      System.setProperty( RuleLoader.VALIDATE_PATTERNS_PROPERTY, "false" );
+      try
+      {
+        assertEquals( RuleSet.loadFromArchive( archive ).getOmitRules().size(), 2 );
+      }
+      finally
+      {
+        System.clearProperty( RuleLoader.VALIDATE_PATTERNS_PROPERTY );
+      }
+
+      // The rules read from the cache are validated
+      final IllegalStateException exception =
+        expectThrows( IllegalStateException.class, () -> RuleSet.loadFromArchive( archive ) );
+      assertEquals( exception.getMessage(), "Failed to load Grim Omit rules from " + archive );
+      assertEquals( exception.getCause().getMessage(), "Grim rule at index 1 contains a pattern with a syntax error" );
+
+      try ( final URLClassLoader classLoader = new URLClassLoader( new URL[]{ archive.toUri().toURL() }, null ) )
+      {
+        final IllegalStateException exception2 =
+          expectThrows( IllegalStateException.class, () -> RuleSet.loadFromClassLoader( classLoader ) );
+        assertEquals( exception2.getCause().getMessage(),
+                      "Grim rule at index 1 contains a pattern with a syntax error" );
+      }
+    }
+    finally
+    {
+      System.clearProperty( RuleCache.CACHE_DIRECTORY_PROPERTY );
+      Files.delete( archive );
+      try ( final Stream<Path> files = Files.walk( cacheDirectory ) )
+      {
+        //noinspection ResultOfMethodCallIgnored
+        files.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+      }
+    }
+  }
+
+  @Test
+  public void loadFromArchives_missingArchive()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json", "[]\n" );
+    final Path archive = createArchive();
+    final Path missing = archive.resolveSibling( "missing-" + archive.getFileName() );
+    try
+    {
+      final IllegalStateException exception =
+        expectThrows( IllegalStateException.class,
+                      () -> RuleSet.loadFromArchives( Arrays.asList( archive, missing, archive ) ) );
+      assertEquals( exception.getMessage(), "Failed to load Grim Omit rules from " + missing );
+    }
+    finally
+    {
+      Files.delete( archive );
+    }
+  }
+
+  @Test
+  public void loadFromPath_directory()
+    throws Exception
+  {
+    createPathRules();
+
+    final Path directory = getBaseDirectory();
+    final RuleSet rules = RuleSet.loadFromPath( directory );
+    assertPathRules( rules, directory + "/META-INF/grim/" );
+
+    final RuleSet filteredRules = RuleSet.loadFromPath( directory, n -> !n.startsWith( "arez.spy." ) );
+    assertEquals( filteredRules.getOmitRules().size(), 2 );
+    assertEquals( filteredRules.getKeepRules().size(), 0 );
+  }
+
+  @Test
+  public void loadFromPath_directoryWithoutRules()
+    throws Exception
+  {
+    final RuleSet rules = RuleSet.loadFromPath( getBaseDirectory() );
+    assertEquals( rules.getOmitRules().size(), 0 );
+    assertEquals( rules.getKeepRules().size(), 0 );
+  }
+
+  @Test
+  public void loadFromPath_archive()
+    throws Exception
+  {
+    createPathRules();
+
+    final Path archive = createArchive();
+    try
+    {
+      assertPathRules( RuleSet.loadFromPath( archive ), archive + "!/META-INF/grim/" );
+    }
+    finally
+    {
+      Files.delete( archive );
+    }
+  }
+
+  @Test
+  public void loadFromPath_nestedArchive()
+    throws Exception
+  {
+    createPathRules();
+
+    final Path archive = createArchive();
+    final Path outerArchive = Files.createTempFile( "grim", ".war" );
+    try
+    {
+      try ( final JarOutputStream outputStream = new JarOutputStream( Files.newOutputStream( outerArchive ) ) )
+      {
+        outputStream.putNextEntry( new JarEntry( "WEB-INF/lib/rules.jar" ) );
+        outputStream.write( Files.readAllBytes( archive ) );
+        outputStream.closeEntry();
+      }
+      try ( final FileSystem fileSystem = FileSystems.newFileSystem( outerArchive, (ClassLoader) null ) )
+      {
+        final Path nestedArchive = fileSystem.getPath( "WEB-INF", "lib", "rules.jar" );
+        final RuleSet rules = RuleSet.loadFromPath( nestedArchive );
+        assertPathRules( rules, nestedArchive + "!/META-INF/grim/" );
+
+        // A directory within an archive is loaded in the same way as a directory on the default file system
+        try ( final FileSystem nestedFileSystem = FileSystems.newFileSystem( nestedArchive, (ClassLoader) null ) )
+        {
+          final Path root = nestedFileSystem.getRootDirectories().iterator().next();
+          assertPathRules( RuleSet.loadFromPath( root ), "/META-INF/grim/" );
+        }
+      }
+    }
+    finally
+    {
+      Files.delete( archive );
+      Files.delete( outerArchive );
+    }
+  }
+
+  @Test
+  public void loadFromPath_malformedRules()
+    throws Exception
+  {
+    createRuleFile( "arez/ArezContext.grim.json", "[ { \"type\": \"[\" } ]" );
+
+    final Path directory = getBaseDirectory();
+    final IllegalStateException exception =
+      expectThrows( IllegalStateException.class, () -> RuleSet.loadFromPath( directory ) );
+    assertEquals( exception.getMessage(),
+                  "Failed to load Grim Omit rules from " + directory + "/META-INF/grim/arez/ArezContext.grim.json" );
+  }
+
+  private void createPathRules()
+    throws IOException
+  {
+    createRuleFile( "arez/ArezContext.grim.json",
+                    "[ { \"type\": \"^\\\\Qarez.ArezContext\\\\E$\", \"member\": \"^\\\\Q$clinit\\\\E$\" } ]" );
+    createRuleFile( "arez/Node.grim.json", "[ { \"type\": \"^\\\\Qarez.Node\\\\E$\" } ]" );
+    createRuleFile( "arez/spy/SpyImpl.grim.json",
+                    "[ { \"keep\": true, \"type\": \"^\\\\Qarez.spy.SpyImpl\\\\E$\" } ]" );
+    // Files that are not rule files are ignored
+    createRuleFile( "grim.index", "arez/ArezContext.grim.json\narez/Node.grim.json\narez/spy/SpyImpl.grim.json\n" );
+    createRuleFile( "arez/README.txt", "Not a rule file" );
+  }
+
+  private void assertPathRules( @Nonnull final RuleSet rules, @Nonnull final String sourcePrefix )
+  {
+    assertEquals( rules.getOmitRules().size(), 2 );
+    assertEquals( rules.getKeepRules().size(), 1 );
+    // Rules are loaded in the order of the names of the rule files
+    final Iterator<Rule> omitRules = rules.getOmitRules().iterator();
+    assertEquals( omitRules.next().getSource(), sourcePrefix + "arez/ArezContext.grim.json" );
+    assertEquals( omitRules.next().getSource(), sourcePrefix + "arez/Node.grim.json" );
+    assertEquals( rules.getKeepRules().iterator().next().getSource(), sourcePrefix + "arez/spy/SpyImpl.grim.json" );
+
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "$clinit" ) );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.Node", "foo" ) );
+    assertFalse( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.spy.SpyImpl", "" ) );
+  }
+
+  @Test
+  public void loadFromClassLoader_bundle()
+    throws Exception
+  {
+    createBundle();
+    // Rule files in other libraries are loaded alongside the bundle
+    createRuleFile( "react4j/Component.grim.json", "[ { \"type\": \"^\\\\Qreact4j.Component\\\\E$\" } ]" );
+    createRuleFile( "grim.index", "react4j/Component.grim.json\n" );
+
+    final RuleSet rules = buildRuleSet();
+    assertEquals( rules.getOmitRules().size(), 4 );
+    assertEquals( rules.getKeepRules().size(), 1 );
+    assertEquals( rules.getOmitRules().iterator().next().getSource(), "META-INF/grim/react4j/Component.grim.json" );
+    assertEquals( rules.getKeepRules().iterator().next().getSource(),
+                  "META-INF/grim/grim.bundle.json#arez/spy/SpyImpl" );
+    assertBundleRules( rules );
+
+    // The filter is applied to the names of the rule files that the entries in the bundle replace
+    final RuleSet filteredRules = RuleSet.loadFromClassLoader( newClassLoader(), n -> !n.startsWith( "arez.spy." ) );
+    assertEquals( filteredRules.getOmitRules().size(), 4 );
+    assertEquals( filteredRules.getKeepRules().size(), 0 );
+  }
+
+  @Test
+  public void loadFromArchive_bundle()
+    throws Exception
+  {
+    createBundle();
+
+    final Path archive = createArchive();
+    try
+    {
+      final RuleSet rules = RuleSet.loadFromArchive( archive );
+      assertEquals( rules.getOmitRules().size(), 3 );
+      assertEquals( rules.getKeepRules().size(), 1 );
+      assertEquals( rules.getOmitRules().iterator().next().getSource(),
+                    archive + "!/META-INF/grim/grim.bundle.json#arez/ArezContext" );
+      assertBundleRules( rules );
+    }
+    finally
+    {
+      Files.delete( archive );
+    }
+  }
+
+  @Test
+  public void loadFromArchive_bundleCached()
+    throws Exception
+  {
+    createBundle();
+
+    final Path archive = createArchive();
+    final Path cacheDirectory = Files.createTempDirectory( "grim-cache" );
+    System.setProperty( RuleCache.CACHE_DIRECTORY_PROPERTY, cacheDirectory.toString() );
+    try
+    {
+      for ( int i = 0; i < 2; i++ )
+      {
+        final RuleSet rules = RuleSet.loadFromArchive( archive );
+        assertEquals( rules.getOmitRules().size(), 3 );
+        assertEquals( rules.getKeepRules().size(), 1 );
+        assertEquals( rules.getOmitRules().iterator().next().getSource(),
+                      archive + "!/META-INF/grim/grim.bundle.json#arez/ArezContext" );
+        assertBundleRules( rules );
+        assertEquals( RuleSet.loadFromArchive( archive, n -> !n.startsWith( "arez.spy." ) ).getKeepRules().size(), 0 );
+
+        try ( final URLClassLoader classLoader = new URLClassLoader( new URL[]{ archive.toUri().toURL() }, null ) )
+        {
+          final RuleSet classLoaderRules = RuleSet.loadFromClassLoader( classLoader );
+          assertEquals( classLoaderRules.getKeepRules().iterator().next().getSource(),
+                        "META-INF/grim/grim.bundle.json#arez/spy/SpyImpl" );
+          assertBundleRules( classLoaderRules );
+        }
+      }
+      // The rules of each entry of the bundle are cached separately
+      try ( final Stream<Path> files = Files.list( cacheDirectory ) )
+      {
+        final List<Path> cacheFiles = files.collect( Collectors.toList() );
+        assertEquals( cacheFiles.size(), 1 );
+        final String content = new String( Files.readAllBytes( cacheFiles.get( 0 ) ), StandardCharsets.UTF_8 );
+        assertTrue( content.contains( "META-INF/grim/grim.bundle.json#arez/Node" ) );
+        assertTrue( content.contains( "META-INF/grim/grim.bundle.json#arez/spy/SpyImpl" ) );
+      }
+    }
+    finally
+    {
+      System.clearProperty( RuleCache.CACHE_DIRECTORY_PROPERTY );
+      Files.delete( archive );
+      try ( final Stream<Path> files = Files.walk( cacheDirectory ) )
+      {
+        //noinspection ResultOfMethodCallIgnored
+        files.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+      }
+    }
+  }
+
+  @Test
+  public void loadFromPath_bundle()
+    throws Exception
+  {
+    createBundle();
+
+    final RuleSet rules = RuleSet.loadFromPath( getBaseDirectory() );
+    assertEquals( rules.getOmitRules().size(), 3 );
+    assertEquals( rules.getKeepRules().size(), 1 );
+    assertBundleRules( rules );
+  }
+
+  @Test
+  public void loadFromClassLoader_malformedBundle()
+    throws Exception
+  {
+    createRuleFile( "grim.bundle.json", "[]" );
+    final IllegalStateException exception1 = expectThrows( IllegalStateException.class, this::buildRuleSet );
+    assertEquals( exception1.getCause().getMessage(), "Grim bundle is not a json object" );
+
+    createRuleFile( "grim.bundle.json", "{ \"arez/ArezContext\": {} }" );
+    final IllegalStateException exception2 = expectThrows( IllegalStateException.class, this::buildRuleSet );
+    assertEquals( exception2.getCause().getMessage(), "Grim bundle entry 'arez/ArezContext' is not a json array" );
+
+    createRuleFile( "grim.bundle.json", "{ \"arez/ArezContext\": [ { \"member\": \"foo\" } ] }" );
+    final IllegalStateException exception3 = expectThrows( IllegalStateException.class, this::buildRuleSet );
+    assertEquals( exception3.getCause().getMessage(), "Grim bundle entry 'arez/ArezContext' is invalid" );
+    assertEquals( exception3.getCause().getCause().getMessage(), "Grim rule at index 0 does not specify a type" );
+
+    createRuleFile( "grim.bundle.json", "{ \"arez/ArezContext\": [ " );
+    final IllegalStateException exception4 = expectThrows( IllegalStateException.class, this::buildRuleSet );
+    assertEquals( exception4.getCause().getMessage(), "Grim bundle contains malformed json" );
+  }
+
+  private void createBundle()
+    throws IOException
+  {
+    createRuleFile( "grim.bundle.json",
+                    "{\n" +
+                    "  \"arez/ArezContext\": [\n" +
+                    "    { \"type\": \"^\\\\Qarez.ArezContext\\\\E$\", \"member\": \"^\\\\Q$clinit\\\\E$\" }\n" +
+                    "  ],\n" +
+                    "  \"arez/Node\": [ { \"type\": \"^\\\\Qarez.Node\\\\E$\" } ],\n" +
+                    "  \"arez/package-info\": [ { \"type\": \"^arez\\\\.spy\\\\..*$\" } ],\n" +
+                    "  \"arez/spy/SpyImpl\": [\n" +
+                    "    {\n" +
+                    "      \"keep\": true,\n" +
+                    "      \"type\": \"^\\\\Qarez.spy.SpyImpl\\\\E$\",\n" +
+                    "      \"property\": \"arez.enable_spies\",\n" +
+                    "      \"value\": \"true\",\n" +
+                    "      \"operator\": \"EQ\"\n" +
+                    "    }\n" +
+                    "  ]\n" +
+                    "}\n" );
+  }
+
+  private void assertBundleRules( @Nonnull final RuleSet rules )
+  {
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "$clinit" ) );
+    assertFalse( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.ArezContext", "foo" ) );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.Node", "foo" ) );
+    assertTrue( rules.shouldOmitSymbol( Collections.emptyMap(), "arez.spy.SpyImpl", "" ) );
+    assertFalse( rules.shouldOmitSymbol( Collections.singletonMap( "arez.enable_spies", "true" ),
+                                         "arez.spy.SpyImpl",
+                                         "" ) );
+  }
+
   @Nonnull
   private RuleSet buildRuleSetFromJar()
     throws IOException
+  {
+    final Path archive = createArchive();
+    try
+    {
+      return RuleSet.loadFromArchive( archive );
+    }
+    finally
+    {
+      Files.delete( archive );
+    }
+  }
+
+  /**
+   * Create an archive containing the rule files created so far.
+   * The rule files are then removed so that subsequent rule files are added to a new archive.
+   */
+  @Nonnull
+  private Path createArchive()
+    throws IOException
   {
     final Path archive = Files.createTempFile( "grim", ".jar" );
     try ( final FileOutputStream fileOutputStream = new FileOutputStream( archive.toFile() ) )
     {
       try ( final JarOutputStream outputStream = new JarOutputStream( fileOutputStream ) )
       {
-        Files.walk( _baseDirectory ).forEach( path -> {
-          if ( Files.isRegularFile( path ) )
+        Files.walk( _baseDirectory ).sorted().forEach( path -> {
+          final Path zipPath = _baseDirectory.relativize( path );
+          if ( Files.isDirectory( path ) && !path.equals( _baseDirectory ) )
+          {
+            // Directory entries are added as the jar tool does so that the directories are visible to class loaders
+            try
+            {
+              outputStream.putNextEntry( new JarEntry( zipPath + "/" ) );
+              outputStream.closeEntry();
+            }
+            catch ( final IOException ioe )
+            {
+              throw new IllegalStateException( ioe );
+            }
+          }
+          else if ( Files.isRegularFile( path ) )
           {
-            final Path zipPath = _baseDirectory.relativize( path );
             try
             {
               outputStream.putNextEntry( new JarEntry( zipPath.toString() ) );
@@ -311,14 +1853,10 @@ public class RuleSetTest
         } );
       }
     }
-    try
-    {
-      return RuleSet.loadFromArchive( archive );
-    }
-    finally
-    {
-      Files.delete( archive );
-    }
+    //noinspection ResultOfMethodCallIgnored
+    Files.walk( _baseDirectory ).sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+    _baseDirectory = null;
+    return archive;
   }
 
   @Nonnull
@@ -337,10 +1875,16 @@ public class RuleSetTest
 
   private void createRuleFile( @Nonnull final String path, @Nonnull final String content )
     throws IOException
+  {
+    createRuleFile( path, content.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  private void createRuleFile( @Nonnull final String path, @Nonnull final byte[] content )
+    throws IOException
   {
     final Path file = getBaseDirectory().resolve( "META-INF" ).resolve( "grim" ).resolve( Paths.get( path ) );
     Files.createDirectories( file.getParent() );
-    Files.write( file, content.getBytes( StandardCharsets.UTF_8 ) );
+    Files.write( file, content );
   }
 
   private Path getBaseDirectory()
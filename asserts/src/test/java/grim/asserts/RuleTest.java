@@ -124,4 +124,31 @@ public class RuleTest
     assertTrue( rule.matches( compileTimeProperties, "arez.ArezContext", "getNextNodeId" ) );
     assertFalse( rule.matches( compileTimeProperties, "arez.Node", "getName" ) );
   }
+
+  @Test
+  public void devirtualizedMember()
+  {
+    final Rule rule =
+      new Rule( true, Pattern.compile( "^\\Qarez.ArezContext\\E$" ), Pattern.compile( "^\\$?\\QgetName\\E$" ), null );
+    assertEquals( rule.getLiteralMember(), "getName" );
+    assertTrue( rule.isDevirtualizedMember() );
+
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+    assertTrue( rule.matches( compileTimeProperties, "arez.ArezContext", "getName" ) );
+    assertTrue( rule.matches( compileTimeProperties, "arez.ArezContext", "$getName" ) );
+    assertFalse( rule.matches( compileTimeProperties, "arez.ArezContext", "$$getName" ) );
+    assertFalse( rule.matches( compileTimeProperties, "arez.ArezContext", "xgetName" ) );
+    assertFalse( rule.matches( compileTimeProperties, "arez.ArezContext", "getNames" ) );
+
+    final Rule literalRule =
+      new Rule( true, Pattern.compile( "^\\Qarez.ArezContext\\E$" ), Pattern.compile( "^\\QgetName\\E$" ), null );
+    assertEquals( literalRule.getLiteralMember(), "getName" );
+    assertFalse( literalRule.isDevirtualizedMember() );
+    assertFalse( literalRule.matches( compileTimeProperties, "arez.ArezContext", "$getName" ) );
+
+    final Rule patternRule =
+      new Rule( true, Pattern.compile( "^\\Qarez.ArezContext\\E$" ), Pattern.compile( "^\\$?get.*$" ), null );
+    assertNull( patternRule.getLiteralMember() );
+    assertFalse( patternRule.isDevirtualizedMember() );
+  }
 }
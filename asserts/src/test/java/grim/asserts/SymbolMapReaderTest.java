@@ -0,0 +1,110 @@
+package grim.asserts;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class SymbolMapReaderTest
+{
+  @Test
+  public void read()
+    throws Exception
+  {
+    final String content =
+      "# { 1 }\n" +
+      "# { 'user.agent' : 'safari' }\n" +
+      "# jsName, jsniIdent, className, memberName, sourceUri, sourceLine, fragmentNumber\n" +
+      "Lcom_example_Foo_2_classLit,,com.example.Foo,,file:/src/com/example/Foo.java,1,-1\n" +
+      "Ab,com.example.Foo::bar()V,com.example.Foo,bar,file:/src/com/example/Foo.java,12,-1\r\n" +
+      "Bb,com.example.Foo::baz(Ljava/lang/String;)I,com.example.Foo,baz,file:/src/com/example/Foo.java,17,2\n" +
+      "\n" +
+      "$wnd,,,,Unknown,0,-1\n" +
+      "Cb,com.example.Bar::bar()V,com.example.Bar,bar,file:/src/com/example/Bar.java,3,-1\n" +
+      "Db,com.example.Caf\u00e9::x,com.example.Caf\u00e9,x,file:/src/com/example/Caf\u00e9.java,3,-1";
+    final Path file = Files.createTempFile( "grim", ".symbolMap" );
+    try
+    {
+      Files.write( file, content.getBytes( StandardCharsets.UTF_8 ) );
+      final SymbolTable symbols = SymbolMapReader.read( file );
+
+      assertEquals( symbols.size(), 5 );
+      assertEquals( symbols.getType( 0 ), "com.example.Foo" );
+      assertEquals( symbols.getMember( 0 ), "" );
+      assertEquals( symbols.getType( 1 ), "com.example.Foo" );
+      assertEquals( symbols.getMember( 1 ), "bar" );
+      assertEquals( symbols.getType( 2 ), "com.example.Foo" );
+      assertEquals( symbols.getMember( 2 ), "baz" );
+      assertEquals( symbols.getType( 3 ), "com.example.Bar" );
+      assertEquals( symbols.getMember( 3 ), "bar" );
+      assertEquals( symbols.getType( 4 ), "com.example.Caf\u00e9" );
+      assertEquals( symbols.getMember( 4 ), "x" );
+
+      // Names are interned while reading
+      assertSame( symbols.getType( 0 ), symbols.getType( 2 ) );
+      assertSame( symbols.getMember( 1 ), symbols.getMember( 3 ) );
+
+      final Rule rule = new Rule( true, Pattern.compile( "^\\Qcom.example.Foo\\E$" ), Pattern.compile( "^ba.*$" ), null );
+      final RuleSet ruleSet = new RuleSet( Collections.singletonList( rule ) );
+      final BitSet expected = new BitSet();
+      expected.set( 1 );
+      expected.set( 2 );
+      assertEquals( ruleSet.shouldOmitSymbols( Collections.emptyMap(), symbols ), expected );
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+
+  @Test
+  public void read_manySymbols()
+    throws Exception
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < 5000; i++ )
+    {
+      sb.append( "A" ).append( i ).append( ",,com.example.Type" ).append( i % 700 )
+        .append( ",m" ).append( i ).append( ",Unknown,0,-1\n" );
+    }
+    final Path file = Files.createTempFile( "grim", ".symbolMap" );
+    try
+    {
+      Files.write( file, sb.toString().getBytes( StandardCharsets.UTF_8 ) );
+      final SymbolTable symbols = SymbolMapReader.read( file );
+      assertEquals( symbols.size(), 5000 );
+      for ( int i = 0; i < 5000; i++ )
+      {
+        assertEquals( symbols.getType( i ), "com.example.Type" + ( i % 700 ) );
+        assertEquals( symbols.getMember( i ), "m" + i );
+      }
+      assertSame( symbols.getType( 1 ), symbols.getType( 701 ) );
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+
+  @Test
+  public void read_malformed()
+    throws Exception
+  {
+    final Path file = Files.createTempFile( "grim", ".symbolMap" );
+    try
+    {
+      Files.write( file, "# header\nAb,,com.example.Foo\n".getBytes( StandardCharsets.UTF_8 ) );
+      final IOException exception = expectThrows( IOException.class, () -> SymbolMapReader.read( file ) );
+      assertEquals( exception.getMessage(), "Symbol map entry at line 2 has fewer than 4 columns" );
+    }
+    finally
+    {
+      Files.delete( file );
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package grim.asserts;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class TypeTrieTest
+{
+  @Test
+  public void isSupported()
+  {
+    assertTrue( TypeTrie.isSupported( "com.example." ) );
+    assertTrue( TypeTrie.isSupported( "com.example.Outer$" ) );
+    assertFalse( TypeTrie.isSupported( "com.example.Outer" ) );
+    assertFalse( TypeTrie.isSupported( "" ) );
+  }
+
+  @Test
+  public void match()
+  {
+    final TypeTrie trie = new TypeTrie();
+    trie.add( "com.", 0 );
+    trie.add( "com.example.", 1 );
+    trie.add( "com.example.Outer$", 2 );
+    trie.add( "com.example.Outer.", 3 );
+    trie.add( "com.example.", 4 );
+    trie.add( "org.", 5 );
+
+    assertMatches( trie, "com.example.Foo", 0, 1, 4 );
+    assertMatches( trie, "com.example.Outer", 0, 1, 4 );
+    assertMatches( trie, "com.example.Outer$Inner", 0, 1, 2, 4 );
+    assertMatches( trie, "com.example.Outer.Inner", 0, 1, 3, 4 );
+    assertMatches( trie, "com.example.OuterSupport", 0, 1, 4 );
+    assertMatches( trie, "com.example.OuterSupport$Inner", 0, 1, 4 );
+    assertMatches( trie, "com.example.", 0, 1, 4 );
+    assertMatches( trie, "com.other.Foo", 0 );
+    assertMatches( trie, "com", new int[ 0 ] );
+    assertMatches( trie, "comx.Foo", new int[ 0 ] );
+    assertMatches( trie, "Foo", new int[ 0 ] );
+    assertMatches( trie, "", new int[ 0 ] );
+  }
+
+  @Test
+  public void match_lineTerminator()
+  {
+    final TypeTrie trie = new TypeTrie();
+    trie.add( "com.", 0 );
+
+    assertNull( trie.match( "com.Foo\n" ) );
+    assertMatches( trie, "org.Foo\n", new int[ 0 ] );
+  }
+
+  @Test
+  public void matchesAgreeWithPattern()
+  {
+    final String[] prefixes = new String[]{ "arez.", "arez.ObjectsEqualsComparator$", "arez.component.", "arez.$" };
+    final String[] types = new String[]{
+      "arez.ObjectsEqualsComparator",
+      "arez.ObjectsEqualsComparator$Type",
+      "arez.ObjectsEqualsComparatorX",
+      "arez.component.Foo$Bar",
+      "arez.$Proxy",
+      "arez$",
+      "arez"
+    };
+    final TypeTrie trie = new TypeTrie();
+    for ( int i = 0; i < prefixes.length; i++ )
+    {
+      trie.add( prefixes[ i ], i );
+    }
+    for ( final String type : types )
+    {
+      final int[] matches = trie.match( type );
+      assertNotNull( matches );
+      Arrays.sort( matches );
+      final int[] expected = new int[ prefixes.length ];
+      int count = 0;
+      for ( int i = 0; i < prefixes.length; i++ )
+      {
+        if ( Pattern.compile( "^" + Pattern.quote( prefixes[ i ] ) + ".*$" ).matcher( type ).matches() )
+        {
+          expected[ count++ ] = i;
+        }
+      }
+      assertEquals( matches, Arrays.copyOf( expected, count ), "Type: " + type );
+    }
+  }
+
+  @Test
+  public void match_manySegments()
+  {
+    final TypeTrie trie = new TypeTrie();
+    for ( int i = 0; i < 200; i++ )
+    {
+      trie.add( "com.p" + i + ".", i );
+    }
+    // The segments "Aa." and "BB." have the same hash code
+    trie.add( "com.Aa.", 200 );
+    trie.add( "com.BB.", 201 );
+    for ( int i = 0; i < 200; i++ )
+    {
+      assertMatches( trie, "com.p" + i + ".Foo", i );
+    }
+    assertMatches( trie, "com.Aa.Foo", 200 );
+    assertMatches( trie, "com.BB.Foo", 201 );
+    assertMatches( trie, "com.p200.Foo" );
+    assertMatches( trie, "com.p1" );
+  }
+
+  private void assertMatches( final TypeTrie trie, final String type, final int... expected )
+  {
+    final int[] matches = trie.match( type );
+    assertNotNull( matches );
+    Arrays.sort( matches );
+    assertEquals( matches, expected, "Type: " + type );
+  }
+}
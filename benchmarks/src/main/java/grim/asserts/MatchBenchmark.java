@@ -0,0 +1,73 @@
+package grim.asserts;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of evaluating individual rules and conditions.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class MatchBenchmark
+{
+  private Rule _literalRule;
+  private Rule _packageRule;
+  private Rule _patternRule;
+  private Condition _condition;
+  private Map<String, String> _compileTimeProperties;
+
+  @Setup
+  public void setup()
+  {
+    _condition = new Condition( "arez.enable_names", "true", false );
+    _literalRule = new Rule( true,
+                             Pattern.compile( "^\\Qarez.ArezContext\\E$" ),
+                             Pattern.compile( "^\\$?\\QgetName\\E$" ),
+                             _condition );
+    _packageRule = new Rule( true, Pattern.compile( "^arez\\.spy\\..*$" ), null, _condition );
+    _patternRule = new Rule( true,
+                             Pattern.compile( ".*\\.Arez_.*" ),
+                             Pattern.compile( "^\\$?(?:get|set)[A-Z]\\w*$" ),
+                             null );
+    _compileTimeProperties = RuleFixture.compileTimeProperties( 0 );
+  }
+
+  @Benchmark
+  public boolean ruleMatches_literal()
+  {
+    return _literalRule.matches( _compileTimeProperties, "arez.ArezContext", "$getName" );
+  }
+
+  @Benchmark
+  public boolean ruleMatches_package()
+  {
+    return _packageRule.matches( _compileTimeProperties, "arez.spy.SpyEventHandler", "onEvent" );
+  }
+
+  @Benchmark
+  public boolean ruleMatches_pattern()
+  {
+    return _patternRule.matches( _compileTimeProperties, "com.example.Arez_TodoService", "getTitle" );
+  }
+
+  @Benchmark
+  public boolean conditionMatches()
+  {
+    return _condition.matches( _compileTimeProperties );
+  }
+}
@@ -0,0 +1,255 @@
+package grim.asserts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Generates a deterministic set of rules and symbols that resemble those produced by the annotation processor
+ * for a large application. The rules are a mix of literal type and member rules, literal type rules, package
+ * pattern rules, general pattern rules and keep rules that override omit rules. Roughly half of the generated
+ * symbols are named by a rule and the remainder are drawn from the same namespace but are not named by a rule.
+ */
+final class RuleFixture
+{
+  /**
+   * The number of types generated in each package.
+   */
+  private static final int TYPES_PER_PACKAGE = 50;
+  /**
+   * The number of members generated in each type.
+   */
+  private static final int MEMBERS_PER_TYPE = 20;
+  @Nonnull
+  private final List<Rule> _rules = new ArrayList<>();
+  @Nonnull
+  private final String[] _types;
+  @Nonnull
+  private final String[] _members;
+  private final int _packageCount;
+
+  RuleFixture( final int ruleCount, final int symbolCount )
+  {
+    final Random random = new Random( 42 );
+    _packageCount = Math.max( 1, ruleCount / ( TYPES_PER_PACKAGE * 2 ) );
+    for ( int i = 0; i < ruleCount; i++ )
+    {
+      _rules.add( newRule( random, i % 20 ) );
+    }
+    _types = new String[ symbolCount ];
+    _members = new String[ symbolCount ];
+    for ( int i = 0; i < symbolCount; i++ )
+    {
+      if ( random.nextBoolean() )
+      {
+        // A symbol that is likely to be named by a rule
+        final Rule rule = _rules.get( random.nextInt( _rules.size() ) );
+        final String literalType = rule.getLiteralType();
+        _types[ i ] = null != literalType ? literalType : randomType( random, _packageCount );
+        final String literalMember = rule.getLiteralMember();
+        _members[ i ] = null == literalMember ? "" : random.nextBoolean() ? literalMember : "$" + literalMember;
+      }
+      else
+      {
+        // A symbol in the same namespace that is unlikely to be named by a rule
+        _types[ i ] = randomType( random, _packageCount * 2 );
+        _members[ i ] = randomMember( random );
+      }
+    }
+  }
+
+  /**
+   * Return compile time properties for a permutation.
+   *
+   * @param permutation the index of the permutation.
+   * @return the compile time properties.
+   */
+  @Nonnull
+  static Map<String, String> compileTimeProperties( final int permutation )
+  {
+    final Map<String, String> compileTimeProperties = new HashMap<>();
+    compileTimeProperties.put( "arez.enable_names", String.valueOf( 0 != ( permutation & 1 ) ) );
+    compileTimeProperties.put( "arez.enable_spies", String.valueOf( 0 != ( permutation & 2 ) ) );
+    compileTimeProperties.put( "user.agent", 0 != ( permutation & 4 ) ? "gecko1_8" : "safari" );
+    return compileTimeProperties;
+  }
+
+  @Nonnull
+  List<Rule> getRules()
+  {
+    return Collections.unmodifiableList( _rules );
+  }
+
+  @Nonnull
+  String[] getTypes()
+  {
+    return _types;
+  }
+
+  @Nonnull
+  String[] getMembers()
+  {
+    return _members;
+  }
+
+  @Nonnull
+  private Rule newRule( @Nonnull final Random random, final int kind )
+  {
+    final int packageIndex = random.nextInt( _packageCount );
+    final String type = typeName( packageIndex, random.nextInt( TYPES_PER_PACKAGE ) );
+    if ( kind < 12 )
+    {
+      // @OmitSymbol on a method
+      return new Rule( true,
+                       literal( type ),
+                       Pattern.compile( "^\\$?" + Pattern.quote( memberName( random ) ) + "$" ),
+                       0 == kind % 3 ? new Condition( "arez.enable_names", "true", false ) : null );
+    }
+    else if ( kind < 15 )
+    {
+      // @OmitType or @OmitClinit
+      return new Rule( true,
+                       literal( type ),
+                       12 == kind ? Pattern.compile( "^\\Q$clinit\\E$" ) : null,
+                       new Condition( "arez.enable_spies", "true", false ) );
+    }
+    else if ( kind < 17 )
+    {
+      // @OmitPattern on a package using the default type pattern
+      return new Rule( true,
+                       Pattern.compile( "^com\\.example\\.pkg" + packageIndex + "\\..*$" ),
+                       15 == kind ? Pattern.compile( "^\\$?get.*$" ) : null,
+                       new Condition( "arez.enable_spies", "true", false ) );
+    }
+    else if ( kind < 18 )
+    {
+      // @OmitPattern with a hand-written type pattern
+      return new Rule( true,
+                       Pattern.compile( ".*\\.pkg" + packageIndex + "\\.Arez_Type[0-9]+$" ),
+                       Pattern.compile( "^\\$?(?:get|set)[A-Z]\\w*$" ),
+                       null );
+    }
+    else
+    {
+      // @KeepSymbol overriding an omit rule
+      return new Rule( false,
+                       literal( type ),
+                       Pattern.compile( "^\\$?" + Pattern.quote( memberName( random ) ) + "$" ),
+                       18 == kind ? new Condition( "user.agent", "safari", true ) : null );
+    }
+  }
+
+  @Nonnull
+  private static Pattern literal( @Nonnull final String type )
+  {
+    return Pattern.compile( "^" + Pattern.quote( type ) + "$" );
+  }
+
+  @Nonnull
+  private static String randomType( @Nonnull final Random random, final int packageCount )
+  {
+    final String type = typeName( random.nextInt( packageCount ), random.nextInt( TYPES_PER_PACKAGE ) );
+    final int variant = random.nextInt( 10 );
+    return 0 == variant ? type + "$Inner" : 1 == variant ? type.replace( ".Type", ".Arez_Type" ) : type;
+  }
+
+  @Nonnull
+  private static String randomMember( @Nonnull final Random random )
+  {
+    final int variant = random.nextInt( 10 );
+    return 0 == variant ? "" : 1 == variant ? "$clinit" : 2 == variant ? "getName" : memberName( random );
+  }
+
+  @Nonnull
+  private static String typeName( final int packageIndex, final int typeIndex )
+  {
+    return "com.example.pkg" + packageIndex + ".Type" + typeIndex;
+  }
+
+  @Nonnull
+  private static String memberName( @Nonnull final Random random )
+  {
+    return "member" + random.nextInt( MEMBERS_PER_TYPE );
+  }
+
+  /**
+   * Return the rules of the fixture in a form that is evaluated in the same way as
+   * {@link RuleSet#shouldOmitSymbol(Map, String, String)} was evaluated before the rules were reduced, indexed or
+   * classified. This is retained as a baseline to compare the current implementation against.
+   *
+   * @return the baseline rules.
+   */
+  @Nonnull
+  BaselineRuleSet newBaselineRuleSet()
+  {
+    return new BaselineRuleSet( _rules );
+  }
+
+  /**
+   * The rules evaluated in turn via a stream, with every pattern matched via <code>java.util.regex</code>.
+   * The patterns are compiled from the source of the patterns in the rules so that none of the fast paths
+   * used by {@link Rule} are used.
+   */
+  static final class BaselineRuleSet
+  {
+    @Nonnull
+    private final List<BaselineRule> _omitRules = new ArrayList<>();
+    @Nonnull
+    private final List<BaselineRule> _keepRules = new ArrayList<>();
+
+    private BaselineRuleSet( @Nonnull final List<Rule> rules )
+    {
+      for ( final Rule rule : rules )
+      {
+        ( rule.isOmitRule() ? _omitRules : _keepRules ).add( new BaselineRule( rule ) );
+      }
+    }
+
+    boolean shouldOmitSymbol( @Nonnull final Map<String, String> compileTimeProperties,
+                              @Nonnull final String type,
+                              @Nonnull final String member )
+    {
+      return _omitRules.stream().anyMatch( r -> r.matches( compileTimeProperties, type, member ) ) &&
+             _keepRules.stream().noneMatch( r -> r.matches( compileTimeProperties, type, member ) );
+    }
+  }
+
+  private static final class BaselineRule
+  {
+    @Nonnull
+    private final Pattern _type;
+    @Nullable
+    private final Pattern _member;
+    @Nullable
+    private final Condition _condition;
+
+    BaselineRule( @Nonnull final Rule rule )
+    {
+      _type = recompile( rule.getType() );
+      final Pattern member = rule.getMember();
+      _member = null == member ? null : recompile( member );
+      _condition = rule.getCondition();
+    }
+
+    boolean matches( @Nonnull final Map<String, String> compileTimeProperties,
+                     @Nonnull final String type,
+                     @Nonnull final String member )
+    {
+      return _type.matcher( type ).matches() &&
+             ( null == _member || _member.matcher( member ).matches() ) &&
+             ( null == _condition || _condition.matches( compileTimeProperties ) );
+    }
+
+    @Nonnull
+    private static Pattern recompile( @Nonnull final Pattern pattern )
+    {
+      return Pattern.compile( pattern.pattern(), pattern.flags() );
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package grim.asserts;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of checking a single symbol against a RuleSet.
+ * Each invocation checks the next symbol from the fixture so the results are reported as symbols per second.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+@State( Scope.Thread )
+public class ShouldOmitSymbolBenchmark
+{
+  @Param( { "100", "1000", "10000", "100000" } )
+  public int ruleCount;
+  @Param( { "10000", "100000", "1000000" } )
+  public int symbolCount;
+  private RuleSet _ruleSet;
+  private RuleSet _cachingRuleSet;
+  private BoundRuleSet _boundRuleSet;
+  private RuleFixture.BaselineRuleSet _baselineRuleSet;
+  private Map<String, String> _compileTimeProperties;
+  private String[] _types;
+  private String[] _members;
+  private int _index;
+
+  @Setup
+  public void setup()
+  {
+    final RuleFixture fixture = new RuleFixture( ruleCount, symbolCount );
+    _ruleSet = new RuleSet( fixture.getRules() );
+    _cachingRuleSet = _ruleSet.withDecisionCache( symbolCount );
+    _compileTimeProperties = RuleFixture.compileTimeProperties( 0 );
+    _boundRuleSet = _ruleSet.bindTo( _compileTimeProperties );
+    _baselineRuleSet = fixture.newBaselineRuleSet();
+    _types = fixture.getTypes();
+    _members = fixture.getMembers();
+  }
+
+  @Benchmark
+  public boolean shouldOmitSymbol()
+  {
+    final int index = nextIndex();
+    return _ruleSet.shouldOmitSymbol( _compileTimeProperties, _types[ index ], _members[ index ] );
+  }
+
+  @Benchmark
+  public boolean shouldOmitSymbol_decisionCache()
+  {
+    final int index = nextIndex();
+    return _cachingRuleSet.shouldOmitSymbol( _compileTimeProperties, _types[ index ], _members[ index ] );
+  }
+
+  @Benchmark
+  public boolean shouldOmitSymbol_bound()
+  {
+    final int index = nextIndex();
+    return _boundRuleSet.shouldOmitSymbol( _types[ index ], _members[ index ] );
+  }
+
+  @Benchmark
+  public boolean shouldOmitSymbol_baseline()
+  {
+    final int index = nextIndex();
+    return _baselineRuleSet.shouldOmitSymbol( _compileTimeProperties, _types[ index ], _members[ index ] );
+  }
+
+  private int nextIndex()
+  {
+    final int index = _index;
+    _index = index + 1 == _types.length ? 0 : index + 1;
+    return index;
+  }
+}
@@ -0,0 +1,87 @@
+package grim.asserts;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time taken to check every symbol of a compilation against a RuleSet.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 5 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+@State( Scope.Benchmark )
+public class ShouldOmitSymbolsBenchmark
+{
+  /**
+   * The number of permutations checked by the multiple permutation benchmark.
+   */
+  private static final int PERMUTATION_COUNT = 8;
+  @Param( { "100", "1000", "10000", "100000" } )
+  public int ruleCount;
+  @Param( { "10000", "100000", "1000000" } )
+  public int symbolCount;
+  private RuleSet _ruleSet;
+  private Map<String, String> _compileTimeProperties;
+  private SymbolTable _symbols;
+  private List<Map<String, String>> _permutationProperties;
+  private List<SymbolTable> _permutationSymbols;
+
+  @Setup
+  public void setup()
+  {
+    final RuleFixture fixture = new RuleFixture( ruleCount, symbolCount );
+    _ruleSet = new RuleSet( fixture.getRules() );
+    _compileTimeProperties = RuleFixture.compileTimeProperties( 0 );
+    _symbols = new SymbolTable( fixture.getTypes(), fixture.getMembers() );
+    _permutationProperties = new ArrayList<>();
+    _permutationSymbols = new ArrayList<>();
+    for ( int i = 0; i < PERMUTATION_COUNT; i++ )
+    {
+      _permutationProperties.add( RuleFixture.compileTimeProperties( i ) );
+      _permutationSymbols.add( _symbols );
+    }
+  }
+
+  @Benchmark
+  public BitSet shouldOmitSymbols()
+  {
+    return _ruleSet.shouldOmitSymbols( _compileTimeProperties, _symbols );
+  }
+
+  @Benchmark
+  public BitSet shouldOmitSymbols_sequential()
+  {
+    final BoundRuleSet ruleSet = _ruleSet.bindTo( _compileTimeProperties );
+    final BitSet result = new BitSet( _symbols.size() );
+    for ( int i = 0; i < _symbols.size(); i++ )
+    {
+      if ( ruleSet.shouldOmitSymbol( _symbols.getType( i ), _symbols.getMember( i ) ) )
+      {
+        result.set( i );
+      }
+    }
+    return result;
+  }
+
+  @Benchmark
+  public List<BitSet> shouldOmitSymbols_permutations()
+  {
+    return _ruleSet.shouldOmitSymbols( _permutationProperties, _permutationSymbols );
+  }
+}
@@ -0,0 +1,231 @@
+package grim.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.realityforge.proton.StopWatch;
+
+/**
+ * Measures the time taken to run the annotation processor over a large synthetic source tree.
+ * The source tree contains a package-info per package and types that use every grim annotation on the type
+ * and on a subset of the fields, constructors and methods, alongside members without grim annotations.
+ * The compiler is run in-process with <code>-proc:only</code> so the measurement is dominated by parsing the
+ * sources and running the processor rather than by generating classes.
+ *
+ * <p>The time spent in each phase of the processor, as recorded by the StopWatches of the processor, is printed
+ * at the end of each iteration. The allocation per compilation is reported by the gc profiler that is enabled
+ * by "buildr grim:benchmarks:run".</p>
+ */
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" } )
+@State( Scope.Benchmark )
+public class ProcessorBenchmark
+{
+  /**
+   * The number of types generated in each package.
+   */
+  private static final int TYPES_PER_PACKAGE = 100;
+  /**
+   * The number of methods without grim annotations generated in each type.
+   */
+  private static final int PLAIN_METHODS_PER_TYPE = 8;
+  @Param( { "1000", "10000" } )
+  public int typeCount;
+  @Param( { GrimProcessor.OUTPUT_FILES, GrimProcessor.OUTPUT_BUNDLE } )
+  public String output;
+  private Path _baseDirectory;
+  private Path _outputDirectory;
+  private List<File> _sourceFiles;
+  private List<StopWatch> _stopWatches;
+
+  @Setup( Level.Trial )
+  public void setup()
+    throws IOException
+  {
+    _baseDirectory = Files.createTempDirectory( "grim-benchmark" );
+    final Path sourceDirectory = _baseDirectory.resolve( "src" );
+    _sourceFiles = new ArrayList<>();
+    for ( int i = 0; i < typeCount; i++ )
+    {
+      final String packageName = "grim.synthetic.p" + ( i / TYPES_PER_PACKAGE );
+      final Path packageDirectory = sourceDirectory.resolve( packageName.replace( '.', File.separatorChar ) );
+      if ( 0 == i % TYPES_PER_PACKAGE )
+      {
+        Files.createDirectories( packageDirectory );
+        _sourceFiles.add( writeSource( packageDirectory.resolve( "package-info.java" ),
+                                       newPackageInfo( packageName ) ) );
+      }
+      _sourceFiles.add( writeSource( packageDirectory.resolve( "Type" + i + ".java" ), newType( packageName, i ) ) );
+    }
+  }
+
+  @Setup( Level.Iteration )
+  public void setupIteration()
+    throws IOException
+  {
+    _outputDirectory = _baseDirectory.resolve( "out" );
+    delete( _outputDirectory );
+    Files.createDirectories( _outputDirectory );
+  }
+
+  @TearDown( Level.Iteration )
+  public void tearDownIteration()
+  {
+    final StringBuilder sb = new StringBuilder();
+    for ( final StopWatch stopWatch : _stopWatches )
+    {
+      sb.append( '\n' )
+        .append( stopWatch.getName() )
+        .append( ": " )
+        .append( stopWatch.getTotalDuration() )
+        .append( "ms (" )
+        .append( stopWatch.getCallCount() )
+        .append( " calls)" );
+    }
+    System.out.println( sb );
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown()
+    throws IOException
+  {
+    delete( _baseDirectory );
+  }
+
+  @Benchmark
+  public GrimProcessor process()
+    throws IOException
+  {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    final GrimProcessor processor = new GrimProcessor();
+    try ( final StandardJavaFileManager fileManager =
+            compiler.getStandardFileManager( diagnostics, null, StandardCharsets.UTF_8 ) )
+    {
+      final List<String> options =
+        Arrays.asList( "-proc:only",
+                       "-d", _outputDirectory.toString(),
+                       "-classpath", System.getProperty( "java.class.path" ),
+                       "-A" + GrimProcessor.OUTPUT_OPTION + "=" + output );
+      final JavaCompiler.CompilationTask task =
+        compiler.getTask( null,
+                          fileManager,
+                          diagnostics,
+                          options,
+                          null,
+                          fileManager.getJavaFileObjectsFromFiles( _sourceFiles ) );
+      task.setProcessors( Collections.singletonList( processor ) );
+      if ( !task.call() )
+      {
+        throw new IllegalStateException( "Failed to process synthetic sources: " + diagnostics.getDiagnostics() );
+      }
+    }
+    _stopWatches = new ArrayList<>();
+    processor.collectStopWatches( _stopWatches );
+    return processor;
+  }
+
+  @Nonnull
+  private static String newPackageInfo( @Nonnull final String packageName )
+  {
+    return "@OmitPattern( symbol = \"^debug.*$\", unless = \"grim.synthetic.debug\" )\n" +
+           "@KeepPattern( type = \"^" + packageName + ".Type0$\", when = \"grim.synthetic.keep\" )\n" +
+           "package " + packageName + ";\n" +
+           "\n" +
+           "import grim.annotations.KeepPattern;\n" +
+           "import grim.annotations.OmitPattern;\n";
+  }
+
+  @Nonnull
+  private static String newType( @Nonnull final String packageName, final int index )
+  {
+    final String name = "Type" + index;
+    final StringBuilder sb = new StringBuilder();
+    sb.append( "package " ).append( packageName ).append( ";\n\n" );
+    sb.append( "import grim.annotations.*;\n\n" );
+    if ( 0 == index % 2 )
+    {
+      sb.append( "@OmitClinit\n" );
+    }
+    if ( 0 == index % 4 )
+    {
+      sb.append( "@OmitType( unless = \"grim.synthetic.enable_types\" )\n" );
+      sb.append( "@KeepType( when = \"grim.synthetic.keep_types=true\" )\n" );
+    }
+    sb.append( "public class " ).append( name ).append( "\n{\n" );
+    sb.append( "  static final Object INSTANCE = new Object();\n" );
+    sb.append( "  @OmitSymbol( unless = \"grim.synthetic.enable_names\" )\n" );
+    sb.append( "  private String _name;\n" );
+    sb.append( "  private int _count;\n\n" );
+    sb.append( "  @KeepSymbol( when = \"grim.synthetic.keep\" )\n" );
+    sb.append( "  public " ).append( name ).append( "()\n  {\n  }\n\n" );
+    sb.append( "  @OmitSymbol( unless = \"grim.synthetic.enable_names\" )\n" );
+    sb.append( "  public String getName()\n  {\n    return _name;\n  }\n\n" );
+    sb.append( "  @OmitSymbol( unless = \"grim.synthetic.enable_reset\" )\n" );
+    sb.append( "  @OmitSymbol( when = \"grim.synthetic.production\" )\n" );
+    sb.append( "  @KeepSymbol( when = \"grim.synthetic.keep\" )\n" );
+    sb.append( "  public void reset()\n  {\n    _count = 0;\n  }\n\n" );
+    sb.append( "  @Override\n" );
+    sb.append( "  public String toString()\n  {\n    return _name + _count;\n  }\n" );
+    for ( int i = 0; i < PLAIN_METHODS_PER_TYPE; i++ )
+    {
+      sb.append( "\n  @Deprecated\n" );
+      sb.append( "  public int method" ).append( i ).append( "( final int value )\n" );
+      sb.append( "  {\n    return _count + value;\n  }\n" );
+    }
+    sb.append( "}\n" );
+    return sb.toString();
+  }
+
+  @Nonnull
+  private static File writeSource( @Nonnull final Path file, @Nonnull final String content )
+    throws IOException
+  {
+    Files.write( file, content.getBytes( StandardCharsets.UTF_8 ) );
+    return file.toFile();
+  }
+
+  private static void delete( @Nonnull final Path directory )
+    throws IOException
+  {
+    if ( Files.exists( directory ) )
+    {
+      try ( final Stream<Path> paths = Files.walk( directory ) )
+      {
+        //noinspection ResultOfMethodCallIgnored
+        paths.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+      }
+    }
+  }
+}
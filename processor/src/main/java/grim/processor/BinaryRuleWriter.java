@@ -0,0 +1,118 @@
+package grim.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * Encodes rules in the binary rule format that is read by the grim asserts library.
+ * The format avoids the cost of parsing json when a large number of rules are loaded. All integers are
+ * big-endian and every string is stored once in a string table and referenced by index.
+ *
+ * <pre>
+ * file      := MAGIC:int32 VERSION:uint8 stringCount:int32 string[stringCount] ruleCount:int32 rule[ruleCount]
+ * string    := byteLength:int32 utf8Bytes[byteLength]
+ * rule      := flags:uint8 type:pattern [member:pattern] [property:int32 value:int32]
+ * pattern   := kind:uint8 value:int32
+ * </pre>
+ *
+ * <p>The member pattern is present if the {@link #FLAG_MEMBER} flag is set and the property and value of the
+ * condition are present if the {@link #FLAG_CONDITION} flag is set. The kind of a pattern is the ordinal of
+ * {@link PatternDescriptor.Kind} and determines how the value is interpreted.</p>
+ */
+final class BinaryRuleWriter
+{
+  /**
+   * The bytes "GRIM" that identify the format.
+   */
+  static final int MAGIC = 0x4752494D;
+  static final int VERSION = 1;
+  static final int FLAG_KEEP = 1;
+  static final int FLAG_MEMBER = 1 << 1;
+  static final int FLAG_CONDITION = 1 << 2;
+  /**
+   * Flag set if the condition matches when the property is equal to the value.
+   */
+  static final int FLAG_EQUALS = 1 << 3;
+
+  private BinaryRuleWriter()
+  {
+  }
+
+  @Nonnull
+  static byte[] encode( @Nonnull final List<RuleDescriptor> rules )
+    throws IOException
+  {
+    final Map<String, Integer> strings = new LinkedHashMap<>();
+    for ( final RuleDescriptor rule : rules )
+    {
+      intern( strings, rule.getType().getValue() );
+      final PatternDescriptor member = rule.getMember();
+      if ( null != member )
+      {
+        intern( strings, member.getValue() );
+      }
+      final ConditionDescriptor condition = rule.getCondition();
+      if ( null != condition )
+      {
+        intern( strings, condition.getProperty() );
+        intern( strings, condition.getValue() );
+      }
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream output = new DataOutputStream( bytes );
+    output.writeInt( MAGIC );
+    output.writeByte( VERSION );
+    output.writeInt( strings.size() );
+    for ( final String string : strings.keySet() )
+    {
+      final byte[] data = string.getBytes( StandardCharsets.UTF_8 );
+      output.writeInt( data.length );
+      output.write( data );
+    }
+    output.writeInt( rules.size() );
+    for ( final RuleDescriptor rule : rules )
+    {
+      final PatternDescriptor member = rule.getMember();
+      final ConditionDescriptor condition = rule.getCondition();
+      output.writeByte( ( rule.isKeep() ? FLAG_KEEP : 0 ) |
+                        ( null != member ? FLAG_MEMBER : 0 ) |
+                        ( null != condition ? FLAG_CONDITION : 0 ) |
+                        ( null != condition && ConditionDescriptor.Operator.EQUALS == condition.getOperator() ?
+                          FLAG_EQUALS :
+                          0 ) );
+      writePattern( output, strings, rule.getType() );
+      if ( null != member )
+      {
+        writePattern( output, strings, member );
+      }
+      if ( null != condition )
+      {
+        output.writeInt( strings.get( condition.getProperty() ) );
+        output.writeInt( strings.get( condition.getValue() ) );
+      }
+    }
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void writePattern( @Nonnull final DataOutputStream output,
+                                    @Nonnull final Map<String, Integer> strings,
+                                    @Nonnull final PatternDescriptor pattern )
+    throws IOException
+  {
+    output.writeByte( pattern.getKind().ordinal() );
+    output.writeInt( strings.get( pattern.getValue() ) );
+  }
+
+  private static void intern( @Nonnull final Map<String, Integer> strings, @Nonnull final String string )
+  {
+    strings.putIfAbsent( string, strings.size() );
+  }
+}
@@ -28,6 +28,24 @@ final class ConditionDescriptor
     _operator = Objects.requireNonNull( operator );
   }
 
+  @Nonnull
+  String getProperty()
+  {
+    return _property;
+  }
+
+  @Nonnull
+  String getValue()
+  {
+    return _value;
+  }
+
+  @Nonnull
+  Operator getOperator()
+  {
+    return _operator;
+  }
+
   void generate( @Nonnull final JsonGenerator g )
   {
     g.write( "property", _property );
@@ -1,26 +1,38 @@
 package grim.processor;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedSourceVersion;
+import javax.json.Json;
 import javax.json.stream.JsonGenerator;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 import org.realityforge.proton.AbstractStandardProcessor;
 import org.realityforge.proton.AnnotationsUtil;
 import org.realityforge.proton.ElementsUtil;
@@ -43,9 +55,129 @@ public final class GrimProcessor
   @Nonnull
   static final String SUFFIX = ".grim.json";
   @Nonnull
+  static final String BINARY_SUFFIX = ".grim.bin";
+  /**
+   * The resource that lists the rule files generated by a compilation, relative to {@link #BASE_RESOURCE_PATH}.
+   * The asserts library locates the rule files of every library on the classpath by enumerating these resources.
+   */
+  @Nonnull
+  static final String INDEX_FILENAME = BASE_RESOURCE_PATH + "/grim.index";
+  /**
+   * The resource that contains every rule generated by a compilation when the {@link #OUTPUT_OPTION} is
+   * {@link #OUTPUT_BUNDLE}. The bundle is a json object that maps the name of each rule file, relative to
+   * {@link #BASE_RESOURCE_PATH} and without a suffix, to the array of rules that would be in the rule file.
+   */
+  @Nonnull
+  static final String BUNDLE_FILENAME = BASE_RESOURCE_PATH + "/grim.bundle.json";
+  /**
+   * The option that, when set to true, causes the processor to emit the rules in the binary rule format
+   * in addition to the json format.
+   */
+  @Nonnull
+  static final String EMIT_BINARY_RULES_OPTION = "grim.emit_binary_rules";
+  /**
+   * The option that, when set to true, causes the processor to emit the index.
+   * The index lists the rule files generated from every annotated element in the compilation so it makes the
+   * processor aggregating rather than isolating in Gradle incremental builds. The index is not emitted by default
+   * as the asserts library locates the rule files of a library without an index by traversing the grim directory.
+   */
+  @Nonnull
+  static final String EMIT_INDEX_OPTION = "grim.emit_index";
+  /**
+   * The option that determines how the rules are output.
+   * The value {@link #OUTPUT_FILES} emits a rule file per annotated element and the value {@link #OUTPUT_BUNDLE}
+   * emits a single bundle containing every rule generated by the compilation. The {@link #EMIT_BINARY_RULES_OPTION}
+   * only applies to rule files so the rules are never emitted in the binary rule format when a bundle is emitted.
+   */
+  @Nonnull
+  static final String OUTPUT_OPTION = "grim.output";
+  @Nonnull
+  static final String OUTPUT_FILES = "files";
+  @Nonnull
+  static final String OUTPUT_BUNDLE = "bundle";
+  /**
+   * The option that declares the processor is isolating to Gradle incremental compilation.
+   * The processor is declared as "dynamic" in <code>META-INF/gradle/incremental.annotation.processors</code>
+   * and reports whether it is isolating or aggregating via {@link #getSupportedOptions()}.
+   */
+  @Nonnull
+  static final String GRADLE_ISOLATING_OPTION = "org.gradle.annotation.processing.isolating";
+  /**
+   * The option that declares the processor is aggregating to Gradle incremental compilation.
+   *
+   * @see #GRADLE_ISOLATING_OPTION
+   */
+  @Nonnull
+  static final String GRADLE_AGGREGATING_OPTION = "org.gradle.annotation.processing.aggregating";
+  @Nonnull
   private static final String SENTINEL = "<default>";
+  @Nonnull
+  private static final String ANNOTATIONS_PACKAGE = "grim.annotations";
+  /**
+   * The name of the repeatable annotation contained by each container annotation, keyed by the container name.
+   */
+  @Nonnull
+  private static final Map<String, String> CONTAINED_ANNOTATIONS =
+    Map.of( Constants.OMIT_PATTERNS_CLASSNAME, Constants.OMIT_PATTERN_CLASSNAME,
+            Constants.KEEP_PATTERNS_CLASSNAME, Constants.KEEP_PATTERN_CLASSNAME,
+            Constants.OMIT_SYMBOLS_CLASSNAME, Constants.OMIT_SYMBOL_CLASSNAME,
+            Constants.KEEP_SYMBOLS_CLASSNAME, Constants.KEEP_SYMBOL_CLASSNAME,
+            Constants.OMIT_TYPES_CLASSNAME, Constants.OMIT_TYPE_CLASSNAME,
+            Constants.KEEP_TYPES_CLASSNAME, Constants.KEEP_TYPE_CLASSNAME );
   @Nonnull private final StopWatch _processPackageStopWatch = new StopWatch( "Process Packages" );
   @Nonnull private final StopWatch _processTypeStopWatch = new StopWatch( "Process Types" );
+  @Nonnull private final StopWatch _emitIndexStopWatch = new StopWatch( "Emit Index" );
+  @Nonnull private final StopWatch _emitBundleStopWatch = new StopWatch( "Emit Bundle" );
+  private boolean _emitBinaryRules;
+  private boolean _emitIndex;
+  private boolean _emitBundle;
+  /**
+   * The rule files generated so far, relative to {@link #BASE_RESOURCE_PATH}.
+   */
+  @Nonnull
+  private final Set<String> _ruleFiles = new TreeSet<>();
+  /**
+   * The elements that the generated rule files were derived from.
+   */
+  @Nonnull
+  private final List<Element> _ruleFileElements = new ArrayList<>();
+  /**
+   * The rules to emit in the bundle, keyed by the name of the rule file they would otherwise be emitted to.
+   */
+  @Nonnull
+  private final Map<String, List<RuleDescriptor>> _bundleRules = new TreeMap<>();
+
+  @Override
+  public synchronized void init( @Nonnull final ProcessingEnvironment processingEnv )
+  {
+    super.init( processingEnv );
+    _emitBinaryRules = "true".equals( processingEnv.getOptions().get( EMIT_BINARY_RULES_OPTION ) );
+    _emitIndex = "true".equals( processingEnv.getOptions().get( EMIT_INDEX_OPTION ) );
+    final String output = processingEnv.getOptions().get( OUTPUT_OPTION );
+    _emitBundle = OUTPUT_BUNDLE.equals( output );
+    if ( null != output && !_emitBundle && !OUTPUT_FILES.equals( output ) )
+    {
+      processingEnv.getMessager()
+        .printMessage( ERROR,
+                       "The " + OUTPUT_OPTION + " annotation processor option has the unsupported value '" +
+                       output + "'. Supported values are '" + OUTPUT_FILES + "' and '" + OUTPUT_BUNDLE + "'" );
+    }
+  }
+
+  @Nonnull
+  @Override
+  public Set<String> getSupportedOptions()
+  {
+    final Set<String> options = new HashSet<>( super.getSupportedOptions() );
+    options.add( EMIT_BINARY_RULES_OPTION );
+    options.add( EMIT_INDEX_OPTION );
+    options.add( OUTPUT_OPTION );
+    // Every rule file is derived solely from the element that it is generated for and is created with that
+    // element as the only originating element, so the processor is isolating unless the index or the bundle
+    // is emitted. Gradle deletes the rule files generated for a type when the type is deleted or recompiled.
+    options.add( _emitIndex || _emitBundle ? GRADLE_AGGREGATING_OPTION : GRADLE_ISOLATING_OPTION );
+    return options;
+  }
 
   @Nonnull
   @Override
@@ -66,6 +198,8 @@ public final class GrimProcessor
   {
     stopWatches.add( _processPackageStopWatch );
     stopWatches.add( _processTypeStopWatch );
+    stopWatches.add( _emitIndexStopWatch );
+    stopWatches.add( _emitBundleStopWatch );
   }
 
   @Override
@@ -118,6 +252,14 @@ public final class GrimProcessor
     processPackages( env, packagesToProcess );
     processTypes( env, typesToProcess.values() );
     errorIfProcessingOverAndInvalidTypesDetected( env );
+    if ( _emitIndex && env.processingOver() && !_ruleFiles.isEmpty() )
+    {
+      performAction( env, "Emit Index", e -> emitIndex(), null, _emitIndexStopWatch );
+    }
+    if ( env.processingOver() && !_bundleRules.isEmpty() )
+    {
+      performAction( env, "Emit Bundle", e -> emitBundle(), null, _emitBundleStopWatch );
+    }
     return true;
   }
 
@@ -141,184 +283,349 @@ public final class GrimProcessor
   private void processPackageElement( @Nonnull final PackageElement element )
     throws IOException
   {
-    JsonUtil.writeJsonResource( processingEnv, element, toJsonFilename( element ), g -> emitPatterns( element, g ) );
+    final List<RuleDescriptor> rules = new ArrayList<>();
+    final Map<String, List<AnnotationMirror>> annotations = collectAnnotations( element );
+    processPatternAnnotations( element, annotations, Constants.OMIT_PATTERN_CLASSNAME, rules );
+    processPatternAnnotations( element, annotations, Constants.KEEP_PATTERN_CLASSNAME, rules );
+    emitRules( element, BASE_RESOURCE_PATH + "/" + packageFilename( element ) + "package-info", rules );
   }
 
   private void processTypeElement( @Nonnull final TypeElement element )
     throws IOException
   {
-    JsonUtil.writeJsonResource( processingEnv, element, toJsonFilename( element ), g -> emitPatterns( element, g ) );
+    final List<RuleDescriptor> rules = new ArrayList<>();
+    final Map<String, List<AnnotationMirror>> annotations = collectAnnotations( element );
+    processClinit( element, annotations, Constants.OMIT_CLINIT_CLASSNAME, rules );
+    processClinit( element, annotations, Constants.KEEP_CLINIT_CLASSNAME, rules );
+    processTypeAnnotations( element, annotations, Constants.OMIT_TYPE_CLASSNAME, rules );
+    processTypeAnnotations( element, annotations, Constants.KEEP_TYPE_CLASSNAME, rules );
+    processSymbols( element, rules );
+    emitRules( element, BASE_RESOURCE_PATH + "/" + typeName( element ), rules );
   }
 
-  private void emitPatterns( @Nonnull final TypeElement element, @Nonnull final JsonGenerator g )
+  private void emitRules( @Nonnull final Element element,
+                          @Nonnull final String baseFilename,
+                          @Nonnull final List<RuleDescriptor> rules )
+    throws IOException
   {
-    g.writeStartArray();
-    processClinits( element, g );
-    processTypes( element, g );
-    processSymbols( element, g );
-    g.writeEnd();
+    final String relativeFilename = baseFilename.substring( BASE_RESOURCE_PATH.length() + 1 );
+    if ( _emitBundle )
+    {
+      _bundleRules.put( relativeFilename, rules );
+      _ruleFileElements.add( element );
+      return;
+    }
+    JsonUtil.writeJsonResource( processingEnv, element, baseFilename + SUFFIX, g -> emitRules( rules, g ) );
+    _ruleFiles.add( relativeFilename + SUFFIX );
+    _ruleFileElements.add( element );
+    if ( _emitBinaryRules )
+    {
+      final FileObject resource =
+        processingEnv
+          .getFiler()
+          .createResource( StandardLocation.CLASS_OUTPUT, "", baseFilename + BINARY_SUFFIX, element );
+      try ( final OutputStream outputStream = resource.openOutputStream() )
+      {
+        outputStream.write( BinaryRuleWriter.encode( rules ) );
+      }
+      _ruleFiles.add( relativeFilename + BINARY_SUFFIX );
+    }
   }
 
-  private void processClinits( @Nonnull final TypeElement element, @Nonnull final JsonGenerator g )
+  /**
+   * Emit the index listing every rule file generated during the compilation and every rule file listed in the
+   * index of a previous compilation to the same output directory that still exists.
+   * The index can only be written once so it is emitted in the final round.
+   */
+  private void emitIndex()
+    throws IOException
   {
-    processClinit( element, Constants.OMIT_CLINIT_CLASSNAME, g );
-    processClinit( element, Constants.KEEP_CLINIT_CLASSNAME, g );
+    final Set<String> ruleFiles = new TreeSet<>( _ruleFiles );
+    ruleFiles.addAll( readPreviousIndex() );
+    final FileObject resource =
+      processingEnv
+        .getFiler()
+        .createResource( StandardLocation.CLASS_OUTPUT,
+                         "",
+                         INDEX_FILENAME,
+                         _ruleFileElements.toArray( new Element[ 0 ] ) );
+    try ( final Writer writer = resource.openWriter() )
+    {
+      for ( final String ruleFile : ruleFiles )
+      {
+        writer.write( ruleFile );
+        writer.write( '\n' );
+      }
+    }
   }
 
-  private void processClinit( @Nonnull final TypeElement element,
-                              @Nonnull final String annotationName,
-                              @Nonnull final JsonGenerator g )
+  /**
+   * Return the rule files listed in the index emitted by a previous compilation to the same output directory
+   * that still exist. A compiler that recompiles incrementally without the support of the build tool (i.e. an IDE)
+   * only presents the changed types to the processor, so the index must retain the rule files of the unchanged
+   * types. A build tool that supports incremental annotation processing deletes the index before the processor
+   * runs, in which case there is no previous index.
+   */
+  @Nonnull
+  private Set<String> readPreviousIndex()
   {
-    final AnnotationMirror annotation = AnnotationsUtil.findAnnotationByType( element, annotationName );
-    if ( null != annotation )
+    final Set<String> ruleFiles = new TreeSet<>();
+    try
     {
-      g.writeStartObject();
-      if ( Constants.KEEP_CLINIT_CLASSNAME.equals( annotationName ) )
+      final FileObject index =
+        processingEnv.getFiler().getResource( StandardLocation.CLASS_OUTPUT, "", INDEX_FILENAME );
+      try ( final BufferedReader reader = new BufferedReader( index.openReader( true ) ) )
       {
-        g.write( "keep", true );
+        String line;
+        while ( null != ( line = reader.readLine() ) )
+        {
+          final String ruleFile = line.trim();
+          if ( !ruleFile.isEmpty() && !_ruleFiles.contains( ruleFile ) && isRuleFilePresent( ruleFile ) )
+          {
+            ruleFiles.add( ruleFile );
+          }
+        }
       }
-      g.write( "type", toTypePattern( element ) );
-      g.write( "member", quotedName( "$clinit" ) );
-      g.writeEnd();
     }
+    catch ( final IOException | RuntimeException e )
+    {
+      // There is no previous index or the index can not be read
+    }
+    return ruleFiles;
   }
 
-  private void processTypes( @Nonnull final TypeElement element, @Nonnull final JsonGenerator g )
+  private boolean isRuleFilePresent( @Nonnull final String ruleFile )
   {
-    processTypeAnnotations( element, Constants.OMIT_TYPES_CLASSNAME, Constants.OMIT_TYPE_CLASSNAME, g );
-    processTypeAnnotations( element, Constants.KEEP_TYPES_CLASSNAME, Constants.KEEP_TYPE_CLASSNAME, g );
+    try
+    {
+      processingEnv
+        .getFiler()
+        .getResource( StandardLocation.CLASS_OUTPUT, "", BASE_RESOURCE_PATH + "/" + ruleFile )
+        .openInputStream()
+        .close();
+      return true;
+    }
+    catch ( final IOException ioe )
+    {
+      return false;
+    }
   }
 
-  private void processTypeAnnotations( @Nonnull final TypeElement element,
-                                       @Nonnull final String containerAnnotation,
-                                       @Nonnull final String annotationName,
-                                       @Nonnull final JsonGenerator g )
+  /**
+   * Emit the bundle containing every rule generated during the compilation, sorted by the name of the rule file.
+   * The bundle can only be written once so it is emitted in the final round.
+   */
+  private void emitBundle()
+    throws IOException
   {
-    for ( final AnnotationMirror annotation : AnnotationsUtil.getRepeatingAnnotations( element,
-                                                                                       containerAnnotation,
-                                                                                       annotationName ) )
+    final FileObject resource =
+      processingEnv
+        .getFiler()
+        .createResource( StandardLocation.CLASS_OUTPUT,
+                         "",
+                         BUNDLE_FILENAME,
+                         _ruleFileElements.toArray( new Element[ 0 ] ) );
+    try ( final Writer writer = resource.openWriter();
+          final JsonGenerator g =
+            Json.createGeneratorFactory( Collections.singletonMap( JsonGenerator.PRETTY_PRINTING, true ) )
+              .createGenerator( writer ) )
     {
       g.writeStartObject();
-      if ( Constants.KEEP_TYPE_CLASSNAME.equals( annotationName ) )
+      for ( final Map.Entry<String, List<RuleDescriptor>> entry : _bundleRules.entrySet() )
       {
-        g.write( "keep", true );
+        g.writeKey( entry.getKey() );
+        emitRules( entry.getValue(), g );
       }
-      g.write( "type", toTypePattern( element ) );
-      processConditions( element, annotation, annotationName, g );
       g.writeEnd();
     }
   }
 
-  private void emitPatterns( @Nonnull final PackageElement element, @Nonnull final JsonGenerator g )
+  private void emitRules( @Nonnull final List<RuleDescriptor> rules, @Nonnull final JsonGenerator g )
   {
     g.writeStartArray();
-    processPatternAnnotations( element, Constants.OMIT_PATTERNS_CLASSNAME, Constants.OMIT_PATTERN_CLASSNAME, g );
-    processPatternAnnotations( element, Constants.KEEP_PATTERNS_CLASSNAME, Constants.KEEP_PATTERN_CLASSNAME, g );
+    for ( final RuleDescriptor rule : rules )
+    {
+      rule.generate( g );
+    }
     g.writeEnd();
   }
 
-  private void processPatternAnnotations( @Nonnull final PackageElement element,
-                                          @Nonnull final String containerAnnotation,
-                                          @Nonnull final String annotationName,
-                                          @Nonnull final JsonGenerator g )
+  /**
+   * Collect the grim annotations present on the element in a single pass over the annotation mirrors of the
+   * element, expanding the annotations contained by any container annotation. The annotations are keyed by the
+   * name of the (repeatable) annotation type and are in the order that they appear on the element. Most elements
+   * have no grim annotations so the map is only allocated when a grim annotation is present.
+   *
+   * @param element the element.
+   * @return the grim annotations present on the element.
+   */
+  @Nonnull
+  private Map<String, List<AnnotationMirror>> collectAnnotations( @Nonnull final Element element )
   {
-    final List<AnnotationMirror> annotations =
-      AnnotationsUtil.getRepeatingAnnotations( element, containerAnnotation, annotationName );
-    for ( final AnnotationMirror annotation : annotations )
+    Map<String, List<AnnotationMirror>> annotations = null;
+    for ( final AnnotationMirror annotation : element.getAnnotationMirrors() )
     {
-      g.writeStartObject();
-      if ( Constants.KEEP_PATTERN_CLASSNAME.equals( annotationName ) )
+      final TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+      // Check the package before deriving the name so that other annotations are skipped without allocating
+      final Element enclosingElement = annotationType.getEnclosingElement();
+      if ( enclosingElement instanceof PackageElement &&
+           ( (PackageElement) enclosingElement ).getQualifiedName().contentEquals( ANNOTATIONS_PACKAGE ) )
       {
-        g.write( "keep", true );
+        if ( null == annotations )
+        {
+          annotations = new HashMap<>();
+        }
+        final String annotationName = annotationType.getQualifiedName().toString();
+        final String containedAnnotationName = CONTAINED_ANNOTATIONS.get( annotationName );
+        if ( null != containedAnnotationName )
+        {
+          final List<? extends AnnotationValue> values =
+            AnnotationsUtil.getAnnotationValueValue( annotation, "value" );
+          final List<AnnotationMirror> contained =
+            annotations.computeIfAbsent( containedAnnotationName, n -> new ArrayList<>() );
+          for ( final AnnotationValue value : values )
+          {
+            contained.add( (AnnotationMirror) value.getValue() );
+          }
+        }
+        else
+        {
+          annotations.computeIfAbsent( annotationName, n -> new ArrayList<>() ).add( annotation );
+        }
       }
+    }
+    return null == annotations ? Collections.emptyMap() : annotations;
+  }
+
+  @Nonnull
+  private List<AnnotationMirror> getAnnotations( @Nonnull final Map<String, List<AnnotationMirror>> annotations,
+                                                 @Nonnull final String annotationName )
+  {
+    return annotations.getOrDefault( annotationName, Collections.emptyList() );
+  }
+
+  private void processClinit( @Nonnull final TypeElement element,
+                              @Nonnull final Map<String, List<AnnotationMirror>> annotations,
+                              @Nonnull final String annotationName,
+                              @Nonnull final List<RuleDescriptor> rules )
+  {
+    if ( annotations.containsKey( annotationName ) )
+    {
+      rules.add( new RuleDescriptor( Constants.KEEP_CLINIT_CLASSNAME.equals( annotationName ),
+                                     toTypePattern( element ),
+                                     PatternDescriptor.literal( "$clinit" ),
+                                     RuleDescriptor.MemberKind.CLINIT,
+                                     null ) );
+    }
+  }
+
+  private void processTypeAnnotations( @Nonnull final TypeElement element,
+                                       @Nonnull final Map<String, List<AnnotationMirror>> annotations,
+                                       @Nonnull final String annotationName,
+                                       @Nonnull final List<RuleDescriptor> rules )
+  {
+    for ( final AnnotationMirror annotation : getAnnotations( annotations, annotationName ) )
+    {
+      rules.add( new RuleDescriptor( Constants.KEEP_TYPE_CLASSNAME.equals( annotationName ),
+                                     toTypePattern( element ),
+                                     null,
+                                     processConditions( element, annotation, annotationName ) ) );
+    }
+  }
+
+  private void processPatternAnnotations( @Nonnull final PackageElement element,
+                                          @Nonnull final Map<String, List<AnnotationMirror>> annotations,
+                                          @Nonnull final String annotationName,
+                                          @Nonnull final List<RuleDescriptor> rules )
+  {
+    for ( final AnnotationMirror annotation : getAnnotations( annotations, annotationName ) )
+    {
       final String typePattern = AnnotationsUtil.getAnnotationValueValue( annotation, "type" );
-      final String actualTypePattern =
+      final PatternDescriptor actualTypePattern =
         SENTINEL.equals( typePattern ) ?
-        "^" + element.getQualifiedName().toString().replace( ".", "\\." ) + "\\..*$" :
-        typePattern;
-      g.write( "type", actualTypePattern );
+        PatternDescriptor.packageTypes( element.getQualifiedName().toString() ) :
+        PatternDescriptor.regex( typePattern );
 
       final String symbolPattern = AnnotationsUtil.getAnnotationValueValue( annotation, "symbol" );
-      if ( !SENTINEL.equals( symbolPattern ) )
-      {
-        g.write( "member", symbolPattern );
-      }
-      processConditions( element, annotation, annotationName, g );
-      g.writeEnd();
+      rules.add( new RuleDescriptor( Constants.KEEP_PATTERN_CLASSNAME.equals( annotationName ),
+                                     actualTypePattern,
+                                     SENTINEL.equals( symbolPattern ) ? null : PatternDescriptor.regex( symbolPattern ),
+                                     processConditions( element, annotation, annotationName ) ) );
     }
   }
 
-  private void processSymbols( @Nonnull final TypeElement element, @Nonnull final JsonGenerator g )
+  private void processSymbols( @Nonnull final TypeElement element, @Nonnull final List<RuleDescriptor> rules )
   {
     for ( final Element child : element.getEnclosedElements() )
     {
       if ( child instanceof ExecutableElement || child instanceof VariableElement )
       {
-        processSymbol( element, child, g );
+        final Map<String, List<AnnotationMirror>> annotations = collectAnnotations( child );
+        if ( !annotations.isEmpty() )
+        {
+          processSymbolAnnotations( element, child, annotations, Constants.OMIT_SYMBOL_CLASSNAME, rules );
+          processSymbolAnnotations( element, child, annotations, Constants.KEEP_SYMBOL_CLASSNAME, rules );
+        }
       }
     }
   }
 
-  private void processSymbol( @Nonnull final TypeElement typeElement,
-                              @Nonnull final Element element,
-                              @Nonnull final JsonGenerator g )
-  {
-    processSymbolAnnotations( typeElement,
-                              element,
-                              Constants.OMIT_SYMBOLS_CLASSNAME,
-                              Constants.OMIT_SYMBOL_CLASSNAME,
-                              g );
-    processSymbolAnnotations( typeElement,
-                              element,
-                              Constants.KEEP_SYMBOLS_CLASSNAME,
-                              Constants.KEEP_SYMBOL_CLASSNAME,
-                              g );
-  }
-
   private void processSymbolAnnotations( @Nonnull final TypeElement typeElement,
                                          @Nonnull final Element element,
-                                         @Nonnull final String containerAnnotation,
+                                         @Nonnull final Map<String, List<AnnotationMirror>> annotations,
                                          @Nonnull final String annotationName,
-                                         @Nonnull final JsonGenerator g )
+                                         @Nonnull final List<RuleDescriptor> rules )
   {
-    final List<AnnotationMirror> annotations =
-      AnnotationsUtil.getRepeatingAnnotations( element, containerAnnotation, annotationName );
-    for ( final AnnotationMirror annotation : annotations )
+    for ( final AnnotationMirror annotation : getAnnotations( annotations, annotationName ) )
     {
-      g.writeStartObject();
-      if ( Constants.KEEP_SYMBOL_CLASSNAME.equals( annotationName ) )
-      {
-        g.write( "keep", true );
-      }
-      g.write( "type", toTypePattern( typeElement ) );
-      g.write( "member", getMemberName( element ) );
-      processConditions( element, annotation, annotationName, g );
-      g.writeEnd();
+      rules.add( new RuleDescriptor( Constants.KEEP_SYMBOL_CLASSNAME.equals( annotationName ),
+                                     toTypePattern( typeElement ),
+                                     getMemberPattern( element ),
+                                     getMemberKind( element ),
+                                     processConditions( element, annotation, annotationName ) ) );
+    }
+  }
+
+  @Nonnull
+  private PatternDescriptor getMemberPattern( @Nonnull final Element element )
+  {
+    if ( ElementKind.CONSTRUCTOR == element.getKind() )
+    {
+      return PatternDescriptor.literal( element.getEnclosingElement().getSimpleName().toString() );
+    }
+    else if ( ElementKind.METHOD == element.getKind() )
+    {
+      return PatternDescriptor.method( element.getSimpleName().toString() );
+    }
+    else
+    {
+      assert ElementKind.FIELD == element.getKind();
+      return PatternDescriptor.literal( element.getSimpleName().toString() );
     }
   }
 
   @Nonnull
-  private String getMemberName( @Nonnull final Element element )
+  private RuleDescriptor.MemberKind getMemberKind( @Nonnull final Element element )
   {
     if ( ElementKind.CONSTRUCTOR == element.getKind() )
     {
-      return quotedName( element.getEnclosingElement().getSimpleName().toString() );
+      return RuleDescriptor.MemberKind.CONSTRUCTOR;
     }
     else if ( ElementKind.METHOD == element.getKind() )
     {
-      return quotedMethodName( element.getSimpleName().toString() );
+      return RuleDescriptor.MemberKind.METHOD;
     }
     else
     {
       assert ElementKind.FIELD == element.getKind();
-      return quotedName( element.getSimpleName().toString() );
+      return RuleDescriptor.MemberKind.FIELD;
     }
   }
 
-  private void processConditions( @Nonnull final Element element,
-                                  @Nonnull final AnnotationMirror annotation,
-                                  @Nonnull final String annotationName,
-                                  @Nonnull final JsonGenerator g )
+  @Nullable
+  private ConditionDescriptor processConditions( @Nonnull final Element element,
+                                                 @Nonnull final AnnotationMirror annotation,
+                                                 @Nonnull final String annotationName )
   {
     final String when = AnnotationsUtil.getAnnotationValueValue( annotation, "when" );
     final String unless = AnnotationsUtil.getAnnotationValueValue( annotation, "unless" );
@@ -332,11 +639,15 @@ public final class GrimProcessor
     }
     if ( !"".equals( when ) )
     {
-      parseCondition( when, ConditionDescriptor.Operator.EQUALS ).generate( g );
+      return parseCondition( when, ConditionDescriptor.Operator.EQUALS );
     }
     else if ( !"".equals( unless ) )
     {
-      parseCondition( unless, ConditionDescriptor.Operator.NOT_EQUALS ).generate( g );
+      return parseCondition( unless, ConditionDescriptor.Operator.NOT_EQUALS );
+    }
+    else
+    {
+      return null;
     }
   }
 
@@ -355,18 +666,6 @@ public final class GrimProcessor
     }
   }
 
-  @Nonnull
-  private String toJsonFilename( @Nonnull final PackageElement element )
-  {
-    return BASE_RESOURCE_PATH + "/" + packageFilename( element ) + "package-info" + SUFFIX;
-  }
-
-  @Nonnull
-  private String toJsonFilename( @Nonnull final TypeElement element )
-  {
-    return BASE_RESOURCE_PATH + "/" + typeName( element ) + SUFFIX;
-  }
-
   @Nonnull
   private String typeName( @Nonnull final Element element )
   {
@@ -385,22 +684,8 @@ public final class GrimProcessor
   }
 
   @Nonnull
-  private String toTypePattern( @Nonnull final TypeElement element )
-  {
-    return quotedName( element.getQualifiedName().toString() );
-  }
-
-  @Nonnull
-  private String quotedName( @Nonnull final String string )
-  {
-    return "^" + Pattern.quote( string ) + "$";
-  }
-
-  @Nonnull
-  private String quotedMethodName( @Nonnull final String string )
+  private PatternDescriptor toTypePattern( @Nonnull final TypeElement element )
   {
-    // A very common transform in the GWT compiler is to de-virtualize a method. In which case the original method
-    // is removed and a new one is created with the $ prefix. So for methods we try to handle this scenario.
-    return "^\\$?" + Pattern.quote( string ) + "$";
+    return PatternDescriptor.literal( element.getQualifiedName().toString() );
   }
 }
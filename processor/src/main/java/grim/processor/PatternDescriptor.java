@@ -0,0 +1,103 @@
+package grim.processor;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+
+/**
+ * A pattern emitted in a rule.
+ * The kind of pattern is retained so that the binary rule format can record the name matched rather than
+ * the regular expression for the patterns generated by the processor.
+ */
+final class PatternDescriptor
+{
+  /**
+   * The kind of pattern. The ordinal is the value recorded in the binary rule format and must not change.
+   */
+  enum Kind
+  {
+    /**
+     * The value is a regular expression supplied by the user.
+     */
+    REGEX,
+    /**
+     * The value is a name and the pattern only matches the name.
+     */
+    LITERAL,
+    /**
+     * The value is the name of a method and the pattern matches the name with an optional <code>$</code>
+     * prefix as the GWT compiler adds the prefix when it devirtualizes a method.
+     */
+    METHOD,
+    /**
+     * The value is the name of a package and the pattern matches every type within the package.
+     */
+    PACKAGE
+  }
+
+  @Nonnull
+  private final Kind _kind;
+  @Nonnull
+  private final String _value;
+
+  private PatternDescriptor( @Nonnull final Kind kind, @Nonnull final String value )
+  {
+    _kind = Objects.requireNonNull( kind );
+    _value = Objects.requireNonNull( value );
+  }
+
+  @Nonnull
+  static PatternDescriptor regex( @Nonnull final String regex )
+  {
+    return new PatternDescriptor( Kind.REGEX, regex );
+  }
+
+  @Nonnull
+  static PatternDescriptor literal( @Nonnull final String name )
+  {
+    return new PatternDescriptor( Kind.LITERAL, name );
+  }
+
+  @Nonnull
+  static PatternDescriptor method( @Nonnull final String name )
+  {
+    return new PatternDescriptor( Kind.METHOD, name );
+  }
+
+  @Nonnull
+  static PatternDescriptor packageTypes( @Nonnull final String packageName )
+  {
+    return new PatternDescriptor( Kind.PACKAGE, packageName );
+  }
+
+  @Nonnull
+  Kind getKind()
+  {
+    return _kind;
+  }
+
+  @Nonnull
+  String getValue()
+  {
+    return _value;
+  }
+
+  @Nonnull
+  String toRegex()
+  {
+    switch ( _kind )
+    {
+      case LITERAL:
+        return "^" + Pattern.quote( _value ) + "$";
+      case METHOD:
+        // A very common transform in the GWT compiler is to de-virtualize a method. In which case the original
+        // method is removed and a new one is created with the $ prefix. So for methods we try to handle this scenario.
+        return "^\\$?" + Pattern.quote( _value ) + "$";
+      case PACKAGE:
+        return "^" + _value.replace( ".", "\\." ) + "\\..*$";
+      default:
+        assert Kind.REGEX == _kind;
+        return _value;
+    }
+  }
+}
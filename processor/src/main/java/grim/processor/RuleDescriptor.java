@@ -0,0 +1,129 @@
+package grim.processor;
+
+import java.util.Locale;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * A rule collected from the annotations on an element.
+ */
+final class RuleDescriptor
+{
+  /**
+   * The kind of member matched by a rule generated for a symbol.
+   */
+  enum MemberKind
+  {
+    CLINIT,
+    CONSTRUCTOR,
+    METHOD,
+    FIELD
+  }
+
+  private final boolean _keep;
+  @Nonnull
+  private final PatternDescriptor _type;
+  @Nullable
+  private final PatternDescriptor _member;
+  /**
+   * The kind of member matched if the rule was generated for a symbol, otherwise null.
+   */
+  @Nullable
+  private final MemberKind _memberKind;
+  @Nullable
+  private final ConditionDescriptor _condition;
+
+  RuleDescriptor( final boolean keep,
+                  @Nonnull final PatternDescriptor type,
+                  @Nullable final PatternDescriptor member,
+                  @Nullable final ConditionDescriptor condition )
+  {
+    this( keep, type, member, null, condition );
+  }
+
+  RuleDescriptor( final boolean keep,
+                  @Nonnull final PatternDescriptor type,
+                  @Nullable final PatternDescriptor member,
+                  @Nullable final MemberKind memberKind,
+                  @Nullable final ConditionDescriptor condition )
+  {
+    assert null == memberKind || null != member;
+    _keep = keep;
+    _type = Objects.requireNonNull( type );
+    _member = member;
+    _memberKind = memberKind;
+    _condition = condition;
+  }
+
+  boolean isKeep()
+  {
+    return _keep;
+  }
+
+  @Nonnull
+  PatternDescriptor getType()
+  {
+    return _type;
+  }
+
+  @Nullable
+  PatternDescriptor getMember()
+  {
+    return _member;
+  }
+
+  @Nullable
+  MemberKind getMemberKind()
+  {
+    return _memberKind;
+  }
+
+  @Nullable
+  ConditionDescriptor getCondition()
+  {
+    return _condition;
+  }
+
+  /**
+   * Generate the json representation of the rule.
+   * The patterns are always emitted as regular expressions. Patterns that match a single name are also
+   * emitted as the name matched so that the rule can be loaded without parsing the regular expressions.
+   */
+  void generate( @Nonnull final JsonGenerator g )
+  {
+    g.writeStartObject();
+    if ( _keep )
+    {
+      g.write( "keep", true );
+    }
+    g.write( "type", _type.toRegex() );
+    if ( PatternDescriptor.Kind.LITERAL == _type.getKind() )
+    {
+      g.write( "typeName", _type.getValue() );
+    }
+    if ( null != _member )
+    {
+      g.write( "member", _member.toRegex() );
+      final PatternDescriptor.Kind kind = _member.getKind();
+      if ( PatternDescriptor.Kind.LITERAL == kind || PatternDescriptor.Kind.METHOD == kind )
+      {
+        g.write( "memberName", _member.getValue() );
+      }
+      if ( null != _memberKind )
+      {
+        g.write( "memberKind", _memberKind.name().toLowerCase( Locale.ENGLISH ) );
+      }
+      if ( PatternDescriptor.Kind.METHOD == kind )
+      {
+        g.write( "devirtualized", true );
+      }
+    }
+    if ( null != _condition )
+    {
+      _condition.generate( g );
+    }
+    g.writeEnd();
+  }
+}
@@ -0,0 +1,91 @@
+package grim.processor;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+public class BinaryRuleWriterTest
+{
+  @Test
+  public void encode()
+    throws Exception
+  {
+    final ConditionDescriptor condition =
+      new ConditionDescriptor( "arez.enable_names", "true", ConditionDescriptor.Operator.NOT_EQUALS );
+    final byte[] data =
+      BinaryRuleWriter.encode( Arrays.asList( new RuleDescriptor( false,
+                                                                  PatternDescriptor.literal( "com.example.Foo" ),
+                                                                  PatternDescriptor.method( "getName" ),
+                                                                  condition ),
+                                              new RuleDescriptor( true,
+                                                                  PatternDescriptor.packageTypes( "com.example" ),
+                                                                  null,
+                                                                  null ),
+                                              new RuleDescriptor( false,
+                                                                  PatternDescriptor.literal( "com.example.Foo" ),
+                                                                  PatternDescriptor.regex( "^get.*$" ),
+                                                                  condition ) ) );
+
+    final DataInputStream input = new DataInputStream( new ByteArrayInputStream( data ) );
+    assertEquals( input.readInt(), BinaryRuleWriter.MAGIC );
+    assertEquals( input.readUnsignedByte(), BinaryRuleWriter.VERSION );
+
+    // Each string is stored once
+    assertEquals( input.readInt(), 6 );
+    assertString( input, "com.example.Foo" );
+    assertString( input, "getName" );
+    assertString( input, "arez.enable_names" );
+    assertString( input, "true" );
+    assertString( input, "com.example" );
+    assertString( input, "^get.*$" );
+
+    assertEquals( input.readInt(), 3 );
+
+    assertEquals( input.readUnsignedByte(), BinaryRuleWriter.FLAG_MEMBER | BinaryRuleWriter.FLAG_CONDITION );
+    assertPattern( input, PatternDescriptor.Kind.LITERAL, 0 );
+    assertPattern( input, PatternDescriptor.Kind.METHOD, 1 );
+    assertEquals( input.readInt(), 2 );
+    assertEquals( input.readInt(), 3 );
+
+    assertEquals( input.readUnsignedByte(), BinaryRuleWriter.FLAG_KEEP );
+    assertPattern( input, PatternDescriptor.Kind.PACKAGE, 4 );
+
+    assertEquals( input.readUnsignedByte(), BinaryRuleWriter.FLAG_MEMBER | BinaryRuleWriter.FLAG_CONDITION );
+    assertPattern( input, PatternDescriptor.Kind.LITERAL, 0 );
+    assertPattern( input, PatternDescriptor.Kind.REGEX, 5 );
+    assertEquals( input.readInt(), 2 );
+    assertEquals( input.readInt(), 3 );
+
+    assertEquals( input.available(), 0 );
+  }
+
+  @Test
+  public void toRegex()
+  {
+    assertEquals( PatternDescriptor.literal( "com.example.Foo" ).toRegex(), "^\\Qcom.example.Foo\\E$" );
+    assertEquals( PatternDescriptor.method( "getName" ).toRegex(), "^\\$?\\QgetName\\E$" );
+    assertEquals( PatternDescriptor.packageTypes( "com.example" ).toRegex(), "^com\\.example\\..*$" );
+    assertEquals( PatternDescriptor.regex( ".*Impl" ).toRegex(), ".*Impl" );
+  }
+
+  private void assertString( @Nonnull final DataInputStream input, @Nonnull final String expected )
+    throws Exception
+  {
+    final byte[] data = new byte[ input.readInt() ];
+    input.readFully( data );
+    assertEquals( new String( data, StandardCharsets.UTF_8 ), expected );
+  }
+
+  private void assertPattern( @Nonnull final DataInputStream input,
+                              @Nonnull final PatternDescriptor.Kind kind,
+                              final int value )
+    throws Exception
+  {
+    assertEquals( input.readUnsignedByte(), kind.ordinal() );
+    assertEquals( input.readInt(), value );
+  }
+}
@@ -1,15 +1,58 @@
 package grim.processor;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import javax.annotation.processing.Processor;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
 import org.realityforge.proton.qa.AbstractProcessorTest;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
+import static org.testng.Assert.*;
 
 public class GrimProcessorTest
   extends AbstractProcessorTest
 {
+  @Nonnull
+  private static final List<String> EMIT_INDEX =
+    Collections.singletonList( "-A" + GrimProcessor.EMIT_INDEX_OPTION + "=true" );
+  private Path _outputDirectory;
+
+  @AfterMethod
+  public void afterMethod()
+    throws IOException
+  {
+    if ( null != _outputDirectory )
+    {
+      try ( final Stream<Path> paths = Files.walk( _outputDirectory ) )
+      {
+        //noinspection ResultOfMethodCallIgnored
+        paths.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+      }
+      _outputDirectory = null;
+    }
+  }
+
   @DataProvider( name = "successfulCompiles" )
   public Object[][] successfulCompiles()
   {
@@ -48,6 +91,192 @@ public class GrimProcessorTest
     assertSuccessfulCompile( inputs( classname ), Collections.singletonList( outputFilename ) );
   }
 
+  @Test
+  public void getSupportedOptions()
+  {
+    final Set<String> options = new GrimProcessor().getSupportedOptions();
+    assertTrue( options.contains( GrimProcessor.EMIT_BINARY_RULES_OPTION ) );
+    assertTrue( options.contains( GrimProcessor.EMIT_INDEX_OPTION ) );
+    assertTrue( options.contains( GrimProcessor.OUTPUT_OPTION ) );
+    // The index is not emitted by default so the processor is isolating in Gradle incremental builds
+    assertTrue( options.contains( GrimProcessor.GRADLE_ISOLATING_OPTION ) );
+    assertFalse( options.contains( GrimProcessor.GRADLE_AGGREGATING_OPTION ) );
+  }
+
+  @Test
+  public void getSupportedOptions_emitIndex()
+    throws Exception
+  {
+    final GrimProcessor processor = assertCompiles( EMIT_INDEX, "com.example.OmitMethodExample" );
+    final Set<String> options = processor.getSupportedOptions();
+    assertTrue( options.contains( GrimProcessor.GRADLE_AGGREGATING_OPTION ) );
+    assertFalse( options.contains( GrimProcessor.GRADLE_ISOLATING_OPTION ) );
+  }
+
+  @Test
+  public void emitIndex_disabled()
+    throws Exception
+  {
+    final GrimProcessor processor =
+      assertCompiles( Collections.singletonList( "-A" + GrimProcessor.EMIT_INDEX_OPTION + "=false" ),
+                      "com.example.OmitMethodExample" );
+    final Set<String> options = processor.getSupportedOptions();
+    assertTrue( options.contains( GrimProcessor.GRADLE_ISOLATING_OPTION ) );
+    assertFalse( options.contains( GrimProcessor.GRADLE_AGGREGATING_OPTION ) );
+    assertTrue( Files.exists( _outputDirectory.resolve( "META-INF/grim/com/example/OmitMethodExample.grim.json" ) ) );
+    assertFalse( Files.exists( _outputDirectory.resolve( GrimProcessor.INDEX_FILENAME ) ) );
+
+    // The index is not emitted by default
+    assertCompiles( Collections.emptyList(), "com.example.OmitFieldExample" );
+    assertFalse( Files.exists( _outputDirectory.resolve( GrimProcessor.INDEX_FILENAME ) ) );
+  }
+
+  @Test
+  public void emitIndex()
+    throws Exception
+  {
+    assertCompiles( EMIT_INDEX, "com.example.OmitMethodExample", "com.example.package-info" );
+    assertEquals( readOutput( GrimProcessor.INDEX_FILENAME ),
+                  "com/example/OmitMethodExample.grim.json\n" +
+                  "com/example/package-info.grim.json\n" );
+  }
+
+  @Test
+  public void emitIndex_binaryRules()
+    throws Exception
+  {
+    assertCompiles( Arrays.asList( "-A" + GrimProcessor.EMIT_INDEX_OPTION + "=true",
+                                   "-A" + GrimProcessor.EMIT_BINARY_RULES_OPTION + "=true" ),
+                    "com.example.OmitMethodExample" );
+    assertEquals( readOutput( GrimProcessor.INDEX_FILENAME ),
+                  "com/example/OmitMethodExample.grim.bin\n" +
+                  "com/example/OmitMethodExample.grim.json\n" );
+  }
+
+  @Test
+  public void emitIndex_retainsRuleFilesOfPreviousCompilation()
+    throws Exception
+  {
+    // A compiler that recompiles incrementally only presents the changed types to the processor
+    assertCompiles( EMIT_INDEX, "com.example.OmitMethodExample" );
+    assertCompiles( EMIT_INDEX, "com.example.OmitFieldExample" );
+    assertEquals( readOutput( GrimProcessor.INDEX_FILENAME ),
+                  "com/example/OmitFieldExample.grim.json\n" +
+                  "com/example/OmitMethodExample.grim.json\n" );
+
+    // The rule files of types that have been removed are no longer listed
+    Files.delete( _outputDirectory.resolve( "META-INF/grim/com/example/OmitMethodExample.grim.json" ) );
+    assertCompiles( EMIT_INDEX, "com.example.OmitFieldExample" );
+    assertEquals( readOutput( GrimProcessor.INDEX_FILENAME ), "com/example/OmitFieldExample.grim.json\n" );
+  }
+
+  @Test
+  public void emitBundle()
+    throws Exception
+  {
+    assertCompiles( Collections.singletonList( "-A" + GrimProcessor.OUTPUT_OPTION + "=" + GrimProcessor.OUTPUT_BUNDLE ),
+                    "com.example.package-info",
+                    "com.example.OmitOnNestedClassExample",
+                    "com.example.OmitMethodExample",
+                    "com.example.KeepFieldExample" );
+    // The bundle replaces the rule files
+    assertFalse( Files.exists( _outputDirectory.resolve( "META-INF/grim/com/example/OmitMethodExample.grim.json" ) ) );
+
+    final Path fixture = fixtureDir().resolve( "expected" ).resolve( GrimProcessor.BUNDLE_FILENAME );
+    final String output = readOutput( GrimProcessor.BUNDLE_FILENAME );
+    if ( "true".equals( System.getProperty( getOptionPrefix() + ".output_fixture_data" ) ) )
+    {
+      Files.write( fixture, output.getBytes( StandardCharsets.UTF_8 ) );
+    }
+    final JsonObject bundle = readJson( output );
+    final JsonObject expected = readJson( new String( Files.readAllBytes( fixture ), StandardCharsets.UTF_8 ) );
+    assertEquals( bundle, expected );
+    // The entries are sorted by the name of the rule file they replace
+    assertEquals( new ArrayList<>( bundle.keySet() ),
+                  Arrays.asList( "com/example/KeepFieldExample",
+                                 "com/example/OmitMethodExample",
+                                 "com/example/OmitOnNestedClassExample$Foo",
+                                 "com/example/package-info" ) );
+  }
+
+  @Test
+  public void emitBundle_unsupportedOutput()
+    throws Exception
+  {
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    assertFalse( compile( new GrimProcessor(),
+                          diagnostics,
+                          Collections.singletonList( "-A" + GrimProcessor.OUTPUT_OPTION + "=jar" ),
+                          "com.example.OmitMethodExample" ) );
+    final List<Diagnostic<? extends JavaFileObject>> errors =
+      diagnostics.getDiagnostics()
+        .stream()
+        .filter( d -> Diagnostic.Kind.ERROR == d.getKind() )
+        .collect( Collectors.toList() );
+    assertEquals( errors.size(), 1 );
+    assertEquals( errors.get( 0 ).getMessage( null ),
+                  "The grim.output annotation processor option has the unsupported value 'jar'. " +
+                  "Supported values are 'files' and 'bundle'" );
+  }
+
+  /**
+   * Run the processor over the input fixtures with the options, assert that it succeeds and return the processor.
+   * The resources are generated in the same output directory for every compilation in a test.
+   */
+  @Nonnull
+  private GrimProcessor assertCompiles( @Nonnull final List<String> options, @Nonnull final String... classnames )
+    throws IOException
+  {
+    final GrimProcessor processor = new GrimProcessor();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    assertTrue( compile( processor, diagnostics, options, classnames ),
+                String.valueOf( diagnostics.getDiagnostics() ) );
+    return processor;
+  }
+
+  private boolean compile( @Nonnull final Processor processor,
+                           @Nonnull final DiagnosticCollector<JavaFileObject> diagnostics,
+                           @Nonnull final List<String> options,
+                           @Nonnull final String... classnames )
+    throws IOException
+  {
+    if ( null == _outputDirectory )
+    {
+      _outputDirectory = Files.createTempDirectory( "grim" );
+    }
+    final List<String> arguments = new ArrayList<>( Arrays.asList( "-proc:only",
+                                                                   "-d",
+                                                                   _outputDirectory.toString(),
+                                                                   "-classpath",
+                                                                   System.getProperty( "java.class.path" ) ) );
+    arguments.addAll( options );
+    final List<JavaFileObject> inputs = new ArrayList<>();
+    for ( final String classname : classnames )
+    {
+      inputs.addAll( inputs( classname ) );
+    }
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final JavaCompiler.CompilationTask task = compiler.getTask( null, null, diagnostics, arguments, null, inputs );
+    task.setProcessors( Collections.singletonList( processor ) );
+    return task.call();
+  }
+
+  @Nonnull
+  private static JsonObject readJson( @Nonnull final String content )
+  {
+    try ( final JsonReader reader = Json.createReader( new StringReader( content ) ) )
+    {
+      return reader.readObject();
+    }
+  }
+
+  @Nonnull
+  private String readOutput( @Nonnull final String filename )
+    throws IOException
+  {
+    return new String( Files.readAllBytes( _outputDirectory.resolve( filename ) ), StandardCharsets.UTF_8 );
+  }
+
   @Nonnull
   @Override
   protected Processor processor()